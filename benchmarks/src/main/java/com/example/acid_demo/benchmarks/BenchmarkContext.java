@@ -0,0 +1,62 @@
+package com.example.acid_demo.benchmarks;
+
+import com.example.acid_demo.AcidDemoApplication;
+import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.repository.AccountRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Контекст приложения для бенчмарков: без веб-сервера, без искусственных задержек
+ * и без отладочного логирования, которое иначе доминирует в замерах.
+ * Подключение к БД берётся из .env / переменных окружения, как у самого приложения
+ */
+final class BenchmarkContext {
+    
+    static final String ACCOUNT_PREFIX = "BENCH-";
+    static final Money INITIAL_BALANCE = Money.valueOf("1000000000.00");
+    
+    private BenchmarkContext() {
+    }
+    
+    static ConfigurableApplicationContext start(String... extraProperties) {
+        // передаются как аргументы командной строки, чтобы перекрыть application.yaml
+        List<String> args = new ArrayList<>(List.of(
+                "--acid.transfer.simulated-delays=false",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.com.example.acid_demo=WARN",
+                "--logging.level.org.springframework.transaction=WARN",
+                "--spring.datasource.hikari.maximum-pool-size=64"
+        ));
+        for (String property : extraProperties) {
+            args.add("--" + property);
+        }
+        
+        return new SpringApplicationBuilder(AcidDemoApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new));
+    }
+    
+    /**
+     * Пересоздаёт счета бенчмарка с большим балансом, чтобы переводы не упирались в нехватку средств
+     */
+    static String[] seedAccounts(ConfigurableApplicationContext context, int count) {
+        context.getBean(JdbcTemplate.class)
+                .update("DELETE FROM accounts WHERE account_number LIKE ?", ACCOUNT_PREFIX + "%");
+        
+        String[] accountNumbers = new String[count];
+        List<Account> accounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            accountNumbers[i] = String.format("%s%06d", ACCOUNT_PREFIX, i);
+            accounts.add(new Account(accountNumbers[i], INITIAL_BALANCE));
+        }
+        context.getBean(AccountRepository.class).saveAll(accounts);
+        return accountNumbers;
+    }
+} 
\ No newline at end of file
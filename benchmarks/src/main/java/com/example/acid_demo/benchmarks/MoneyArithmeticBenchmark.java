@@ -0,0 +1,104 @@
+package com.example.acid_demo.benchmarks;
+
+import com.example.acid_demo.entity.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Арифметика перевода без БД: проверка остатка, списание и зачисление по массиву счетов,
+ * в вариантах BigDecimal (как было в TransferService) и Money (long копеек).
+ * parse* дополнительно разбирают сумму из строки, как при обработке @RequestParam.
+ * Выделение памяти на операцию - с профилировщиком JMH: -Djmh.args="MoneyArithmeticBenchmark -prof gc"
+ * (gc.alloc.rate.norm, байт на вызов)
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyArithmeticBenchmark {
+    
+    private static final int ACCOUNTS = 1024;
+    private static final int OPERATIONS = 4096;
+    
+    private final BigDecimal[] decimalBalances = new BigDecimal[ACCOUNTS];
+    private final Money[] moneyBalances = new Money[ACCOUNTS];
+    
+    private final int[] from = new int[OPERATIONS];
+    private final int[] to = new int[OPERATIONS];
+    private final String[] amountTexts = new String[OPERATIONS];
+    private final BigDecimal[] decimalAmounts = new BigDecimal[OPERATIONS];
+    private final Money[] moneyAmounts = new Money[OPERATIONS];
+    
+    private int next;
+    
+    @Setup(Level.Iteration)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            decimalBalances[i] = new BigDecimal("1000000.00");
+            moneyBalances[i] = Money.valueOf("1000000.00");
+        }
+        for (int i = 0; i < OPERATIONS; i++) {
+            from[i] = random.nextInt(ACCOUNTS);
+            to[i] = random.nextInt(ACCOUNTS);
+            // суммы от 0.01 до 1000.00, в том числе с копейками
+            long minor = 1 + random.nextLong(100_000);
+            amountTexts[i] = Money.ofMinor(minor).toString();
+            decimalAmounts[i] = new BigDecimal(amountTexts[i]);
+            moneyAmounts[i] = Money.valueOf(amountTexts[i]);
+        }
+    }
+    
+    @Benchmark
+    public BigDecimal bigDecimalTransfer() {
+        int i = nextOperation();
+        return transfer(from[i], to[i], decimalAmounts[i]);
+    }
+    
+    @Benchmark
+    public Money moneyTransfer() {
+        int i = nextOperation();
+        return transfer(from[i], to[i], moneyAmounts[i]);
+    }
+    
+    @Benchmark
+    public BigDecimal bigDecimalParseAndTransfer() {
+        int i = nextOperation();
+        return transfer(from[i], to[i], new BigDecimal(amountTexts[i]));
+    }
+    
+    @Benchmark
+    public Money moneyParseAndTransfer() {
+        int i = nextOperation();
+        return transfer(from[i], to[i], Money.valueOf(amountTexts[i]));
+    }
+    
+    private BigDecimal transfer(int fromIndex, int toIndex, BigDecimal amount) {
+        if (decimalBalances[fromIndex].compareTo(amount) < 0) {
+            return BigDecimal.ZERO;
+        }
+        decimalBalances[fromIndex] = decimalBalances[fromIndex].subtract(amount);
+        decimalBalances[toIndex] = decimalBalances[toIndex].add(amount);
+        return decimalBalances[toIndex];
+    }
+    
+    private Money transfer(int fromIndex, int toIndex, Money amount) {
+        if (moneyBalances[fromIndex].isLessThan(amount)) {
+            return Money.ZERO;
+        }
+        moneyBalances[fromIndex] = moneyBalances[fromIndex].minus(amount);
+        moneyBalances[toIndex] = moneyBalances[toIndex].plus(amount);
+        return moneyBalances[toIndex];
+    }
+    
+    private int nextOperation() {
+        int i = next;
+        next = (i + 1) & (OPERATIONS - 1);
+        return i;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,156 @@
+package com.example.acid_demo.benchmarks;
+
+import com.example.acid_demo.dto.RetryOutcome;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.retry.TransactionRetryExecutor;
+import com.example.acid_demo.service.OptimisticRetryTransferService;
+import com.example.acid_demo.service.StripedLedgerService;
+import com.example.acid_demo.service.TransferService;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение стратегий перевода TransferService под конкуренцией.
+ * Throughput - переводов в секунду, SampleTime - распределение задержек (p50/p99),
+ * счётчики OutcomeCounters - доля конфликтов версий, ошибок блокировок и прочих отказов.
+ * Число потоков задаётся ключом JMH -t.
+ * buckets > 0 - hotAccounts самых горячих по Zipf счетов переводятся в режим корзин (StripedLedgerService).
+ * SERIALIZABLE и REPEATABLE_READ повторяются TransactionRetryExecutor - его статистика пишется в лог в конце прогона
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(4)
+public class TransferBenchmark {
+    
+    private static final Logger log = LoggerFactory.getLogger(TransferBenchmark.class);
+    
+    private static final Money AMOUNT = Money.valueOf("1.00");
+    
+    public enum Strategy {
+        ATOMIC,
+        CONDITIONAL_UPDATE,
+        NON_TRANSACTIONAL,
+        OPTIMISTIC,
+        OPTIMISTIC_RETRY,
+        PESSIMISTIC,
+        SERIALIZABLE,
+        REPEATABLE_READ
+    }
+    
+    @Param({"ATOMIC", "CONDITIONAL_UPDATE", "NON_TRANSACTIONAL", "OPTIMISTIC", "OPTIMISTIC_RETRY", "PESSIMISTIC",
+            "SERIALIZABLE", "REPEATABLE_READ"})
+    private Strategy strategy;
+    
+    @Param({"1000"})
+    private int accounts;
+    
+    /**
+     * Показатель Zipf: 0 - равномерно, ~1 и выше - несколько горячих счетов
+     */
+    @Param({"0", "1.2"})
+    private double skew;
+    
+    /**
+     * Число корзин баланса у горячих счетов: 0 - обычные счета
+     */
+    @Param({"0", "4", "16"})
+    private int buckets;
+    
+    @Param({"10"})
+    private int hotAccounts;
+    
+    private ConfigurableApplicationContext context;
+    private TransferService transferService;
+    private OptimisticRetryTransferService optimisticRetryTransferService;
+    private String[] accountNumbers;
+    private ZipfSampler sampler;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        transferService = context.getBean(TransferService.class);
+        optimisticRetryTransferService = context.getBean(OptimisticRetryTransferService.class);
+        accountNumbers = BenchmarkContext.seedAccounts(context, accounts);
+        sampler = new ZipfSampler(accounts, skew);
+        if (buckets > 0) {
+            // у ZipfSampler первые индексы - самые частые
+            StripedLedgerService stripedLedgerService = context.getBean(StripedLedgerService.class);
+            for (int i = 0; i < Math.min(hotAccounts, accounts); i++) {
+                stripedLedgerService.stripe(accountNumbers[i], buckets);
+            }
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        log.info("Статистика повторов транзакций: {}", context.getBean(TransactionRetryExecutor.class).getStats());
+        context.close();
+    }
+    
+    @Benchmark
+    public void transfer(OutcomeCounters counters) {
+        int[] pair = sampler.nextPair();
+        String from = accountNumbers[pair[0]];
+        String to = accountNumbers[pair[1]];
+        
+        try {
+            switch (strategy) {
+                case ATOMIC -> transferService.transferMoney(from, to, AMOUNT);
+                case CONDITIONAL_UPDATE -> transferService.transferWithConditionalUpdate(from, to, AMOUNT);
+                case NON_TRANSACTIONAL -> transferService.transferMoneyWithoutTransaction(from, to, AMOUNT, false);
+                case OPTIMISTIC -> transferService.transferWithOptimisticLock(from, to, AMOUNT);
+                case OPTIMISTIC_RETRY -> {
+                    RetryOutcome outcome = optimisticRetryTransferService.transfer(from, to, AMOUNT);
+                    counters.retries += outcome.getAttempts() - 1;
+                }
+                case PESSIMISTIC -> transferService.transferWithPessimisticLock(from, to, AMOUNT);
+                case SERIALIZABLE -> transferService.transferSerializable(from, to, AMOUNT);
+                case REPEATABLE_READ -> transferService.transferRepeatableRead(from, to, AMOUNT);
+            }
+            counters.succeeded++;
+        } catch (OptimisticLockingFailureException e) {
+            counters.conflicts++;
+        } catch (PessimisticLockingFailureException e) {
+            counters.lockFailures++;
+        } catch (RuntimeException e) {
+            counters.failures++;
+        }
+    }
+    
+    /**
+     * Исходы переводов за итерацию, JMH выводит их рядом с основным результатом
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class OutcomeCounters {
+        
+        public long succeeded;
+        
+        public long conflicts;     // конфликт версий (@Version)
+        
+        public long retries;       // повторы OPTIMISTIC_RETRY
+        
+        public long lockFailures;  // deadlock / таймаут ожидания блокировки
+        
+        public long failures;
+        
+        @Setup(Level.Iteration)
+        public void reset() {
+            succeeded = 0;
+            conflicts = 0;
+            retries = 0;
+            lockFailures = 0;
+            failures = 0;
+        }
+    }
+} 
\ No newline at end of file
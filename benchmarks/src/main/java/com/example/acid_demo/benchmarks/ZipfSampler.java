@@ -0,0 +1,48 @@
+package com.example.acid_demo.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Выборка индекса 0..n-1 по закону Zipf: вероятность k-го элемента пропорциональна 1 / (k + 1)^s.
+ * s = 0 - равномерное распределение, чем больше s, тем сильнее нагрузка на "горячие" счета
+ */
+final class ZipfSampler {
+    
+    private final double[] cumulative;
+    
+    ZipfSampler(int n, double exponent) {
+        if (n < 2) {
+            // nextPair ищет два различных индекса: с одним счётом он не завершится
+            throw new IllegalArgumentException("Для переводов нужно хотя бы два счёта: " + n);
+        }
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= sum;
+        }
+    }
+    
+    int next() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        int index = Arrays.binarySearch(cumulative, u);
+        index = index >= 0 ? index : -index - 1;
+        return Math.min(index, cumulative.length - 1);
+    }
+    
+    /**
+     * Пара различных индексов (отправитель, получатель)
+     */
+    int[] nextPair() {
+        int from = next();
+        int to = next();
+        while (to == from) {
+            to = next();
+        }
+        return new int[]{from, to};
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,12 @@
+#!/bin/sh
+# Реплика (hot standby): при первом запуске копирует основную БД через pg_basebackup,
+# -R создаёт standby.signal и primary_conninfo - дальше изменения приходят потоковой репликацией
+set -e
+if [ ! -s "$PGDATA/PG_VERSION" ]; then
+  until pg_basebackup -h pg -p 5432 -U "$PG_USER" -D "$PGDATA" -R -X stream -c fast; do
+    echo "Основная БД недоступна, повтор через 2 с"
+    sleep 2
+  done
+  chmod 0700 "$PGDATA"
+fi
+exec postgres -c hot_standby=on
@@ -0,0 +1,75 @@
+package com.example.acid_demo.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Выбор счетов по закону Zipf: вероятность счёта с рангом k пропорциональна 1 / (k + 1)^skew.
+ * skew = 0 - равномерное распределение, чем больше skew, тем сильнее нагрузка на горячие счета.
+ * Не потокобезопасен: счета выбирает только поток планировщика LoadGenerator
+ */
+final class AccountSelector {
+    
+    private final String[] accounts;
+    private final double[] cumulative;
+    private final SplittableRandom random;
+    
+    AccountSelector(List<String> accountNumbers, double skew, boolean shuffle, SplittableRandom random) {
+        if (accountNumbers.size() < 2) {
+            throw new IllegalArgumentException("Для переводов нужно хотя бы два счёта, найдено: " + accountNumbers.size());
+        }
+        List<String> ranked = new ArrayList<>(accountNumbers);
+        if (shuffle) {
+            Collections.shuffle(ranked, new Random(random.nextLong()));
+        }
+        accounts = ranked.toArray(String[]::new);
+        this.random = random;
+        cumulative = new double[accounts.length];
+        double sum = 0;
+        for (int k = 0; k < accounts.length; k++) {
+            sum += 1.0 / Math.pow(k + 1, skew);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < accounts.length; k++) {
+            cumulative[k] /= sum;
+        }
+    }
+    
+    String next() {
+        return accounts[nextIndex()];
+    }
+    
+    /**
+     * Пара различных счетов (отправитель, получатель)
+     */
+    String[] nextPair() {
+        int from = nextIndex();
+        int to = nextIndex();
+        while (to == from) {
+            to = nextIndex();
+        }
+        return new String[]{accounts[from], accounts[to]};
+    }
+    
+    int size() {
+        return accounts.length;
+    }
+    
+    /**
+     * Самые популярные счета - для отчёта
+     */
+    List<String> hottest(int count) {
+        return List.of(Arrays.copyOf(accounts, Math.min(count, accounts.length)));
+    }
+    
+    private int nextIndex() {
+        double u = random.nextDouble();
+        int index = Arrays.binarySearch(cumulative, u);
+        index = index >= 0 ? index : -index - 1;
+        return Math.min(index, cumulative.length - 1);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.acid_demo.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Результаты одного запроса смеси в одной фазе. Ответы записываются из потоков HttpClient параллельно.
+ * responseTime - от запланированного момента отправки: задержка отправки из-за перегруженного генератора
+ * тоже входит в задержку (поправка на coordinated omission); serviceTime - от фактической отправки.
+ * Запросы без ответа (TIMEOUT, IO_ERROR) входят в гистограммы со временем до отказа: иначе самые медленные
+ * запросы выпали бы из p99 и p99.9
+ */
+final class EndpointStats {
+    
+    // 3 значащие цифры, диапазон подстраивается под значения; единица - микросекунды
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final int MAX_REASONS = 100;
+    private static final String OTHER_REASONS = "(другие причины)";
+    
+    private final Histogram responseTime = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+    private final Histogram serviceTime = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+    private final Map<Outcome, LongAdder> outcomes = new EnumMap<>(Outcome.class);
+    private final Map<String, LongAdder> reasons = new ConcurrentHashMap<>();
+    
+    EndpointStats() {
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, new LongAdder());
+        }
+    }
+    
+    void recordResponse(ResponseClassifier.Classification classification, long responseNanos, long serviceNanos) {
+        recordTimes(responseNanos, serviceNanos);
+        record(classification.outcome(), classification.reason());
+    }
+    
+    /**
+     * Запрос без ответа: время до таймаута или ошибки соединения - нижняя граница его задержки
+     */
+    void recordFailure(Outcome outcome, String reason, long responseNanos, long serviceNanos) {
+        recordTimes(responseNanos, serviceNanos);
+        record(outcome, reason);
+    }
+    
+    private void recordTimes(long responseNanos, long serviceNanos) {
+        responseTime.recordValue(TimeUnit.NANOSECONDS.toMicros(responseNanos));
+        serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(serviceNanos));
+    }
+    
+    private void record(Outcome outcome, String reason) {
+        outcomes.get(outcome).increment();
+        if (reason != null) {
+            String key = outcome + ": " + reason;
+            LongAdder counter = reasons.get(key);
+            if (counter == null) {
+                // число различных причин ограничено: неожиданные сообщения не должны раздувать отчёт
+                counter = reasons.size() < MAX_REASONS
+                        ? reasons.computeIfAbsent(key, k -> new LongAdder())
+                        : reasons.computeIfAbsent(OTHER_REASONS, k -> new LongAdder());
+            }
+            counter.increment();
+        }
+    }
+    
+    Histogram getResponseTime() {
+        return responseTime;
+    }
+    
+    Histogram getServiceTime() {
+        return serviceTime;
+    }
+    
+    long count(Outcome outcome) {
+        return outcomes.get(outcome).sum();
+    }
+    
+    long total() {
+        return outcomes.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+    
+    Map<String, LongAdder> getReasons() {
+        return reasons;
+    }
+    
+    /**
+     * Добавить результаты другой фазы - для итогов по всем измеряемым фазам
+     */
+    void add(EndpointStats other) {
+        responseTime.add(other.responseTime);
+        serviceTime.add(other.serviceTime);
+        other.outcomes.forEach((outcome, counter) -> outcomes.get(outcome).add(counter.sum()));
+        other.reasons.forEach((reason, counter) -> reasons.computeIfAbsent(reason, k -> new LongAdder()).add(counter.sum()));
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.acid_demo.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Генератор нагрузки открытой модели: запросы отправляются в заранее вычисленные моменты
+ * с заданной частотой, не дожидаясь ответов на предыдущие. Медленное приложение не снижает
+ * частоту поступления, как было бы с фиксированным числом клиентов, а накапливает незавершённые запросы -
+ * так ведут себя независимые пользователи в production
+ */
+@Slf4j
+final class LoadGenerator {
+    
+    private final LoadTestProperties properties;
+    private final AccountSelector accounts;
+    private final HttpClient httpClient;
+    private final List<RequestTemplate> mix;
+    private final double[] cumulativeWeights;
+    // все случайные выборы делает поток планировщика: с тем же random-seed повторяется та же последовательность запросов.
+    // У интервалов, выбора запроса смеси и сумм свои потоки чисел: изменение смеси не сдвигает моменты отправки
+    private final SplittableRandom arrivals;
+    private final SplittableRandom picks;
+    private final SplittableRandom amounts;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    LoadGenerator(LoadTestProperties properties, AccountSelector accounts, HttpClient httpClient,
+                  SplittableRandom random) {
+        this.properties = properties;
+        this.accounts = accounts;
+        this.httpClient = httpClient;
+        this.arrivals = random.split();
+        this.picks = random.split();
+        this.amounts = random.split();
+        this.mix = properties.getMix().stream().map(RequestTemplate::of).toList();
+        this.cumulativeWeights = new double[mix.size()];
+        double sum = 0;
+        for (int i = 0; i < mix.size(); i++) {
+            sum += properties.getMix().get(i).getWeight();
+            cumulativeWeights[i] = sum;
+        }
+    }
+    
+    List<PhaseResult> run() throws InterruptedException {
+        List<PhaseResult> results = new ArrayList<>();
+        for (LoadTestProperties.Phase phase : properties.getPhases()) {
+            results.add(runPhase(phase));
+        }
+        awaitInFlight();
+        return results;
+    }
+    
+    private PhaseResult runPhase(LoadTestProperties.Phase phase) {
+        PhaseResult result = new PhaseResult(phase);
+        log.info("Фаза {}{}: {} с, {} → {} запросов/с", phase.getName(), phase.isWarmup() ? " (прогрев)" : "",
+                phase.getDuration().toSeconds(), phase.getRate(),
+                phase.getTargetRate() != null ? phase.getTargetRate() : phase.getRate());
+        
+        long durationNanos = phase.getDuration().toNanos();
+        long start = System.nanoTime();
+        double offset = 0;
+        while (true) {
+            offset += nextIntervalNanos(rateAt(phase, offset / durationNanos));
+            if (offset >= durationNanos) {
+                break;
+            }
+            long intended = start + (long) offset;
+            parkUntil(intended);
+            send(intended, result);
+        }
+        parkUntil(start + durationNanos);
+        result.setElapsed(Duration.ofNanos(System.nanoTime() - start));
+        
+        log.info("Фаза {} завершена: запланировано {}, не отправлено (max-in-flight) {}, незавершённых {}",
+                phase.getName(), result.getScheduled(), result.getDropped(), inFlight.get());
+        return result;
+    }
+    
+    private static double rateAt(LoadTestProperties.Phase phase, double progress) {
+        if (phase.getTargetRate() == null) {
+            return phase.getRate();
+        }
+        return phase.getRate() + (phase.getTargetRate() - phase.getRate()) * progress;
+    }
+    
+    private double nextIntervalNanos(double rate) {
+        double meanNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        return switch (properties.getArrival()) {
+            // экспоненциальные интервалы - пуассоновский поток независимых клиентов
+            case POISSON -> -Math.log(1 - arrivals.nextDouble()) * meanNanos;
+            case CONSTANT -> meanNanos;
+        };
+    }
+    
+    private static void parkUntil(long deadline) {
+        for (long remaining = deadline - System.nanoTime(); remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+    
+    private void send(long intended, PhaseResult result) {
+        result.onScheduled();
+        if (inFlight.get() >= properties.getMaxInFlight()) {
+            result.onDropped();
+            return;
+        }
+        
+        RequestTemplate template = pick();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(properties.getBaseUrl() + template.path(this)))
+                .timeout(properties.getRequestTimeout())
+                .method(template.method(), HttpRequest.BodyPublishers.noBody())
+                .build();
+        EndpointStats stats = result.endpoint(template.name());
+        
+        inFlight.incrementAndGet();
+        long sent = System.nanoTime();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, failure) -> {
+            long completed = System.nanoTime();
+            inFlight.decrementAndGet();
+            if (failure == null) {
+                stats.recordResponse(ResponseClassifier.classify(response.statusCode(), response.body()),
+                        completed - intended, completed - sent);
+                return;
+            }
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause()
+                    : failure;
+            if (cause instanceof HttpTimeoutException) {
+                stats.recordFailure(Outcome.TIMEOUT, null, completed - intended, completed - sent);
+            } else {
+                stats.recordFailure(Outcome.IO_ERROR, cause.getClass().getSimpleName()
+                        + (cause instanceof IOException && cause.getMessage() != null ? ": " + cause.getMessage() : ""),
+                        completed - intended, completed - sent);
+            }
+        });
+    }
+    
+    private RequestTemplate pick() {
+        double u = picks.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (u < cumulativeWeights[i]) {
+                return mix.get(i);
+            }
+        }
+        return mix.getLast();
+    }
+    
+    private void awaitInFlight() throws InterruptedException {
+        long deadline = System.nanoTime() + properties.getRequestTimeout().plusSeconds(1).toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        if (inFlight.get() > 0) {
+            log.warn("Не дождались ответа на {} запросов", inFlight.get());
+        }
+    }
+    
+    private String amount() {
+        long min = properties.getAmount().getMin().movePointRight(2).longValueExact();
+        long max = properties.getAmount().getMax().movePointRight(2).longValueExact();
+        long minorUnits = min == max ? min : amounts.nextLong(min, max + 1);
+        return BigDecimal.valueOf(minorUnits, 2).toPlainString();
+    }
+    
+    /**
+     * Запрос смеси с подстановками {from}, {to}, {account} и {amount}
+     */
+    private record RequestTemplate(String name, String method, String template,
+                                   boolean pair, boolean account, boolean amount) {
+        
+        static RequestTemplate of(LoadTestProperties.Request request) {
+            String path = request.getPath();
+            return new RequestTemplate(request.getName(), request.getMethod().toUpperCase(Locale.ROOT), path,
+                    path.contains("{from}") || path.contains("{to}"), path.contains("{account}"),
+                    path.contains("{amount}"));
+        }
+        
+        String path(LoadGenerator generator) {
+            String path = template;
+            if (pair) {
+                String[] fromTo = generator.accounts.nextPair();
+                path = path.replace("{from}", fromTo[0]).replace("{to}", fromTo[1]);
+            }
+            if (account) {
+                path = path.replace("{account}", generator.accounts.next());
+            }
+            if (amount) {
+                path = path.replace("{amount}", generator.amount());
+            }
+            return path;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.acid_demo.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Отчёт прогона: по каждой фазе и итог по фазам без прогрева - для каждого запроса смеси число ответов по Outcome,
+ * причины отказов, перцентили задержки в миллисекундах и сама гистограмма (сжатый HdrHistogram в Base64,
+ * тот же формат, что в .hlog: Histogram.decodeFromCompressedByteBuffer) для сравнения прогонов
+ */
+@Slf4j
+final class LoadReport {
+    
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final int TOP_REASONS = 20;
+    
+    private LoadReport() {
+    }
+    
+    /**
+     * Итоги по запросам смеси за все фазы без прогрева
+     */
+    static Map<String, EndpointStats> measured(List<PhaseResult> results) {
+        Map<String, EndpointStats> measured = new LinkedHashMap<>();
+        for (PhaseResult result : results) {
+            if (!result.getPhase().isWarmup()) {
+                result.getEndpoints().forEach((name, stats) ->
+                        measured.computeIfAbsent(name, k -> new EndpointStats()).add(stats));
+            }
+        }
+        return measured;
+    }
+    
+    static Duration measuredDuration(List<PhaseResult> results) {
+        return results.stream()
+                .filter(result -> !result.getPhase().isWarmup())
+                .map(PhaseResult::getElapsed)
+                .reduce(Duration.ZERO, Duration::plus);
+    }
+    
+    static List<String> checkThresholds(Map<String, LoadTestProperties.Threshold> thresholds,
+                                        List<PhaseResult> results, Map<String, EndpointStats> measured) {
+        List<String> violations = new ArrayList<>();
+        for (PhaseResult result : results) {
+            if (!result.getPhase().isWarmup() && result.getDropped() > 0) {
+                violations.add(String.format("фаза %s: не отправлено %d запросов (max-in-flight) - частота не выдержана",
+                        result.getPhase().getName(), result.getDropped()));
+            }
+        }
+        thresholds.forEach((name, threshold) -> {
+            EndpointStats stats = measured.get(name);
+            if (stats == null || stats.total() == 0) {
+                violations.add(name + ": нет ответов в фазах без прогрева");
+                return;
+            }
+            checkLatency(violations, name, "p99", stats.getResponseTime(), 99, threshold.getP99());
+            checkLatency(violations, name, "p99.9", stats.getResponseTime(), 99.9, threshold.getP999());
+            checkRate(violations, name, "доля ошибок", errorRate(stats), threshold.getMaxErrorRate());
+            checkRate(violations, name, "доля конфликтов", conflictRate(stats), threshold.getMaxConflictRate());
+        });
+        return violations;
+    }
+    
+    private static void checkLatency(List<String> violations, String name, String label, Histogram histogram,
+                                     double percentile, Duration limit) {
+        if (limit == null || histogram.getTotalCount() == 0) {
+            return;
+        }
+        long actualMicros = histogram.getValueAtPercentile(percentile);
+        if (actualMicros > TimeUnit.NANOSECONDS.toMicros(limit.toNanos())) {
+            violations.add(String.format("%s: %s %.1f мс > %d мс", name, label, actualMicros / 1000.0, limit.toMillis()));
+        }
+    }
+    
+    private static void checkRate(List<String> violations, String name, String label, double actual, Double limit) {
+        if (limit != null && actual > limit) {
+            violations.add(String.format("%s: %s %.4f > %.4f", name, label, actual, limit));
+        }
+    }
+    
+    static Map<String, Object> build(LoadTestProperties properties, AccountSelector accounts, List<PhaseResult> results,
+                                     Map<String, EndpointStats> measured, List<String> violations,
+                                     Map<String, Object> run) {
+        Map<String, Object> report = new LinkedHashMap<>(run);
+        report.put("baseUrl", properties.getBaseUrl());
+        report.put("arrival", properties.getArrival());
+        report.put("randomSeed", properties.getRandomSeed());
+        report.put("accounts", Map.of(
+                "count", accounts.size(),
+                "skew", properties.getAccounts().getSkew(),
+                "hottest", accounts.hottest(10)
+        ));
+        report.put("mix", properties.getMix().stream()
+                .map(request -> Map.of("name", request.getName(), "weight", request.getWeight(),
+                        "method", request.getMethod(), "path", request.getPath()))
+                .toList());
+        
+        List<Map<String, Object>> phases = new ArrayList<>();
+        for (PhaseResult result : results) {
+            LoadTestProperties.Phase phase = result.getPhase();
+            Map<String, Object> phaseReport = new LinkedHashMap<>();
+            phaseReport.put("name", phase.getName());
+            phaseReport.put("warmup", phase.isWarmup());
+            phaseReport.put("durationSeconds", seconds(result.getElapsed()));
+            phaseReport.put("rate", phase.getRate());
+            phaseReport.put("targetRate", phase.getTargetRate() != null ? phase.getTargetRate() : phase.getRate());
+            phaseReport.put("scheduled", result.getScheduled());
+            phaseReport.put("dropped", result.getDropped());
+            phaseReport.put("achievedRate", result.getScheduled() / seconds(result.getElapsed()));
+            phaseReport.put("endpoints", endpoints(result.getEndpoints(), result.getElapsed()));
+            phases.add(phaseReport);
+        }
+        report.put("phases", phases);
+        report.put("measured", endpoints(measured, measuredDuration(results)));
+        report.put("thresholdViolations", violations);
+        report.put("passed", violations.isEmpty());
+        return report;
+    }
+    
+    private static Map<String, Object> endpoints(Map<String, EndpointStats> endpoints, Duration elapsed) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        endpoints.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> report.put(entry.getKey(), endpoint(entry.getValue(), elapsed)));
+        return report;
+    }
+    
+    private static Map<String, Object> endpoint(EndpointStats stats, Duration elapsed) {
+        Map<String, Object> outcomes = new LinkedHashMap<>();
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome.name(), stats.count(outcome));
+        }
+        Map<String, Long> reasons = new LinkedHashMap<>();
+        stats.getReasons().entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> e) -> e.getValue().sum()).reversed())
+                .limit(TOP_REASONS)
+                .forEach(entry -> reasons.put(entry.getKey(), entry.getValue().sum()));
+        
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("requests", stats.total());
+        report.put("throughput", elapsed.isZero() ? 0 : stats.total() / seconds(elapsed));
+        report.put("outcomes", outcomes);
+        report.put("errorRate", errorRate(stats));
+        report.put("conflictRate", conflictRate(stats));
+        report.put("reasons", reasons);
+        report.put("responseTimeMs", latency(stats.getResponseTime()));
+        report.put("serviceTimeMs", latency(stats.getServiceTime()));
+        report.put("responseTimeHistogram", encode(stats.getResponseTime()));
+        return report;
+    }
+    
+    private static Map<String, Object> latency(Histogram histogram) {
+        Map<String, Object> latency = new LinkedHashMap<>();
+        if (histogram.getTotalCount() == 0) {
+            return latency;
+        }
+        latency.put("min", millis(histogram.getMinValue()));
+        latency.put("mean", histogram.getMean() / 1000.0);
+        for (double percentile : PERCENTILES) {
+            latency.put("p" + (percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : percentile),
+                    millis(histogram.getValueAtPercentile(percentile)));
+        }
+        latency.put("max", millis(histogram.getMaxValue()));
+        return latency;
+    }
+    
+    private static String encode(Histogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+    }
+    
+    /**
+     * Краткая таблица итогов в лог
+     */
+    static void logSummary(Map<String, EndpointStats> measured, Duration elapsed, List<String> violations) {
+        log.info(String.format("%-32s %9s %8s %9s %9s %9s %9s %9s %9s",
+                "запрос", "ответов", "в сек", "p50 мс", "p99 мс", "p99.9 мс", "конфл.", "отказы", "ошибки"));
+        measured.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(entry -> {
+            EndpointStats stats = entry.getValue();
+            Histogram histogram = stats.getResponseTime();
+            log.info(String.format("%-32s %9d %8.1f %9.1f %9.1f %9.1f %9d %9d %9d",
+                    entry.getKey(), stats.total(), elapsed.isZero() ? 0 : stats.total() / seconds(elapsed),
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    stats.count(Outcome.CONFLICT), stats.count(Outcome.REJECTED) + stats.count(Outcome.OVERLOADED),
+                    stats.count(Outcome.ERROR) + stats.count(Outcome.TIMEOUT) + stats.count(Outcome.IO_ERROR)));
+        });
+        violations.forEach(violation -> log.warn("Порог нарушен - {}", violation));
+    }
+    
+    private static double errorRate(EndpointStats stats) {
+        long total = stats.total();
+        return total == 0 ? 0 : (double) (stats.count(Outcome.ERROR) + stats.count(Outcome.TIMEOUT)
+                + stats.count(Outcome.IO_ERROR)) / total;
+    }
+    
+    private static double conflictRate(EndpointStats stats) {
+        long total = stats.total();
+        return total == 0 ? 0 : (double) stats.count(Outcome.CONFLICT) / total;
+    }
+    
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+    
+    private static double seconds(Duration duration) {
+        return duration.toNanos() / 1e9;
+    }
+}
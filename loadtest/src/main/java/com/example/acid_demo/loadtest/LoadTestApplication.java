@@ -0,0 +1,18 @@
+package com.example.acid_demo.loadtest;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+
+/**
+ * Генератор нагрузки на REST API приложения. Код завершения: 0 - пороги соблюдены, 1 - нарушены
+ */
+@SpringBootApplication
+@ConfigurationPropertiesScan
+public class LoadTestApplication {
+
+	public static void main(String[] args) {
+		System.exit(SpringApplication.exit(SpringApplication.run(LoadTestApplication.class, args)));
+	}
+    
+}
@@ -0,0 +1,163 @@
+package com.example.acid_demo.loadtest;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Профиль нагрузки: фазы с частотой поступления запросов, смесь запросов, выбор счетов и пороги
+ */
+@Data
+@ConfigurationProperties(prefix = "loadtest")
+public class LoadTestProperties {
+    
+    /**
+     * Адрес приложения: основного (8080) или реактивного (8081)
+     */
+    private String baseUrl = "http://localhost:8080";
+    
+    /**
+     * Запрос без ответа дольше этого времени считается TIMEOUT
+     */
+    private Duration requestTimeout = Duration.ofSeconds(10);
+    
+    private Duration connectTimeout = Duration.ofSeconds(2);
+    
+    /**
+     * Предел незавершённых запросов. Открытая модель не ждёт ответов, и без предела зависшее приложение
+     * исчерпало бы память генератора; запросы сверх предела не отправляются и учитываются в фазе как dropped -
+     * такой прогон не проходит проверку порогов: генератор не выдержал заданную частоту
+     */
+    private int maxInFlight = 10_000;
+    
+    /**
+     * POISSON - экспоненциальные интервалы между запросами, как у независимых клиентов; CONSTANT - равные интервалы
+     */
+    private Arrival arrival = Arrival.POISSON;
+    
+    private long randomSeed = 42;
+    
+    private Accounts accounts = new Accounts();
+    
+    private Amount amount = new Amount();
+    
+    private List<Phase> phases = new ArrayList<>();
+    
+    /**
+     * Смесь запросов: каждый запрос выбирается с вероятностью, пропорциональной weight
+     */
+    private List<Request> mix = new ArrayList<>();
+    
+    /**
+     * Пороги по имени запроса смеси: при нарушении в фазах без warmup процесс завершается с кодом 1
+     */
+    private Map<String, Threshold> thresholds = new LinkedHashMap<>();
+    
+    /**
+     * Машиночитаемый отчёт (JSON). Путь относительно корня репозитория
+     */
+    private Path reportFile = Path.of("loadtest/target/loadtest-report.json");
+    
+    public enum Arrival {
+        POISSON, CONSTANT
+    }
+    
+    @Data
+    public static class Accounts {
+        
+        /**
+         * Явный список счетов, например ACC001,ACC002,ACC003 после /api/acid/accounts/init.
+         * Не задан - первые limit счетов читаются из БД
+         */
+        private List<String> numbers = new ArrayList<>();
+        
+        private int limit = 10_000;
+        
+        /**
+         * Показатель Zipf популярности счетов: 0 - равномерно, чем больше, тем сильнее нагрузка на горячие счета
+         */
+        private double skew = 1.1;
+        
+        /**
+         * Перемешать счета перед назначением рангов популярности (иначе горячими будут счета с меньшими id)
+         */
+        private boolean shuffle = true;
+    }
+    
+    /**
+     * Сумма перевода - равномерно в [min, max]
+     */
+    @Data
+    public static class Amount {
+        
+        private BigDecimal min = new BigDecimal("1.00");
+        
+        private BigDecimal max = new BigDecimal("100.00");
+    }
+    
+    @Data
+    public static class Phase {
+        
+        private String name;
+        
+        private Duration duration = Duration.ofSeconds(30);
+        
+        /**
+         * Запросов в секунду в начале фазы
+         */
+        private double rate = 50;
+        
+        /**
+         * Запросов в секунду в конце фазы - линейный рост от rate. Не задан - постоянная частота
+         */
+        private Double targetRate;
+        
+        /**
+         * Прогрев: запросы отправляются, но в итоги и проверку порогов не входят
+         */
+        private boolean warmup = false;
+    }
+    
+    @Data
+    public static class Request {
+        
+        /**
+         * Имя запроса - ключ в отчёте и в thresholds (буквы, цифры и дефисы)
+         */
+        private String name;
+        
+        private double weight = 1;
+        
+        private String method = "POST";
+        
+        /**
+         * Путь с параметрами; подстановки {from}, {to} - два различных счёта, {account} - один счёт, {amount} - сумма
+         */
+        private String path;
+    }
+    
+    @Data
+    public static class Threshold {
+        
+        private Duration p99;
+        
+        private Duration p999;
+        
+        /**
+         * Доля ответов ERROR, TIMEOUT и IO_ERROR
+         */
+        private Double maxErrorRate;
+        
+        /**
+         * Доля ответов CONFLICT
+         */
+        private Double maxConflictRate;
+    }
+}
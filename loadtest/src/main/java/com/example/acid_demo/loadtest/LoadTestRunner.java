@@ -0,0 +1,118 @@
+package com.example.acid_demo.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Прогон профиля нагрузки: счета, фазы, отчёт и проверка порогов
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LoadTestRunner implements ApplicationRunner, ExitCodeGenerator {
+    
+    private final LoadTestProperties properties;
+    private final ObjectProvider<JdbcTemplate> jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    
+    private int exitCode;
+    
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        validate();
+        
+        LoadTestProperties.Accounts settings = properties.getAccounts();
+        // у выбора счетов и генератора независимые потоки случайных чисел из одного random-seed
+        SplittableRandom random = new SplittableRandom(properties.getRandomSeed());
+        AccountSelector accounts = new AccountSelector(loadAccounts(settings), settings.getSkew(),
+                settings.isShuffle(), random.split());
+        log.info("Нагрузка на {}: {} счетов, skew {}, горячие счета {}", properties.getBaseUrl(), accounts.size(),
+                settings.getSkew(), accounts.hottest(3));
+        
+        Instant startedAt = Instant.now();
+        List<PhaseResult> results;
+        // ответы обрабатываются в виртуальных потоках: поток планировщика только отправляет запросы
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient httpClient = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .connectTimeout(properties.getConnectTimeout())
+                     .executor(executor)
+                     .build()) {
+            results = new LoadGenerator(properties, accounts, httpClient, random.split()).run();
+        }
+        
+        Map<String, EndpointStats> measured = LoadReport.measured(results);
+        List<String> violations = LoadReport.checkThresholds(properties.getThresholds(), results, measured);
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("startedAt", startedAt.toString());
+        run.put("finishedAt", Instant.now().toString());
+        Map<String, Object> report = LoadReport.build(properties, accounts, results, measured, violations, run);
+        
+        Path reportFile = properties.getReportFile();
+        if (reportFile.getParent() != null) {
+            Files.createDirectories(reportFile.getParent());
+        }
+        objectMapper.writer().with(SerializationFeature.INDENT_OUTPUT).writeValue(reportFile.toFile(), report);
+        
+        LoadReport.logSummary(measured, LoadReport.measuredDuration(results), violations);
+        log.info("Отчёт: {}", reportFile.toAbsolutePath());
+        exitCode = violations.isEmpty() ? 0 : 1;
+    }
+    
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+    
+    private List<String> loadAccounts(LoadTestProperties.Accounts settings) {
+        if (!settings.getNumbers().isEmpty()) {
+            return settings.getNumbers();
+        }
+        // счета - из БД приложения: после /api/acid/accounts/seed номера зависят от id
+        return jdbcTemplate.getObject().queryForList("SELECT account_number FROM accounts ORDER BY id LIMIT ?",
+                String.class, settings.getLimit());
+    }
+    
+    private void validate() {
+        if (properties.getPhases().isEmpty()) {
+            throw new IllegalArgumentException("Не задано ни одной фазы (loadtest.phases)");
+        }
+        if (properties.getMix().isEmpty()) {
+            throw new IllegalArgumentException("Не задано ни одного запроса (loadtest.mix)");
+        }
+        for (LoadTestProperties.Phase phase : properties.getPhases()) {
+            if (phase.getName() == null || phase.getRate() <= 0
+                    || (phase.getTargetRate() != null && phase.getTargetRate() <= 0)
+                    || phase.getDuration().isNegative() || phase.getDuration().isZero()) {
+                throw new IllegalArgumentException("Фазе нужны имя, положительные rate/target-rate и duration: " + phase);
+            }
+        }
+        for (LoadTestProperties.Request request : properties.getMix()) {
+            if (request.getName() == null || request.getPath() == null || request.getWeight() <= 0) {
+                throw new IllegalArgumentException("Запросу смеси нужны имя, path и положительный weight: " + request);
+            }
+        }
+        if (properties.getAmount().getMin().compareTo(properties.getAmount().getMax()) > 0) {
+            throw new IllegalArgumentException("loadtest.amount.min больше loadtest.amount.max");
+        }
+    }
+}
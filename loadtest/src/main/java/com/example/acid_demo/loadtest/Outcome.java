@@ -0,0 +1,25 @@
+package com.example.acid_demo.loadtest;
+
+/**
+ * Итог запроса в отчёте
+ */
+enum Outcome {
+    /** Перевод или демонстрация выполнены */
+    SUCCESS,
+    /** Отказ по бизнес-правилу: нехватка средств, счёт не найден */
+    REJECTED,
+    /** Конфликт конкурентного доступа: версия, 40001, deadlock, таймаут блокировки */
+    CONFLICT,
+    /** Приложение отказало из-за перегрузки (503, 429) */
+    OVERLOADED,
+    /** Прочие ответы 4xx / 5xx и неизвестные причины отказа */
+    ERROR,
+    /** Нет ответа за loadtest.request-timeout */
+    TIMEOUT,
+    /** Ошибка соединения */
+    IO_ERROR;
+    
+    boolean isError() {
+        return this == ERROR || this == TIMEOUT || this == IO_ERROR;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.acid_demo.loadtest;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Результаты фазы: запросы принадлежат фазе, в которой были запланированы, даже если ответ пришёл позже
+ */
+final class PhaseResult {
+    
+    private final LoadTestProperties.Phase phase;
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile Duration elapsed = Duration.ZERO;
+    
+    PhaseResult(LoadTestProperties.Phase phase) {
+        this.phase = phase;
+    }
+    
+    EndpointStats endpoint(String name) {
+        return endpoints.computeIfAbsent(name, k -> new EndpointStats());
+    }
+    
+    void onScheduled() {
+        scheduled.increment();
+    }
+    
+    void onDropped() {
+        dropped.increment();
+    }
+    
+    void setElapsed(Duration elapsed) {
+        this.elapsed = elapsed;
+    }
+    
+    LoadTestProperties.Phase getPhase() {
+        return phase;
+    }
+    
+    Map<String, EndpointStats> getEndpoints() {
+        return endpoints;
+    }
+    
+    long getScheduled() {
+        return scheduled.sum();
+    }
+    
+    long getDropped() {
+        return dropped.sum();
+    }
+    
+    Duration getElapsed() {
+        return elapsed;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.acid_demo.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Разбор ответа приложения в Outcome и причину.
+ * Атомарный перевод при отказе отвечает 400 с {"status": "FAILED", "message": ...}, демонстрации блокировок -
+ * 200 с результатами двух переводов, где неудачный - строка "FAILED: причина". Причина определяется по тексту
+ * сообщения исключения: конфликт конкурентного доступа или отказ по бизнес-правилу
+ */
+final class ResponseClassifier {
+    
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    
+    private static final List<String> CONFLICT_MARKERS = List.of(
+            "could not serialize", "deadlock", "lock", "блокиров", "version", "optimistic", "row was updated");
+    private static final List<String> REJECTED_MARKERS = List.of(
+            "недостаточно средств", "не найден", "положительной", "корзин");
+    
+    private static final String FAILED = "FAILED";
+    private static final int MAX_REASON_LENGTH = 120;
+    // номера счетов, id и суммы в сообщениях не должны плодить отдельные причины
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+    
+    private ResponseClassifier() {
+    }
+    
+    record Classification(Outcome outcome, String reason) {
+    }
+    
+    static Classification classify(int status, String body) {
+        if (status == 503 || status == 429) {
+            return new Classification(Outcome.OVERLOADED, "HTTP " + status);
+        }
+        if (status >= 500 || (status >= 300 && status != 400)) {
+            return new Classification(Outcome.ERROR, "HTTP " + status);
+        }
+        if (status < 300 && (body == null || !body.contains(FAILED))) {
+            return new Classification(Outcome.SUCCESS, null);
+        }
+        
+        String message = failureMessage(body);
+        if (message == null) {
+            return status < 300
+                    ? new Classification(Outcome.SUCCESS, null)
+                    : new Classification(Outcome.ERROR, "HTTP " + status);
+        }
+        String lower = message.toLowerCase(Locale.ROOT);
+        String reason = normalize(message);
+        if (CONFLICT_MARKERS.stream().anyMatch(lower::contains)) {
+            return new Classification(Outcome.CONFLICT, reason);
+        }
+        if (REJECTED_MARKERS.stream().anyMatch(lower::contains)) {
+            return new Classification(Outcome.REJECTED, reason);
+        }
+        return new Classification(Outcome.ERROR, reason);
+    }
+    
+    /**
+     * Сообщение первого неудачного перевода в ответе; null - неудачных нет или ответ не JSON
+     */
+    private static String failureMessage(String body) {
+        JsonNode root;
+        try {
+            root = OBJECT_MAPPER.readTree(body);
+        } catch (Exception e) {
+            return null;
+        }
+        if (root == null || !root.isObject()) {
+            return null;
+        }
+        if (FAILED.equals(root.path("status").asText())) {
+            return root.path("message").asText("");
+        }
+        for (JsonNode node : root) {
+            JsonNode result = node.path("результат");
+            if (result.isTextual() && result.asText().startsWith(FAILED)) {
+                return result.asText().substring(FAILED.length()).replaceFirst("^:\\s*", "");
+            }
+        }
+        return null;
+    }
+    
+    private static String normalize(String message) {
+        String reason = DIGITS.matcher(message).replaceAll("#");
+        return reason.length() > MAX_REASON_LENGTH ? reason.substring(0, MAX_REASON_LENGTH) : reason;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.acid_demo.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Выбор счетов по Zipf: пары различных счетов, повторяемость при том же seed,
+ * перемешивание рангов и доля горячих счетов в зависимости от skew
+ */
+class AccountSelectorTest {
+    
+    private static final int SAMPLES = 100_000;
+    
+    private static final List<String> ACCOUNTS = IntStream.range(0, 100)
+            .mapToObj(i -> String.format("ACC-%03d", i))
+            .toList();
+    
+    @Test
+    void requiresTwoAccounts() {
+        assertThatThrownBy(() -> new AccountSelector(List.of("ACC-1"), 0, false, new SplittableRandom(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AccountSelector(List.of(), 0, false, new SplittableRandom(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+    
+    @Test
+    void pairsAreDistinctEvenWithTwoHotAccounts() {
+        AccountSelector selector = new AccountSelector(List.of("A", "B"), 3.0, false, new SplittableRandom(1));
+        for (int i = 0; i < 1_000; i++) {
+            String[] pair = selector.nextPair();
+            assertThat(pair[0]).isNotEqualTo(pair[1]);
+        }
+    }
+    
+    @Test
+    void sameSeedGivesSameSequence() {
+        AccountSelector first = new AccountSelector(ACCOUNTS, 1.2, true, new SplittableRandom(42));
+        AccountSelector second = new AccountSelector(ACCOUNTS, 1.2, true, new SplittableRandom(42));
+        
+        assertThat(first.hottest(10)).isEqualTo(second.hottest(10));
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(first.nextPair()).isEqualTo(second.nextPair());
+        }
+    }
+    
+    @Test
+    void shuffleChangesRanksButKeepsAccounts() {
+        AccountSelector ordered = new AccountSelector(ACCOUNTS, 1.2, false, new SplittableRandom(42));
+        AccountSelector shuffled = new AccountSelector(ACCOUNTS, 1.2, true, new SplittableRandom(42));
+        
+        assertThat(ordered.hottest(3)).containsExactly("ACC-000", "ACC-001", "ACC-002");
+        assertThat(shuffled.hottest(ACCOUNTS.size()))
+                .containsExactlyInAnyOrderElementsOf(ACCOUNTS)
+                .isNotEqualTo(ACCOUNTS);
+        assertThat(shuffled.size()).isEqualTo(ACCOUNTS.size());
+    }
+    
+    @Test
+    void skewConcentratesLoadOnTopRanks() {
+        // skew = 0 - равномерно: на первый счёт приходится ~1/100 выборов
+        assertThat(shareOfHottest(0)).isBetween(0.005, 0.015);
+        // skew = 1.2 при 100 счетах: P(k = 0) = 1 / sum(1 / k^1.2) ~ 0.28
+        assertThat(shareOfHottest(1.2)).isBetween(0.25, 0.31);
+    }
+    
+    private static double shareOfHottest(double skew) {
+        AccountSelector selector = new AccountSelector(ACCOUNTS, skew, false, new SplittableRandom(7));
+        long hits = IntStream.range(0, SAMPLES)
+                .filter(i -> selector.next().equals("ACC-000"))
+                .count();
+        return (double) hits / SAMPLES;
+    }
+}
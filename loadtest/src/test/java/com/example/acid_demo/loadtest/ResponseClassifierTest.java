@@ -0,0 +1,72 @@
+package com.example.acid_demo.loadtest;
+
+import com.example.acid_demo.loadtest.ResponseClassifier.Classification;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Разбор ответов приложения: коды HTTP, ответ атомарного перевода {"status": "FAILED", "message": ...}
+ * и результаты демонстраций блокировок "FAILED: причина"
+ */
+class ResponseClassifierTest {
+    
+    @Test
+    void overloadAndHttpErrorsAreClassifiedByStatus() {
+        assertThat(ResponseClassifier.classify(503, "")).isEqualTo(new Classification(Outcome.OVERLOADED, "HTTP 503"));
+        assertThat(ResponseClassifier.classify(429, null)).isEqualTo(new Classification(Outcome.OVERLOADED, "HTTP 429"));
+        assertThat(ResponseClassifier.classify(500, "{\"status\":\"FAILED\",\"message\":\"Недостаточно средств\"}"))
+                .isEqualTo(new Classification(Outcome.ERROR, "HTTP 500"));
+        assertThat(ResponseClassifier.classify(302, "")).isEqualTo(new Classification(Outcome.ERROR, "HTTP 302"));
+        assertThat(ResponseClassifier.classify(404, "{}")).isEqualTo(new Classification(Outcome.ERROR, "HTTP 404"));
+    }
+    
+    @Test
+    void successfulResponses() {
+        assertThat(ResponseClassifier.classify(200, "{\"status\":\"SUCCESS\"}"))
+                .isEqualTo(new Classification(Outcome.SUCCESS, null));
+        assertThat(ResponseClassifier.classify(200, null)).isEqualTo(new Classification(Outcome.SUCCESS, null));
+        // FAILED в теле, но не как результат перевода - ответ не считается отказом
+        assertThat(ResponseClassifier.classify(200, "FAILED, но не JSON"))
+                .isEqualTo(new Classification(Outcome.SUCCESS, null));
+        assertThat(ResponseClassifier.classify(200, "{\"transfer1\":{\"результат\":\"SUCCESS\"},\"note\":\"FAILED\"}"))
+                .isEqualTo(new Classification(Outcome.SUCCESS, null));
+    }
+    
+    @Test
+    void businessRejectionsWithNumbersCollapsedInReason() {
+        Classification funds = ResponseClassifier.classify(400,
+                "{\"status\":\"FAILED\",\"message\":\"Недостаточно средств на счёте ACC-000123\"}");
+        assertThat(funds).isEqualTo(new Classification(Outcome.REJECTED, "Недостаточно средств на счёте ACC-#"));
+        
+        assertThat(ResponseClassifier.classify(400, "{\"status\":\"FAILED\",\"message\":\"Счёт отправителя не найден\"}"))
+                .isEqualTo(new Classification(Outcome.REJECTED, "Счёт отправителя не найден"));
+    }
+    
+    @Test
+    void concurrencyConflicts() {
+        assertThat(ResponseClassifier.classify(400,
+                "{\"status\":\"FAILED\",\"message\":\"ERROR: could not serialize access due to concurrent update\"}").outcome())
+                .isEqualTo(Outcome.CONFLICT);
+        assertThat(ResponseClassifier.classify(400,
+                "{\"status\":\"FAILED\",\"message\":\"Row was updated or deleted by another transaction\"}").outcome())
+                .isEqualTo(Outcome.CONFLICT);
+        
+        // демонстрация блокировок: 200 с результатами двух переводов
+        Classification demo = ResponseClassifier.classify(200, "{\"transfer1\":{\"результат\":\"SUCCESS\"},"
+                + "\"transfer2\":{\"результат\":\"FAILED: ERROR: deadlock detected\"}}");
+        assertThat(demo).isEqualTo(new Classification(Outcome.CONFLICT, "ERROR: deadlock detected"));
+    }
+    
+    @Test
+    void unknownFailuresAreErrors() {
+        assertThat(ResponseClassifier.classify(400, "{\"status\":\"FAILED\",\"message\":\"Что-то пошло не так\"}"))
+                .isEqualTo(new Classification(Outcome.ERROR, "Что-то пошло не так"));
+        assertThat(ResponseClassifier.classify(400, "<html>Bad Request</html>"))
+                .isEqualTo(new Classification(Outcome.ERROR, "HTTP 400"));
+        
+        String longMessage = "x".repeat(500);
+        assertThat(ResponseClassifier.classify(400, "{\"status\":\"FAILED\",\"message\":\"" + longMessage + "\"}").reason())
+                .hasSize(120);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.acid_demo.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+
+/**
+ * Реактивный вариант API переводов: WebFlux + R2DBC поверх той же схемы БД.
+ * Схему создаёт и мигрирует основное приложение (Flyway), этот модуль её только использует
+ */
+@SpringBootApplication
+@ConfigurationPropertiesScan
+public class ReactiveAcidDemoApplication {
+
+	public static void main(String[] args) {
+		SpringApplication.run(ReactiveAcidDemoApplication.class, args);
+	}
+    
+}
@@ -0,0 +1,72 @@
+package com.example.acid_demo.reactive.config;
+
+import com.example.acid_demo.entity.Money;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.dialect.DialectResolver;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Money в колонках numeric(38,2) - аналог MoneyConverter основного приложения.
+ * Транзакции задаются TransactionalOperator, а не @Transactional: повтор при конфликте -
+ * повторная подписка на Mono, и каждая подписка должна открывать новую транзакцию
+ */
+@Configuration(proxyBeanMethods = false)
+public class R2dbcConfig {
+    
+    @Bean
+    R2dbcCustomConversions r2dbcCustomConversions(ConnectionFactory connectionFactory) {
+        return R2dbcCustomConversions.of(DialectResolver.getDialect(connectionFactory),
+                List.of(new MoneyReadingConverter(), new MoneyWritingConverter()));
+    }
+    
+    @Bean
+    TransactionalOperator transactionalOperator(ReactiveTransactionManager transactionManager) {
+        return TransactionalOperator.create(transactionManager);
+    }
+    
+    @Bean
+    TransactionalOperator serializableTransactionalOperator(ReactiveTransactionManager transactionManager) {
+        return TransactionalOperator.create(transactionManager, isolation(TransactionDefinition.ISOLATION_SERIALIZABLE));
+    }
+    
+    @Bean
+    TransactionalOperator repeatableReadTransactionalOperator(ReactiveTransactionManager transactionManager) {
+        return TransactionalOperator.create(transactionManager, isolation(TransactionDefinition.ISOLATION_REPEATABLE_READ));
+    }
+    
+    private static TransactionDefinition isolation(int isolationLevel) {
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+        definition.setIsolationLevel(isolationLevel);
+        return definition;
+    }
+    
+    @ReadingConverter
+    static class MoneyReadingConverter implements Converter<BigDecimal, Money> {
+        
+        @Override
+        public Money convert(BigDecimal source) {
+            return Money.of(source);
+        }
+    }
+    
+    @WritingConverter
+    static class MoneyWritingConverter implements Converter<Money, BigDecimal> {
+        
+        @Override
+        public BigDecimal convert(Money source) {
+            return source.toBigDecimal();
+        }
+    }
+}
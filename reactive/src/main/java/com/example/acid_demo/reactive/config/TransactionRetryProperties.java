@@ -0,0 +1,24 @@
+package com.example.acid_demo.reactive.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Повтор переводов SERIALIZABLE / REPEATABLE READ при 40001 и 40P01 - ключи acid.transaction-retry
+ * основного приложения. Бюджет повторов и переход на блокировки для горячих счетов здесь не реализованы
+ */
+@Data
+@ConfigurationProperties(prefix = "acid.transaction-retry")
+public class TransactionRetryProperties {
+    
+    /**
+     * Всего попыток, включая первую
+     */
+    private int maxAttempts = 10;
+    
+    private Duration initialBackoff = Duration.ofMillis(5);
+    
+    private Duration maxBackoff = Duration.ofMillis(200);
+}
@@ -0,0 +1,42 @@
+package com.example.acid_demo.reactive.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки переводов - те же ключи acid.transfer, что и в основном приложении,
+ * чтобы оба варианта API под одинаковой нагрузкой работали с одинаковыми настройками
+ */
+@Data
+@ConfigurationProperties(prefix = "acid.transfer")
+public class TransferProperties {
+    
+    /**
+     * Искусственные задержки в демонстрациях блокировок (Mono.delay внутри транзакции).
+     * Для замеров производительности выключаются
+     */
+    private boolean simulatedDelays = true;
+    
+    /**
+     * Таймаут ожидания блокировки в переводе с пессимистичной блокировкой.
+     * Не задан - ждать без ограничения, 0 - не ждать (NOWAIT)
+     */
+    private Duration lockTimeout;
+    
+    private OptimisticRetry optimisticRetry = new OptimisticRetry();
+    
+    /**
+     * Повтор перевода при конфликте версий (@Version)
+     */
+    @Data
+    public static class OptimisticRetry {
+        
+        private int maxAttempts = 5;
+        
+        private Duration initialBackoff = Duration.ofMillis(20);
+        
+        private Duration maxBackoff = Duration.ofMillis(500);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.acid_demo.reactive.controller;
+
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.reactive.config.TransferProperties;
+import com.example.acid_demo.reactive.service.ReactiveTransferService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Переводы AcidDemoController на тех же путях и с теми же параметрами и ответами -
+ * один и тот же генератор нагрузки направляется на любой из двух вариантов сменой порта
+ */
+@RestController
+@RequestMapping("/api/acid")
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveTransferController {
+    
+    private final ReactiveTransferService transferService;
+    private final TransferProperties transferProperties;
+    
+    /**
+     * Демонстрация АТОМАРНОСТИ - успешный перевод
+     */
+    @PostMapping("/transfer/atomic")
+    public Mono<ResponseEntity<Map<String, Object>>> atomicTransfer(
+            @RequestParam String from,
+            @RequestParam String to,
+            @RequestParam Money amount,
+            @RequestParam(defaultValue = "ENTITY") ReactiveTransferService.TransferMode mode) {
+        
+        return transferService.transfer(from, to, amount, mode)
+                .then(Mono.fromSupplier(() -> ResponseEntity.ok(Map.<String, Object>of(
+                        "status", "SUCCESS",
+                        "message", "Перевод выполнен атомарно",
+                        "демонстрация", "ATOMICITY",
+                        "режим", mode,
+                        "результат", "Все операции выполнены успешно"
+                ))))
+                .onErrorResume(e -> {
+                    log.debug("Атомарный перевод отменён: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.badRequest().body(Map.<String, Object>of(
+                            "status", "FAILED",
+                            "message", String.valueOf(e.getMessage()),
+                            "демонстрация", "ATOMICITY",
+                            "note", "Транзакция откатилась, состояние счетов не изменилось"
+                    )));
+                });
+    }
+    
+    /**
+     * Демонстрация оптимистичной блокировки - два встречных перевода параллельно.
+     * retry=true - при конфликте версий перевод повторяется на сервере, retry=false - конфликт возвращается как FAILED
+     */
+    @PostMapping("/transfer/optimistic-lock")
+    public Mono<ResponseEntity<Map<String, Object>>> optimisticLockDemo(
+            @RequestParam String from,
+            @RequestParam String to,
+            @RequestParam Money amount,
+            @RequestParam(defaultValue = "true") boolean retry) {
+        
+        return Mono.zip(
+                        optimisticTransfer(from, to, amount, retry),
+                        optimisticTransfer(to, from, amount.divide(2), retry))
+                .map(results -> ResponseEntity.ok(Map.<String, Object>of(
+                        "transfer1", Map.of(
+                                "направление", from + " → " + to,
+                                "сумма", amount,
+                                "результат", results.getT1()
+                        ),
+                        "transfer2", Map.of(
+                                "направление", to + " → " + from,
+                                "сумма", amount.divide(2),
+                                "результат", results.getT2()
+                        ),
+                        "тип_блокировки", "OPTIMISTIC",
+                        "note", retry
+                                ? "При конфликте версий перевод повторяется на сервере с экспоненциальной задержкой"
+                                : "При оптимистичной блокировке одна из транзакций может не выполниться из-за конфликта версий"
+                )));
+    }
+    
+    private Mono<String> optimisticTransfer(String from, String to, Money amount, boolean retry) {
+        Mono<String> transfer = retry
+                ? transferService.transferWithOptimisticRetry(from, to, amount)
+                        .map(attempts -> "SUCCESS (попыток: " + attempts + ")")
+                : transferService.transferWithOptimisticLock(from, to, amount).thenReturn("SUCCESS");
+        return transfer.onErrorResume(e -> Mono.just("FAILED: " + e.getMessage()));
+    }
+    
+    /**
+     * Демонстрация пессимистичной блокировки - два встречных перевода, второй начинается через 50 мс
+     */
+    @PostMapping("/transfer/pessimistic-lock")
+    public Mono<ResponseEntity<Map<String, Object>>> pessimisticLockDemo(
+            @RequestParam String from,
+            @RequestParam String to,
+            @RequestParam Money amount,
+            @RequestParam(required = false) Long lockTimeoutMs) {
+        
+        if (lockTimeoutMs != null && lockTimeoutMs < 0) {
+            return Mono.just(ResponseEntity.badRequest().body(Map.<String, Object>of(
+                    "status", "FAILED",
+                    "message", "lockTimeoutMs не может быть отрицательным (0 - NOWAIT)"
+            )));
+        }
+        Duration lockTimeout = lockTimeoutMs != null
+                ? Duration.ofMillis(lockTimeoutMs)
+                : transferProperties.getLockTimeout();
+        
+        long startTime = System.currentTimeMillis();
+        
+        Mono<String> transfer1 = pessimisticTransfer(from, to, amount, lockTimeout);
+        Mono<String> transfer2 = Mono.delay(Duration.ofMillis(50))
+                .then(pessimisticTransfer(to, from, amount.divide(2), lockTimeout));
+        
+        return Mono.zip(transfer1, transfer2)
+                .map(results -> ResponseEntity.ok(Map.<String, Object>of(
+                        "transfer1", Map.of(
+                                "направление", from + " → " + to,
+                                "сумма", amount,
+                                "результат", results.getT1()
+                        ),
+                        "transfer2", Map.of(
+                                "направление", to + " → " + from,
+                                "сумма", amount.divide(2),
+                                "результат", results.getT2()
+                        ),
+                        "тип_блокировки", "PESSIMISTIC",
+                        "таймаут_блокировки", lockTimeout == null ? "без ограничения" : lockTimeout.toMillis() + "ms",
+                        "duration", (System.currentTimeMillis() - startTime) + "ms",
+                        "note", "При пессимистичной блокировке транзакции выполняются последовательно"
+                )));
+    }
+    
+    private Mono<String> pessimisticTransfer(String from, String to, Money amount, Duration lockTimeout) {
+        return transferService.transferWithPessimisticLock(from, to, amount, lockTimeout)
+                .thenReturn("SUCCESS")
+                .onErrorResume(e -> Mono.just("FAILED: " + e.getMessage()));
+    }
+}
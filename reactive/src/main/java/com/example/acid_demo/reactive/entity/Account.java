@@ -0,0 +1,39 @@
+package com.example.acid_demo.reactive.entity;
+
+import com.example.acid_demo.entity.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Строка accounts для R2DBC. Счета создаёт основное приложение, здесь они только читаются и обновляются:
+ * save() с заполненными id и version - UPDATE ... WHERE version = ?, при конфликте OptimisticLockingFailureException
+ */
+@Table("accounts")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Account {
+    
+    @Id
+    private Long id;
+    
+    private String accountNumber;
+    
+    private Money balance;
+    
+    @Version
+    private Long version;
+    
+    /**
+     * Число корзин баланса. Счета с корзинами реактивный API не переводит
+     */
+    private int balanceBuckets;
+    
+    public boolean isStriped() {
+        return balanceBuckets > 0;
+    }
+}
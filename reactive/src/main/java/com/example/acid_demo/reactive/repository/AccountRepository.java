@@ -0,0 +1,62 @@
+package com.example.acid_demo.reactive.repository;
+
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.reactive.entity.Account;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+
+/**
+ * Реактивный аналог AccountRepository основного приложения - те же запросы к accounts
+ */
+@Repository
+public interface AccountRepository extends ReactiveCrudRepository<Account, Long> {
+    
+    Mono<Account> findByAccountNumber(String accountNumber);
+    
+    Mono<Boolean> existsByAccountNumber(String accountNumber);
+    
+    /**
+     * Блокирует счета одним запросом. ORDER BY id задаёт единый порядок захвата блокировок,
+     * поэтому параллельные транзакции с пересекающимися счетами не попадают в deadlock
+     */
+    @Query("SELECT * FROM accounts WHERE account_number IN (:accountNumbers) ORDER BY id FOR UPDATE")
+    Flux<Account> lockAllByAccountNumbers(Collection<String> accountNumbers);
+    
+    @Query("SELECT * FROM accounts WHERE account_number IN (:accountNumbers) ORDER BY id FOR UPDATE NOWAIT")
+    Flux<Account> lockAllByAccountNumbersNoWait(Collection<String> accountNumbers);
+    
+    /**
+     * lock_timeout до конца текущей транзакции: FOR UPDATE в PostgreSQL не принимает время ожидания
+     */
+    @Query("SELECT set_config('lock_timeout', :timeout, true)")
+    Mono<String> setLockTimeout(String timeout);
+    
+    /**
+     * Списание одним UPDATE: достаточность средств проверяется в условии WHERE.
+     * 0 изменённых строк - средств недостаточно, счёта нет или баланс счёта разбит на корзины
+     */
+    default Mono<Integer> debitIfSufficientFunds(String accountNumber, Money amount) {
+        return debitIfSufficientFunds(accountNumber, amount.toBigDecimal());
+    }
+    
+    default Mono<Integer> credit(String accountNumber, Money amount) {
+        return credit(accountNumber, amount.toBigDecimal());
+    }
+    
+    @Modifying
+    @Query("UPDATE accounts SET balance = balance - :amount, version = version + 1 " +
+            "WHERE account_number = :accountNumber AND balance_buckets = 0 AND balance >= :amount")
+    Mono<Integer> debitIfSufficientFunds(String accountNumber, BigDecimal amount);
+    
+    @Modifying
+    @Query("UPDATE accounts SET balance = balance + :amount, version = version + 1 " +
+            "WHERE account_number = :accountNumber AND balance_buckets = 0")
+    Mono<Integer> credit(String accountNumber, BigDecimal amount);
+}
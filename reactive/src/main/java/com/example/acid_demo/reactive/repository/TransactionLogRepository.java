@@ -0,0 +1,38 @@
+package com.example.acid_demo.reactive.repository;
+
+import com.example.acid_demo.entity.Money;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * Запись в transaction_logs. Id берётся из transaction_logs_seq прямо в INSERT: каждый nextval
+ * занимает целый блок pooled-оптимизатора, поэтому id не пересекаются с блоками основного приложения
+ */
+@Repository
+@RequiredArgsConstructor
+public class TransactionLogRepository {
+    
+    private static final String INSERT_SQL = """
+            INSERT INTO transaction_logs (id, from_account, to_account, amount, timestamp, status)
+            VALUES (nextval('transaction_logs_seq'), :fromAccount, :toAccount, :amount, :timestamp, 'SUCCESS')
+            """;
+    
+    private final DatabaseClient databaseClient;
+    
+    /**
+     * Лог успешного перевода в его транзакции - как синхронная запись основного приложения (acid.audit.mode=sync).
+     * Лог неудачного перевода в этом режиме откатывается вместе с транзакцией, поэтому здесь он не пишется вовсе
+     */
+    public Mono<Void> insertSuccess(String fromAccount, String toAccount, Money amount) {
+        return databaseClient.sql(INSERT_SQL)
+                .bind("fromAccount", fromAccount)
+                .bind("toAccount", toAccount)
+                .bind("amount", amount.toBigDecimal())
+                .bind("timestamp", LocalDateTime.now())
+                .then();
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.acid_demo.reactive.service;
+
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.reactive.config.TransactionRetryProperties;
+import com.example.acid_demo.reactive.config.TransferProperties;
+import com.example.acid_demo.reactive.entity.Account;
+import com.example.acid_demo.reactive.repository.AccountRepository;
+import com.example.acid_demo.reactive.repository.TransactionLogRepository;
+import io.r2dbc.spi.R2dbcException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import reactor.util.retry.RetryBackoffSpec;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Переводы TransferService основного приложения без блокирующих вызовов: те же запросы и те же
+ * проверки, но транзакция - это подписка на Mono (TransactionalOperator), а ожидание БД не занимает поток.
+ * Каждый метод возвращает холодный Mono: повторная подписка выполняет перевод заново в новой транзакции.
+ * Счета с балансом в корзинах не поддерживаются - перевод с ними завершается ошибкой
+ */
+@Service
+@RequiredArgsConstructor
+public class ReactiveTransferService {
+    
+    // 40001 serialization_failure, 40P01 deadlock_detected
+    private static final Set<String> RETRYABLE_SQL_STATES = Set.of("40001", "40P01");
+    
+    private final AccountRepository accountRepository;
+    private final TransactionLogRepository transactionLogRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final TransactionalOperator serializableTransactionalOperator;
+    private final TransactionalOperator repeatableReadTransactionalOperator;
+    private final TransferProperties transferProperties;
+    private final TransactionRetryProperties transactionRetryProperties;
+    
+    public enum TransferMode {
+        /** Чтение счетов и UPDATE через сущности (READ COMMITTED) */
+        ENTITY,
+        /** Условные UPDATE без чтения счетов */
+        CONDITIONAL_UPDATE,
+        /** Через сущности в SERIALIZABLE, с повтором при 40001 / 40P01 */
+        SERIALIZABLE,
+        /** Через сущности в REPEATABLE READ, с повтором при 40001 / 40P01 */
+        REPEATABLE_READ
+    }
+    
+    public Mono<Void> transfer(String fromAccountNumber, String toAccountNumber, Money amount, TransferMode mode) {
+        return switch (mode) {
+            case ENTITY -> transferMoney(fromAccountNumber, toAccountNumber, amount);
+            case CONDITIONAL_UPDATE -> transferWithConditionalUpdate(fromAccountNumber, toAccountNumber, amount);
+            case SERIALIZABLE -> withTransactionRetry(serializableTransactionalOperator,
+                    fromAccountNumber, toAccountNumber, amount);
+            case REPEATABLE_READ -> withTransactionRetry(repeatableReadTransactionalOperator,
+                    fromAccountNumber, toAccountNumber, amount);
+        };
+    }
+    
+    /**
+     * Атомарный перевод через сущности в READ COMMITTED
+     */
+    public Mono<Void> transferMoney(String fromAccountNumber, String toAccountNumber, Money amount) {
+        return transactionalOperator.transactional(
+                Mono.defer(() -> transferEntities(fromAccountNumber, toAccountNumber, amount, 0)));
+    }
+    
+    /**
+     * Перевод в транзакции operator с повтором при 40001 / 40P01 - аналог @RetryableTransaction.
+     * Каждая повторная подписка открывает новую транзакцию с новым снимком данных
+     */
+    private Mono<Void> withTransactionRetry(TransactionalOperator operator, String fromAccountNumber,
+                                            String toAccountNumber, Money amount) {
+        return operator.transactional(Mono.defer(() -> transferEntities(fromAccountNumber, toAccountNumber, amount, 0)))
+                .retryWhen(backoff(transactionRetryProperties.getMaxAttempts(),
+                        transactionRetryProperties.getInitialBackoff(), transactionRetryProperties.getMaxBackoff(),
+                        ReactiveTransferService::isRetryable));
+    }
+    
+    /**
+     * Атомарный перевод условными UPDATE - без чтения счетов.
+     * UPDATE выполняются в порядке номеров счетов, поэтому встречные переводы не блокируют друг друга намертво
+     */
+    public Mono<Void> transferWithConditionalUpdate(String fromAccountNumber, String toAccountNumber, Money amount) {
+        if (!amount.isPositive()) {
+            return Mono.error(new RuntimeException("Сумма перевода должна быть положительной"));
+        }
+        return transactionalOperator.transactional(Mono.defer(() -> {
+            Mono<Void> updates = fromAccountNumber.compareTo(toAccountNumber) <= 0
+                    ? debit(fromAccountNumber, amount).then(credit(toAccountNumber, amount))
+                    : credit(toAccountNumber, amount).then(debit(fromAccountNumber, amount));
+            return updates.then(transactionLogRepository.insertSuccess(fromAccountNumber, toAccountNumber, amount));
+        }));
+    }
+    
+    private Mono<Void> debit(String accountNumber, Money amount) {
+        return accountRepository.debitIfSufficientFunds(accountNumber, amount)
+                .flatMap(updated -> updated == 1
+                        ? Mono.<Void>empty()
+                        // 0 строк: средств недостаточно, счёта нет или баланс счёта разбит на корзины
+                        : accountRepository.existsByAccountNumber(accountNumber)
+                                .flatMap(exists -> Mono.<Void>error(new RuntimeException(exists
+                                        ? "Недостаточно средств на счёте или баланс счёта разбит на корзины"
+                                        : "Счёт отправителя не найден"))));
+    }
+    
+    private Mono<Void> credit(String accountNumber, Money amount) {
+        return accountRepository.credit(accountNumber, amount)
+                .flatMap(updated -> updated == 1
+                        ? Mono.<Void>empty()
+                        : Mono.<Void>error(new RuntimeException("Счёт получателя не найден")));
+    }
+    
+    /**
+     * Один перевод с оптимистичной блокировкой: конфликт версий - OptimisticLockingFailureException
+     */
+    public Mono<Void> transferWithOptimisticLock(String fromAccountNumber, String toAccountNumber, Money amount) {
+        return transactionalOperator.transactional(
+                Mono.defer(() -> transferEntities(fromAccountNumber, toAccountNumber, amount, 100)));
+    }
+    
+    /**
+     * Перевод с оптимистичной блокировкой и повтором при конфликте версий с экспоненциальной задержкой
+     *
+     * @return число попыток
+     */
+    public Mono<Integer> transferWithOptimisticRetry(String fromAccountNumber, String toAccountNumber, Money amount) {
+        TransferProperties.OptimisticRetry settings = transferProperties.getOptimisticRetry();
+        return Mono.defer(() -> {
+            AtomicInteger attempts = new AtomicInteger();
+            return Mono.defer(() -> {
+                        attempts.incrementAndGet();
+                        return transferWithOptimisticLock(fromAccountNumber, toAccountNumber, amount);
+                    })
+                    .retryWhen(backoff(settings.getMaxAttempts(), settings.getInitialBackoff(), settings.getMaxBackoff(),
+                            OptimisticLockingFailureException.class::isInstance))
+                    .then(Mono.fromSupplier(attempts::get));
+        });
+    }
+    
+    /**
+     * Перевод с пессимистичной блокировкой. Оба счёта блокируются одним запросом в порядке id,
+     * поэтому встречные переводы A→B и B→A ждут друг друга, а не попадают в deadlock.
+     * lockTimeout: null - ждать без ограничения, 0 - NOWAIT, иначе - lock_timeout до конца транзакции.
+     * Счета с корзинами тоже блокируются и отклоняются в apply с явной ошибкой, а не как ненайденные
+     */
+    public Mono<Void> transferWithPessimisticLock(String fromAccountNumber, String toAccountNumber, Money amount,
+                                                  Duration lockTimeout) {
+        return transactionalOperator.transactional(Mono.defer(() ->
+                lockAll(List.of(fromAccountNumber, toAccountNumber), lockTimeout)
+                        .collectMap(Account::getAccountNumber)
+                        .flatMap(accounts -> {
+                            Account fromAccount = accounts.get(fromAccountNumber);
+                            Account toAccount = accounts.get(toAccountNumber);
+                            if (fromAccount == null) {
+                                return Mono.<Void>error(new RuntimeException("Счёт отправителя не найден"));
+                            }
+                            if (toAccount == null) {
+                                return Mono.<Void>error(new RuntimeException("Счёт получателя не найден"));
+                            }
+                            // Симулируем долгую операцию под блокировкой
+                            return simulateDelay(500).then(apply(fromAccount, toAccount, amount));
+                        })
+                        .then(transactionLogRepository.insertSuccess(fromAccountNumber, toAccountNumber, amount))));
+    }
+    
+    private Flux<Account> lockAll(List<String> accountNumbers, Duration lockTimeout) {
+        if (lockTimeout == null) {
+            return accountRepository.lockAllByAccountNumbers(accountNumbers);
+        }
+        if (lockTimeout.isZero()) {
+            return accountRepository.lockAllByAccountNumbersNoWait(accountNumbers);
+        }
+        return accountRepository.setLockTimeout(lockTimeout.toMillis() + "ms")
+                .thenMany(accountRepository.lockAllByAccountNumbers(accountNumbers));
+    }
+    
+    private Mono<Void> transferEntities(String fromAccountNumber, String toAccountNumber, Money amount,
+                                        long delayMillis) {
+        // запросы одной транзакции идут по одному соединению - последовательно, а не через Mono.zip
+        return findAccount(fromAccountNumber, "Счёт отправителя не найден")
+                .zipWhen(fromAccount -> findAccount(toAccountNumber, "Счёт получателя не найден"))
+                .delayUntil(accounts -> simulateDelay(delayMillis))
+                .flatMap(accounts -> apply(accounts.getT1(), accounts.getT2(), amount))
+                .then(transactionLogRepository.insertSuccess(fromAccountNumber, toAccountNumber, amount));
+    }
+    
+    private Mono<Account> findAccount(String accountNumber, String notFoundMessage) {
+        return accountRepository.findByAccountNumber(accountNumber)
+                .switchIfEmpty(Mono.error(() -> new RuntimeException(notFoundMessage)));
+    }
+    
+    /**
+     * Изменение балансов загруженных счетов: save() - UPDATE с проверкой version
+     */
+    private Mono<Void> apply(Account fromAccount, Account toAccount, Money amount) {
+        if (fromAccount.isStriped() || toAccount.isStriped()) {
+            return Mono.error(new RuntimeException("Баланс счёта разбит на корзины - такие счета переводит только основное приложение"));
+        }
+        if (fromAccount.getBalance().isLessThan(amount)) {
+            return Mono.error(new RuntimeException("Недостаточно средств на счёте"));
+        }
+        fromAccount.setBalance(fromAccount.getBalance().minus(amount));
+        toAccount.setBalance(toAccount.getBalance().plus(amount));
+        return accountRepository.save(fromAccount).then(accountRepository.save(toAccount)).then();
+    }
+    
+    /**
+     * Искусственная задержка внутри транзакции, отключается настройкой acid.transfer.simulated-delays.
+     * Mono.delay не занимает поток - транзакция держит только соединение и блокировки
+     */
+    private Mono<Void> simulateDelay(long millis) {
+        if (millis == 0 || !transferProperties.isSimulatedDelays()) {
+            return Mono.empty();
+        }
+        return Mono.delay(Duration.ofMillis(millis)).then();
+    }
+    
+    /**
+     * maxAttempts попыток всего, включая первую; после последней - исходная ошибка, а не RetryExhaustedException
+     */
+    private static RetryBackoffSpec backoff(int maxAttempts, Duration initialBackoff, Duration maxBackoff,
+                                            Predicate<Throwable> retryable) {
+        return Retry.backoff(Math.max(maxAttempts - 1, 0), initialBackoff)
+                .maxBackoff(maxBackoff)
+                .filter(retryable)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+    
+    /**
+     * SQLSTATE ищется по цепочке причин: Spring оборачивает R2dbcException в DataAccessException
+     */
+    static boolean isRetryable(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof R2dbcException r2dbcException
+                    && RETRYABLE_SQL_STATES.contains(r2dbcException.getSqlState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
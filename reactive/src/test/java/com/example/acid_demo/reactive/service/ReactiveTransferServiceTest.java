@@ -0,0 +1,125 @@
+package com.example.acid_demo.reactive.service;
+
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.reactive.repository.AccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Встречные переводы между двумя счетами без единого заблокированного потока: SERIALIZABLE повторяется
+ * при 40001, оптимистичный перевод - при конфликте версий, и деньги не теряются.
+ * Схему создаёт основное приложение - перед тестом его миграции должны быть применены
+ */
+@SpringBootTest(properties = {
+        "acid.transfer.simulated-delays=false",
+        "acid.transfer.optimistic-retry.max-attempts=50",
+        "acid.transaction-retry.max-attempts=50"
+})
+class ReactiveTransferServiceTest {
+    
+    private static final String FIRST = "REACTIVE-1";
+    private static final String SECOND = "REACTIVE-2";
+    private static final int CONCURRENT_TRANSFERS = 40;
+    
+    @Autowired
+    private ReactiveTransferService transferService;
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private DatabaseClient databaseClient;
+    
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        Flux.just(FIRST, SECOND)
+                .concatMap(accountNumber -> databaseClient.sql(
+                                "INSERT INTO accounts (id, account_number, balance, version) " +
+                                "VALUES (nextval('accounts_seq'), :accountNumber, 10000.00, 0)")
+                        .bind("accountNumber", accountNumber)
+                        .then())
+                .blockLast();
+    }
+    
+    @AfterEach
+    void cleanUp() {
+        databaseClient.sql("DELETE FROM transaction_logs WHERE from_account IN ('REACTIVE-1', 'REACTIVE-2')")
+                .then()
+                .then(databaseClient.sql("DELETE FROM accounts WHERE account_number IN ('REACTIVE-1', 'REACTIVE-2')")
+                        .then())
+                .block();
+    }
+    
+    @Test
+    void concurrentSerializableTransfersAreRetried() {
+        concurrently(i -> transferService.transfer(from(i), to(i), Money.valueOf("1.00"),
+                ReactiveTransferService.TransferMode.SERIALIZABLE));
+        
+        assertBalancesUnchanged();
+    }
+    
+    @Test
+    void concurrentOptimisticTransfersAreRetried() {
+        concurrently(i -> transferService.transferWithOptimisticRetry(from(i), to(i), Money.valueOf("1.00")).then());
+        
+        assertBalancesUnchanged();
+    }
+    
+    @Test
+    void insufficientFundsRollsBackConditionalUpdate() {
+        StepVerifier.create(transferService.transferWithConditionalUpdate(FIRST, SECOND, Money.valueOf("10000.01")))
+                .expectErrorMessage("Недостаточно средств на счёте или баланс счёта разбит на корзины")
+                .verify(Duration.ofSeconds(10));
+        
+        assertBalancesUnchanged();
+    }
+    
+    @Test
+    void stripedAccountIsRejectedOnPessimisticPath() {
+        databaseClient.sql("UPDATE accounts SET balance_buckets = 4 WHERE account_number = :accountNumber")
+                .bind("accountNumber", FIRST)
+                .then()
+                .block();
+        
+        StepVerifier.create(transferService.transferWithPessimisticLock(FIRST, SECOND, Money.valueOf("1.00"), null))
+                .expectErrorMessage("Баланс счёта разбит на корзины - такие счета переводит только основное приложение")
+                .verify(Duration.ofSeconds(10));
+        
+        assertBalancesUnchanged();
+    }
+    
+    private void concurrently(IntFunction<Mono<Void>> transfer) {
+        StepVerifier.create(Flux.range(0, CONCURRENT_TRANSFERS).flatMap(transfer::apply, CONCURRENT_TRANSFERS))
+                .expectComplete()
+                .verify(Duration.ofSeconds(60));
+    }
+    
+    // поровну переводов в обе стороны
+    private static String from(int i) {
+        return i % 2 == 0 ? FIRST : SECOND;
+    }
+    
+    private static String to(int i) {
+        return i % 2 == 0 ? SECOND : FIRST;
+    }
+    
+    private void assertBalancesUnchanged() {
+        assertThat(accountRepository.findByAccountNumber(FIRST).block().getBalance())
+                .isEqualTo(Money.valueOf("10000.00"));
+        assertThat(accountRepository.findByAccountNumber(SECOND).block().getBalance())
+                .isEqualTo(Money.valueOf("10000.00"));
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.acid_demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки кэша счетов по номеру счёта
+ */
+@Data
+@ConfigurationProperties(prefix = "acid.cache.accounts")
+public class AccountCacheProperties {
+    
+    private long maximumSize = 10_000;
+    
+    /**
+     * Страховка от записей, которые обошли кэш (например, изменения напрямую в БД)
+     */
+    private Duration expireAfterWrite = Duration.ofMinutes(5);
+} 
\ No newline at end of file
@@ -0,0 +1,80 @@
+package com.example.acid_demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки записи аудита переводов (TransactionLog)
+ */
+@Data
+@ConfigurationProperties(prefix = "acid.audit")
+public class AuditProperties {
+    
+    private Mode mode = Mode.SYNC;
+    
+    private WriteBehind writeBehind = new WriteBehind();
+    
+    private Outbox outbox = new Outbox();
+    
+    private Partitioning partitioning = new Partitioning();
+    
+    public enum Mode {
+        SYNC,         // INSERT в транзакции перевода
+        WRITE_BEHIND, // кольцевой буфер в памяти + фоновая пакетная запись
+        OUTBOX        // INSERT в outbox-таблицу в транзакции перевода, перенос в transaction_logs пакетами
+    }
+    
+    @Data
+    public static class WriteBehind {
+        
+        private int capacity = 8192; // размер буфера, при заполнении вызывающий поток ждёт
+        
+        private int batchSize = 1000;
+        
+        private Duration offerTimeout = Duration.ofMillis(50);
+    }
+    
+    @Data
+    public static class Outbox {
+        
+        private int batchSize = 1000;
+    }
+    
+    /**
+     * Секционирование transaction_logs по времени
+     */
+    @Data
+    public static class Partitioning {
+        
+        private Granularity granularity = Granularity.MONTHLY;
+        
+        /**
+         * Сколько секций создавать заранее после текущей
+         */
+        private int premake = 3;
+        
+        /**
+         * Срок хранения: секции, целиком старше него, удаляются. Не задан - хранить всё
+         */
+        private Duration retention;
+        
+        private Archive archive = new Archive();
+        
+        public enum Granularity {
+            DAILY, MONTHLY
+        }
+    }
+    
+    /**
+     * Выгрузка удаляемых секций в сжатые CSV-файлы
+     */
+    @Data
+    public static class Archive {
+        
+        private boolean enabled = false;
+        
+        private String directory = "archive";
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.example.acid_demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Аудит суммы балансов: сумма по секциям (ledger_totals) поддерживается триггерами
+ * и периодически сверяется с фактическими балансами
+ */
+@Data
+@ConfigurationProperties(prefix = "acid.balance-audit")
+public class BalanceAuditProperties {
+    
+    /**
+     * Период сворачивания ledger_total_deltas в ledger_totals
+     */
+    private Duration compactionInterval = Duration.ofSeconds(1);
+    
+    /**
+     * Периодическая сверка с фактическими балансами (полное сканирование accounts)
+     */
+    private boolean continuous = false;
+    
+    private Duration verifyInterval = Duration.ofMinutes(5);
+    
+    /**
+     * max_parallel_workers_per_gather для запроса сверки
+     */
+    private int parallelWorkers = 4;
+}
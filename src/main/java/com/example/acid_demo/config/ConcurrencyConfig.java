@@ -0,0 +1,25 @@
+package com.example.acid_demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Исполнитель параллельных задач демонстраций (встречные переводы, параллельное изменение баланса).
+ * Задачи блокируются на JDBC и Thread.sleep, поэтому общий ForkJoinPool для них не подходит:
+ * каждая задача получает свой поток - виртуальный при spring.threads.virtual.enabled=true,
+ * иначе платформенный. Число одновременно работающих с БД задач ограничивает пул соединений
+ */
+@Configuration
+public class ConcurrencyConfig {
+    
+    @Bean(destroyMethod = "close")
+    public ExecutorService demoExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        return virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("demo-vt-", 0).factory())
+                : Executors.newCachedThreadPool(Thread.ofPlatform().name("demo-", 0).daemon(true).factory());
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.example.acid_demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки идемпотентности запросов перевода (заголовок Idempotency-Key)
+ */
+@Data
+@ConfigurationProperties(prefix = "acid.idempotency")
+public class IdempotencyProperties {
+    
+    /**
+     * Сколько хранится ключ: повтор после этого срока выполняется как новый запрос
+     */
+    private Duration retention = Duration.ofHours(24);
+    
+    /**
+     * Ключ, занятый дольше этого и не завершённый, считается брошенным (процесс упал во время запроса),
+     * и повтор выполняет запрос заново. Исходный запрос, дошедший до перевода после перехвата,
+     * откатывает свой перевод, а ключ, перевод по которому уже зафиксирован, не перехватывается
+     */
+    private Duration claimTimeout = Duration.ofMinutes(1);
+    
+    /**
+     * Кэш завершённых ответов в памяти: повторы обслуживаются без обращения к БД
+     */
+    private long cacheMaximumSize = 10_000;
+    
+    private Duration cacheExpireAfterWrite = Duration.ofMinutes(10);
+} 
\ No newline at end of file
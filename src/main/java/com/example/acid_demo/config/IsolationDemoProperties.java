@@ -0,0 +1,35 @@
+package com.example.acid_demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Сценарии демонстрации уровней изоляции (/api/isolation/*): свой маленький пул соединений,
+ * отдельный от пула переводов, и ограничения на время их транзакций
+ */
+@Data
+@ConfigurationProperties(prefix = "acid.isolation-demo")
+public class IsolationDemoProperties {
+    
+    /**
+     * Соединений в пуле сценариев - столько сценариев выполняется одновременно
+     */
+    private int poolSize = 4;
+    
+    /**
+     * Сколько сценариев может ждать свободное соединение, остальные отклоняются сразу
+     */
+    private int maxQueued = 100;
+    
+    /**
+     * statement_timeout для шагов сценария: шаг, который ждёт блокировку строки, не висит бесконечно
+     */
+    private Duration statementTimeout = Duration.ofSeconds(10);
+    
+    /**
+     * idle_in_transaction_session_timeout: страховка от сценария, транзакция которого осталась открытой
+     */
+    private Duration idleInTransactionTimeout = Duration.ofSeconds(30);
+}
@@ -0,0 +1,54 @@
+package com.example.acid_demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Настройки леджера в памяти (LedgerEngine): один поток-писатель, журнал упреждающей записи
+ * и периодический checkpoint в таблицу accounts
+ */
+@Data
+@ConfigurationProperties(prefix = "acid.ledger")
+public class LedgerProperties {
+    
+    private boolean enabled = false;
+    
+    /**
+     * Каталог сегментов журнала
+     */
+    private String journalDirectory = "ledger-journal";
+    
+    /**
+     * Размер сегмента журнала: файл создаётся сразу этого размера и отображается в память целиком
+     */
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+    
+    /**
+     * Сколько переводов писатель берёт из очереди за раз - все они фиксируются одним force() журнала
+     */
+    private int maxBatchSize = 1024;
+    
+    /**
+     * Сколько переводов может ждать в очереди, сверх этого новые отклоняются
+     */
+    private int queueCapacity = 65_536;
+    
+    /**
+     * Сколько вызывающий поток ждёт подтверждения записи в журнал
+     */
+    private Duration ackTimeout = Duration.ofSeconds(5);
+    
+    /**
+     * Период переноса балансов и логов переводов в БД. Сегменты журнала до checkpoint удаляются
+     */
+    private Duration checkpointInterval = Duration.ofSeconds(1);
+    
+    /**
+     * Сколько переводов может ждать переноса в БД после неудачных checkpoint (например, пока БД недоступна).
+     * Сверх этого новые переводы отклоняются до успешного checkpoint - память писателя и журнал не растут без предела
+     */
+    private int maxCheckpointBacklog = 500_000;
+} 
\ No newline at end of file
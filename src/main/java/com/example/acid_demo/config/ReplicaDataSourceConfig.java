@@ -0,0 +1,58 @@
+package com.example.acid_demo.config;
+
+import com.example.acid_demo.service.ReplicaLagMonitor;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Два пула соединений (primary - основная БД, replica - реплика) и DataSource приложения,
+ * распределяющий между ними транзакции (ReplicaRoutingDataSource).
+ * Без acid.replica.enabled=true DataSource настраивает Spring Boot, и все запросы идут в основную БД
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "acid.replica", name = "enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+    
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+    
+    @Bean
+    @ConfigurationProperties("acid.replica.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties primaryProperties, ReplicaProperties replicaProperties) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(replicaProperties.getUrl())
+                .username(replicaProperties.getUsername() != null
+                        ? replicaProperties.getUsername() : primaryProperties.determineUsername())
+                .password(replicaProperties.getPassword() != null
+                        ? replicaProperties.getPassword() : primaryProperties.determinePassword())
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+    
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 ReplicaLagMonitor lagMonitor) {
+        return new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(primaryDataSource, replicaDataSource, lagMonitor));
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.example.acid_demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Реплика для чтения (hot standby): транзакции readOnly обслуживаются пулом реплики,
+ * всё остальное - основной БД. Настройки пула реплики - acid.replica.hikari.* (как spring.datasource.hikari.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "acid.replica")
+public class ReplicaProperties {
+    
+    private boolean enabled = false;
+    
+    private String url;
+    
+    /**
+     * Не заданы - как у основной БД (spring.datasource.username / password)
+     */
+    private String username;
+    
+    private String password;
+    
+    /**
+     * Допустимое отставание реплики: при большем отставании (или недоступной реплике) чтения идут в основную БД
+     */
+    private Duration maxLag = Duration.ofSeconds(5);
+    
+    /**
+     * Период проверки отставания реплики
+     */
+    private Duration lagCheckInterval = Duration.ofSeconds(1);
+} 
\ No newline at end of file
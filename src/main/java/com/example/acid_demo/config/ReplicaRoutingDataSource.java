@@ -0,0 +1,74 @@
+package com.example.acid_demo.config;
+
+import com.example.acid_demo.service.ReplicaLagMonitor;
+import com.example.acid_demo.util.ReadRoutingContext;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Выбор БД при получении соединения: реплика - для транзакций readOnly, основная БД - для остальных
+ * транзакций и работы без транзакции. На основной БД остаются также:
+ * - транзакции SERIALIZABLE (PostgreSQL не допускает SERIALIZABLE на hot standby);
+ * - чтения с ReadRoutingContext.forcePrimary (read-your-writes);
+ * - все чтения, пока реплика недоступна или отстаёт больше acid.replica.max-lag.
+ * Если соединение с репликой получить не удалось, транзакция получает соединение основной БД,
+ * а реплика считается недоступной до следующей успешной проверки ReplicaLagMonitor.
+ * Признаки транзакции известны только после её начала, поэтому источник оборачивается
+ * в LazyConnectionDataSourceProxy: физическое соединение берётся при первом запросе внутри транзакции
+ */
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    
+    enum Target {
+        PRIMARY,
+        REPLICA
+    }
+    
+    private final DataSource primary;
+    private final DataSource replica;
+    private final ReplicaLagMonitor lagMonitor;
+    
+    ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor) {
+        this.primary = primary;
+        this.replica = replica;
+        this.lagMonitor = lagMonitor;
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+    
+    @Override
+    public Connection getConnection() throws SQLException {
+        DataSource target = determineTargetDataSource();
+        if (target != replica) {
+            return target.getConnection();
+        }
+        try {
+            return replica.getConnection();
+        } catch (SQLException e) {
+            // запросы ещё не выполнялись, поэтому транзакцию можно продолжить на основной БД
+            lagMonitor.replicaFailed(e);
+            return primary.getConnection();
+        }
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || isSerializable(TransactionSynchronizationManager.getCurrentTransactionIsolationLevel())
+                || ReadRoutingContext.isPrimaryForced()
+                || !lagMonitor.isReplicaUsable()) {
+            return Target.PRIMARY;
+        }
+        return Target.REPLICA;
+    }
+    
+    private static boolean isSerializable(Integer isolationLevel) {
+        return isolationLevel != null && isolationLevel == Connection.TRANSACTION_SERIALIZABLE;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.example.acid_demo.config;
+
+import com.example.acid_demo.entity.Money;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Массовое заполнение БД счетами и историей переводов для нагрузочных и staging-окружений.
+ * Значения по умолчанию для POST /api/acid/accounts/seed и для запуска из командной строки (run-on-startup)
+ */
+@Data
+@ConfigurationProperties(prefix = "acid.seed")
+public class SeedProperties {
+    
+    /**
+     * Заполнить БД при старте приложения
+     */
+    private boolean runOnStartup = false;
+    
+    /**
+     * Завершить приложение после заполнения при старте
+     */
+    private boolean exitAfterRun = false;
+    
+    /**
+     * Очистить accounts и transaction_logs (TRUNCATE) перед загрузкой
+     */
+    private boolean reset = true;
+    
+    private int accounts = 100_000;
+    
+    /**
+     * Номер счёта - префикс и порядковый номер, дополненный нулями
+     */
+    private String accountPrefix = "ACC";
+    
+    private Distribution distribution = Distribution.PARETO;
+    
+    private Money minBalance = Money.valueOf("10.00");
+    
+    private Money maxBalance = Money.valueOf("1000000.00");
+    
+    /**
+     * Параметр формы: alpha для PARETO, sigma для LOG_NORMAL
+     */
+    private double shape = 1.16;
+    
+    private long transactions = 1_000_000;
+    
+    /**
+     * Период истории переводов до текущего момента
+     */
+    private Duration history = Duration.ofDays(365);
+    
+    /**
+     * Доля переводов FAILED в истории
+     */
+    private double failureRate = 0.02;
+    
+    /**
+     * Начальное значение генератора: одинаковые настройки дают одинаковые данные
+     */
+    private long randomSeed = 42;
+    
+    public enum Distribution {
+        UNIFORM,    // равномерно между min-balance и max-balance
+        LOG_NORMAL, // медиана - среднее геометрическое min-balance и max-balance
+        PARETO      // много небольших балансов от min-balance и длинный хвост крупных
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.acid_demo.config;
+
+import com.example.acid_demo.retry.RetryableTransaction;
+import com.example.acid_demo.retry.TransactionRetryExecutor;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+
+/**
+ * Подключение @RetryableTransaction к прокси бинов.
+ * Advisor с ролью инфраструктуры подхватывает тот же автопрокси, что и @Transactional, поэтому
+ * отдельный AspectJ не нужен. Порядок выше, чем у TransactionInterceptor: повтор оборачивает транзакцию,
+ * а не выполняется внутри неё
+ */
+@Configuration(proxyBeanMethods = false)
+@Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+public class TransactionRetryConfig {
+    
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor transactionRetryAdvisor(ObjectProvider<TransactionRetryExecutor> executor) {
+        // исполнитель создаётся при первом вызове: advisor'ы создаются раньше обычных бинов,
+        // а раннее создание MeterRegistry и JsonLogger обошло бы их BeanPostProcessor'ы
+        MethodInterceptor interceptor = invocation -> executor.getObject().invoke(invocation);
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(
+                AnnotationMatchingPointcut.forMethodAnnotation(RetryableTransaction.class), interceptor);
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return advisor;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.acid_demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Повтор транзакций @RetryableTransaction при serialization failure и deadlock
+ */
+@Data
+@ConfigurationProperties(prefix = "acid.transaction-retry")
+public class TransactionRetryProperties {
+    
+    private int maxAttempts = 10;
+    
+    private Duration initialBackoff = Duration.ofMillis(5);
+    
+    private Duration maxBackoff = Duration.ofMillis(200);
+    
+    /**
+     * Доля повторов от числа вызовов, на которую хватает бюджета
+     */
+    private double budgetRatio = 0.2;
+    
+    /**
+     * Повторов в секунду, доступных сверх доли budget-ratio
+     */
+    private double budgetMinPerSecond = 10;
+    
+    /**
+     * Сколько повторов можно накопить в бюджете
+     */
+    private int budgetCapacity = 100;
+    
+    /**
+     * После скольких отказов вызов переходит на явные блокировки (lockFallback)
+     */
+    private int lockFallbackAfter = 3;
+    
+    /**
+     * Сколько отказов за окно hot-key-window делают ключ горячим
+     */
+    private int hotKeyFailures = 5;
+    
+    private Duration hotKeyWindow = Duration.ofSeconds(10);
+    
+    /**
+     * Сколько ключей с недавними отказами отслеживается одновременно
+     */
+    private long hotKeyMaxTracked = 10_000;
+}
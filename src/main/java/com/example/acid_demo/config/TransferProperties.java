@@ -0,0 +1,58 @@
+package com.example.acid_demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки переводов
+ */
+@Data
+@ConfigurationProperties(prefix = "acid.transfer")
+public class TransferProperties {
+    
+    /**
+     * Искусственные задержки в демонстрациях блокировок (Thread.sleep внутри транзакции).
+     * Для замеров производительности выключаются
+     */
+    private boolean simulatedDelays = true;
+    
+    /**
+     * Таймаут ожидания блокировки в переводе с пессимистичной блокировкой.
+     * Не задан - ждать без ограничения, 0 - не ждать (NOWAIT)
+     */
+    private Duration lockTimeout;
+    
+    private OptimisticRetry optimisticRetry = new OptimisticRetry();
+    
+    /**
+     * Повтор перевода при конфликте версий (@Version)
+     */
+    @Data
+    public static class OptimisticRetry {
+        
+        private int maxAttempts = 5;
+        
+        private Duration initialBackoff = Duration.ofMillis(20);
+        
+        private Duration maxBackoff = Duration.ofMillis(500);
+        
+        /**
+         * Переводы с участием горячего счёта сразу выполняются с пессимистичной блокировкой
+         */
+        private boolean pessimisticFallback = true;
+        
+        /**
+         * Сколько конфликтов за окно hot-account-window делают счёт горячим
+         */
+        private int hotAccountConflicts = 5;
+        
+        private Duration hotAccountWindow = Duration.ofSeconds(10);
+        
+        /**
+         * Сколько счетов с недавними конфликтами отслеживается одновременно
+         */
+        private long hotAccountMaxTracked = 10_000;
+    }
+} 
\ No newline at end of file
@@ -1,20 +1,43 @@
 package com.example.acid_demo.controller;
 
+import com.example.acid_demo.config.SeedProperties;
+import com.example.acid_demo.config.TransferProperties;
+import com.example.acid_demo.dto.AccountSnapshot;
+import com.example.acid_demo.dto.BalanceAuditResult;
+import com.example.acid_demo.dto.RetryOutcome;
+import com.example.acid_demo.dto.SeedReport;
+import com.example.acid_demo.dto.TransactionPage;
+import com.example.acid_demo.dto.TransferRequest;
+import com.example.acid_demo.dto.TransferResult;
 import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
 import com.example.acid_demo.entity.TransactionLog;
 import com.example.acid_demo.repository.AccountRepository;
-import com.example.acid_demo.repository.TransactionLogRepository;
+import com.example.acid_demo.retry.TransactionRetryExecutor;
+import com.example.acid_demo.seed.AccountSeeder;
+import com.example.acid_demo.service.AccountCache;
+import com.example.acid_demo.service.BalanceAuditService;
+import com.example.acid_demo.service.OptimisticRetryTransferService;
+import com.example.acid_demo.service.StripedLedgerService;
+import com.example.acid_demo.service.TransactionHistoryService;
 import com.example.acid_demo.service.TransferService;
 import com.example.acid_demo.util.JsonLogger;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.math.BigDecimal;
+import java.io.BufferedOutputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 
 @RestController
 @RequestMapping("/api/acid")
@@ -23,46 +46,119 @@ import java.util.concurrent.CompletableFuture;
 public class AcidDemoController {
     
     private final TransferService transferService;
+    private final OptimisticRetryTransferService optimisticRetryTransferService;
+    private final TransactionRetryExecutor transactionRetryExecutor;
     private final AccountRepository accountRepository;
-    private final TransactionLogRepository transactionLogRepository;
+    private final AccountSeeder accountSeeder;
+    private final SeedProperties seedProperties;
+    private final TransactionHistoryService transactionHistoryService;
     private final JsonLogger jsonLogger;
+    private final TransferProperties transferProperties;
+    private final AccountCache accountCache;
+    private final StripedLedgerService stripedLedgerService;
+    private final BalanceAuditService balanceAuditService;
+    private final ExecutorService demoExecutor;
     
     /**
-     * Создание тестовых счетов
+     * Создание тестовых счетов. Пока работает леджер в памяти, отклоняется - очистить счета нельзя
      */
     @PostMapping("/accounts/init")
     public ResponseEntity<String> initAccounts() {
-        jsonLogger.logOperation("ИНИЦИАЛИЗАЦИЯ ТЕСТОВЫХ ДАННЫХ", Map.of(
+        jsonLogger.logOperation("ИНИЦИАЛИЗАЦИЯ ТЕСТОВЫХ ДАННЫХ", () -> Map.of(
             "операция", "Создание тестовых счетов"
         ));
         
-        accountRepository.deleteAll();
-        transactionLogRepository.deleteAll();
+        try {
+            accountSeeder.reset();
+        } catch (RuntimeException e) {
+            jsonLogger.logError("Инициализация тестовых данных отменена", () -> Map.of("ошибка", e.getMessage()));
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
         
-        Account acc1 = accountRepository.save(new Account("ACC001", new BigDecimal("1000.00")));
-        Account acc2 = accountRepository.save(new Account("ACC002", new BigDecimal("500.00")));
-        Account acc3 = accountRepository.save(new Account("ACC003", new BigDecimal("750.00")));
+        Account acc1 = accountRepository.save(new Account("ACC001", Money.valueOf("1000.00")));
+        Account acc2 = accountRepository.save(new Account("ACC002", Money.valueOf("500.00")));
+        Account acc3 = accountRepository.save(new Account("ACC003", Money.valueOf("750.00")));
         
-        jsonLogger.logInfo("Тестовые счета созданы", Map.of(
+        jsonLogger.logInfo("Тестовые счета созданы", () -> Map.of(
             "счета", List.of(
                 Map.of("номер", acc1.getAccountNumber(), "баланс", acc1.getBalance()),
                 Map.of("номер", acc2.getAccountNumber(), "баланс", acc2.getBalance()),
                 Map.of("номер", acc3.getAccountNumber(), "баланс", acc3.getBalance())
             ),
-            "общая_сумма", new BigDecimal("2250.00")
+            "общая_сумма", Money.valueOf("2250.00")
         ));
         
         return ResponseEntity.ok("Созданы 3 тестовых счёта");
     }
     
     /**
-     * Получить все счета
+     * Массовое заполнение счетов и истории переводов через COPY.
+     * Не заданные параметры берутся из acid.seed.*
+     */
+    @PostMapping("/accounts/seed")
+    public ResponseEntity<Map<String, Object>> seedAccounts(
+            @RequestParam(required = false) Integer accounts,
+            @RequestParam(required = false) SeedProperties.Distribution distribution,
+            @RequestParam(required = false) Money minBalance,
+            @RequestParam(required = false) Money maxBalance,
+            @RequestParam(required = false) Double shape,
+            @RequestParam(required = false) Long transactions,
+            @RequestParam(required = false) Integer historyDays,
+            @RequestParam(required = false) Boolean reset) {
+        
+        SeedProperties settings = new SeedProperties();
+        BeanUtils.copyProperties(seedProperties, settings);
+        if (accounts != null) {
+            settings.setAccounts(accounts);
+        }
+        if (distribution != null) {
+            settings.setDistribution(distribution);
+        }
+        if (minBalance != null) {
+            settings.setMinBalance(minBalance);
+        }
+        if (maxBalance != null) {
+            settings.setMaxBalance(maxBalance);
+        }
+        if (shape != null) {
+            settings.setShape(shape);
+        }
+        if (transactions != null) {
+            settings.setTransactions(transactions);
+        }
+        if (historyDays != null) {
+            settings.setHistory(Duration.ofDays(historyDays));
+        }
+        if (reset != null) {
+            settings.setReset(reset);
+        }
+        
+        try {
+            List<SeedReport> reports = accountSeeder.seed(settings);
+            return ResponseEntity.ok(Map.of(
+                    "status", "SUCCESS",
+                    "загружено", reports
+            ));
+        } catch (Exception e) {
+            Map<String, Object> response = Map.of(
+                    "status", "FAILED",
+                    "message", String.valueOf(e.getMessage()),
+                    "note", "Загрузка выполняется одной транзакцией и откатилась целиком"
+            );
+            
+            jsonLogger.logError("Массовое заполнение БД отменено", response);
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * Получить все счета. Мимо кэша счетов: это полный просмотр таблицы, а каждый перевод изменил бы закэшированный список
      */
     @GetMapping("/accounts")
     public List<Account> getAllAccounts() {
         List<Account> accounts = accountRepository.findAll();
         
-        jsonLogger.logInfo("Запрос всех счетов", Map.of(
+        jsonLogger.logInfo("Запрос всех счетов", () -> Map.of(
             "количество", accounts.size(),
             "счета", accounts.stream().map(acc -> Map.of(
                 "номер", acc.getAccountNumber(),
@@ -74,24 +170,140 @@ public class AcidDemoController {
         return accounts;
     }
     
+    /**
+     * Получить счёт по номеру (из кэша счетов)
+     */
+    @GetMapping("/accounts/{accountNumber}")
+    public ResponseEntity<AccountSnapshot> getAccount(@PathVariable String accountNumber) {
+        return accountCache.get(accountNumber)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Разбить баланс горячего счёта на корзины: параллельные зачисления перестают ждать одну строку accounts
+     */
+    @PostMapping("/accounts/{accountNumber}/stripe")
+    public ResponseEntity<Map<String, Object>> stripeAccount(@PathVariable String accountNumber,
+                                                             @RequestParam(defaultValue = "8") int buckets) {
+        try {
+            Account account = stripedLedgerService.stripe(accountNumber, buckets);
+            return ResponseEntity.ok(Map.of(
+                    "status", "SUCCESS",
+                    "счёт", accountNumber,
+                    "корзин", account.getBalanceBuckets(),
+                    "баланс", account.getBalance()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "status", "FAILED",
+                    "message", e.getMessage()
+            ));
+        }
+    }
+    
+    /**
+     * Собрать корзины счёта обратно в один баланс
+     */
+    @DeleteMapping("/accounts/{accountNumber}/stripe")
+    public ResponseEntity<Map<String, Object>> unstripeAccount(@PathVariable String accountNumber) {
+        try {
+            Account account = stripedLedgerService.unstripe(accountNumber);
+            return ResponseEntity.ok(Map.of(
+                    "status", "SUCCESS",
+                    "счёт", accountNumber,
+                    "баланс", account.getBalance()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "status", "FAILED",
+                    "message", e.getMessage()
+            ));
+        }
+    }
+    
+    /**
+     * Статистика кэша счетов
+     */
+    @GetMapping("/accounts/cache/stats")
+    public ResponseEntity<Map<String, Object>> getAccountCacheStats() {
+        return ResponseEntity.ok(accountCache.getStats());
+    }
+    
+    /**
+     * Сумма всех балансов из ledger_totals (поддерживается триггерами, accounts не читается)
+     */
+    @GetMapping("/accounts/total")
+    public ResponseEntity<Map<String, Object>> getTotalBalance() {
+        return ResponseEntity.ok(Map.of("общая_сумма", balanceAuditService.getTotal()));
+    }
+    
+    /**
+     * Сверка ledger_totals с фактической суммой балансов (агрегатный запрос в снимке REPEATABLE READ)
+     */
+    @GetMapping("/accounts/total/verify")
+    public ResponseEntity<BalanceAuditResult> verifyTotalBalance() {
+        return ResponseEntity.ok(balanceAuditService.verify());
+    }
+    
     /**
      * Получить историю транзакций
      */
     @GetMapping("/transactions")
-    public List<TransactionLog> getTransactions() {
-        List<TransactionLog> transactions = transactionLogRepository.findAll();
-        
-        jsonLogger.logInfo("Запрос истории транзакций", Map.of(
-            "количество", transactions.size(),
-            "успешных", transactions.stream()
-                .filter(t -> t.getStatus() == TransactionLog.TransactionStatus.SUCCESS)
-                .count(),
-            "неудачных", transactions.stream()
-                .filter(t -> t.getStatus() == TransactionLog.TransactionStatus.FAILED)
-                .count()
+    public TransactionPage getTransactions(
+            @RequestParam(required = false) String account,
+            @RequestParam(required = false) TransactionLog.TransactionStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeTimestamp,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "50") int limit) {
+        TransactionPage page = transactionHistoryService.findPage(account, status, since, beforeTimestamp, beforeId, limit);
+        
+        jsonLogger.logInfo("Запрос истории транзакций", () -> Map.of(
+            "счёт", account != null ? account : "все",
+            "статус", status != null ? status : "все",
+            "количество", page.getItems().size(),
+            "есть_следующая_страница", page.getNextCursor() != null
         ));
         
-        return transactions;
+        return page;
+    }
+    
+    /**
+     * Количество транзакций по статусам (GROUP BY в БД)
+     */
+    @GetMapping("/transactions/stats")
+    public ResponseEntity<Map<String, Object>> getTransactionStats() {
+        Map<TransactionLog.TransactionStatus, Long> counts = transactionHistoryService.countByStatus();
+        
+        Map<String, Object> response = Map.of(
+                "всего", counts.values().stream().mapToLong(Long::longValue).sum(),
+                "успешных", counts.getOrDefault(TransactionLog.TransactionStatus.SUCCESS, 0L),
+                "неудачных", counts.getOrDefault(TransactionLog.TransactionStatus.FAILED, 0L),
+                "по_статусам", counts
+        );
+        
+        jsonLogger.logInfo("Статистика транзакций", response);
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Потоковая выгрузка истории транзакций в NDJSON
+     */
+    @GetMapping(value = "/transactions/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam(required = false) String account,
+            @RequestParam(required = false) TransactionLog.TransactionStatus status) {
+        StreamingResponseBody body = out -> {
+            long exported = transactionHistoryService.exportNdjson(account, status, new BufferedOutputStream(out));
+            jsonLogger.logInfo("Выгрузка истории транзакций завершена", () -> Map.of(
+                "количество", exported
+            ));
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
     }
     
     /**
@@ -101,22 +313,30 @@ public class AcidDemoController {
     public ResponseEntity<Map<String, Object>> atomicTransfer(
             @RequestParam String from,
             @RequestParam String to,
-            @RequestParam BigDecimal amount) {
+            @RequestParam Money amount,
+            @RequestParam(defaultValue = "ENTITY") TransferService.TransferMode mode) {
         
-        jsonLogger.logOperation("API: АТОМАРНЫЙ ПЕРЕВОД", Map.of(
+        jsonLogger.logOperation("API: АТОМАРНЫЙ ПЕРЕВОД", () -> Map.of(
             "endpoint", "/transfer/atomic",
             "от", from,
             "кому", to,
-            "сумма", amount
+            "сумма", amount,
+            "режим", mode
         ));
         
         try {
-            transferService.transferMoney(from, to, amount);
+            switch (mode) {
+                case ENTITY -> transferService.transferMoney(from, to, amount);
+                case CONDITIONAL_UPDATE -> transferService.transferWithConditionalUpdate(from, to, amount);
+                case SERIALIZABLE -> transferService.transferSerializable(from, to, amount);
+                case REPEATABLE_READ -> transferService.transferRepeatableRead(from, to, amount);
+            }
             
             Map<String, Object> response = Map.of(
                     "status", "SUCCESS",
                     "message", "Перевод выполнен атомарно",
                     "демонстрация", "ATOMICITY",
+                    "режим", mode,
                     "результат", "Все операции выполнены успешно"
             );
             
@@ -136,6 +356,58 @@ public class AcidDemoController {
         }
     }
     
+    /**
+     * Статистика повторов транзакций @RetryableTransaction: попытки, отказы 40001/40P01, переходы на блокировки
+     */
+    @GetMapping("/transfer/retry/stats")
+    public Map<String, Object> transactionRetryStats() {
+        return transactionRetryExecutor.getStats();
+    }
+    
+    /**
+     * Пакетный перевод - много переводов в одной транзакции с упорядоченной блокировкой счетов
+     */
+    @PostMapping("/transfer/batch")
+    public ResponseEntity<Map<String, Object>> batchTransfer(@RequestBody List<TransferRequest> requests) {
+        
+        jsonLogger.logOperation("API: ПАКЕТНЫЙ ПЕРЕВОД", () -> Map.of(
+            "endpoint", "/transfer/batch",
+            "количество_переводов", requests.size()
+        ));
+        
+        try {
+            List<TransferResult> results = transferService.transferBatch(requests);
+            
+            long succeeded = results.stream()
+                    .filter(r -> r.getStatus() == TransactionLog.TransactionStatus.SUCCESS)
+                    .count();
+            
+            Map<String, Object> response = Map.of(
+                    "status", "SUCCESS",
+                    "message", "Пакет обработан в одной транзакции",
+                    "успешных", succeeded,
+                    "неудачных", results.size() - succeeded,
+                    "results", results
+            );
+            
+            jsonLogger.logInfo("Пакетный перевод выполнен", () -> Map.of(
+                "успешных", succeeded,
+                "неудачных", results.size() - succeeded
+            ));
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            Map<String, Object> response = Map.of(
+                    "status", "FAILED",
+                    "message", e.getMessage(),
+                    "note", "Транзакция пакета откатилась, состояние счетов не изменилось"
+            );
+            
+            jsonLogger.logError("Пакетный перевод отменён", response);
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
     /**
      * Демонстрация нарушения АТОМАРНОСТИ - перевод без транзакции
      */
@@ -143,10 +415,10 @@ public class AcidDemoController {
     public ResponseEntity<Map<String, Object>> nonAtomicTransfer(
             @RequestParam String from,
             @RequestParam String to,
-            @RequestParam BigDecimal amount,
+            @RequestParam Money amount,
             @RequestParam(defaultValue = "false") boolean simulateError) {
         
-        jsonLogger.logOperation("API: НЕАТОМАРНЫЙ ПЕРЕВОД", Map.of(
+        jsonLogger.logOperation("API: НЕАТОМАРНЫЙ ПЕРЕВОД", () -> Map.of(
             "endpoint", "/transfer/non-atomic",
             "от", from,
             "кому", to,
@@ -183,36 +455,27 @@ public class AcidDemoController {
     
     /**
      * Демонстрация оптимистичной блокировки
+     * retry=true - при конфликте версий перевод повторяется на сервере, retry=false - конфликт возвращается как FAILED
      */
     @PostMapping("/transfer/optimistic-lock")
     public ResponseEntity<Map<String, Object>> optimisticLockDemo(
             @RequestParam String from,
             @RequestParam String to,
-            @RequestParam BigDecimal amount) {
+            @RequestParam Money amount,
+            @RequestParam(defaultValue = "true") boolean retry) {
         
-        jsonLogger.logOperation("API: ДЕМОНСТРАЦИЯ ОПТИМИСТИЧНОЙ БЛОКИРОВКИ", Map.of(
+        jsonLogger.logOperation("API: ДЕМОНСТРАЦИЯ ОПТИМИСТИЧНОЙ БЛОКИРОВКИ", () -> Map.of(
             "endpoint", "/transfer/optimistic-lock",
-            "описание", "Запуск двух параллельных переводов"
+            "описание", "Запуск двух параллельных переводов",
+            "повтор_при_конфликте", retry
         ));
         
         // Запускаем два параллельных перевода для демонстрации конфликта
-        CompletableFuture<String> transfer1 = CompletableFuture.supplyAsync(() -> {
-            try {
-                transferService.transferWithOptimisticLock(from, to, amount);
-                return "SUCCESS";
-            } catch (Exception e) {
-                return "FAILED: " + e.getMessage();
-            }
-        });
+        CompletableFuture<String> transfer1 = CompletableFuture.supplyAsync(
+                () -> optimisticTransfer(from, to, amount, retry), demoExecutor);
         
-        CompletableFuture<String> transfer2 = CompletableFuture.supplyAsync(() -> {
-            try {
-                transferService.transferWithOptimisticLock(to, from, amount.divide(new BigDecimal(2)));
-                return "SUCCESS";
-            } catch (Exception e) {
-                return "FAILED: " + e.getMessage();
-            }
-        });
+        CompletableFuture<String> transfer2 = CompletableFuture.supplyAsync(
+                () -> optimisticTransfer(to, from, amount.divide(2), retry), demoExecutor);
         
         String result1 = transfer1.join();
         String result2 = transfer2.join();
@@ -225,11 +488,13 @@ public class AcidDemoController {
                 ),
                 "transfer2", Map.of(
                     "направление", to + " → " + from,
-                    "сумма", amount.divide(new BigDecimal(2)),
+                    "сумма", amount.divide(2),
                     "результат", result2
                 ),
                 "тип_блокировки", "OPTIMISTIC",
-                "note", "При оптимистичной блокировке одна из транзакций может не выполниться из-за конфликта версий"
+                "note", retry
+                        ? "При конфликте версий перевод повторяется на сервере с экспоненциальной задержкой"
+                        : "При оптимистичной блокировке одна из транзакций может не выполниться из-за конфликта версий"
         );
         
         jsonLogger.logInfo("Результаты оптимистичной блокировки", response);
@@ -237,6 +502,29 @@ public class AcidDemoController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Статистика повторов при конфликтах оптимистичной блокировки
+     */
+    @GetMapping("/transfer/optimistic-lock/stats")
+    public Map<String, Object> optimisticRetryStats() {
+        return optimisticRetryTransferService.getStats();
+    }
+    
+    private String optimisticTransfer(String from, String to, Money amount, boolean retry) {
+        try {
+            if (!retry) {
+                optimisticRetryTransferService.transferOnce(from, to, amount);
+                return "SUCCESS";
+            }
+            RetryOutcome outcome = optimisticRetryTransferService.transfer(from, to, amount);
+            return outcome.isPessimisticFallback()
+                    ? "SUCCESS (попыток: " + outcome.getAttempts() + ", PESSIMISTIC)"
+                    : "SUCCESS (попыток: " + outcome.getAttempts() + ")";
+        } catch (Exception e) {
+            return "FAILED: " + e.getMessage();
+        }
+    }
+    
     /**
      * Демонстрация пессимистичной блокировки
      */
@@ -244,9 +532,20 @@ public class AcidDemoController {
     public ResponseEntity<Map<String, Object>> pessimisticLockDemo(
             @RequestParam String from,
             @RequestParam String to,
-            @RequestParam BigDecimal amount) {
+            @RequestParam Money amount,
+            @RequestParam(required = false) Long lockTimeoutMs) {
+        
+        if (lockTimeoutMs != null && lockTimeoutMs < 0) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "status", "FAILED",
+                    "message", "lockTimeoutMs не может быть отрицательным (0 - NOWAIT)"
+            ));
+        }
+        Duration lockTimeout = lockTimeoutMs != null
+                ? Duration.ofMillis(lockTimeoutMs)
+                : transferProperties.getLockTimeout();
         
-        jsonLogger.logOperation("API: ДЕМОНСТРАЦИЯ ПЕССИМИСТИЧНОЙ БЛОКИРОВКИ", Map.of(
+        jsonLogger.logOperation("API: ДЕМОНСТРАЦИЯ ПЕССИМИСТИЧНОЙ БЛОКИРОВКИ", () -> Map.of(
             "endpoint", "/transfer/pessimistic-lock",
             "описание", "Запуск двух параллельных переводов с блокировкой"
         ));
@@ -256,23 +555,23 @@ public class AcidDemoController {
         // Запускаем два параллельных перевода
         CompletableFuture<String> transfer1 = CompletableFuture.supplyAsync(() -> {
             try {
-                transferService.transferWithPessimisticLock(from, to, amount);
+                transferService.transferWithPessimisticLock(from, to, amount, lockTimeout);
                 return "SUCCESS";
             } catch (Exception e) {
                 return "FAILED: " + e.getMessage();
             }
-        });
+        }, demoExecutor);
         
         CompletableFuture<String> transfer2 = CompletableFuture.supplyAsync(() -> {
             try {
                 // Небольшая задержка чтобы второй перевод начался после первого
                 Thread.sleep(50);
-                transferService.transferWithPessimisticLock(to, from, amount.divide(new BigDecimal(2)));
+                transferService.transferWithPessimisticLock(to, from, amount.divide(2), lockTimeout);
                 return "SUCCESS";
             } catch (Exception e) {
                 return "FAILED: " + e.getMessage();
             }
-        });
+        }, demoExecutor);
         
         String result1 = transfer1.join();
         String result2 = transfer2.join();
@@ -287,10 +586,11 @@ public class AcidDemoController {
                 ),
                 "transfer2", Map.of(
                     "направление", to + " → " + from,
-                    "сумма", amount.divide(new BigDecimal(2)),
+                    "сумма", amount.divide(2),
                     "результат", result2
                 ),
                 "тип_блокировки", "PESSIMISTIC",
+                "таймаут_блокировки", lockTimeout == null ? "без ограничения" : lockTimeout.toMillis() + "ms",
                 "duration", duration + "ms",
                 "note", "При пессимистичной блокировке транзакции выполняются последовательно"
         );
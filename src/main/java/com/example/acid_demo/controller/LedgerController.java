@@ -0,0 +1,76 @@
+package com.example.acid_demo.controller;
+
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.ledger.LedgerEngine;
+import com.example.acid_demo.util.JsonLogger;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Переводы через леджер в памяти (acid.ledger.enabled=true)
+ */
+@RestController
+@RequestMapping("/api/acid")
+@ConditionalOnProperty(name = "acid.ledger.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class LedgerController {
+    
+    private final LedgerEngine ledgerEngine;
+    private final JsonLogger jsonLogger;
+    
+    /**
+     * Перевод через леджер: ответ приходит после записи перевода в журнал, в БД он попадает при checkpoint
+     */
+    @PostMapping("/transfer/ledger")
+    public ResponseEntity<Map<String, Object>> ledgerTransfer(
+            @RequestParam String from,
+            @RequestParam String to,
+            @RequestParam Money amount) {
+        
+        try {
+            ledgerEngine.transfer(from, to, amount);
+            
+            Map<String, Object> response = Map.of(
+                    "status", "SUCCESS",
+                    "message", "Перевод записан в журнал леджера",
+                    "note", "В accounts и transaction_logs перевод попадёт при следующем checkpoint"
+            );
+            
+            jsonLogger.logInfo("Перевод в леджере успешен", response);
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            Map<String, Object> response = Map.of(
+                    "status", "FAILED",
+                    "message", String.valueOf(e.getMessage())
+            );
+            
+            jsonLogger.logError("Перевод в леджере отклонён", response);
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    @GetMapping("/ledger/accounts/{accountNumber}")
+    public ResponseEntity<Map<String, Object>> ledgerBalance(@PathVariable String accountNumber) {
+        try {
+            return ResponseEntity.ok(Map.of(
+                    "счёт", accountNumber,
+                    "баланс", ledgerEngine.getBalance(accountNumber)
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "status", "FAILED",
+                    "message", String.valueOf(e.getMessage())
+            ));
+        }
+    }
+    
+    @GetMapping("/ledger/stats")
+    public Map<String, Object> ledgerStats() {
+        return ledgerEngine.getStats();
+    }
+} 
\ No newline at end of file
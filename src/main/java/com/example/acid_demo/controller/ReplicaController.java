@@ -0,0 +1,28 @@
+package com.example.acid_demo.controller;
+
+import com.example.acid_demo.service.ReplicaLagMonitor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Состояние реплики для чтения (acid.replica.enabled=true)
+ */
+@RestController
+@RequestMapping("/api/acid")
+@ConditionalOnProperty(prefix = "acid.replica", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class ReplicaController {
+    
+    private final ReplicaLagMonitor replicaLagMonitor;
+    
+    @GetMapping("/replica/stats")
+    public ResponseEntity<Map<String, Object>> replicaStats() {
+        return ResponseEntity.ok(replicaLagMonitor.getStats());
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.example.acid_demo.dto;
+
+import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
+import lombok.Value;
+
+/**
+ * Неизменяемый снимок счёта для кэша. version позволяет сравнить снимок с текущим состоянием в БД
+ */
+@Value
+public class AccountSnapshot {
+    
+    Long id;
+    String accountNumber;
+    Money balance;
+    Long version;
+    
+    public static AccountSnapshot from(Account account) {
+        return new AccountSnapshot(account.getId(), account.getAccountNumber(), account.getBalance(), account.getVersion());
+    }
+    
+    public boolean isNewerThan(AccountSnapshot other) {
+        return other == null || other.version == null || (version != null && version > other.version);
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.example.acid_demo.dto;
+
+import com.example.acid_demo.entity.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceAuditResult {
+    
+    private Money ledgerTotal; // ledger_totals с несвёрнутыми изменениями
+    
+    private Money balancesTotal; // фактическая сумма балансов
+    
+    private boolean consistent;
+    
+    private List<Integer> mismatchedShards;
+    
+    private long durationMs;
+}
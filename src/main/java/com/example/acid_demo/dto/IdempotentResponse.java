@@ -0,0 +1,21 @@
+package com.example.acid_demo.dto;
+
+import com.example.acid_demo.entity.IdempotencyKey;
+import lombok.Value;
+
+/**
+ * Сохранённый ответ на запрос с Idempotency-Key, возвращается на повторы запроса
+ */
+@Value
+public class IdempotentResponse {
+    
+    String requestHash;
+    int status;
+    String contentType;
+    String body;
+    
+    public static IdempotentResponse from(IdempotencyKey key) {
+        return new IdempotentResponse(key.getRequestHash(), key.getResponseStatus(), key.getContentType(),
+                key.getResponseBody());
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.example.acid_demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetryOutcome {
+    
+    private int attempts;
+    
+    private boolean pessimisticFallback; // перевод выполнен с пессимистичной блокировкой
+} 
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.example.acid_demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Результат загрузки одной таблицы через COPY
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SeedReport {
+    
+    private String table;
+    
+    private long rows;
+    
+    private long durationMs;
+    
+    private long rowsPerSecond;
+    
+    public static SeedReport of(String table, long rows, long durationNanos) {
+        long durationMs = durationNanos / 1_000_000;
+        long rowsPerSecond = durationNanos > 0 ? rows * 1_000_000_000L / durationNanos : rows;
+        return new SeedReport(table, rows, durationMs, rowsPerSecond);
+    }
+}
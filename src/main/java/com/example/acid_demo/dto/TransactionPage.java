@@ -0,0 +1,30 @@
+package com.example.acid_demo.dto;
+
+import com.example.acid_demo.entity.TransactionLog;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Страница истории транзакций. nextCursor передаётся в следующий запрос
+ * как beforeTimestamp/beforeId, null - страниц больше нет
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionPage {
+    
+    private List<TransactionLog> items;
+    private Cursor nextCursor;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Cursor {
+        private LocalDateTime timestamp;
+        private Long id;
+    }
+} 
\ No newline at end of file
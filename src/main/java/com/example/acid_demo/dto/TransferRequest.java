@@ -0,0 +1,18 @@
+package com.example.acid_demo.dto;
+
+import com.example.acid_demo.entity.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferRequest {
+    
+    private String from;
+    
+    private String to;
+    
+    private Money amount;
+} 
\ No newline at end of file
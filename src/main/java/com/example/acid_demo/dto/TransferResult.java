@@ -0,0 +1,25 @@
+package com.example.acid_demo.dto;
+
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.entity.TransactionLog.TransactionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferResult {
+    
+    private int index;
+    
+    private String from;
+    
+    private String to;
+    
+    private Money amount;
+    
+    private TransactionStatus status;
+    
+    private String message; // причина отказа для FAILED
+} 
\ No newline at end of file
@@ -1,34 +1,68 @@
 package com.example.acid_demo.entity;
 
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
-
-import java.math.BigDecimal;
+import lombok.Setter;
+import org.hibernate.annotations.Formula;
 
 @Entity
 @Table(name = "accounts")
+@EntityListeners(AccountCacheListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Account {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledSequence(name = "accounts_seq")
     private Long id;
     
     @Column(unique = true, nullable = false)
     private String accountNumber;
     
     @Column(nullable = false)
-    private BigDecimal balance;
+    private Money balance;
     
     @Version
     private Long version; // для оптимистичной блокировки
     
-    public Account(String accountNumber, BigDecimal balance) {
+    /**
+     * Число корзин баланса: 0 - баланс в поле balance, N > 0 - баланс разбит на N строк
+     * account_balance_buckets и меняется через StripedLedgerService
+     */
+    @Column(nullable = false)
+    private int balanceBuckets;
+    
+    @Formula("CASE WHEN balance_buckets > 0 THEN " +
+            "(SELECT COALESCE(SUM(b.balance), 0) FROM account_balance_buckets b WHERE b.account_id = id) END")
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Money bucketsBalance;
+    
+    public Account(String accountNumber, Money balance) {
         this.accountNumber = accountNumber;
         this.balance = balance;
     }
+    
+    public boolean isStriped() {
+        return balanceBuckets > 0;
+    }
+    
+    /**
+     * Логический баланс: для счёта с разбивкой - сумма корзин на момент загрузки счёта
+     */
+    public Money getBalance() {
+        return isStriped() ? bucketsBalance : balance;
+    }
+    
+    public void setBalance(Money balance) {
+        if (isStriped()) {
+            throw new IllegalStateException("Баланс счёта " + accountNumber + " разбит на корзины и меняется только по корзинам");
+        }
+        this.balance = balance;
+    }
 } 
\ No newline at end of file
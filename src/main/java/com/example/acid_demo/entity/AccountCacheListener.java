@@ -0,0 +1,33 @@
+package com.example.acid_demo.entity;
+
+import com.example.acid_demo.dto.AccountSnapshot;
+import com.example.acid_demo.service.AccountCache;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Передаёт изменения счетов в {@link AccountCache}. Снимок делается при flush,
+ * а в кэш попадает только после COMMIT.
+ * Кэш получается лениво: слушатель создаётся вместе с EntityManagerFactory, от которой зависит сам кэш
+ */
+@Component
+@RequiredArgsConstructor
+public class AccountCacheListener {
+    
+    private final ObjectProvider<AccountCache> accountCache;
+    
+    @PostPersist
+    @PostUpdate
+    public void onSave(Account account) {
+        accountCache.getObject().putAfterCommit(AccountSnapshot.from(account));
+    }
+    
+    @PostRemove
+    public void onRemove(Account account) {
+        accountCache.getObject().evictAfterCommit(account.getAccountNumber());
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,57 @@
+package com.example.acid_demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ключ идемпотентности запроса перевода и сохранённый ответ на него.
+ * requestHash - SHA-256 метода, пути, параметров и тела запроса: повтор с тем же ключом,
+ * но другими параметрами отклоняется
+ */
+@Entity
+@Table(name = "idempotency_keys")
+@Data
+@NoArgsConstructor
+public class IdempotencyKey {
+    
+    @Id
+    @Column(name = "idempotency_key")
+    private String key;
+    
+    @Column(nullable = false)
+    private String requestHash;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+    
+    private Integer responseStatus;
+    
+    private String contentType;
+    
+    @Column(columnDefinition = "text")
+    private String responseBody;
+    
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+    
+    /**
+     * Когда ключ занят запросом, который его выполняет; при перехвате брошенного ключа обновляется
+     */
+    @Column(nullable = false)
+    private LocalDateTime claimedAt;
+    
+    /**
+     * Когда перевод запроса зафиксирован - ставится в транзакции перевода, до сохранения ответа
+     */
+    private LocalDateTime appliedAt;
+    
+    private LocalDateTime completedAt;
+    
+    public enum Status {
+        IN_PROGRESS, COMPLETED
+    }
+} 
\ No newline at end of file
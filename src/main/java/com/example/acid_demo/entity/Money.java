@@ -0,0 +1,130 @@
+package com.example.acid_demo.entity;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+
+/**
+ * Денежная сумма с фиксированной точкой: long копеек (SCALE знаков после запятой, как у numeric(38,2) в БД).
+ * Сложение и сравнение не создают BigDecimal, переполнение long - ArithmeticException.
+ * BigDecimal создаётся только на границе: в MoneyConverter при обмене с БД и при выводе в JSON.
+ * Суммы больше Long.MAX_VALUE копеек (~9.2e16 в рублях) не поддерживаются
+ */
+public record Money(long minorUnits) implements Comparable<Money> {
+    
+    public static final int SCALE = 2;
+    public static final Money ZERO = new Money(0);
+    
+    private static final long MINOR_PER_UNIT = 100;
+    
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+    
+    /**
+     * Точное преобразование: дробная часть мельче копейки - ошибка, а не округление
+     */
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static Money of(BigDecimal amount) {
+        try {
+            return ofMinor(amount.movePointRight(SCALE).longValueExact());
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException("Сумма должна быть в копейках и не больше " + new Money(Long.MAX_VALUE)
+                    + ": " + amount.toPlainString());
+        }
+    }
+    
+    /**
+     * Разбор строки вида "-123.45" без BigDecimal. Используется и Spring MVC для @RequestParam Money
+     */
+    public static Money valueOf(String text) {
+        int length = text.length();
+        int position = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            position++;
+        }
+        
+        // накопление с минусом: у long отрицательных значений на одно больше, иначе Long.MIN_VALUE копеек не разобрать
+        long units = 0;
+        int digits = 0;
+        while (position < length && text.charAt(position) != '.') {
+            units = Math.subtractExact(Math.multiplyExact(units, 10), digit(text, position++));
+            digits++;
+        }
+        long fraction = 0;
+        int fractionDigits = 0;
+        if (position < length) {
+            position++;
+            while (position < length) {
+                if (++fractionDigits > SCALE) {
+                    throw new NumberFormatException("Сумма должна быть в копейках: " + text);
+                }
+                fraction = fraction * 10 + digit(text, position++);
+            }
+        }
+        if (digits + fractionDigits == 0) {
+            throw new NumberFormatException("Не число: \"" + text + "\"");
+        }
+        for (int i = fractionDigits; i < SCALE; i++) {
+            fraction *= 10;
+        }
+        long minor = Math.subtractExact(Math.multiplyExact(units, MINOR_PER_UNIT), fraction);
+        return ofMinor(negative ? minor : Math.negateExact(minor));
+    }
+    
+    public Money plus(Money other) {
+        return ofMinor(Math.addExact(minorUnits, other.minorUnits));
+    }
+    
+    public Money minus(Money other) {
+        return ofMinor(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+    
+    /**
+     * Деление с отбрасыванием долей копейки
+     */
+    public Money divide(long divisor) {
+        return ofMinor(minorUnits / divisor);
+    }
+    
+    public boolean isLessThan(Money other) {
+        return minorUnits < other.minorUnits;
+    }
+    
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+    
+    public Money min(Money other) {
+        return isLessThan(other) ? this : other;
+    }
+    
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+    
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+    
+    @Override
+    public String toString() {
+        long units = minorUnits / MINOR_PER_UNIT;
+        long fraction = Math.abs(minorUnits % MINOR_PER_UNIT);
+        String sign = minorUnits < 0 && units == 0 ? "-" : "";
+        return sign + units + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+    
+    private static int digit(String text, int position) {
+        char c = text.charAt(position);
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException("Не число: \"" + text + "\"");
+        }
+        return c - '0';
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.example.acid_demo.entity;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Идентификатор из последовательности БД с pooled-оптимизатором Hibernate.
+ * В отличие от IDENTITY не отключает JDBC-батчинг INSERT'ов
+ */
+@IdGeneratorType(PooledSequenceGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface PooledSequence {
+    
+    /**
+     * Имя последовательности в БД
+     */
+    String name();
+} 
\ No newline at end of file
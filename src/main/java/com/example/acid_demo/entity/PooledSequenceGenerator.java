@@ -0,0 +1,38 @@
+package com.example.acid_demo.entity;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Генератор для {@link PooledSequence}: размер блока идентификаторов берётся из настройки
+ * {@value #ALLOCATION_SIZE_SETTING}, тип оптимизатора (pooled / pooled-lo) - из стандартной
+ * настройки hibernate.id.optimizer.pooled.preferred.
+ * INCREMENT BY последовательности в БД должен совпадать с размером блока
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+    
+    public static final String ALLOCATION_SIZE_SETTING = "acid.id.allocation_size";
+    public static final int DEFAULT_ALLOCATION_SIZE = 50;
+    
+    private final String sequenceName;
+    
+    public PooledSequenceGenerator(PooledSequence config) {
+        this.sequenceName = config.name();
+    }
+    
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException {
+        int allocationSize = serviceRegistry.requireService(ConfigurationService.class)
+                .getSetting(ALLOCATION_SIZE_SETTING, StandardConverters.INTEGER, DEFAULT_ALLOCATION_SIZE);
+        
+        parameters.put(SEQUENCE_PARAM, sequenceName);
+        parameters.put(INCREMENT_PARAM, String.valueOf(allocationSize));
+        super.configure(type, parameters, serviceRegistry);
+    }
+} 
\ No newline at end of file
@@ -5,7 +5,6 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
@@ -16,7 +15,7 @@ import java.time.LocalDateTime;
 public class TransactionLog {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledSequence(name = "transaction_logs_seq")
     private Long id;
     
     @Column(nullable = false)
@@ -26,7 +25,7 @@ public class TransactionLog {
     private String toAccount;
     
     @Column(nullable = false)
-    private BigDecimal amount;
+    private Money amount;
     
     @Column(nullable = false)
     private LocalDateTime timestamp;
@@ -36,6 +35,11 @@ public class TransactionLog {
     
     private String errorMessage;
     
+    /**
+     * Idempotency-Key запроса, выполнившего перевод (null - запрос без ключа)
+     */
+    private String idempotencyKey;
+    
     public enum TransactionStatus {
         SUCCESS, FAILED, ROLLBACK
     }
@@ -0,0 +1,56 @@
+package com.example.acid_demo.entity;
+
+import com.example.acid_demo.entity.TransactionLog.TransactionStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outbox для аудита: пишется в транзакции перевода, в transaction_logs переносится пачками.
+ * Таблица без вторичных индексов, поэтому INSERT в ней дешевле, чем в transaction_logs
+ */
+@Entity
+@Table(name = "transaction_log_outbox")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionLogOutbox {
+    
+    @Id
+    @PooledSequence(name = "transaction_log_outbox_seq")
+    private Long id;
+    
+    @Column(nullable = false)
+    private String fromAccount;
+    
+    @Column(nullable = false)
+    private String toAccount;
+    
+    @Column(nullable = false)
+    private Money amount;
+    
+    @Column(nullable = false)
+    private LocalDateTime timestamp;
+    
+    @Enumerated(EnumType.STRING)
+    private TransactionStatus status;
+    
+    private String errorMessage;
+    
+    private String idempotencyKey;
+    
+    public static TransactionLogOutbox from(TransactionLog transactionLog) {
+        TransactionLogOutbox outbox = new TransactionLogOutbox();
+        outbox.setFromAccount(transactionLog.getFromAccount());
+        outbox.setToAccount(transactionLog.getToAccount());
+        outbox.setAmount(transactionLog.getAmount());
+        outbox.setTimestamp(transactionLog.getTimestamp() != null ? transactionLog.getTimestamp() : LocalDateTime.now());
+        outbox.setStatus(transactionLog.getStatus());
+        outbox.setErrorMessage(transactionLog.getErrorMessage());
+        outbox.setIdempotencyKey(transactionLog.getIdempotencyKey());
+        return outbox;
+    }
+} 
\ No newline at end of file
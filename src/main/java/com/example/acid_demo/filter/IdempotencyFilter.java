@@ -0,0 +1,219 @@
+package com.example.acid_demo.filter;
+
+import com.example.acid_demo.dto.IdempotentResponse;
+import com.example.acid_demo.service.IdempotencyService;
+import com.example.acid_demo.util.IdempotencyContext;
+import com.example.acid_demo.util.JsonLogger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Идемпотентность POST /api/acid/transfer/** по заголовку Idempotency-Key.
+ * Первый запрос с ключом выполняется, его ответ сохраняется; повторы с тем же ключом и теми же
+ * параметрами получают сохранённый ответ (с заголовком Idempotent-Replayed) без обращения к счетам.
+ * 409 - запрос с этим ключом ещё выполняется, 422 - ключ уже использован с другими параметрами.
+ * Ответ 5xx не сохраняется: ключ освобождается, и повтор выполнится заново.
+ * Ключ запроса, не завершённого за acid.idempotency.claim-timeout (процесс упал), занимает повтор;
+ * если перевод того запроса уже зафиксирован, повтор получает ответ об этом и перевод не выполняет.
+ * Запросы без заголовка обрабатываются как раньше
+ */
+@Component
+@RequiredArgsConstructor
+public class IdempotencyFilter extends OncePerRequestFilter {
+    
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    
+    private static final String TRANSFER_PATH = "/api/acid/transfer/";
+    private static final int MAX_KEY_LENGTH = 255;
+    
+    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
+    private final JsonLogger jsonLogger;
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || !request.getRequestURI().startsWith(TRANSFER_PATH)
+                || request.getHeader(HEADER) == null;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(HEADER);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            writeError(response, HttpStatus.BAD_REQUEST,
+                    "Idempotency-Key должен быть непустым и не длиннее " + MAX_KEY_LENGTH + " символов");
+            return;
+        }
+        
+        // тело формы контейнер разбирает в параметры сам: прочитанное заранее, оно пропало бы для @RequestParam
+        boolean form = isForm(request);
+        HttpServletRequest filtered = form ? request : new CachedBodyRequest(request);
+        String requestHash = fingerprint(filtered, form ? new byte[0] : ((CachedBodyRequest) filtered).body);
+        IdempotencyService.Claim claim = idempotencyService.claim(key, requestHash);
+        
+        switch (claim.status()) {
+            case COMPLETED -> {
+                jsonLogger.logInfo("Повтор запроса с Idempotency-Key, возвращён сохранённый ответ", () -> Map.of(
+                    "ключ", key,
+                    "endpoint", request.getRequestURI()
+                ));
+                replay(response, claim.response());
+            }
+            case IN_PROGRESS -> writeError(response, HttpStatus.CONFLICT,
+                    "Запрос с этим Idempotency-Key ещё выполняется");
+            case MISMATCH -> writeError(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Idempotency-Key уже использован с другими параметрами запроса");
+            case ACQUIRED -> execute(key, claim.claimedAt(), requestHash, filtered, response, chain);
+        }
+    }
+    
+    private void execute(String key, LocalDateTime claimedAt, String requestHash, HttpServletRequest request,
+                         HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        ContentCachingResponseWrapper cachingResponse = new ContentCachingResponseWrapper(response);
+        boolean completed = false;
+        IdempotencyContext.set(key, claimedAt);
+        try {
+            chain.doFilter(request, cachingResponse);
+            if (cachingResponse.getStatus() < 500) {
+                idempotencyService.complete(key, claimedAt, new IdempotentResponse(requestHash, cachingResponse.getStatus(),
+                        cachingResponse.getContentType(),
+                        new String(cachingResponse.getContentAsByteArray(), StandardCharsets.UTF_8)));
+                completed = true;
+            }
+        } finally {
+            IdempotencyContext.clear();
+            if (!completed) {
+                idempotencyService.release(key, claimedAt);
+            }
+            cachingResponse.copyBodyToResponse();
+        }
+    }
+    
+    private void replay(HttpServletResponse response, IdempotentResponse stored) throws IOException {
+        response.setStatus(stored.getStatus());
+        if (stored.getContentType() != null) {
+            response.setContentType(stored.getContentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        byte[] body = stored.getBody() != null ? stored.getBody().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+    
+    private void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getOutputStream(), Map.of(
+                "status", "FAILED",
+                "message", message
+        ));
+    }
+    
+    private static boolean isForm(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType != null
+                && contentType.toLowerCase(Locale.ROOT).startsWith(MediaType.APPLICATION_FORM_URLENCODED_VALUE);
+    }
+    
+    /**
+     * SHA-256 от пути, параметров запроса (из строки запроса и формы, по именам) и тела
+     */
+    static String fingerprint(HttpServletRequest request, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(request.getRequestURI().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '?');
+            new TreeMap<>(request.getParameterMap()).forEach((name, values) -> {
+                for (String value : values) {
+                    digest.update((name + '=' + value + '&').getBytes(StandardCharsets.UTF_8));
+                }
+            });
+            digest.update((byte) '\n');
+            digest.update(body);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Запрос с телом, прочитанным заранее: тело нужно для отпечатка запроса до того, как его прочитает контроллер.
+     * Для форм не используется - их тело разбирает в параметры контейнер
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        
+        private final byte[] body;
+        
+        private CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+        
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+                
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+                
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+                
+                @Override
+                public int read() {
+                    return input.read();
+                }
+                
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+        
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.UTF_8.name();
+            return new BufferedReader(new InputStreamReader(getInputStream(), Charset.forName(encoding)));
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.example.acid_demo.filter;
+
+import com.example.acid_demo.util.ReadRoutingContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Заголовок Read-Consistency: primary - все чтения запроса идут в основную БД, а не на реплику.
+ * Нужен клиенту, который только что выполнил перевод и должен увидеть его результат
+ * (реплика применяет изменения с задержкой)
+ */
+@Component
+@ConditionalOnProperty(prefix = "acid.replica", name = "enabled", havingValue = "true")
+public class ReadConsistencyFilter extends OncePerRequestFilter {
+    
+    public static final String HEADER = "Read-Consistency";
+    public static final String PRIMARY = "primary";
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !PRIMARY.equalsIgnoreCase(request.getHeader(HEADER));
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ReadRoutingContext.forcePrimary();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadRoutingContext.clear();
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,85 @@
+package com.example.acid_demo.ledger;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32C;
+
+/**
+ * Запись журнала леджера - один выполненный перевод.
+ * Счета хранятся по id из accounts, а не по индексу в памяти: индексы назначаются заново при каждом запуске.
+ * Формат: [int длина тела][int CRC32C тела][тело: sequence, from, to, amount, время (мкс UTC), длина ключа, ключ]
+ */
+record JournalEntry(long sequence, long fromAccountId, long toAccountId, long amountMinor,
+                    LocalDateTime timestamp, String idempotencyKey) {
+
+    static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int FIXED_BODY_SIZE = 5 * Long.BYTES + Short.BYTES;
+
+    int size() {
+        return HEADER_SIZE + FIXED_BODY_SIZE + keyBytes().length;
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        byte[] key = keyBytes();
+        int start = buffer.position();
+        buffer.position(start + HEADER_SIZE);
+        buffer.putLong(sequence);
+        buffer.putLong(fromAccountId);
+        buffer.putLong(toAccountId);
+        buffer.putLong(amountMinor);
+        buffer.putLong(toEpochMicros(timestamp));
+        buffer.putShort((short) key.length);
+        buffer.put(key);
+        int bodyLength = buffer.position() - start - HEADER_SIZE;
+        buffer.putInt(start, bodyLength);
+        buffer.putInt(start + Integer.BYTES, crc(buffer, start + HEADER_SIZE, bodyLength));
+    }
+
+    /**
+     * Читает запись с текущей позиции. null - дальше записей нет: нули предразмеченного файла
+     * или недописанная при сбое запись (длина не помещается или не сошлась CRC)
+     */
+    static JournalEntry readFrom(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE + FIXED_BODY_SIZE) {
+            return null;
+        }
+        int bodyLength = buffer.getInt(start);
+        int crc = buffer.getInt(start + Integer.BYTES);
+        if (bodyLength < FIXED_BODY_SIZE || bodyLength > buffer.remaining() - HEADER_SIZE
+                || crc != crc(buffer, start + HEADER_SIZE, bodyLength)) {
+            return null;
+        }
+        buffer.position(start + HEADER_SIZE);
+        long sequence = buffer.getLong();
+        long from = buffer.getLong();
+        long to = buffer.getLong();
+        long amount = buffer.getLong();
+        LocalDateTime timestamp = fromEpochMicros(buffer.getLong());
+        byte[] key = new byte[buffer.getShort()];
+        buffer.get(key);
+        return new JournalEntry(sequence, from, to, amount, timestamp,
+                key.length == 0 ? null : new String(key, StandardCharsets.UTF_8));
+    }
+
+    private byte[] keyBytes() {
+        return idempotencyKey == null ? new byte[0] : idempotencyKey.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private static long toEpochMicros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + timestamp.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromEpochMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+} 
\ No newline at end of file
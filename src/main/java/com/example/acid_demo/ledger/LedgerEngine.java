@@ -0,0 +1,629 @@
+package com.example.acid_demo.ledger;
+
+import com.example.acid_demo.config.LedgerProperties;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.entity.TransactionLog;
+import com.example.acid_demo.entity.TransactionLog.TransactionStatus;
+import com.example.acid_demo.repository.LedgerCheckpointRepository;
+import com.example.acid_demo.repository.LedgerCheckpointRepository.AccountBalance;
+import com.example.acid_demo.repository.TransactionLogJdbcRepository;
+import com.example.acid_demo.service.AccountCache;
+import com.example.acid_demo.service.TransactionLogWriter;
+import com.example.acid_demo.util.IdempotencyContext;
+import com.example.acid_demo.util.JsonLogger;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Леджер в памяти - альтернатива TransferService для режима высокой пропускной способности (acid.ledger.enabled).
+ * Балансы хранятся в long[] в копейках по индексу счёта, индекс по номеру счёта - HashMap.
+ * Меняет их только поток-писатель, который забирает команды из неблокирующей очереди
+ * (ConcurrentLinkedQueue: много производителей, один потребитель), поэтому блокировок счетов нет.
+ * Перевод подтверждается вызывающему потоку только после force() журнала: писатель применяет
+ * пачку переводов и сбрасывает её на диск одним вызовом (group commit).
+ * Раз в acid.ledger.checkpoint-interval изменения балансов и TransactionLog выполненных переводов
+ * переносятся в accounts и transaction_logs одной транзакцией вместе с номером последней записи журнала.
+ * При запуске балансы читаются из accounts, и к ним применяются записи журнала после checkpoint.
+ * Счёт, созданный после запуска, читается из БД в вызывающем потоке и передаётся писателю вместе с командой -
+ * сам писатель к БД не обращается, и запросы с несуществующими счетами не задерживают остальные переводы.
+ * Пока леджер включён, балансы его счетов меняет только он: изменения мимо леджера он в памяти не увидит.
+ * Поэтому TransferService, IsolationDemoService и StripedLedgerService отклоняют счета, которые он обслуживает (serves),
+ * а AccountSeeder не очищает счета, пока леджер работает
+ */
+@Component
+@ConditionalOnProperty(name = "acid.ledger.enabled", havingValue = "true")
+@Slf4j
+public class LedgerEngine implements SmartLifecycle {
+    
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    
+    private final LedgerCheckpointRepository checkpointRepository;
+    private final TransactionLogJdbcRepository transactionLogJdbcRepository;
+    private final TransactionLogWriter transactionLogWriter;
+    private final TransactionTemplate transactionTemplate;
+    private final AccountCache accountCache;
+    private final JsonLogger jsonLogger;
+    private final LedgerProperties properties;
+    private final DistributionSummary batchSize;
+    private final Timer forceTimer;
+    
+    private final Queue<Command> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    // номера зарегистрированных счетов для вызывающих потоков; пополняет только писатель
+    private final Set<String> registered = ConcurrentHashMap.newKeySet();
+    
+    // состояние ниже меняет только поток-писатель (до его запуска и после остановки - поток start/stop)
+    private final Map<String, Integer> indexByNumber = new HashMap<>();
+    private final Map<Long, Integer> indexById = new HashMap<>();
+    private long[] balances = new long[1024];
+    private long[] deltas = new long[1024];
+    private long[] accountIds = new long[1024];
+    private String[] accountNumbers = new String[1024];
+    private int accountCount;
+    private final BitSet dirty = new BitSet();
+    private List<TransactionLog> pendingLogs = new ArrayList<>();
+    private final List<CompletableFuture<Void>> unacknowledged = new ArrayList<>();
+    private long lastSequence;
+    private LedgerJournal journal;
+    
+    // checkpoint, не перенесённый в БД из-за ошибки, - объединяется со следующим
+    private Checkpoint carryOver;
+    // переводов в carryOver: при acid.ledger.max-checkpoint-backlog новые переводы отклоняются
+    private volatile int checkpointBacklog;
+    private volatile long checkpointSequence;
+    
+    private volatile boolean running;
+    private volatile Throwable failure;
+    private Thread writerThread;
+    
+    public LedgerEngine(LedgerCheckpointRepository checkpointRepository,
+                        TransactionLogJdbcRepository transactionLogJdbcRepository,
+                        TransactionLogWriter transactionLogWriter, TransactionTemplate transactionTemplate,
+                        AccountCache accountCache, JsonLogger jsonLogger, LedgerProperties properties,
+                        MeterRegistry meterRegistry) {
+        this.checkpointRepository = checkpointRepository;
+        this.transactionLogJdbcRepository = transactionLogJdbcRepository;
+        this.transactionLogWriter = transactionLogWriter;
+        this.transactionTemplate = transactionTemplate;
+        this.accountCache = accountCache;
+        this.jsonLogger = jsonLogger;
+        this.properties = properties;
+        this.batchSize = DistributionSummary.builder("acid.ledger.batch.size")
+                .description("Переводов в одном force() журнала")
+                .register(meterRegistry);
+        this.forceTimer = Timer.builder("acid.ledger.journal.force")
+                .description("Длительность force() журнала")
+                .register(meterRegistry);
+        Gauge.builder("acid.ledger.queue.size", queued, AtomicInteger::get)
+                .description("Команд в очереди писателя")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Перевод с той же семантикой, что TransferService.transferMoney: счета должны существовать,
+     * при нехватке средств перевод отклоняется, на каждый перевод - TransactionLog (SUCCESS или FAILED).
+     * Дополнительно отклоняются неположительные суммы.
+     * Возвращает управление после записи перевода в журнал
+     */
+    public void transfer(String fromAccountNumber, String toAccountNumber, Money amount) {
+        jsonLogger.logOperation("НАЧАЛО ПЕРЕВОДА В ЛЕДЖЕРЕ", () -> Map.of(
+            "от", fromAccountNumber,
+            "кому", toAccountNumber,
+            "сумма", amount,
+            "тип", "LEDGER",
+            "время", LocalDateTime.now()
+        ));
+        
+        TransactionLog transactionLog = new TransactionLog();
+        transactionLog.setFromAccount(fromAccountNumber);
+        transactionLog.setToAccount(toAccountNumber);
+        transactionLog.setAmount(amount);
+        transactionLog.setTimestamp(LocalDateTime.now());
+        transactionLog.setIdempotencyKey(IdempotencyContext.currentKey());
+        
+        TransferCommand command;
+        try {
+            if (!amount.isPositive()) {
+                throw new RuntimeException("Сумма перевода должна быть положительной");
+            }
+            AccountBalance from = resolve(fromAccountNumber, "Счёт отправителя не найден");
+            AccountBalance to = resolve(toAccountNumber, "Счёт получателя не найден");
+            command = new TransferCommand(transactionLog, amount.minorUnits(), from, to, new CompletableFuture<>());
+            submit(command, true);
+        } catch (RuntimeException e) {
+            logFailure(transactionLog, e);
+            throw e;
+        }
+        
+        try {
+            command.result().get(properties.getAckTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalStateException unknown) {
+                // ошибка журнала: перевод мог успеть попасть на диск, FAILED не пишем
+                throw unknown;
+            }
+            RuntimeException rejection = (RuntimeException) e.getCause();
+            logFailure(transactionLog, rejection);
+            throw rejection;
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Нет подтверждения записи в журнал за " + properties.getAckTimeout()
+                    + ", результат перевода неизвестен");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание подтверждения прервано, результат перевода неизвестен");
+        }
+    }
+    
+    /**
+     * Баланс счёта в леджере с учётом всех подтверждённых переводов
+     */
+    public Money getBalance(String accountNumber) {
+        BalanceQuery query = new BalanceQuery(accountNumber, resolve(accountNumber, "Счёт не найден"),
+                new CompletableFuture<>());
+        submit(query, false);
+        try {
+            Long balance = query.result().get(properties.getAckTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            if (balance == null) {
+                throw new RuntimeException("Счёт не найден");
+            }
+            return Money.ofMinor(balance);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Леджер не ответил за " + properties.getAckTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание ответа леджера прервано");
+        }
+    }
+    
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("работает", running);
+        stats.put("в_очереди", queued.get());
+        stats.put("пачек_журнала", batchSize.count());
+        stats.put("средний_размер_пачки", batchSize.mean());
+        stats.put("сегментов_журнала", journal != null ? journal.segmentCount() : 0);
+        stats.put("checkpoint", checkpointSequence);
+        stats.put("не_перенесено_в_БД", checkpointBacklog);
+        if (failure != null) {
+            stats.put("ошибка", failure.getMessage());
+        }
+        return stats;
+    }
+    
+    /**
+     * Перенос изменений в БД. Писатель отдаёт накопленные изменения между пачками,
+     * транзакция в БД выполняется уже в этом потоке и не задерживает переводы
+     */
+    @Scheduled(initialDelayString = "${acid.ledger.checkpoint-interval:1s}",
+            fixedDelayString = "${acid.ledger.checkpoint-interval:1s}")
+    public void checkpoint() {
+        if (!running) {
+            return;
+        }
+        CheckpointCommand command = new CheckpointCommand(new CompletableFuture<>());
+        try {
+            submit(command, false);
+            persist(command.result().get(properties.getAckTimeout().toMillis(), TimeUnit.MILLISECONDS));
+        } catch (ExecutionException | TimeoutException | RuntimeException e) {
+            log.error("Checkpoint леджера не выполнен", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    @Override
+    public void start() {
+        try {
+            for (AccountBalance account : checkpointRepository.findUnstripedAccounts()) {
+                register(account);
+            }
+            long sequence = checkpointRepository.findSequence();
+            checkpointSequence = sequence;
+            journal = new LedgerJournal(Path.of(properties.getJournalDirectory()),
+                    (int) properties.getSegmentSize().toBytes());
+            int[] replayed = new int[1];
+            lastSequence = journal.recover(sequence, entry -> {
+                replay(entry);
+                replayed[0]++;
+            });
+            if (replayed[0] > 0) {
+                log.info("Леджер восстановлен из журнала: применено {} переводов после checkpoint {}",
+                        replayed[0], sequence);
+                persist(takeCheckpoint());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть журнал леджера", e);
+        }
+        
+        running = true;
+        writerThread = new Thread(this::writeLoop, "ledger-writer");
+        writerThread.start();
+        log.info("Леджер запущен: счетов {}, последняя запись журнала {}", accountCount, lastSequence);
+    }
+    
+    @Override
+    public void stop() {
+        if (!halt()) {
+            return;
+        }
+        if (failure != null) {
+            return;
+        }
+        try {
+            // писатель остановлен - состояние читается в этом потоке
+            persist(takeCheckpoint());
+        } catch (RuntimeException e) {
+            log.error("Checkpoint леджера при остановке не выполнен, изменения будут восстановлены из журнала", e);
+        }
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * Счёт зарегистрирован в леджере: его баланс меняет только леджер
+     */
+    public boolean serves(String accountNumber) {
+        return registered.contains(accountNumber);
+    }
+    
+    /**
+     * Останавливаемся после веб-сервера, чтобы все принятые переводы успели подтвердиться
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+    
+    /**
+     * Остановка писателя без checkpoint - как при сбое процесса: изменения остаются только в журнале
+     */
+    boolean halt() {
+        if (writerThread == null) {
+            return false;
+        }
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writerThread = null;
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.warn("Ошибка закрытия журнала леджера: {}", e.getMessage());
+        }
+        return true;
+    }
+    
+    private void submit(Command command, boolean bounded) {
+        if (!running) {
+            throw new IllegalStateException(failure != null
+                    ? "Леджер остановлен после ошибки журнала: " + failure.getMessage()
+                    : "Леджер остановлен");
+        }
+        if (bounded && checkpointBacklog >= properties.getMaxCheckpointBacklog()) {
+            throw new RuntimeException("Леджер не успевает перенести переводы в БД, новые переводы временно отклоняются");
+        }
+        if (queued.incrementAndGet() > properties.getQueueCapacity() && bounded) {
+            queued.decrementAndGet();
+            throw new RuntimeException("Очередь леджера переполнена");
+        }
+        queue.offer(command);
+        LockSupport.unpark(writerThread);
+    }
+    
+    private void writeLoop() {
+        try {
+            while (running) {
+                Command command = queue.poll();
+                if (command == null) {
+                    commitBatch();
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    continue;
+                }
+                queued.decrementAndGet();
+                switch (command) {
+                    case TransferCommand transfer -> {
+                        apply(transfer);
+                        if (unacknowledged.size() >= properties.getMaxBatchSize()) {
+                            commitBatch();
+                        }
+                    }
+                    case BalanceQuery query -> {
+                        commitBatch();
+                        Integer index = indexOf(query.accountNumber(), query.account());
+                        query.result().complete(index != null ? balances[index] : null);
+                    }
+                    case CheckpointCommand checkpoint -> {
+                        commitBatch();
+                        checkpoint.result().complete(takeCheckpoint());
+                    }
+                }
+            }
+            commitBatch();
+        } catch (IOException | RuntimeException | Error e) {
+            failure = e;
+            running = false;
+            log.error("Ошибка журнала леджера, леджер остановлен до перезапуска", e);
+            IllegalStateException unknown = new IllegalStateException(
+                    "Ошибка журнала леджера, результат перевода неизвестен: " + e.getMessage(), e);
+            unacknowledged.forEach(result -> result.completeExceptionally(unknown));
+            unacknowledged.clear();
+        }
+        
+        Command rest;
+        while ((rest = queue.poll()) != null) {
+            queued.decrementAndGet();
+            rest.result().completeExceptionally(new IllegalStateException("Леджер остановлен"));
+        }
+    }
+    
+    private void apply(TransferCommand command) throws IOException {
+        TransactionLog transactionLog = command.transactionLog();
+        Integer from = indexOf(transactionLog.getFromAccount(), command.fromAccount());
+        if (from == null) {
+            command.result().completeExceptionally(new RuntimeException("Счёт отправителя не найден"));
+            return;
+        }
+        Integer to = indexOf(transactionLog.getToAccount(), command.toAccount());
+        if (to == null) {
+            command.result().completeExceptionally(new RuntimeException("Счёт получателя не найден"));
+            return;
+        }
+        long amount = command.amountMinor();
+        if (balances[from] < amount) {
+            command.result().completeExceptionally(new RuntimeException("Недостаточно средств на счёте"));
+            return;
+        }
+        if (balances[to] > Long.MAX_VALUE - amount) {
+            command.result().completeExceptionally(new RuntimeException("Превышен максимальный баланс счёта"));
+            return;
+        }
+        
+        JournalEntry entry = new JournalEntry(lastSequence + 1, accountIds[from], accountIds[to], amount,
+                transactionLog.getTimestamp(), transactionLog.getIdempotencyKey());
+        journal.append(entry);
+        lastSequence = entry.sequence();
+        move(from, to, amount);
+        transactionLog.setStatus(TransactionStatus.SUCCESS);
+        pendingLogs.add(transactionLog);
+        unacknowledged.add(command.result());
+    }
+    
+    /**
+     * Запись журнала после checkpoint при восстановлении: перевод уже был проверен и подтверждён
+     */
+    private void replay(JournalEntry entry) {
+        Integer from = indexById.get(entry.fromAccountId());
+        Integer to = indexById.get(entry.toAccountId());
+        if (from == null || to == null) {
+            log.warn("Перевод {} из журнала пропущен: счёт {} удалён", entry.sequence(),
+                    from == null ? entry.fromAccountId() : entry.toAccountId());
+            return;
+        }
+        move(from, to, entry.amountMinor());
+        TransactionLog transactionLog = new TransactionLog();
+        transactionLog.setFromAccount(accountNumbers[from]);
+        transactionLog.setToAccount(accountNumbers[to]);
+        transactionLog.setAmount(Money.ofMinor(entry.amountMinor()));
+        transactionLog.setTimestamp(entry.timestamp());
+        transactionLog.setIdempotencyKey(entry.idempotencyKey());
+        transactionLog.setStatus(TransactionStatus.SUCCESS);
+        pendingLogs.add(transactionLog);
+    }
+    
+    private void move(int from, int to, long amount) {
+        balances[from] -= amount;
+        balances[to] += amount;
+        deltas[from] -= amount;
+        deltas[to] += amount;
+        dirty.set(from);
+        dirty.set(to);
+    }
+    
+    private void commitBatch() {
+        if (unacknowledged.isEmpty()) {
+            return;
+        }
+        forceTimer.record(journal::force);
+        batchSize.record(unacknowledged.size());
+        unacknowledged.forEach(result -> result.complete(null));
+        unacknowledged.clear();
+    }
+    
+    /**
+     * Счёт, ещё не известный леджеру, читается из БД в вызывающем потоке. null - счёт уже зарегистрирован
+     */
+    private AccountBalance resolve(String accountNumber, String notFound) {
+        if (registered.contains(accountNumber)) {
+            return null;
+        }
+        return checkpointRepository.findUnstripedAccount(accountNumber)
+                .orElseThrow(() -> new RuntimeException(notFound));
+    }
+    
+    /**
+     * Индекс счёта; счёт, прочитанный вызывающим потоком, регистрируется, если его ещё нет
+     * (тот же счёт могли прочитать несколько потоков - используется первый)
+     */
+    private Integer indexOf(String accountNumber, AccountBalance resolved) {
+        Integer index = indexByNumber.get(accountNumber);
+        if (index == null && resolved != null) {
+            index = register(resolved);
+        }
+        return index;
+    }
+    
+    private int register(AccountBalance account) {
+        if (accountCount == balances.length) {
+            int capacity = balances.length * 2;
+            balances = Arrays.copyOf(balances, capacity);
+            deltas = Arrays.copyOf(deltas, capacity);
+            accountIds = Arrays.copyOf(accountIds, capacity);
+            accountNumbers = Arrays.copyOf(accountNumbers, capacity);
+        }
+        int index = accountCount++;
+        balances[index] = account.balance().minorUnits();
+        accountIds[index] = account.id();
+        accountNumbers[index] = account.accountNumber();
+        indexByNumber.put(account.accountNumber(), index);
+        indexById.put(account.id(), index);
+        registered.add(account.accountNumber());
+        return index;
+    }
+    
+    private Checkpoint takeCheckpoint() {
+        List<AccountDelta> changed = new ArrayList<>(dirty.cardinality());
+        for (int index = dirty.nextSetBit(0); index >= 0; index = dirty.nextSetBit(index + 1)) {
+            if (deltas[index] != 0) {
+                changed.add(new AccountDelta(accountIds[index], accountNumbers[index], deltas[index]));
+                deltas[index] = 0;
+            }
+        }
+        dirty.clear();
+        List<TransactionLog> logs = pendingLogs;
+        pendingLogs = new ArrayList<>();
+        return new Checkpoint(lastSequence, changed, logs);
+    }
+    
+    /**
+     * Балансы, логи переводов и номер записи журнала - одной транзакцией: после сбоя в БД либо всё
+     * до checkpoint, либо ничего, и журнал проигрывается ровно с того места, где остановился checkpoint
+     */
+    private synchronized void persist(Checkpoint checkpoint) {
+        Checkpoint merged = carryOver != null ? carryOver.merge(checkpoint) : checkpoint;
+        if (merged.sequence() == checkpointSequence && merged.accounts().isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Object[]> updates = merged.accounts().stream()
+                        .map(delta -> new Object[]{Money.ofMinor(delta.deltaMinor()).toBigDecimal(), delta.accountId()})
+                        .toList();
+                int[] counts = checkpointRepository.addToBalances(updates);
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0) {
+                        checkSkipped(merged.accounts().get(i));
+                    }
+                }
+                transactionLogJdbcRepository.insertAll(merged.logs());
+                checkpointRepository.saveSequence(merged.sequence());
+                accountCache.evictAfterCommit(merged.accounts().stream()
+                        .map(AccountDelta::accountNumber)
+                        .toArray(String[]::new));
+            });
+            carryOver = null;
+            checkpointBacklog = 0;
+            checkpointSequence = merged.sequence();
+            journal.deleteSegmentsUpTo(merged.sequence());
+            log.debug("Checkpoint леджера {}: счетов {}, переводов {}", merged.sequence(),
+                    merged.accounts().size(), merged.logs().size());
+        } catch (RuntimeException e) {
+            carryOver = merged;
+            checkpointBacklog = merged.logs().size();
+            throw e;
+        }
+    }
+    
+    /**
+     * Изменение баланса не применено. Удалённый счёт пропускается, как при восстановлении из журнала.
+     * Если баланс счёта успели разбить на корзины, checkpoint откатывается: изменение остаётся в журнале
+     * и carryOver и будет перенесено после DELETE /accounts/{accountNumber}/stripe
+     */
+    private void checkSkipped(AccountDelta delta) {
+        if (checkpointRepository.isStriped(delta.accountId())) {
+            throw new IllegalStateException("Баланс счёта " + delta.accountNumber()
+                    + " разбит на корзины, изменения леджера по нему не перенесены");
+        }
+        log.warn("Счёт {} не найден при checkpoint леджера", delta.accountNumber());
+    }
+    
+    private void logFailure(TransactionLog transactionLog, RuntimeException e) {
+        jsonLogger.logError("ОШИБКА при переводе в леджере", () -> Map.of(
+            "от", transactionLog.getFromAccount(),
+            "кому", transactionLog.getToAccount(),
+            "сумма", transactionLog.getAmount(),
+            "ошибка", String.valueOf(e.getMessage()),
+            "статус", "FAILED"
+        ));
+        transactionLog.setStatus(TransactionStatus.FAILED);
+        transactionLog.setErrorMessage(e.getMessage());
+        transactionLogWriter.write(transactionLog);
+    }
+    
+    private sealed interface Command permits TransferCommand, BalanceQuery, CheckpointCommand {
+        
+        CompletableFuture<?> result();
+    }
+    
+    /**
+     * fromAccount, toAccount - счета, прочитанные из БД вызывающим потоком, null - счёт уже зарегистрирован
+     */
+    private record TransferCommand(TransactionLog transactionLog, long amountMinor, AccountBalance fromAccount,
+                                   AccountBalance toAccount, CompletableFuture<Void> result) implements Command {
+    }
+    
+    private record BalanceQuery(String accountNumber, AccountBalance account,
+                                CompletableFuture<Long> result) implements Command {
+    }
+    
+    private record CheckpointCommand(CompletableFuture<Checkpoint> result) implements Command {
+    }
+    
+    private record AccountDelta(long accountId, String accountNumber, long deltaMinor) {
+    }
+    
+    private record Checkpoint(long sequence, List<AccountDelta> accounts, List<TransactionLog> logs) {
+        
+        Checkpoint merge(Checkpoint next) {
+            Map<Long, AccountDelta> byId = new LinkedHashMap<>();
+            for (AccountDelta delta : accounts) {
+                byId.put(delta.accountId(), delta);
+            }
+            for (AccountDelta delta : next.accounts()) {
+                byId.merge(delta.accountId(), delta, (a, b) ->
+                        new AccountDelta(a.accountId(), a.accountNumber(), a.deltaMinor() + b.deltaMinor()));
+            }
+            List<TransactionLog> allLogs = new ArrayList<>(logs);
+            allLogs.addAll(next.logs());
+            return new Checkpoint(next.sequence(), new ArrayList<>(byId.values()), allLogs);
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,186 @@
+package com.example.acid_demo.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Журнал упреждающей записи леджера: сегменты фиксированного размера, отображённые в память.
+ * Имя сегмента - номер его первой записи (journal-00000000000000000001.seg).
+ * append() только копирует запись в отображение, force() сбрасывает на диск всё дописанное
+ * с прошлого force() - одним вызовом на пачку переводов (group commit).
+ * Пишет в журнал только поток-писатель LedgerEngine, удаляет старые сегменты поток checkpoint
+ */
+@Slf4j
+final class LedgerJournal implements Closeable {
+    
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d{20})\\.seg");
+    private static final byte[] ZEROS = new byte[64 * 1024];
+    
+    private final Path directory;
+    private final int segmentSize;
+    private final NavigableMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+    
+    private FileChannel channel;
+    private MappedByteBuffer current;
+    private int forcedPosition;
+    
+    LedgerJournal(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+    
+    /**
+     * Открывает журнал: читает все сегменты, передаёт в consumer записи после checkpointSequence
+     * и встаёт на конец последней целой записи. Недописанный при сбое хвост затирается нулями.
+     * Возвращает номер последней записи журнала (checkpointSequence, если записей после него нет)
+     */
+    long recover(long checkpointSequence, Consumer<JournalEntry> consumer) throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.put(Long.parseLong(matcher.group(1)), file);
+                }
+            });
+        }
+        
+        if (segments.isEmpty()) {
+            openSegment(checkpointSequence + 1);
+            return checkpointSequence;
+        }
+        if (segments.firstKey() > checkpointSequence + 1) {
+            throw new IllegalStateException("В журнале нет записей " + (checkpointSequence + 1) + ".."
+                    + (segments.firstKey() - 1) + ", восстановление невозможно");
+        }
+        
+        long lastSequence = segments.firstKey() - 1;
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            if (segment.getKey() != lastSequence + 1) {
+                throw new IllegalStateException("Сегмент " + segment.getValue() + " начинается с записи "
+                        + segment.getKey() + ", ожидалась " + (lastSequence + 1));
+            }
+            map(segment.getValue());
+            JournalEntry entry;
+            while ((entry = JournalEntry.readFrom(current)) != null && entry.sequence() == lastSequence + 1) {
+                lastSequence = entry.sequence();
+                if (entry.sequence() > checkpointSequence) {
+                    consumer.accept(entry);
+                }
+            }
+            if (!segment.getKey().equals(segments.lastKey())) {
+                channel.close();
+            }
+        }
+        
+        if (lastSequence < checkpointSequence) {
+            // журнал целиком старше checkpoint (например, каталог журнала сменили) - новые записи в новом сегменте
+            channel.close();
+            openSegment(checkpointSequence + 1);
+            return checkpointSequence;
+        }
+        
+        int end = current.position();
+        while (current.hasRemaining()) {
+            current.put(ZEROS, 0, Math.min(ZEROS.length, current.remaining()));
+        }
+        current.force();
+        current.position(end);
+        forcedPosition = end;
+        return lastSequence;
+    }
+    
+    void append(JournalEntry entry) throws IOException {
+        int size = entry.size();
+        if (size > segmentSize) {
+            throw new IllegalArgumentException("Запись журнала (" + size + " байт) больше сегмента");
+        }
+        if (current.remaining() < size) {
+            force();
+            channel.close();
+            openSegment(entry.sequence());
+        }
+        entry.writeTo(current);
+    }
+    
+    /**
+     * Сбрасывает на диск записи, добавленные после предыдущего force()
+     */
+    void force() {
+        int position = current.position();
+        if (position > forcedPosition) {
+            current.force(forcedPosition, position - forcedPosition);
+            forcedPosition = position;
+        }
+    }
+    
+    /**
+     * Удаляет сегменты, все записи которых не новее checkpoint. Текущий сегмент не удаляется
+     */
+    void deleteSegmentsUpTo(long checkpointSequence) {
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            Long next = segments.higherKey(segment.getKey());
+            if (next == null || next - 1 > checkpointSequence) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(segment.getValue());
+                segments.remove(segment.getKey());
+                log.debug("Удалён сегмент журнала {}", segment.getValue());
+            } catch (IOException e) {
+                log.warn("Не удалось удалить сегмент журнала {}: {}", segment.getValue(), e.getMessage());
+                return;
+            }
+        }
+    }
+    
+    int segmentCount() {
+        return segments.size();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            force();
+            channel.close();
+        }
+    }
+    
+    private void openSegment(long firstSequence) throws IOException {
+        Path file = directory.resolve(String.format("journal-%020d.seg", firstSequence));
+        map(file);
+        segments.put(firstSequence, file);
+        // новый файл должен пережить сбой вместе с записью о нём в каталоге
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        } catch (IOException e) {
+            log.debug("fsync каталога журнала не поддерживается: {}", e.getMessage());
+        }
+    }
+    
+    private void map(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            // новый сегмент заполнен нулями целиком: конец журнала - первая запись с неверной CRC
+            channel.write(ByteBuffer.allocate(1), segmentSize - 1);
+            channel.force(true);
+        }
+        current = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        forcedPosition = 0;
+    }
+} 
\ No newline at end of file
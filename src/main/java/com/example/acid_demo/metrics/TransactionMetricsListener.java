@@ -0,0 +1,104 @@
+package com.example.acid_demo.metrics;
+
+import io.micrometer.core.instrument.Meter.MeterProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики транзакций Spring (регистрируется в менеджере транзакций автоконфигурацией Spring Boot).
+ * Учитываются только физические транзакции - вложенные в уже открытую транзакцию вызовы не считаются.
+ * - acid.transaction - время от BEGIN до окончания транзакции;
+ * - acid.transaction.commit - время фазы COMMIT (flush Hibernate и COMMIT в БД).
+ * Теги: name - метод с @Transactional (например TransferService.transferMoney),
+ * outcome - commit, rollback или commit_failed (откат из-за ошибки при COMMIT, например конфликта версий).
+ * Счётчики COMMIT/ROLLBACK по методам - это _count таймера acid.transaction
+ */
+@Component
+public class TransactionMetricsListener implements TransactionExecutionListener {
+    
+    private static final String UNNAMED = "unnamed";
+    
+    private final MeterProvider<Timer> transactionTimer;
+    private final MeterProvider<Timer> commitTimer;
+    private final Map<TransactionExecution, Phase> active = new ConcurrentHashMap<>();
+    
+    public TransactionMetricsListener(MeterRegistry meterRegistry) {
+        this.transactionTimer = Timer.builder("acid.transaction")
+                .description("Длительность транзакции от BEGIN до COMMIT/ROLLBACK")
+                .withRegistry(meterRegistry);
+        this.commitTimer = Timer.builder("acid.transaction.commit")
+                .description("Длительность фазы COMMIT")
+                .withRegistry(meterRegistry);
+    }
+    
+    @Override
+    public void afterBegin(TransactionExecution transaction, Throwable beginFailure) {
+        if (beginFailure == null) {
+            active.put(transaction, new Phase(System.nanoTime()));
+        }
+    }
+    
+    @Override
+    public void beforeCommit(TransactionExecution transaction) {
+        Phase phase = active.get(transaction);
+        if (phase != null) {
+            phase.commitStartedAt = System.nanoTime();
+        }
+    }
+    
+    @Override
+    public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+        finish(transaction, commitFailure == null ? "commit" : "commit_failed");
+    }
+    
+    @Override
+    public void afterRollback(TransactionExecution transaction, Throwable rollbackFailure) {
+        Phase phase = active.get(transaction);
+        // откат после beforeCommit - COMMIT не удался и транзакция откачена
+        finish(transaction, phase != null && phase.commitStartedAt != 0 ? "commit_failed" : "rollback");
+    }
+    
+    private void finish(TransactionExecution transaction, String outcome) {
+        Phase phase = active.remove(transaction);
+        if (phase == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        String name = shortName(transaction.getTransactionName());
+        transactionTimer.withTags("name", name, "outcome", outcome).record(now - phase.startedAt,
+                TimeUnit.NANOSECONDS);
+        if (phase.commitStartedAt != 0) {
+            commitTimer.withTags("name", name, "outcome", outcome).record(now - phase.commitStartedAt,
+                    TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    /**
+     * com.example.acid_demo.service.TransferService.transferMoney -> TransferService.transferMoney
+     */
+    private static String shortName(String transactionName) {
+        if (transactionName == null || transactionName.isEmpty()) {
+            return UNNAMED;
+        }
+        int method = transactionName.lastIndexOf('.');
+        int type = method > 0 ? transactionName.lastIndexOf('.', method - 1) : -1;
+        return transactionName.substring(type + 1);
+    }
+    
+    private static final class Phase {
+        
+        private final long startedAt;
+        private volatile long commitStartedAt;
+        
+        private Phase(long startedAt) {
+            this.startedAt = startedAt;
+        }
+    }
+} 
\ No newline at end of file
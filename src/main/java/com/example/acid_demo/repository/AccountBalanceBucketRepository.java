@@ -0,0 +1,96 @@
+package com.example.acid_demo.repository;
+
+import com.example.acid_demo.entity.Money;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Корзины баланса счетов с разбивкой (account_balance_buckets).
+ * Номер корзины для зачисления и быстрого списания - random % balance_buckets, вычисляется в том же UPDATE,
+ * поэтому число корзин не нужно читать отдельным запросом. Строка accounts при этом только читается и не блокируется
+ */
+@Repository
+@RequiredArgsConstructor
+public class AccountBalanceBucketRepository {
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public record Bucket(long accountId, int bucket, Money balance) {
+    }
+    
+    /**
+     * Зачисление в корзину random % N. 0 - счёта нет или баланс не разбит
+     */
+    public int credit(String accountNumber, Money amount, int random) {
+        return jdbcTemplate.update("""
+                UPDATE account_balance_buckets b SET balance = b.balance + ?
+                FROM accounts a
+                WHERE a.account_number = ? AND b.account_id = a.id
+                  AND b.bucket = ? % NULLIF(a.balance_buckets, 0)
+                """, amount.toBigDecimal(), accountNumber, random);
+    }
+    
+    /**
+     * Списание из одной корзины random % N, если в ней достаточно средств
+     */
+    public int debitIfSufficientFunds(String accountNumber, Money amount, int random) {
+        return jdbcTemplate.update("""
+                UPDATE account_balance_buckets b SET balance = b.balance - ?
+                FROM accounts a
+                WHERE a.account_number = ? AND b.account_id = a.id
+                  AND b.bucket = ? % NULLIF(a.balance_buckets, 0) AND b.balance >= ?
+                """, amount.toBigDecimal(), accountNumber, random, amount.toBigDecimal());
+    }
+    
+    /**
+     * Блокирует все корзины счёта в порядке номеров - так же их блокируют параллельные списания,
+     * поэтому взаимной блокировки между ними нет
+     */
+    public List<Bucket> lockAll(String accountNumber) {
+        return jdbcTemplate.query("""
+                SELECT b.account_id, b.bucket, b.balance
+                FROM account_balance_buckets b JOIN accounts a ON a.id = b.account_id
+                WHERE a.account_number = ?
+                ORDER BY b.bucket
+                FOR UPDATE OF b
+                """, (rs, rowNum) -> new Bucket(rs.getLong(1), rs.getInt(2), Money.of(rs.getBigDecimal(3))), accountNumber);
+    }
+    
+    /**
+     * Блокирует строку счёта и возвращает число корзин (0 - баланс не разбит), пусто - счёта нет.
+     * Читается мимо контекста персистентности: загруженная ранее сущность могла устареть
+     */
+    public Optional<Integer> lockLayout(String accountNumber) {
+        return jdbcTemplate.query("SELECT balance_buckets FROM accounts WHERE account_number = ? FOR UPDATE",
+                (rs, rowNum) -> rs.getInt(1), accountNumber).stream().findFirst();
+    }
+    
+    public void debit(long accountId, int bucket, Money amount) {
+        jdbcTemplate.update("UPDATE account_balance_buckets SET balance = balance - ? WHERE account_id = ? AND bucket = ?",
+                amount.toBigDecimal(), accountId, bucket);
+    }
+    
+    public void createAll(long accountId, List<Money> balances) {
+        List<Object[]> rows = new ArrayList<>(balances.size());
+        for (int i = 0; i < balances.size(); i++) {
+            rows.add(new Object[]{accountId, i, balances.get(i).toBigDecimal()});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO account_balance_buckets (account_id, bucket, balance) VALUES (?, ?, ?)", rows);
+    }
+    
+    /**
+     * Удаляет корзины счёта и возвращает их сумму
+     */
+    public Money deleteAll(long accountId) {
+        return Money.of(jdbcTemplate.queryForObject("""
+                WITH deleted AS (DELETE FROM account_balance_buckets WHERE account_id = ? RETURNING balance)
+                SELECT COALESCE(SUM(balance), 0) FROM deleted
+                """, BigDecimal.class, accountId));
+    }
+} 
\ No newline at end of file
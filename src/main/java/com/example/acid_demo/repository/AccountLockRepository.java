@@ -0,0 +1,21 @@
+package com.example.acid_demo.repository;
+
+import com.example.acid_demo.entity.Account;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Блокировка счетов с таймаутом ожидания, задаваемым на каждый вызов
+ */
+public interface AccountLockRepository {
+    
+    /**
+     * Блокирует счета одним SELECT ... ORDER BY id FOR UPDATE.
+     * lockTimeout: null - ждать без ограничения, 0 - NOWAIT, иначе - lock_timeout до конца транзакции.
+     * У счетов с балансом, разбитым на корзины, вместо строки accounts блокируются все корзины -
+     * после строк счетов, в порядке id счёта
+     */
+    List<Account> lockAllByAccountNumbers(Collection<String> accountNumbers, Duration lockTimeout);
+} 
\ No newline at end of file
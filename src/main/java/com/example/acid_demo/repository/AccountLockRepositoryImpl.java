@@ -0,0 +1,95 @@
+package com.example.acid_demo.repository;
+
+import com.example.acid_demo.entity.Account;
+import io.micrometer.core.instrument.Meter.MeterProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+class AccountLockRepositoryImpl implements AccountLockRepository {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    // время SELECT ... FOR UPDATE: ожидание блокировок строк плюс сам запрос
+    private final MeterProvider<Timer> lockAcquisitionTimer;
+    
+    AccountLockRepositoryImpl(MeterRegistry meterRegistry) {
+        this.lockAcquisitionTimer = Timer.builder("acid.lock.acquisition")
+                .description("Время получения блокировок счетов (SELECT ... FOR UPDATE)")
+                .withRegistry(meterRegistry);
+    }
+    
+    @Override
+    public List<Account> lockAllByAccountNumbers(Collection<String> accountNumbers, Duration lockTimeout) {
+        var query = entityManager
+                .createQuery("SELECT a FROM Account a WHERE a.accountNumber IN :accountNumbers AND a.balanceBuckets = 0 " +
+                        "ORDER BY a.id", Account.class)
+                .setParameter("accountNumbers", accountNumbers)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE);
+        
+        if (lockTimeout != null && lockTimeout.isNegative()) {
+            throw new IllegalArgumentException("Таймаут блокировки не может быть отрицательным: " + lockTimeout);
+        }
+        String mode = "wait";
+        if (lockTimeout != null) {
+            if (lockTimeout.isZero()) {
+                // PostgreSQL: FOR UPDATE NOWAIT
+                query.setHint("jakarta.persistence.lock.timeout", 0);
+                mode = "nowait";
+            } else {
+                // FOR UPDATE в PostgreSQL не принимает время ожидания - hint с положительным значением
+                // Hibernate игнорирует, поэтому таймаут задаётся через lock_timeout только для текущей транзакции
+                entityManager.createNativeQuery("SELECT set_config('lock_timeout', :timeout, true)")
+                        .setParameter("timeout", lockTimeout.toMillis() + "ms")
+                        .getSingleResult();
+                mode = "timeout";
+            }
+        }
+        
+        long start = System.nanoTime();
+        String outcome = "failed";
+        List<Account> accounts;
+        try {
+            accounts = query.getResultList();
+            if (accounts.size() < accountNumbers.size()) {
+                accounts = withStriped(accounts, accountNumbers, lockTimeout != null && lockTimeout.isZero());
+            }
+            outcome = "acquired";
+        } finally {
+            lockAcquisitionTimer.withTags("mode", mode, "outcome", outcome)
+                    .record(Duration.ofNanos(System.nanoTime() - start));
+        }
+        return accounts;
+    }
+    
+    /**
+     * Добавляет счета с разбитым балансом. Их строки accounts не блокируются, а блокируются все их корзины -
+     * после строк счетов, в порядке (account_id, bucket). Порядок общий для всех вызовов, поэтому встречные
+     * переводы между такими счетами ждут друг друга, а не попадают в deadlock на корзинах при списании и зачислении
+     */
+    private List<Account> withStriped(List<Account> locked, Collection<String> accountNumbers, boolean noWait) {
+        List<Account> striped = entityManager
+                .createQuery("SELECT a FROM Account a WHERE a.accountNumber IN :accountNumbers AND a.balanceBuckets > 0",
+                        Account.class)
+                .setParameter("accountNumbers", accountNumbers)
+                .getResultList();
+        if (striped.isEmpty()) {
+            return locked;
+        }
+        entityManager.createNativeQuery("SELECT 1 FROM account_balance_buckets WHERE account_id IN :accountIds " +
+                        "ORDER BY account_id, bucket FOR UPDATE" + (noWait ? " NOWAIT" : ""))
+                .setParameter("accountIds", striped.stream().map(Account::getId).toList())
+                .getResultList();
+        List<Account> all = new ArrayList<>(locked);
+        all.addAll(striped);
+        return all;
+    }
+} 
\ No newline at end of file
@@ -1,24 +1,23 @@
 package com.example.acid_demo.repository;
 
 import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.util.Optional;
 
 @Repository
-public interface AccountRepository extends JpaRepository<Account, Long> {
+public interface AccountRepository extends JpaRepository<Account, Long>, AccountLockRepository {
     
     Optional<Account> findByAccountNumber(String accountNumber);
     
-    @Lock(LockModeType.PESSIMISTIC_WRITE)
-    @Query("SELECT a FROM Account a WHERE a.accountNumber = :accountNumber")
-    Optional<Account> findByAccountNumberWithPessimisticLock(@Param("accountNumber") String accountNumber);
-    
     @Lock(LockModeType.PESSIMISTIC_READ)
     @Query("SELECT a FROM Account a WHERE a.accountNumber = :accountNumber")
     Optional<Account> findByAccountNumberWithPessimisticReadLock(@Param("accountNumber") String accountNumber);
@@ -26,4 +25,48 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     @Lock(LockModeType.OPTIMISTIC)
     @Query("SELECT a FROM Account a WHERE a.accountNumber = :accountNumber")
     Optional<Account> findByAccountNumberWithOptimisticLock(@Param("accountNumber") String accountNumber);
+    
+    /**
+     * Списание одним UPDATE: достаточность средств проверяется в условии WHERE.
+     * 0 изменённых строк - средств недостаточно, счёта нет или баланс счёта разбит на корзины.
+     * version увеличивается, чтобы параллельные оптимистичные транзакции увидели изменение.
+     * Запросы с арифметикой над balance - native: сумма передаётся в БД как numeric,
+     * не завися от того, как Hibernate типизирует выражение balance - :amount с MoneyConverter
+     */
+    default int debitIfSufficientFunds(String accountNumber, Money amount) {
+        return debitIfSufficientFunds(accountNumber, amount.toBigDecimal());
+    }
+    
+    default int credit(String accountNumber, Money amount) {
+        return credit(accountNumber, amount.toBigDecimal());
+    }
+    
+    @Modifying
+    @Query(value = "UPDATE accounts SET balance = balance - :amount, version = version + 1 " +
+            "WHERE account_number = :accountNumber AND balance_buckets = 0 AND balance >= :amount", nativeQuery = true)
+    int debitIfSufficientFunds(@Param("accountNumber") String accountNumber, @Param("amount") BigDecimal amount);
+    
+    @Modifying
+    @Query(value = "UPDATE accounts SET balance = balance + :amount, version = version + 1 " +
+            "WHERE account_number = :accountNumber AND balance_buckets = 0", nativeQuery = true)
+    int credit(@Param("accountNumber") String accountNumber, @Param("amount") BigDecimal amount);
+    
+    /**
+     * Сумма всех балансов одним агрегатным запросом (для счетов с корзинами accounts.balance = 0)
+     */
+    default Money totalBalance() {
+        return Money.of(sumBalances());
+    }
+    
+    @Query(value = "SELECT (SELECT COALESCE(SUM(balance), 0) FROM accounts) " +
+            "+ (SELECT COALESCE(SUM(balance), 0) FROM account_balance_buckets)", nativeQuery = true)
+    BigDecimal sumBalances();
+    
+    /**
+     * Переключение между балансом в accounts.balance и балансом в корзинах
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Account a SET a.balance = :balance, a.balanceBuckets = :buckets, a.version = a.version + 1 " +
+            "WHERE a.id = :id")
+    int updateBalanceLayout(@Param("id") Long id, @Param("balance") Money balance, @Param("buckets") int buckets);
 } 
\ No newline at end of file
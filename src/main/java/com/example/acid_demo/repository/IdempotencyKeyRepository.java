@@ -0,0 +1,80 @@
+package com.example.acid_demo.repository;
+
+import com.example.acid_demo.entity.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+    
+    String IN_PROGRESS = "com.example.acid_demo.entity.IdempotencyKey.Status.IN_PROGRESS";
+    String COMPLETED = "com.example.acid_demo.entity.IdempotencyKey.Status.COMPLETED";
+    
+    /**
+     * Занимает ключ. Возвращает 0, если ключ уже существует: одновременный INSERT того же ключа
+     * ждёт COMMIT первой транзакции, поэтому занять ключ может только один запрос
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO idempotency_keys (idempotency_key, request_hash, status, created_at, claimed_at)
+            VALUES (:key, :requestHash, 'IN_PROGRESS', :claimedAt, :claimedAt)
+            ON CONFLICT (idempotency_key) DO NOTHING
+            """, nativeQuery = true)
+    int claim(@Param("key") String key, @Param("requestHash") String requestHash,
+              @Param("claimedAt") LocalDateTime claimedAt);
+    
+    /**
+     * Перехватывает ключ, занятый раньше staleBefore и так и не завершённый. Условие в UPDATE,
+     * поэтому из одновременных повторов ключ перехватывает только один.
+     * Ключ, перевод по которому уже зафиксирован (appliedAt), не перехватывается
+     */
+    @Modifying
+    @Query("UPDATE IdempotencyKey k SET k.claimedAt = :claimedAt " +
+            "WHERE k.key = :key AND k.requestHash = :requestHash AND k.status = " + IN_PROGRESS + " " +
+            "AND k.claimedAt < :staleBefore AND k.appliedAt IS NULL")
+    int takeOver(@Param("key") String key,
+                 @Param("requestHash") String requestHash,
+                 @Param("claimedAt") LocalDateTime claimedAt,
+                 @Param("staleBefore") LocalDateTime staleBefore);
+    
+    /**
+     * Отмечает ключ применённым в транзакции перевода. Возвращает 0, если ключ перехватил повтор.
+     * Строка ключа остаётся заблокированной до COMMIT перевода: одновременный перехват ждёт его
+     * и после COMMIT видит appliedAt
+     */
+    @Modifying
+    @Query("UPDATE IdempotencyKey k SET k.appliedAt = :appliedAt " +
+            "WHERE k.key = :key AND k.status = " + IN_PROGRESS + " AND k.claimedAt = :claimedAt")
+    int markApplied(@Param("key") String key,
+                    @Param("claimedAt") LocalDateTime claimedAt,
+                    @Param("appliedAt") LocalDateTime appliedAt);
+    
+    @Modifying
+    @Query("UPDATE IdempotencyKey k SET k.status = " + COMPLETED + ", " +
+            "k.responseStatus = :responseStatus, k.contentType = :contentType, k.responseBody = :responseBody, " +
+            "k.completedAt = :completedAt " +
+            "WHERE k.key = :key AND k.status = " + IN_PROGRESS + " AND k.claimedAt = :claimedAt")
+    int complete(@Param("key") String key,
+                 @Param("claimedAt") LocalDateTime claimedAt,
+                 @Param("responseStatus") int responseStatus,
+                 @Param("contentType") String contentType,
+                 @Param("responseBody") String responseBody,
+                 @Param("completedAt") LocalDateTime completedAt);
+    
+    /**
+     * Освобождает ключ, запрос с которым не выполнился, чтобы его можно было повторить
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.key = :key AND k.status = " + IN_PROGRESS +
+            " AND k.claimedAt = :claimedAt")
+    int release(@Param("key") String key, @Param("claimedAt") LocalDateTime claimedAt);
+    
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") LocalDateTime before);
+} 
\ No newline at end of file
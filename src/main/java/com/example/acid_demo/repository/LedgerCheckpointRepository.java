@@ -0,0 +1,69 @@
+package com.example.acid_demo.repository;
+
+import com.example.acid_demo.entity.Money;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Чтение счетов и запись checkpoint для леджера в памяти (LedgerEngine).
+ * Счета с балансом в корзинах (balance_buckets > 0) леджер не обслуживает
+ */
+@Repository
+@RequiredArgsConstructor
+public class LedgerCheckpointRepository {
+    
+    private static final RowMapper<AccountBalance> ACCOUNT_BALANCE = (rs, rowNum) ->
+            new AccountBalance(rs.getLong("id"), rs.getString("account_number"), Money.of(rs.getBigDecimal("balance")));
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public record AccountBalance(long id, String accountNumber, Money balance) {
+    }
+    
+    public List<AccountBalance> findUnstripedAccounts() {
+        return jdbcTemplate.query("SELECT id, account_number, balance FROM accounts WHERE balance_buckets = 0 "
+                + "ORDER BY id", ACCOUNT_BALANCE);
+    }
+    
+    public Optional<AccountBalance> findUnstripedAccount(String accountNumber) {
+        return jdbcTemplate.query("SELECT id, account_number, balance FROM accounts "
+                + "WHERE account_number = ? AND balance_buckets = 0", ACCOUNT_BALANCE, accountNumber)
+                .stream().findFirst();
+    }
+    
+    /**
+     * Номер последней перенесённой в БД записи журнала, 0 - checkpoint ещё не было
+     */
+    public long findSequence() {
+        return jdbcTemplate.query("SELECT sequence FROM ledger_checkpoint WHERE id = 1",
+                (rs, rowNum) -> rs.getLong(1)).stream().findFirst().orElse(0L);
+    }
+    
+    /**
+     * Прибавляет к балансам изменения с прошлого checkpoint. Возвращает число изменённых строк по каждому счёту
+     */
+    public int[] addToBalances(List<Object[]> deltaAndAccountId) {
+        return jdbcTemplate.batchUpdate("UPDATE accounts SET balance = balance + ?, "
+                + "version = COALESCE(version, 0) + 1 WHERE id = ? AND balance_buckets = 0", deltaAndAccountId);
+    }
+    
+    /**
+     * Счёт существует и его баланс разбит на корзины
+     */
+    public boolean isStriped(long accountId) {
+        return Boolean.TRUE.equals(jdbcTemplate.query("SELECT balance_buckets > 0 FROM accounts WHERE id = ?",
+                (rs, rowNum) -> rs.getBoolean(1), accountId).stream().findFirst().orElse(false));
+    }
+    
+    public void saveSequence(long sequence) {
+        jdbcTemplate.update("""
+                INSERT INTO ledger_checkpoint (id, sequence, updated_at) VALUES (1, ?, localtimestamp)
+                ON CONFLICT (id) DO UPDATE SET sequence = EXCLUDED.sequence, updated_at = EXCLUDED.updated_at
+                """, sequence);
+    }
+} 
\ No newline at end of file
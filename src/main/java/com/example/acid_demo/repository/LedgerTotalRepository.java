@@ -0,0 +1,85 @@
+package com.example.acid_demo.repository;
+
+import com.example.acid_demo.entity.Money;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Сумма балансов по секциям (ledger_totals), которую поддерживают триггеры на accounts
+ * и account_balance_buckets (V7__ledger_totals.sql), и её сверка с фактическими балансами
+ */
+@Repository
+@RequiredArgsConstructor
+public class LedgerTotalRepository {
+    
+    private static final String TOTALS_SQL = """
+            SELECT shard, sum(total) AS total
+            FROM (
+                SELECT shard, total FROM ledger_totals
+                UNION ALL
+                SELECT shard, delta FROM ledger_total_deltas
+            ) t
+            GROUP BY shard
+            """;
+    
+    private static final String BALANCES_SQL = """
+            SELECT shard, sum(balance) AS total
+            FROM (
+                SELECT ledger_total_shard(id) AS shard, balance FROM accounts
+                UNION ALL
+                SELECT ledger_total_shard(account_id), balance FROM account_balance_buckets
+            ) b
+            GROUP BY shard
+            """;
+    
+    private static final String COMPACT_SQL = """
+            WITH moved AS (
+                DELETE FROM ledger_total_deltas RETURNING shard, delta
+            )
+            INSERT INTO ledger_totals (shard, total, updated_at)
+            SELECT shard, sum(delta), localtimestamp FROM moved GROUP BY shard
+            ON CONFLICT (shard) DO UPDATE
+                SET total = ledger_totals.total + EXCLUDED.total, updated_at = EXCLUDED.updated_at
+            """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Сумма по секциям с учётом ещё не свёрнутых изменений: читается O(секций + изменений), а не весь accounts
+     */
+    public Map<Integer, Money> findTotals() {
+        return queryByShard(TOTALS_SQL);
+    }
+    
+    /**
+     * Фактическая сумма балансов по секциям одним агрегатным запросом - полное сканирование,
+     * которое PostgreSQL может выполнить параллельно (Parallel Seq Scan + Partial Aggregate)
+     */
+    public Map<Integer, Money> sumBalances() {
+        return queryByShard(BALANCES_SQL);
+    }
+    
+    /**
+     * Переносит накопленные изменения в ledger_totals. Возвращает число изменённых секций
+     */
+    public int compact() {
+        return jdbcTemplate.update(COMPACT_SQL);
+    }
+    
+    public void setParallelWorkers(int workers) {
+        // SET LOCAL не принимает параметры запроса
+        jdbcTemplate.execute("SET LOCAL max_parallel_workers_per_gather = " + workers);
+    }
+    
+    private Map<Integer, Money> queryByShard(String sql) {
+        Map<Integer, Money> totals = new TreeMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            totals.put(rs.getInt("shard"), Money.of(rs.getBigDecimal("total")));
+        });
+        return totals;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.acid_demo.repository;
+
+import com.example.acid_demo.entity.TransactionLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Массовая вставка TransactionLog в обход JPA: весь пакет уходит одним
+ * INSERT ... SELECT FROM unnest(...) с массивами в качестве параметров.
+ * Каждый nextval занимает целый блок pooled-оптимизатора, поэтому id не пересекаются
+ * с блоками, которые Hibernate уже выдал сущностям
+ */
+@Repository
+@RequiredArgsConstructor
+public class TransactionLogJdbcRepository {
+    
+    private static final String INSERT_SQL = """
+            INSERT INTO transaction_logs (id, from_account, to_account, amount, timestamp, status, error_message,
+                                          idempotency_key)
+            SELECT nextval('transaction_logs_seq'), t.*
+            FROM unnest(?::varchar[], ?::varchar[], ?::numeric[], ?::timestamp[], ?::varchar[], ?::varchar[],
+                        ?::varchar[]) AS t
+            """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public int insertAll(List<TransactionLog> transactionLogs) {
+        if (transactionLogs.isEmpty()) {
+            return 0;
+        }
+        
+        int size = transactionLogs.size();
+        String[] fromAccounts = new String[size];
+        String[] toAccounts = new String[size];
+        BigDecimal[] amounts = new BigDecimal[size];
+        Timestamp[] timestamps = new Timestamp[size];
+        String[] statuses = new String[size];
+        String[] errorMessages = new String[size];
+        String[] idempotencyKeys = new String[size];
+        
+        for (int i = 0; i < size; i++) {
+            TransactionLog transactionLog = transactionLogs.get(i);
+            fromAccounts[i] = transactionLog.getFromAccount();
+            toAccounts[i] = transactionLog.getToAccount();
+            amounts[i] = transactionLog.getAmount() != null ? transactionLog.getAmount().toBigDecimal() : null;
+            timestamps[i] = Timestamp.valueOf(transactionLog.getTimestamp());
+            statuses[i] = transactionLog.getStatus() != null ? transactionLog.getStatus().name() : null;
+            errorMessages[i] = transactionLog.getErrorMessage();
+            idempotencyKeys[i] = transactionLog.getIdempotencyKey();
+        }
+        
+        Integer inserted = jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+                Array[] arrays = {
+                        connection.createArrayOf("varchar", fromAccounts),
+                        connection.createArrayOf("varchar", toAccounts),
+                        connection.createArrayOf("numeric", amounts),
+                        connection.createArrayOf("timestamp", timestamps),
+                        connection.createArrayOf("varchar", statuses),
+                        connection.createArrayOf("varchar", errorMessages),
+                        connection.createArrayOf("varchar", idempotencyKeys)
+                };
+                for (int i = 0; i < arrays.length; i++) {
+                    statement.setArray(i + 1, arrays[i]);
+                }
+                return statement.executeUpdate();
+            }
+        });
+        return inserted != null ? inserted : 0;
+    }
+    
+    /**
+     * Очистка всех секций transaction_logs без построчного DELETE
+     */
+    public void truncate() {
+        jdbcTemplate.execute("TRUNCATE TABLE transaction_logs");
+    }
+} 
\ No newline at end of file
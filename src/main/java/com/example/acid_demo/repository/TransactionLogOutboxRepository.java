@@ -0,0 +1,36 @@
+package com.example.acid_demo.repository;
+
+import com.example.acid_demo.entity.TransactionLogOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface TransactionLogOutboxRepository extends JpaRepository<TransactionLogOutbox, Long> {
+    
+    /**
+     * Переносит пачку записей из outbox в transaction_logs одним statement'ом.
+     * SKIP LOCKED позволяет нескольким экземплярам приложения переносить outbox параллельно
+     */
+    @Modifying
+    @Query(value = """
+            WITH moved AS (
+                DELETE FROM transaction_log_outbox
+                WHERE id IN (
+                    SELECT id FROM transaction_log_outbox
+                    ORDER BY id
+                    LIMIT :batchSize
+                    FOR UPDATE SKIP LOCKED
+                )
+                RETURNING from_account, to_account, amount, timestamp, status, error_message, idempotency_key
+            )
+            INSERT INTO transaction_logs (id, from_account, to_account, amount, timestamp, status, error_message,
+                                          idempotency_key)
+            SELECT nextval('transaction_logs_seq'), from_account, to_account, amount, timestamp, status, error_message,
+                   idempotency_key
+            FROM moved
+            """, nativeQuery = true)
+    int relayBatch(@Param("batchSize") int batchSize);
+} 
\ No newline at end of file
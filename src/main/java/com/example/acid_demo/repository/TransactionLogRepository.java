@@ -1,12 +1,89 @@
 package com.example.acid_demo.repository;
 
 import com.example.acid_demo.entity.TransactionLog;
+import com.example.acid_demo.entity.TransactionLog.TransactionStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionLogRepository extends JpaRepository<TransactionLog, Long> {
     List<TransactionLog> findByFromAccountOrToAccountOrderByTimestampDesc(String fromAccount, String toAccount);
+    
+    /**
+     * Страница истории, более старая чем (beforeTimestamp, beforeId) - keyset-пагинация
+     * по (timestamp DESC, id DESC) без OFFSET.
+     * Простые условия since <= timestamp <= beforeTimestamp дублируют сравнение кортежей,
+     * чтобы PostgreSQL отсёк секции вне диапазона
+     */
+    @Query(value = "SELECT * FROM transaction_logs " +
+            "WHERE (CAST(:status AS varchar) IS NULL OR status = CAST(:status AS varchar)) " +
+            "AND timestamp >= :since AND timestamp <= :beforeTimestamp AND (timestamp, id) < (:beforeTimestamp, :beforeId) " +
+            "ORDER BY timestamp DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<TransactionLog> findPageBefore(@Param("status") String status,
+                                        @Param("since") LocalDateTime since,
+                                        @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                        @Param("beforeId") long beforeId,
+                                        @Param("limit") int limit);
+    
+    /**
+     * Страница истории счёта. OR по from_account/to_account заменён на UNION ALL двух запросов,
+     * каждый из которых читает свой индекс (from_account|to_account, timestamp, id) и останавливается через limit строк.
+     * Вынесен в константу, чтобы план именно этого запроса проверял TransactionLogIndexExplainTest
+     */
+    String ACCOUNT_PAGE_BEFORE_SQL = "SELECT * FROM (" +
+            "(SELECT * FROM transaction_logs WHERE from_account = :account " +
+            "AND (CAST(:status AS varchar) IS NULL OR status = CAST(:status AS varchar)) " +
+            "AND timestamp >= :since AND timestamp <= :beforeTimestamp AND (timestamp, id) < (:beforeTimestamp, :beforeId) " +
+            "ORDER BY timestamp DESC, id DESC LIMIT :limit) " +
+            "UNION ALL " +
+            "(SELECT * FROM transaction_logs WHERE to_account = :account AND from_account <> :account " +
+            "AND (CAST(:status AS varchar) IS NULL OR status = CAST(:status AS varchar)) " +
+            "AND timestamp >= :since AND timestamp <= :beforeTimestamp AND (timestamp, id) < (:beforeTimestamp, :beforeId) " +
+            "ORDER BY timestamp DESC, id DESC LIMIT :limit)" +
+            ") t ORDER BY timestamp DESC, id DESC LIMIT :limit";
+    
+    @Query(value = ACCOUNT_PAGE_BEFORE_SQL, nativeQuery = true)
+    List<TransactionLog> findAccountPageBefore(@Param("account") String account,
+                                               @Param("status") String status,
+                                               @Param("since") LocalDateTime since,
+                                               @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                               @Param("beforeId") long beforeId,
+                                               @Param("limit") int limit);
+    
+    /**
+     * Есть ли лог перевода с этим Idempotency-Key - по частичному индексу transaction_logs_idempotency_key_idx
+     */
+    boolean existsByIdempotencyKeyAndStatus(String idempotencyKey, TransactionStatus status);
+    
+    @Query("SELECT t.status AS status, COUNT(t) AS count FROM TransactionLog t GROUP BY t.status")
+    List<StatusCount> countByStatus();
+    
+    /**
+     * Потоковое чтение для выгрузки: курсор JDBC с fetch size, сущности только для чтения.
+     * Вызывать внутри транзакции и закрывать Stream
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT t FROM TransactionLog t " +
+            "WHERE (:account IS NULL OR t.fromAccount = :account OR t.toAccount = :account) " +
+            "AND (:status IS NULL OR t.status = :status) " +
+            "ORDER BY t.id")
+    Stream<TransactionLog> streamAll(@Param("account") String account, @Param("status") TransactionStatus status);
+    
+    interface StatusCount {
+        TransactionStatus getStatus();
+        
+        long getCount();
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.example.acid_demo.retry;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Задержка между попытками: экспоненциальная со случайным разбросом (full jitter) -
+ * равномерно от 0 до min(max, initial * 2^(attempt-1)), чтобы конфликтующие вызовы не повторялись одновременно
+ */
+public final class Backoff {
+    
+    private Backoff() {
+    }
+    
+    public static long fullJitterMillis(Duration initial, Duration max, int attempt) {
+        long ceiling = Math.min(max.toMillis(), initial.toMillis() << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+    
+    public static void sleep(long millis, String interruptedMessage) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(interruptedMessage, e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.acid_demo.retry;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Горячие ключи - те, на которых за окно window случилось не меньше threshold отказов.
+ * Окна хранятся в Caffeine: не больше maximumSize ключей, окно без новых отказов удаляется
+ * по истечении window, поэтому множество ключей с редкими отказами не накапливается в памяти
+ */
+public final class HotKeyTracker {
+    
+    private final int threshold;
+    private final long windowNanos;
+    private final Cache<String, FailureWindow> windows;
+    
+    public HotKeyTracker(int threshold, Duration window, long maximumSize) {
+        this.threshold = threshold;
+        this.windowNanos = window.toNanos();
+        this.windows = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(window)
+                .build();
+    }
+    
+    public void registerFailure(String key) {
+        windows.asMap().compute(key, (k, window) -> {
+            long now = System.nanoTime();
+            if (window == null || now - window.startedAt > windowNanos) {
+                window = new FailureWindow(now);
+            }
+            window.failures.incrementAndGet();
+            return window;
+        });
+    }
+    
+    public boolean isHot(String key) {
+        FailureWindow window = windows.getIfPresent(key);
+        if (window == null) {
+            return false;
+        }
+        if (System.nanoTime() - window.startedAt > windowNanos) {
+            windows.asMap().remove(key, window);
+            return false;
+        }
+        return window.failures.get() >= threshold;
+    }
+    
+    public List<String> hotKeys() {
+        return windows.asMap().keySet().stream()
+                .filter(this::isHot)
+                .sorted()
+                .toList();
+    }
+    
+    /**
+     * Число отказов по ключу в текущем окне
+     */
+    private static final class FailureWindow {
+        
+        private final long startedAt;
+        private final AtomicInteger failures = new AtomicInteger();
+        
+        private FailureWindow(long startedAt) {
+            this.startedAt = startedAt;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.acid_demo.retry;
+
+/**
+ * Бюджет повторов - ограничение доли повторов от общего числа вызовов.
+ * Каждый вызов добавляет ratio токенов, каждый повтор забирает один; кроме того, бюджет
+ * пополняется на minPerSecond токенов в секунду, чтобы редкие вызовы тоже могли повторяться.
+ * Когда конфликтуют почти все транзакции, повторы только умножают нагрузку на БД:
+ * при пустом бюджете отказ возвращается вызывающему без повтора
+ */
+final class RetryBudget {
+    
+    private final double ratio;
+    private final double minPerSecond;
+    private final double capacity;
+    
+    private double tokens;
+    private long refilledAt;
+    
+    RetryBudget(double ratio, double minPerSecond, double capacity) {
+        this.ratio = ratio;
+        this.minPerSecond = minPerSecond;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+    }
+    
+    synchronized void onCall() {
+        tokens = Math.min(capacity, tokens + ratio);
+    }
+    
+    synchronized boolean tryRetry() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) / 1e9 * minPerSecond);
+        refilledAt = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+    
+    synchronized double available() {
+        return tokens;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.acid_demo.retry;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Метод выполняется в транзакции, которая при serialization failure (40001) или deadlock (40P01)
+ * повторяется целиком: каждая попытка - новая транзакция (см. TransactionRetryExecutor).
+ * Ставится рядом с @Transactional на публичный метод бина. Если метод вызван внутри уже открытой
+ * транзакции, повтора нет - повторять нужно внешнюю транзакцию
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RetryableTransaction {
+    
+    /**
+     * Максимум попыток, 0 - из acid.transaction-retry.max-attempts
+     */
+    int maxAttempts() default 0;
+    
+    /**
+     * Индексы аргументов, которые называют спорные ресурсы (например, номера счетов).
+     * По ним считаются отказы: ресурс с частыми отказами становится горячим
+     */
+    int[] keys() default {};
+    
+    /**
+     * Метод этого же бина с теми же параметрами, выполняющий ту же работу с явными блокировками.
+     * Вызывается вместо повтора после acid.transaction-retry.lock-fallback-after отказов
+     * и сразу - если один из ключей горячий. Пусто - только повторы
+     */
+    String lockFallback() default "";
+}
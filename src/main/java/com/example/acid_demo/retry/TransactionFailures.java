@@ -0,0 +1,50 @@
+package com.example.acid_demo.retry;
+
+import java.sql.SQLException;
+import java.util.Optional;
+
+/**
+ * Классификация отказов транзакции, после которых её можно повторить целиком.
+ * Исключение Spring/Hibernate разворачивается до SQLException, решение принимается по SQLSTATE:
+ * так одинаково распознаются отказ при выполнении запроса и отказ при COMMIT
+ */
+public final class TransactionFailures {
+    
+    public enum Kind {
+        SERIALIZATION_FAILURE("40001"),  // конфликт SERIALIZABLE / конкурентное изменение в REPEATABLE READ
+        DEADLOCK("40P01");               // PostgreSQL выбрал транзакцию жертвой deadlock
+        
+        private final String sqlState;
+        
+        Kind(String sqlState) {
+            this.sqlState = sqlState;
+        }
+        
+        public String getSqlState() {
+            return sqlState;
+        }
+    }
+    
+    private TransactionFailures() {
+    }
+    
+    public static Optional<Kind> classify(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof SQLException sqlException) {
+                // у пакетных операций исходная ошибка лежит в цепочке getNextException
+                for (SQLException e = sqlException; e != null; e = e.getNextException()) {
+                    for (Kind kind : Kind.values()) {
+                        if (kind.sqlState.equals(e.getSQLState())) {
+                            return Optional.of(kind);
+                        }
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+    
+    public static boolean isRetryable(Throwable failure) {
+        return classify(failure).isPresent();
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.acid_demo.retry;
+
+import com.example.acid_demo.config.TransactionRetryProperties;
+import com.example.acid_demo.util.JsonLogger;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Выполнение методов @RetryableTransaction: стоит в цепочке прокси снаружи TransactionInterceptor
+ * (TransactionRetryConfig), поэтому каждая попытка - отдельная транзакция с тем же уровнем изоляции.
+ * - отказ классифицируется по SQLSTATE (TransactionFailures), остальные исключения пробрасываются сразу;
+ * - между попытками - экспоненциальная задержка со случайным разбросом (full jitter);
+ * - повторы ограничены числом попыток и общим бюджетом повторов (RetryBudget);
+ * - после lock-fallback-after отказов, а для горячих ключей сразу, вызывается метод lockFallback -
+ *   та же работа с явными блокировками строк, которой не нужны повторы.
+ * Метрики Micrometer: acid.tx.retry.attempts{method} - попыток на успешный вызов,
+ * acid.tx.retry.failures{method,kind}, acid.tx.retry{method,outcome} - исчерпанные попытки и бюджет, переходы на блокировки
+ */
+@Component
+@Slf4j
+public class TransactionRetryExecutor implements MethodInterceptor {
+    
+    private final TransactionRetryProperties properties;
+    private final JsonLogger jsonLogger;
+    private final MeterRegistry meterRegistry;
+    private final RetryBudget budget;
+    
+    private final Map<Method, Target> targets = new ConcurrentHashMap<>();
+    private final HotKeyTracker hotKeys;
+    
+    public TransactionRetryExecutor(TransactionRetryProperties properties, JsonLogger jsonLogger,
+                                    MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.jsonLogger = jsonLogger;
+        this.meterRegistry = meterRegistry;
+        this.budget = new RetryBudget(properties.getBudgetRatio(), properties.getBudgetMinPerSecond(),
+                properties.getBudgetCapacity());
+        this.hotKeys = new HotKeyTracker(properties.getHotKeyFailures(), properties.getHotKeyWindow(),
+                properties.getHotKeyMaxTracked());
+    }
+    
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // внутри чужой транзакции повтор невозможен: после отказа она прервана целиком
+            return invocation.proceed();
+        }
+        
+        Target target = targets.computeIfAbsent(invocation.getMethod(), method -> resolve(invocation));
+        List<String> keys = target.keys(invocation.getArguments());
+        int maxAttempts = target.maxAttempts > 0 ? target.maxAttempts : properties.getMaxAttempts();
+        budget.onCall();
+        
+        for (int attempt = 1; ; attempt++) {
+            if (target.lockFallback != null
+                    && (attempt > properties.getLockFallbackAfter() || keys.stream().anyMatch(hotKeys::isHot))) {
+                target.lockFallbacks.increment();
+                Object result = invokeFallback(target, invocation);
+                target.attemptsOfSucceeded.record(attempt);
+                return result;
+            }
+            
+            try {
+                Object result = ((ProxyMethodInvocation) invocation).invocableClone().proceed();
+                target.attemptsOfSucceeded.record(attempt);
+                return result;
+            } catch (Throwable e) {
+                TransactionFailures.Kind kind = TransactionFailures.classify(e).orElse(null);
+                if (kind == null) {
+                    throw e;
+                }
+                target.failures(kind).increment();
+                keys.forEach(hotKeys::registerFailure);
+                
+                String giveUpReason = null;
+                if (attempt >= maxAttempts) {
+                    target.exhausted.increment();
+                    giveUpReason = "попытки исчерпаны";
+                } else if (!budget.tryRetry()) {
+                    target.budgetExhausted.increment();
+                    giveUpReason = "бюджет повторов исчерпан";
+                }
+                if (giveUpReason != null) {
+                    int attempts = attempt;
+                    String reason = giveUpReason;
+                    jsonLogger.logError("Отказ транзакции, повтора не будет", () -> Map.of(
+                        "метод", target.name,
+                        "ключи", keys,
+                        "отказ", kind,
+                        "попыток", attempts,
+                        "причина", reason
+                    ));
+                    throw e;
+                }
+                
+                long backoffMs = Backoff.fullJitterMillis(properties.getInitialBackoff(),
+                        properties.getMaxBackoff(), attempt);
+                int failedAttempt = attempt;
+                jsonLogger.logInfo("Отказ транзакции, повтор", () -> Map.of(
+                    "метод", target.name,
+                    "ключи", keys,
+                    "отказ", kind,
+                    "попытка", failedAttempt,
+                    "задержка_мс", backoffMs
+                ));
+                Backoff.sleep(backoffMs, "Повтор транзакции прерван");
+            }
+        }
+    }
+    
+    /**
+     * Статистика по методам: успешные вызовы, попыток на успех, отказы по видам, переходы на блокировки
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        targets.values().stream()
+                .sorted(Comparator.comparing(target -> target.name))
+                .forEach(target -> {
+                    Map<String, Object> methodStats = new LinkedHashMap<>();
+                    methodStats.put("успешных", target.attemptsOfSucceeded.count());
+                    methodStats.put("попыток_на_успех", target.attemptsOfSucceeded.mean());
+                    methodStats.put("максимум_попыток", target.attemptsOfSucceeded.max());
+                    for (TransactionFailures.Kind kind : TransactionFailures.Kind.values()) {
+                        methodStats.put("отказов_" + kind.getSqlState(), (long) target.failures(kind).count());
+                    }
+                    methodStats.put("попытки_исчерпаны", (long) target.exhausted.count());
+                    methodStats.put("бюджет_исчерпан", (long) target.budgetExhausted.count());
+                    methodStats.put("переходов_на_блокировки", (long) target.lockFallbacks.count());
+                    stats.put(target.name, methodStats);
+                });
+        stats.put("бюджет_повторов", budget.available());
+        stats.put("горячие_ключи", hotKeys.hotKeys());
+        return stats;
+    }
+    
+    private Object invokeFallback(Target target, MethodInvocation invocation) throws Throwable {
+        // через прокси, а не напрямую на целевом объекте: у метода с блокировками своя @Transactional
+        Object proxy = ((ProxyMethodInvocation) invocation).getProxy();
+        try {
+            return target.lockFallback.invoke(proxy, invocation.getArguments());
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+    
+    private Target resolve(MethodInvocation invocation) {
+        Class<?> targetClass = AopUtils.getTargetClass(Objects.requireNonNull(invocation.getThis()));
+        Method method = AopUtils.getMostSpecificMethod(invocation.getMethod(), targetClass);
+        RetryableTransaction annotation = AnnotatedElementUtils.findMergedAnnotation(method, RetryableTransaction.class);
+        if (annotation == null) {
+            throw new IllegalStateException("Нет @RetryableTransaction у " + method);
+        }
+        
+        Method lockFallback = null;
+        if (!annotation.lockFallback().isEmpty()) {
+            lockFallback = ReflectionUtils.findMethod(targetClass, annotation.lockFallback(), method.getParameterTypes());
+            if (lockFallback == null) {
+                throw new IllegalStateException("Метод " + annotation.lockFallback() + " с параметрами " + method
+                        + " не найден в " + targetClass.getName());
+            }
+        }
+        return new Target(targetClass.getSimpleName() + "." + method.getName(), annotation.maxAttempts(),
+                annotation.keys(), lockFallback, meterRegistry);
+    }
+    
+    /**
+     * Разобранная аннотация метода и его метрики
+     */
+    private static final class Target {
+        
+        private final String name;
+        private final int maxAttempts;
+        private final int[] keyIndexes;
+        private final Method lockFallback;
+        
+        private final DistributionSummary attemptsOfSucceeded;
+        private final Map<TransactionFailures.Kind, Counter> failures = new LinkedHashMap<>();
+        private final Counter exhausted;
+        private final Counter budgetExhausted;
+        private final Counter lockFallbacks;
+        
+        private Target(String name, int maxAttempts, int[] keyIndexes, Method lockFallback,
+                       MeterRegistry meterRegistry) {
+            this.name = name;
+            this.maxAttempts = maxAttempts;
+            this.keyIndexes = keyIndexes;
+            this.lockFallback = lockFallback;
+            this.attemptsOfSucceeded = DistributionSummary.builder("acid.tx.retry.attempts")
+                    .description("Число попыток на успешный вызов")
+                    .tag("method", name)
+                    .register(meterRegistry);
+            for (TransactionFailures.Kind kind : TransactionFailures.Kind.values()) {
+                failures.put(kind, Counter.builder("acid.tx.retry.failures")
+                        .description("Отказы транзакций, допускающие повтор")
+                        .tag("method", name)
+                        .tag("kind", kind.name().toLowerCase())
+                        .register(meterRegistry));
+            }
+            this.exhausted = outcomeCounter(meterRegistry, name, "exhausted");
+            this.budgetExhausted = outcomeCounter(meterRegistry, name, "budget_exhausted");
+            this.lockFallbacks = outcomeCounter(meterRegistry, name, "lock_fallback");
+        }
+        
+        private Counter failures(TransactionFailures.Kind kind) {
+            return failures.get(kind);
+        }
+        
+        private List<String> keys(Object[] arguments) {
+            List<String> keys = new ArrayList<>(keyIndexes.length);
+            for (int index : keyIndexes) {
+                if (arguments[index] != null) {
+                    keys.add(arguments[index].toString());
+                }
+            }
+            return keys;
+        }
+        
+        private static Counter outcomeCounter(MeterRegistry meterRegistry, String method, String outcome) {
+            return Counter.builder("acid.tx.retry")
+                    .tag("method", method)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+    }
+}
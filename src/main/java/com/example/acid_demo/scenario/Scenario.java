@@ -0,0 +1,80 @@
+package com.example.acid_demo.scenario;
+
+import org.springframework.transaction.annotation.Isolation;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сценарий - одна транзакция из последовательных шагов на выделенном соединении.
+ * Шаг - отдельный SQL-оператор, пауза между шагами - таймер (ScenarioRunner), поток на время паузы не занят.
+ * Результат каждого оператора сохраняется под именем шага
+ */
+public final class Scenario {
+    
+    private final String name;
+    private final Isolation isolation;
+    private final boolean readOnly;
+    private final List<Step> steps = new ArrayList<>();
+    
+    private Scenario(String name, Isolation isolation, boolean readOnly) {
+        this.name = name;
+        this.isolation = isolation;
+        this.readOnly = readOnly;
+    }
+    
+    public static Scenario transaction(String name, Isolation isolation) {
+        return new Scenario(name, isolation, false);
+    }
+    
+    public static Scenario readOnlyTransaction(String name, Isolation isolation) {
+        return new Scenario(name, isolation, true);
+    }
+    
+    public Scenario statement(String stepName, Statement statement) {
+        steps.add(new StatementStep(stepName, statement));
+        return this;
+    }
+    
+    public Scenario pause(Duration duration) {
+        steps.add(new Pause(duration));
+        return this;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public Isolation getIsolation() {
+        return isolation;
+    }
+    
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+    
+    List<Step> getSteps() {
+        return steps;
+    }
+    
+    /**
+     * Один SQL-оператор сценария
+     */
+    @FunctionalInterface
+    public interface Statement {
+        
+        Object execute(Connection connection) throws SQLException;
+    }
+    
+    sealed interface Step permits StatementStep, Pause {
+    }
+    
+    record StatementStep(String name, Statement statement) implements Step {
+    }
+    
+    record Pause(Duration duration) implements Step {
+    }
+}
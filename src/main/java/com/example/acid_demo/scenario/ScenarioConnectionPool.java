@@ -0,0 +1,93 @@
+package com.example.acid_demo.scenario;
+
+import com.example.acid_demo.config.IsolationDemoProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Пул соединений сценариев - отдельный от пула приложения, поэтому долгие транзакции демонстраций
+ * не занимают соединения переводов. Это не бин DataSource: иначе Spring Boot не создал бы основной пул,
+ * а JPA могла бы выбрать не тот.
+ * Соединение выдаётся асинхронно: сценарий, которому не хватило соединения, ждёт в очереди,
+ * не занимая поток, а при переполненной очереди отклоняется. Метрики пула - hikaricp_*{pool="isolation-demo"}
+ */
+@Component
+public class ScenarioConnectionPool {
+    
+    private final HikariDataSource dataSource;
+    private final int maxQueued;
+    
+    private final Queue<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private int available;
+    
+    public ScenarioConnectionPool(DataSourceProperties dataSourceProperties, IsolationDemoProperties properties,
+                                  MeterRegistry meterRegistry) {
+        this.dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        this.dataSource.setPoolName("isolation-demo");
+        this.dataSource.setMaximumPoolSize(properties.getPoolSize());
+        this.dataSource.setMinimumIdle(0);
+        // ограничения действуют только в сессиях этого пула
+        this.dataSource.addDataSourceProperty("options", "-c statement_timeout="
+                + properties.getStatementTimeout().toMillis()
+                + " -c idle_in_transaction_session_timeout=" + properties.getIdleInTransactionTimeout().toMillis());
+        this.dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        this.maxQueued = properties.getMaxQueued();
+        this.available = properties.getPoolSize();
+    }
+    
+    /**
+     * Разрешение на соединение: завершается, когда в пуле есть свободное соединение
+     */
+    synchronized CompletableFuture<Void> reserve() {
+        if (available > 0) {
+            available--;
+            return CompletableFuture.completedFuture(null);
+        }
+        if (waiters.size() >= maxQueued) {
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Очередь сценариев заполнена: " + maxQueued));
+        }
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        waiters.add(waiter);
+        return waiter;
+    }
+    
+    /**
+     * Соединение по полученному разрешению - свободно в пуле, поэтому getConnection() не ждёт
+     */
+    Connection connect() throws SQLException {
+        return dataSource.getConnection();
+    }
+    
+    /**
+     * Вернуть разрешение: его получает первый сценарий из очереди
+     */
+    void release() {
+        CompletableFuture<Void> next;
+        synchronized (this) {
+            next = waiters.poll();
+            if (next == null) {
+                available++;
+                return;
+            }
+        }
+        // вне монитора: продолжение сценария не должно выполняться под блокировкой пула
+        next.complete(null);
+    }
+    
+    @PreDestroy
+    public void close() {
+        dataSource.close();
+    }
+}
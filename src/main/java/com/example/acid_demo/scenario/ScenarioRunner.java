@@ -0,0 +1,101 @@
+package com.example.acid_demo.scenario;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выполнение сценариев без блокировки потоков на паузах.
+ * Соединение берётся из ScenarioConnectionPool, каждый оператор выполняется задачей demoExecutor,
+ * пауза - отложенный запуск следующего шага (CompletableFuture.delayedExecutor), а не Thread.sleep.
+ * Поток занят только на время самих операторов; соединение и транзакция живут от первого шага до COMMIT
+ */
+@Component
+@RequiredArgsConstructor
+public class ScenarioRunner {
+    
+    private final ScenarioConnectionPool connectionPool;
+    private final ExecutorService demoExecutor;
+    
+    /**
+     * @return результаты операторов по именам шагов в порядке выполнения
+     */
+    public CompletableFuture<Map<String, Object>> run(Scenario scenario) {
+        return connectionPool.reserve().thenComposeAsync(ignored -> start(scenario), demoExecutor);
+    }
+    
+    private CompletableFuture<Map<String, Object>> start(Scenario scenario) {
+        Connection connection;
+        try {
+            connection = begin(scenario);
+        } catch (SQLException | RuntimeException e) {
+            connectionPool.release();
+            return CompletableFuture.failedFuture(e);
+        }
+        
+        // шаги выполняются строго по очереди, переход между ними через CompletableFuture упорядочивает доступ
+        Map<String, Object> results = new LinkedHashMap<>();
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (Scenario.Step step : scenario.getSteps()) {
+            chain = switch (step) {
+                case Scenario.Pause pause -> chain.thenRunAsync(() -> {
+                }, CompletableFuture.delayedExecutor(pause.duration().toMillis(), TimeUnit.MILLISECONDS, demoExecutor));
+                case Scenario.StatementStep statement -> chain.thenRunAsync(
+                        () -> results.put(statement.name(), execute(scenario, statement, connection)), demoExecutor);
+            };
+        }
+        return chain.handleAsync((ignored, failure) -> finish(connection, results, failure), demoExecutor);
+    }
+    
+    private Connection begin(Scenario scenario) throws SQLException {
+        Connection connection = connectionPool.connect();
+        try {
+            connection.setAutoCommit(false);
+            if (scenario.getIsolation() != Isolation.DEFAULT) {
+                // значения Isolation совпадают с константами Connection.TRANSACTION_*
+                connection.setTransactionIsolation(scenario.getIsolation().value());
+            }
+            connection.setReadOnly(scenario.isReadOnly());
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+    
+    private Object execute(Scenario scenario, Scenario.StatementStep statement, Connection connection) {
+        try {
+            return statement.statement().execute(connection);
+        } catch (SQLException e) {
+            throw new RuntimeException("Сценарий " + scenario.getName() + ", шаг " + statement.name()
+                    + ": " + e.getMessage(), e);
+        }
+    }
+    
+    private Map<String, Object> finish(Connection connection, Map<String, Object> results, Throwable failure) {
+        try (connection) {
+            if (failure == null) {
+                connection.commit();
+                return results;
+            }
+            connection.rollback();
+        } catch (SQLException e) {
+            if (failure == null) {
+                throw new CompletionException(e);
+            }
+            failure.addSuppressed(e);
+        } finally {
+            connectionPool.release();
+        }
+        throw failure instanceof CompletionException completion ? completion : new CompletionException(failure);
+    }
+}
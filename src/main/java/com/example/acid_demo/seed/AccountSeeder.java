@@ -0,0 +1,283 @@
+package com.example.acid_demo.seed;
+
+import com.example.acid_demo.config.SeedProperties;
+import com.example.acid_demo.dto.SeedReport;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.entity.TransactionLog.TransactionStatus;
+import com.example.acid_demo.ledger.LedgerEngine;
+import com.example.acid_demo.service.AccountCache;
+import com.example.acid_demo.service.TransactionLogPartitionManager;
+import com.example.acid_demo.util.JsonLogger;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Массовое заполнение accounts и transaction_logs для нагрузочных и staging-окружений.
+ * Строки генерируются на лету и потоком уходят в COPY ... FROM STDIN (CopyManager драйвера PostgreSQL),
+ * в памяти не накапливаются. Очистка - TRUNCATE, а не построчный DELETE.
+ * Очистка и загрузка выполняются одной транзакцией: после TRUNCATE в той же транзакции accounts
+ * загружается с COPY FREEZE, и строкам не нужен последующий VACUUM.
+ * Идентификаторы резервируются блоком в последовательностях, поэтому не пересекаются с блоками,
+ * которые Hibernate уже выдал сущностям. Загрузка рассчитана на окружение без параллельных переводов.
+ * Пока работает леджер в памяти, очистка отклоняется: леджер держит балансы и номера удалённых счетов
+ */
+@Component
+@RequiredArgsConstructor
+public class AccountSeeder {
+    
+    private static final int COPY_BUFFER_SIZE = 1 << 20;
+    private static final int MIN_NUMBER_WIDTH = 6;
+    private static final String INSUFFICIENT_FUNDS = "Недостаточно средств на счёте";
+    
+    private static final String RESERVE_IDS_SQL = """
+            WITH s AS (
+                SELECT ((? + increment_by - 1) / increment_by) * increment_by AS extra
+                FROM pg_sequences
+                WHERE schemaname = current_schema() AND sequencename = ?
+            )
+            SELECT setval(?::regclass, nextval(?::regclass) + extra) - extra FROM s
+            """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionLogPartitionManager partitionManager;
+    private final AccountCache accountCache;
+    private final JsonLogger jsonLogger;
+    private final ObjectProvider<LedgerEngine> ledgerEngine;
+    
+    /**
+     * Очистка счетов (вместе с корзинами балансов) и аудита переводов
+     */
+    public void reset() {
+        requireLedgerStopped();
+        transactionTemplate.executeWithoutResult(status -> truncate());
+    }
+    
+    public List<SeedReport> seed(SeedProperties settings) {
+        validate(settings);
+        if (settings.isReset()) {
+            requireLedgerStopped();
+        }
+        RandomGenerator random = new SplittableRandom(settings.getRandomSeed());
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime historyStart = now.minus(settings.getHistory());
+        
+        jsonLogger.logOperation("МАССОВОЕ ЗАПОЛНЕНИЕ БД", () -> Map.of(
+            "счетов", settings.getAccounts(),
+            "распределение", settings.getDistribution(),
+            "переводов", settings.getTransactions(),
+            "история", settings.getHistory().toString(),
+            "очистка", settings.isReset()
+        ));
+        
+        if (settings.getTransactions() > 0) {
+            // секции создаются заранее: иначе вся история попадёт в DEFAULT и будет переноситься построчно
+            partitionManager.createPartitions(historyStart, now);
+        }
+        
+        List<SeedReport> reports = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            if (settings.isReset()) {
+                truncate();
+            }
+            long firstId = reserveIds("accounts_seq", settings.getAccounts());
+            int width = Math.max(MIN_NUMBER_WIDTH, Long.toString(firstId + settings.getAccounts()).length());
+            reports.add(copyAccounts(settings, random, firstId, width));
+            if (settings.getTransactions() > 0) {
+                reports.add(copyTransactionLogs(settings, random, firstId, width, historyStart, now));
+            }
+            // статистика планировщика после загрузки, иначе он оценивает таблицы по старому размеру
+            jdbcTemplate.execute("ANALYZE accounts");
+            if (settings.getTransactions() > 0) {
+                jdbcTemplate.execute("ANALYZE transaction_logs");
+            }
+        });
+        
+        jsonLogger.logInfo("Массовое заполнение БД завершено", () -> Map.of("загружено", reports));
+        return reports;
+    }
+    
+    private void requireLedgerStopped() {
+        LedgerEngine ledger = ledgerEngine.getIfAvailable();
+        if (ledger != null && ledger.isRunning()) {
+            throw new RuntimeException("Леджер в памяти работает: очистка счетов оставила бы в нём удалённые счета");
+        }
+    }
+    
+    private void truncate() {
+        // TRUNCATE не вызывает триггеры суммы балансов, поэтому ledger_totals очищается вместе со счетами
+        jdbcTemplate.execute("TRUNCATE TABLE accounts, account_balance_buckets, ledger_totals, ledger_total_deltas, "
+                + "transaction_logs, transaction_log_outbox");
+        accountCache.evictAllAfterCommit();
+    }
+    
+    private SeedReport copyAccounts(SeedProperties settings, RandomGenerator random, long firstId, int width) {
+        // FREEZE допустим только для таблицы, очищенной в этой же транзакции
+        String sql = "COPY accounts (id, account_number, balance, version) FROM STDIN"
+                + (settings.isReset() ? " (FREEZE)" : "");
+        long start = System.nanoTime();
+        long rows = copyIn(sql, writer -> {
+            for (long id = firstId; id < firstId + settings.getAccounts(); id++) {
+                writer.write(Long.toString(id));
+                writer.write('\t');
+                writer.write(accountNumber(settings.getAccountPrefix(), id, width));
+                writer.write('\t');
+                writer.write(sampleBalance(settings, random).toString());
+                writer.write("\t0\n");
+            }
+        });
+        return report("accounts", rows, start);
+    }
+    
+    /**
+     * История переводов между загруженными счетами, упорядоченная по времени:
+     * записи идут в секции по очереди, а BRIN-индекс по timestamp остаётся узким
+     */
+    private SeedReport copyTransactionLogs(SeedProperties settings, RandomGenerator random, long firstAccountId,
+                                           int width, LocalDateTime from, LocalDateTime to) {
+        long count = settings.getTransactions();
+        long accounts = settings.getAccounts();
+        long firstId = reserveIds("transaction_logs_seq", count);
+        long stepNanos = Math.max(1, Duration.between(from, to).toNanos() / count);
+        
+        String sql = "COPY transaction_logs (id, from_account, to_account, amount, timestamp, status, error_message)"
+                + " FROM STDIN";
+        long start = System.nanoTime();
+        long rows = copyIn(sql, writer -> {
+            for (long i = 0; i < count; i++) {
+                long fromIndex = random.nextLong(accounts);
+                long toIndex = (fromIndex + 1 + random.nextLong(accounts - 1)) % accounts;
+                boolean failed = random.nextDouble() < settings.getFailureRate();
+                LocalDateTime timestamp = from.plusNanos(i * stepNanos + random.nextLong(stepNanos) / 1000 * 1000);
+                
+                writer.write(Long.toString(firstId + i));
+                writer.write('\t');
+                writer.write(accountNumber(settings.getAccountPrefix(), firstAccountId + fromIndex, width));
+                writer.write('\t');
+                writer.write(accountNumber(settings.getAccountPrefix(), firstAccountId + toIndex, width));
+                writer.write('\t');
+                writer.write(Money.ofMinor(100 + random.nextLong(100_000)).toString());
+                writer.write('\t');
+                writer.write(timestamp.toString());
+                writer.write('\t');
+                writer.write(failed ? TransactionStatus.FAILED.name() : TransactionStatus.SUCCESS.name());
+                writer.write('\t');
+                writer.write(failed ? INSUFFICIENT_FUNDS : "\\N");
+                writer.write('\n');
+            }
+        });
+        return report("transaction_logs", rows, start);
+    }
+    
+    /**
+     * Поток строк в COPY ... FROM STDIN (текстовый формат). При ошибке COPY отменяется,
+     * и транзакция откатывается целиком
+     */
+    private long copyIn(String sql, RowWriter rowWriter) {
+        Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            PGCopyOutputStream copy = new PGCopyOutputStream(connection.unwrap(PGConnection.class), sql, COPY_BUFFER_SIZE);
+            boolean completed = false;
+            try {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(copy, StandardCharsets.UTF_8), COPY_BUFFER_SIZE);
+                rowWriter.write(writer);
+                writer.flush();
+                long copied = copy.endCopy();
+                completed = true;
+                return copied;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                if (!completed && copy.isActive()) {
+                    copy.cancelCopy();
+                }
+            }
+        });
+        return rows != null ? rows : 0;
+    }
+    
+    /**
+     * Резервирует блок из count идентификаторов и возвращает первый.
+     * Последовательность сдвигается на целое число блоков pooled-оптимизатора плюс один блок,
+     * поэтому диапазон свободен и при pooled-lo (значение - начало блока), и при pooled (значение - конец блока)
+     */
+    private long reserveIds(String sequence, long count) {
+        return jdbcTemplate.queryForObject(RESERVE_IDS_SQL, Long.class, count, sequence, sequence, sequence);
+    }
+    
+    private SeedReport report(String table, long rows, long startNanos) {
+        SeedReport report = SeedReport.of(table, rows, System.nanoTime() - startNanos);
+        jsonLogger.logInfo("Таблица загружена через COPY", () -> Map.of(
+            "таблица", table,
+            "строк", report.getRows(),
+            "время_мс", report.getDurationMs(),
+            "строк_в_секунду", report.getRowsPerSecond()
+        ));
+        return report;
+    }
+    
+    private static Money sampleBalance(SeedProperties settings, RandomGenerator random) {
+        long min = settings.getMinBalance().minorUnits();
+        long max = settings.getMaxBalance().minorUnits();
+        double lower = Math.max(min, 1);
+        double value = switch (settings.getDistribution()) {
+            case UNIFORM -> min + random.nextDouble() * (max - min);
+            case LOG_NORMAL -> Math.exp(Math.log(Math.sqrt(lower * max)) + settings.getShape() * random.nextGaussian());
+            case PARETO -> lower * Math.pow(1 - random.nextDouble(), -1 / settings.getShape());
+        };
+        return Money.ofMinor(Math.clamp(Math.round(value), min, max));
+    }
+    
+    private static String accountNumber(String prefix, long id, int width) {
+        String digits = Long.toString(id);
+        StringBuilder number = new StringBuilder(prefix.length() + width).append(prefix);
+        for (int i = digits.length(); i < width; i++) {
+            number.append('0');
+        }
+        return number.append(digits).toString();
+    }
+    
+    private static void validate(SeedProperties settings) {
+        if (settings.getAccounts() < 1) {
+            throw new IllegalArgumentException("Число счетов должно быть положительным");
+        }
+        if (settings.getTransactions() < 0) {
+            throw new IllegalArgumentException("Число переводов не может быть отрицательным");
+        }
+        if (settings.getTransactions() > 0 && settings.getAccounts() < 2) {
+            throw new IllegalArgumentException("Для истории переводов нужно хотя бы два счёта");
+        }
+        if (settings.getMinBalance().minorUnits() < 0
+                || settings.getMaxBalance().isLessThan(settings.getMinBalance())) {
+            throw new IllegalArgumentException("Нужно 0 <= min-balance <= max-balance");
+        }
+        if (settings.getDistribution() != SeedProperties.Distribution.UNIFORM && settings.getShape() <= 0) {
+            throw new IllegalArgumentException("Параметр shape должен быть положительным");
+        }
+    }
+    
+    @FunctionalInterface
+    private interface RowWriter {
+        
+        void write(Writer writer) throws IOException;
+    }
+}
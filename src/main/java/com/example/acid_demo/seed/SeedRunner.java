@@ -0,0 +1,32 @@
+package com.example.acid_demo.seed;
+
+import com.example.acid_demo.config.SeedProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Заполнение БД из командной строки (acid.seed.run-on-startup=true), параметры - acid.seed.*.
+ * С acid.seed.exit-after-run=true приложение завершается после загрузки
+ */
+@Component
+@ConditionalOnProperty(name = "acid.seed.run-on-startup", havingValue = "true")
+@RequiredArgsConstructor
+public class SeedRunner implements ApplicationRunner {
+    
+    private final AccountSeeder accountSeeder;
+    private final SeedProperties seedProperties;
+    private final ConfigurableApplicationContext context;
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        accountSeeder.seed(seedProperties);
+        if (seedProperties.isExitAfterRun()) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+}
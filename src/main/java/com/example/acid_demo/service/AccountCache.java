@@ -0,0 +1,134 @@
+package com.example.acid_demo.service;
+
+import com.example.acid_demo.config.AccountCacheProperties;
+import com.example.acid_demo.dto.AccountSnapshot;
+import com.example.acid_demo.repository.AccountRepository;
+import com.example.acid_demo.util.ReadRoutingContext;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Read-through кэш счетов по номеру счёта (Caffeine, вытеснение W-TinyLFU).
+ * Кэш меняется только после COMMIT: изменения из откатившихся транзакций в него не попадают.
+ * Снимок заменяется только снимком с большей version, поэтому запоздавшее обновление
+ * не перезапишет более новое состояние. Удаление увеличивает поколение полосы номеров счетов:
+ * загрузка, начавшаяся до удаления, не сохраняет в кэш прочитанный до COMMIT снимок.
+ * Статистика Caffeine публикуется в Micrometer как cache.*{cache="accounts"}
+ */
+@Component
+public class AccountCache {
+    
+    private static final int GENERATION_STRIPES = 1024;
+    
+    private final AccountRepository accountRepository;
+    private final Cache<String, AccountSnapshot> cache;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    
+    public AccountCache(AccountRepository accountRepository, AccountCacheProperties properties,
+                        MeterRegistry meterRegistry) {
+        this.accountRepository = accountRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "accounts");
+    }
+    
+    public Optional<AccountSnapshot> get(String accountNumber) {
+        AccountSnapshot cached = cache.getIfPresent(accountNumber);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        
+        int stripe = stripe(accountNumber);
+        long generation = generations.get(stripe);
+        // загрузка - только из основной БД: снимок с реплики мог отстать от изменения, после которого запись вытеснена
+        AccountSnapshot loaded = ReadRoutingContext.onPrimary(() -> accountRepository.findByAccountNumber(accountNumber)
+                .map(AccountSnapshot::from)
+                .orElse(null));
+        if (loaded == null) {
+            return Optional.empty();
+        }
+        // compute и удаление по одному ключу не пересекаются: удаление после compute уберёт запись,
+        // а compute после увеличения поколения её не сохранит
+        AccountSnapshot current = cache.asMap().compute(accountNumber, (key, existing) -> {
+            if (existing != null && !loaded.isNewerThan(existing)) {
+                return existing;
+            }
+            return generations.get(stripe) == generation ? loaded : existing;
+        });
+        return Optional.of(current != null ? current : loaded);
+    }
+    
+    /**
+     * Обновить запись после COMMIT текущей транзакции (сразу, если транзакции нет)
+     */
+    public void putAfterCommit(AccountSnapshot snapshot) {
+        afterCommit(() -> cache.asMap().merge(snapshot.getAccountNumber(), snapshot,
+                (cached, updated) -> updated.isNewerThan(cached) ? updated : cached));
+    }
+    
+    /**
+     * Удалить запись после COMMIT текущей транзакции - для изменений в обход сущностей (UPDATE, DELETE)
+     */
+    public void evictAfterCommit(String... accountNumbers) {
+        afterCommit(() -> {
+            for (String accountNumber : accountNumbers) {
+                generations.incrementAndGet(stripe(accountNumber));
+                cache.invalidate(accountNumber);
+            }
+        });
+    }
+    
+    /**
+     * Очистить кэш после COMMIT текущей транзакции - после TRUNCATE и массовой загрузки счетов
+     */
+    public void evictAllAfterCommit() {
+        afterCommit(() -> {
+            for (int stripe = 0; stripe < GENERATION_STRIPES; stripe++) {
+                generations.incrementAndGet(stripe);
+            }
+            cache.invalidateAll();
+        });
+    }
+    
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("попаданий", stats.hitCount());
+        result.put("промахов", stats.missCount());
+        result.put("доля_попаданий", stats.hitRate());
+        result.put("вытеснено", stats.evictionCount());
+        result.put("записей", cache.estimatedSize());
+        return result;
+    }
+    
+    private static int stripe(String accountNumber) {
+        return Math.floorMod(accountNumber.hashCode(), GENERATION_STRIPES);
+    }
+    
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+} 
\ No newline at end of file
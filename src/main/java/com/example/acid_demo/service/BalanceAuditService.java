@@ -0,0 +1,127 @@
+package com.example.acid_demo.service;
+
+import com.example.acid_demo.config.BalanceAuditProperties;
+import com.example.acid_demo.dto.BalanceAuditResult;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.repository.LedgerTotalRepository;
+import com.example.acid_demo.util.JsonLogger;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Непрерывный аудит инварианта "сумма всех балансов" без SERIALIZABLE-транзакции над всей таблицей.
+ * - getTotal() - сумма из ledger_totals и несвёрнутых изменений, не читает accounts;
+ * - verify() - сверка с фактической суммой балансов одним агрегатным запросом в снимке REPEATABLE READ.
+ *   Транзакция только читает, поэтому параллельные переводы не получают serialization failure,
+ *   а PostgreSQL может выполнить агрегат параллельно (при SERIALIZABLE параллельные планы не используются).
+ *   Как и другие readOnly-транзакции, с acid.replica.enabled сверка идёт на реплику.
+ * Метрика acid.balance.audit - время сверки с тегом outcome (consistent / mismatch)
+ */
+@Service
+@Slf4j
+public class BalanceAuditService {
+    
+    private final LedgerTotalRepository ledgerTotalRepository;
+    private final BalanceAuditProperties properties;
+    private final JsonLogger jsonLogger;
+    private final TransactionTemplate snapshotTemplate;
+    private final Timer consistentTimer;
+    private final Timer mismatchTimer;
+    
+    public BalanceAuditService(LedgerTotalRepository ledgerTotalRepository, BalanceAuditProperties properties,
+                               JsonLogger jsonLogger, PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry) {
+        this.ledgerTotalRepository = ledgerTotalRepository;
+        this.properties = properties;
+        this.jsonLogger = jsonLogger;
+        // шаблон, а не @Transactional: verify() вызывается и из планировщика этого же бина
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTemplate.setReadOnly(true);
+        this.consistentTimer = auditTimer(meterRegistry, "consistent");
+        this.mismatchTimer = auditTimer(meterRegistry, "mismatch");
+    }
+    
+    @Transactional(readOnly = true)
+    public Money getTotal() {
+        return ledgerTotalRepository.findTotals().values().stream().reduce(Money.ZERO, Money::plus);
+    }
+    
+    public BalanceAuditResult verify() {
+        long start = System.nanoTime();
+        // обе суммы - из одного снимка: изменения балансов и ledger_total_deltas коммитятся вместе
+        Sums sums = snapshotTemplate.execute(status -> {
+            ledgerTotalRepository.setParallelWorkers(properties.getParallelWorkers());
+            return new Sums(ledgerTotalRepository.findTotals(), ledgerTotalRepository.sumBalances());
+        });
+        Map<Integer, Money> expected = sums.expected();
+        Map<Integer, Money> actual = sums.actual();
+        
+        TreeSet<Integer> shards = new TreeSet<>(expected.keySet());
+        shards.addAll(actual.keySet());
+        List<Integer> mismatched = shards.stream()
+                .filter(shard -> !expected.getOrDefault(shard, Money.ZERO).equals(actual.getOrDefault(shard, Money.ZERO)))
+                .toList();
+        long durationNanos = System.nanoTime() - start;
+        
+        BalanceAuditResult result = new BalanceAuditResult(
+                expected.values().stream().reduce(Money.ZERO, Money::plus),
+                actual.values().stream().reduce(Money.ZERO, Money::plus),
+                mismatched.isEmpty(),
+                mismatched,
+                TimeUnit.NANOSECONDS.toMillis(durationNanos));
+        (result.isConsistent() ? consistentTimer : mismatchTimer).record(durationNanos, TimeUnit.NANOSECONDS);
+        
+        if (result.isConsistent()) {
+            jsonLogger.logDebug("Сверка суммы балансов", result);
+        } else {
+            jsonLogger.logError("РАСХОЖДЕНИЕ СУММЫ БАЛАНСОВ", result);
+        }
+        return result;
+    }
+    
+    @Scheduled(initialDelayString = "${acid.balance-audit.compaction-interval:1s}",
+            fixedDelayString = "${acid.balance-audit.compaction-interval:1s}")
+    public void compact() {
+        try {
+            ledgerTotalRepository.compact();
+        } catch (RuntimeException e) {
+            log.error("Ошибка сворачивания изменений суммы балансов", e);
+        }
+    }
+    
+    @Scheduled(initialDelayString = "${acid.balance-audit.verify-interval:5m}",
+            fixedDelayString = "${acid.balance-audit.verify-interval:5m}")
+    public void verifyContinuously() {
+        if (!properties.isContinuous()) {
+            return;
+        }
+        try {
+            verify();
+        } catch (RuntimeException e) {
+            log.error("Ошибка сверки суммы балансов", e);
+        }
+    }
+    
+    private record Sums(Map<Integer, Money> expected, Map<Integer, Money> actual) {
+    }
+    
+    private static Timer auditTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("acid.balance.audit")
+                .description("Сверка суммы балансов с ledger_totals")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.acid_demo.service;
+
+import com.example.acid_demo.config.IdempotencyProperties;
+import com.example.acid_demo.dto.IdempotentResponse;
+import com.example.acid_demo.entity.IdempotencyKey;
+import com.example.acid_demo.entity.TransactionLog.TransactionStatus;
+import com.example.acid_demo.repository.IdempotencyKeyRepository;
+import com.example.acid_demo.repository.TransactionLogRepository;
+import com.example.acid_demo.util.IdempotencyContext;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Ключи идемпотентности запросов перевода.
+ * Новый ключ занимается одним INSERT ... ON CONFLICT DO NOTHING - отдельной проверки существования нет,
+ * поэтому для нового ключа это единственное обращение к БД. Завершённые ответы кэшируются в памяти
+ * (Caffeine, LRU-подобное вытеснение), и повторы запроса обслуживаются без обращения к БД.
+ * Ключ, занятый дольше acid.idempotency.claim-timeout и не завершённый, перехватывает повтор.
+ * Перевод отмечает ключ применённым (markApplied) в своей транзакции, поэтому перевод по ключу фиксируется
+ * не больше одного раза: запрос, ключ которого перехватили, откатывает перевод, а применённый ключ
+ * не перехватывается - повтор получает ответ, что перевод уже выполнен. Переводы леджера в транзакции БД
+ * не выполняются: для них признак выполненного перевода - лог SUCCESS с ключом в transaction_logs.
+ * Ключ хранится acid.idempotency.retention, затем удаляется
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+    
+    /**
+     * Ответ на повтор запроса, перевод которого зафиксирован, а сохранить ответ запрос не успел
+     */
+    static final String APPLIED_RESPONSE_BODY =
+            "{\"status\":\"SUCCESS\",\"message\":\"Перевод с этим Idempotency-Key уже выполнен, исходный ответ не сохранён\"}";
+    
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionLogRepository transactionLogRepository;
+    private final IdempotencyProperties properties;
+    private final Cache<String, IdempotentResponse> completed;
+    
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository,
+                              TransactionLogRepository transactionLogRepository, IdempotencyProperties properties,
+                              MeterRegistry meterRegistry) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.transactionLogRepository = transactionLogRepository;
+        this.properties = properties;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheMaximumSize())
+                .expireAfterWrite(properties.getCacheExpireAfterWrite())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, completed, "idempotency");
+    }
+    
+    /**
+     * Результат попытки занять ключ
+     */
+    public enum ClaimStatus {
+        ACQUIRED,     // ключ новый, запрос нужно выполнить
+        COMPLETED,    // запрос уже выполнен - вернуть сохранённый ответ
+        IN_PROGRESS,  // запрос с этим ключом ещё выполняется
+        MISMATCH      // ключ уже использован с другими параметрами запроса
+    }
+    
+    /**
+     * claimedAt - отметка занятого ключа (ACQUIRED): с ней ответ сохраняется или ключ освобождается
+     */
+    public record Claim(ClaimStatus status, IdempotentResponse response, LocalDateTime claimedAt) {
+        
+        Claim(ClaimStatus status, IdempotentResponse response) {
+            this(status, response, null);
+        }
+    }
+    
+    @Transactional
+    public Claim claim(String key, String requestHash) {
+        IdempotentResponse cached = completed.getIfPresent(key);
+        if (cached != null) {
+            return replay(cached, requestHash);
+        }
+        
+        // точность timestamp в PostgreSQL - микросекунды: отметка сравнивается на равенство при complete
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        if (idempotencyKeyRepository.claim(key, requestHash, now) == 1) {
+            return new Claim(ClaimStatus.ACQUIRED, null, now);
+        }
+        
+        IdempotencyKey existing = idempotencyKeyRepository.findById(key).orElse(null);
+        if (existing == null) {
+            // ключ удалили между INSERT и SELECT (срок хранения или release) - клиент повторит запрос
+            return new Claim(ClaimStatus.IN_PROGRESS, null);
+        }
+        if (!existing.getRequestHash().equals(requestHash)) {
+            return new Claim(ClaimStatus.MISMATCH, null);
+        }
+        if (existing.getStatus() == IdempotencyKey.Status.IN_PROGRESS) {
+            LocalDateTime staleBefore = now.minus(properties.getClaimTimeout());
+            if (existing.getClaimedAt().isBefore(staleBefore) && isApplied(existing)) {
+                // перевод зафиксирован, а ответ не сохранён (процесс упал после COMMIT) - выполнять заново нельзя
+                return completeApplied(existing);
+            }
+            // перехват ждёт транзакцию перевода, которая отмечает ключ применённым, и после её COMMIT не пройдёт
+            if (idempotencyKeyRepository.takeOver(key, requestHash, now, staleBefore) == 1) {
+                log.warn("Ключ идемпотентности {} занят с {} и не завершён - запрос выполняется заново",
+                        key, existing.getClaimedAt());
+                return new Claim(ClaimStatus.ACQUIRED, null, now);
+            }
+            return new Claim(ClaimStatus.IN_PROGRESS, null);
+        }
+        IdempotentResponse response = IdempotentResponse.from(existing);
+        completed.put(key, response);
+        return new Claim(ClaimStatus.COMPLETED, response);
+    }
+    
+    /**
+     * Отмечает ключ текущего запроса (IdempotencyContext) применённым - вызывается в транзакции перевода.
+     * Если ключ тем временем перехватил повтор (запрос шёл дольше claim-timeout), бросает исключение,
+     * и перевод откатывается: его выполнит повтор. Без ключа в контексте ничего не делает
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void markApplied() {
+        String key = IdempotencyContext.currentKey();
+        if (key == null) {
+            return;
+        }
+        if (idempotencyKeyRepository.markApplied(key, IdempotencyContext.currentClaimedAt(), LocalDateTime.now()) == 0) {
+            throw new RuntimeException("Запрос с этим Idempotency-Key перехвачен повтором, перевод отменён");
+        }
+    }
+    
+    /**
+     * Сохраняет ответ на запрос, занявший ключ. В кэш ответ попадает после COMMIT.
+     * Если ключ тем временем перехватил повтор, ответ не сохраняется - его сохранит повтор
+     */
+    @Transactional
+    public void complete(String key, LocalDateTime claimedAt, IdempotentResponse response) {
+        if (idempotencyKeyRepository.complete(key, claimedAt, response.getStatus(), response.getContentType(),
+                response.getBody(), LocalDateTime.now()) == 0) {
+            log.warn("Ключ идемпотентности {} перехвачен повтором, ответ не сохранён", key);
+            return;
+        }
+        cacheAfterCommit(key, response);
+    }
+    
+    /**
+     * Освобождает ключ запроса, который завершился ошибкой сервера: повтор выполнится заново
+     */
+    @Transactional
+    public void release(String key, LocalDateTime claimedAt) {
+        idempotencyKeyRepository.release(key, claimedAt);
+    }
+    
+    @Scheduled(initialDelayString = "${acid.idempotency.cleanup-interval:1h}",
+            fixedDelayString = "${acid.idempotency.cleanup-interval:1h}")
+    @Transactional
+    public void deleteExpired() {
+        int deleted = idempotencyKeyRepository.deleteCreatedBefore(LocalDateTime.now().minus(properties.getRetention()));
+        if (deleted > 0) {
+            log.info("Удалено ключей идемпотентности старше {}: {}", properties.getRetention(), deleted);
+        }
+    }
+    
+    private boolean isApplied(IdempotencyKey existing) {
+        return existing.getAppliedAt() != null
+                || transactionLogRepository.existsByIdempotencyKeyAndStatus(existing.getKey(), TransactionStatus.SUCCESS);
+    }
+    
+    /**
+     * Завершает брошенный ключ, перевод по которому зафиксирован, ответом APPLIED_RESPONSE_BODY
+     */
+    private Claim completeApplied(IdempotencyKey existing) {
+        IdempotentResponse response = new IdempotentResponse(existing.getRequestHash(), HttpStatus.OK.value(),
+                MediaType.APPLICATION_JSON_VALUE, APPLIED_RESPONSE_BODY);
+        if (idempotencyKeyRepository.complete(existing.getKey(), existing.getClaimedAt(), response.getStatus(),
+                response.getContentType(), response.getBody(), LocalDateTime.now()) == 0) {
+            // ответ тем временем сохранил сам запрос - повтор его получит
+            return new Claim(ClaimStatus.IN_PROGRESS, null);
+        }
+        log.warn("Ключ идемпотентности {} занят с {}, перевод выполнен, но ответ не сохранён - повтор не выполняется",
+                existing.getKey(), existing.getClaimedAt());
+        cacheAfterCommit(existing.getKey(), response);
+        return new Claim(ClaimStatus.COMPLETED, response);
+    }
+    
+    private void cacheAfterCommit(String key, IdempotentResponse response) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                completed.put(key, response);
+            }
+        });
+    }
+    
+    private static Claim replay(IdempotentResponse response, String requestHash) {
+        return response.getRequestHash().equals(requestHash)
+                ? new Claim(ClaimStatus.COMPLETED, response)
+                : new Claim(ClaimStatus.MISMATCH, null);
+    }
+} 
\ No newline at end of file
@@ -1,248 +1,251 @@
 package com.example.acid_demo.service;
 
 import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.ledger.LedgerEngine;
 import com.example.acid_demo.repository.AccountRepository;
+import com.example.acid_demo.scenario.Scenario;
+import com.example.acid_demo.scenario.ScenarioRunner;
 import com.example.acid_demo.util.JsonLogger;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
-import java.util.List;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Демонстрации уровней изоляции. Каждая демонстрация - сценарий ScenarioRunner: чтения и изменения -
+ * отдельные операторы на соединении из пула сценариев, паузы между ними - таймеры.
+ * Открытая транзакция демонстрации занимает соединение пула сценариев, но не поток и не соединение переводов
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class IsolationDemoService {
     
+    private static final String BALANCE_SQL = """
+            SELECT CASE WHEN a.balance_buckets > 0
+                        THEN (SELECT COALESCE(SUM(b.balance), 0) FROM account_balance_buckets b WHERE b.account_id = a.id)
+                        ELSE a.balance END
+            FROM accounts a
+            WHERE a.account_number = ?
+            """;
+    
+    private static final String COUNT_SQL = "SELECT count(*) FROM accounts";
+    
+    // для счетов с корзинами accounts.balance = 0, как в AccountRepository.sumBalances()
+    private static final String TOTAL_SQL = "SELECT (SELECT COALESCE(SUM(balance), 0) FROM accounts) "
+            + "+ (SELECT COALESCE(SUM(balance), 0) FROM account_balance_buckets)";
+    
+    private static final String ADD_TO_BALANCE_SQL = """
+            UPDATE accounts SET balance = balance + ?, version = version + 1
+            WHERE account_number = ? AND balance_buckets = 0
+            RETURNING balance
+            """;
+    
     private final AccountRepository accountRepository;
+    private final ScenarioRunner scenarioRunner;
+    private final AccountCache accountCache;
     private final JsonLogger jsonLogger;
+    private final ObjectProvider<LedgerEngine> ledgerEngine;
     
     /**
      * Демонстрация DIRTY READ (грязное чтение)
      * Читаем незакоммиченные изменения другой транзакции
      */
-    @Transactional(isolation = Isolation.READ_UNCOMMITTED)
-    public BigDecimal readUncommitted(String accountNumber) {
-        jsonLogger.logOperation("ДЕМОНСТРАЦИЯ READ UNCOMMITTED", Map.of(
+    public CompletableFuture<Money> readUncommitted(String accountNumber) {
+        jsonLogger.logOperation("ДЕМОНСТРАЦИЯ READ UNCOMMITTED", () -> Map.of(
             "уровень_изоляции", "READ_UNCOMMITTED",
             "счёт", accountNumber,
             "описание", "Читаем незакоммиченные изменения других транзакций"
         ));
         
-        Account account = accountRepository.findByAccountNumber(accountNumber)
-                .orElseThrow(() -> new RuntimeException("Счёт не найден"));
-        
-        BigDecimal balance = account.getBalance();
-        jsonLogger.logInfo("Первое чтение баланса", Map.of(
-            "счёт", accountNumber,
-            "баланс", balance,
-            "время", System.currentTimeMillis()
-        ));
-        
-        // Задержка для демонстрации
-        try {
-            Thread.sleep(2000);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-        
-        // Читаем ещё раз
-        account = accountRepository.findByAccountNumber(accountNumber)
-                .orElseThrow(() -> new RuntimeException("Счёт не найден"));
-        BigDecimal newBalance = account.getBalance();
-        
-        jsonLogger.logInfo("Второе чтение баланса", Map.of(
-            "счёт", accountNumber,
-            "баланс", newBalance,
-            "изменился", !balance.equals(newBalance),
-            "время", System.currentTimeMillis()
-        ));
-        
-        return newBalance;
+        Scenario scenario = Scenario.readOnlyTransaction("READ_UNCOMMITTED", Isolation.READ_UNCOMMITTED)
+                .statement("первое_чтение", connection -> {
+                    Money balance = readBalance(connection, accountNumber);
+                    jsonLogger.logInfo("Первое чтение баланса", () -> Map.of(
+                        "счёт", accountNumber,
+                        "баланс", balance,
+                        "время", System.currentTimeMillis()
+                    ));
+                    return balance;
+                })
+                // Задержка для демонстрации
+                .pause(Duration.ofSeconds(2))
+                .statement("второе_чтение", connection -> readBalance(connection, accountNumber));
+        
+        return scenarioRunner.run(scenario).thenApply(results -> {
+            Money balance = (Money) results.get("первое_чтение");
+            Money newBalance = (Money) results.get("второе_чтение");
+            
+            jsonLogger.logInfo("Второе чтение баланса", () -> Map.of(
+                "счёт", accountNumber,
+                "баланс", newBalance,
+                "изменился", !balance.equals(newBalance),
+                "время", System.currentTimeMillis()
+            ));
+            
+            return newBalance;
+        });
     }
     
     /**
      * Демонстрация READ COMMITTED
      * Не видим незакоммиченные изменения, но можем увидеть разные данные при повторном чтении
      */
-    @Transactional(isolation = Isolation.READ_COMMITTED)
-    public String demonstrateNonRepeatableRead(String accountNumber) {
-        jsonLogger.logOperation("ДЕМОНСТРАЦИЯ READ COMMITTED", Map.of(
+    public CompletableFuture<String> demonstrateNonRepeatableRead(String accountNumber) {
+        jsonLogger.logOperation("ДЕМОНСТРАЦИЯ READ COMMITTED", () -> Map.of(
             "уровень_изоляции", "READ_COMMITTED",
             "счёт", accountNumber,
             "описание", "Не видим незакоммиченные изменения, но можем увидеть разные данные при повторном чтении"
         ));
         
-        Account account = accountRepository.findByAccountNumber(accountNumber)
-                .orElseThrow(() -> new RuntimeException("Счёт не найден"));
-        
-        BigDecimal firstRead = account.getBalance();
-        jsonLogger.logInfo("Первое чтение", Map.of(
-            "счёт", accountNumber,
-            "баланс", firstRead,
-            "время", System.currentTimeMillis()
-        ));
-        
-        // Задержка для изменения данных в другой транзакции
-        try {
-            Thread.sleep(3000);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-        
-        // Второе чтение
-        account = accountRepository.findByAccountNumber(accountNumber)
-                .orElseThrow(() -> new RuntimeException("Счёт не найден"));
-        BigDecimal secondRead = account.getBalance();
-        
-        boolean changed = !firstRead.equals(secondRead);
-        jsonLogger.logInfo("Второе чтение", Map.of(
-            "счёт", accountNumber,
-            "баланс_первое_чтение", firstRead,
-            "баланс_второе_чтение", secondRead,
-            "изменился", changed,
-            "время", System.currentTimeMillis()
-        ));
-        
-        return String.format("Первое чтение: %s, Второе чтение: %s, Изменилось: %s", 
-                firstRead, secondRead, changed);
+        Scenario scenario = Scenario.readOnlyTransaction("READ_COMMITTED", Isolation.READ_COMMITTED)
+                .statement("первое_чтение", connection -> {
+                    Money firstRead = readBalance(connection, accountNumber);
+                    jsonLogger.logInfo("Первое чтение", () -> Map.of(
+                        "счёт", accountNumber,
+                        "баланс", firstRead,
+                        "время", System.currentTimeMillis()
+                    ));
+                    return firstRead;
+                })
+                // Задержка для изменения данных в другой транзакции
+                .pause(Duration.ofSeconds(3))
+                .statement("второе_чтение", connection -> readBalance(connection, accountNumber));
+        
+        return scenarioRunner.run(scenario).thenApply(results -> {
+            Money firstRead = (Money) results.get("первое_чтение");
+            Money secondRead = (Money) results.get("второе_чтение");
+            
+            boolean changed = !firstRead.equals(secondRead);
+            jsonLogger.logInfo("Второе чтение", () -> Map.of(
+                "счёт", accountNumber,
+                "баланс_первое_чтение", firstRead,
+                "баланс_второе_чтение", secondRead,
+                "изменился", changed,
+                "время", System.currentTimeMillis()
+            ));
+            
+            return String.format("Первое чтение: %s, Второе чтение: %s, Изменилось: %s",
+                    firstRead, secondRead, changed);
+        });
     }
     
     /**
      * Демонстрация REPEATABLE READ
      * Гарантирует одинаковые данные при повторном чтении, но возможны фантомные чтения
      */
-    @Transactional(isolation = Isolation.REPEATABLE_READ)
-    public String demonstrateRepeatableRead(String accountNumber) {
-        jsonLogger.logOperation("ДЕМОНСТРАЦИЯ REPEATABLE READ", Map.of(
+    public CompletableFuture<String> demonstrateRepeatableRead(String accountNumber) {
+        jsonLogger.logOperation("ДЕМОНСТРАЦИЯ REPEATABLE READ", () -> Map.of(
             "уровень_изоляции", "REPEATABLE_READ",
             "счёт", accountNumber,
             "описание", "Гарантирует одинаковые данные при повторном чтении"
         ));
         
-        Account account = accountRepository.findByAccountNumber(accountNumber)
-                .orElseThrow(() -> new RuntimeException("Счёт не найден"));
-        
-        BigDecimal firstRead = account.getBalance();
-        long countBefore = accountRepository.count();
-        
-        jsonLogger.logInfo("Первое чтение", Map.of(
-            "счёт", accountNumber,
-            "баланс", firstRead,
-            "количество_записей", countBefore,
-            "время", System.currentTimeMillis()
-        ));
-        
-        // Задержка
-        try {
-            Thread.sleep(3000);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-        
-        // Второе чтение - должно быть то же значение
-        account = accountRepository.findByAccountNumber(accountNumber)
-                .orElseThrow(() -> new RuntimeException("Счёт не найден"));
-        BigDecimal secondRead = account.getBalance();
-        
-        // Проверка на фантомные чтения
-        try {
-            Thread.sleep(2000);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-        
-        long countAfter = accountRepository.count();
-        
-        jsonLogger.logInfo("Второе чтение", Map.of(
-            "счёт", accountNumber,
-            "баланс_первое_чтение", firstRead,
-            "баланс_второе_чтение", secondRead,
-            "баланс_не_изменился", firstRead.equals(secondRead),
-            "количество_записей_до", countBefore,
-            "количество_записей_после", countAfter,
-            "время", System.currentTimeMillis()
-        ));
-        
-        return String.format("Баланс не изменился: %s (было %s, стало %s). Количество записей: было %d, стало %d", 
-                firstRead.equals(secondRead), firstRead, secondRead, countBefore, countAfter);
+        Scenario scenario = Scenario.readOnlyTransaction("REPEATABLE_READ", Isolation.REPEATABLE_READ)
+                .statement("первое_чтение", connection -> readBalance(connection, accountNumber))
+                .statement("количество_до", IsolationDemoService::countAccounts)
+                .pause(Duration.ofSeconds(3))
+                // Второе чтение - должно быть то же значение
+                .statement("второе_чтение", connection -> readBalance(connection, accountNumber))
+                // Проверка на фантомные чтения
+                .pause(Duration.ofSeconds(2))
+                .statement("количество_после", IsolationDemoService::countAccounts);
+        
+        return scenarioRunner.run(scenario).thenApply(results -> {
+            Money firstRead = (Money) results.get("первое_чтение");
+            Money secondRead = (Money) results.get("второе_чтение");
+            long countBefore = (Long) results.get("количество_до");
+            long countAfter = (Long) results.get("количество_после");
+            
+            jsonLogger.logInfo("Второе чтение", () -> Map.of(
+                "счёт", accountNumber,
+                "баланс_первое_чтение", firstRead,
+                "баланс_второе_чтение", secondRead,
+                "баланс_не_изменился", firstRead.equals(secondRead),
+                "количество_записей_до", countBefore,
+                "количество_записей_после", countAfter,
+                "время", System.currentTimeMillis()
+            ));
+            
+            return String.format("Баланс не изменился: %s (было %s, стало %s). Количество записей: было %d, стало %d",
+                    firstRead.equals(secondRead), firstRead, secondRead, countBefore, countAfter);
+        });
     }
     
     /**
      * Демонстрация SERIALIZABLE
-     * Полная изоляция транзакций
+     * Полная изоляция транзакций.
+     * Сценарии всегда выполняются в основной БД: PostgreSQL не допускает SERIALIZABLE на hot standby.
+     * Для постоянной проверки суммы балансов в работающей системе - BalanceAuditService
      */
-    @Transactional(isolation = Isolation.SERIALIZABLE)
-    public String demonstrateSerializable() {
-        jsonLogger.logOperation("ДЕМОНСТРАЦИЯ SERIALIZABLE", Map.of(
+    public CompletableFuture<String> demonstrateSerializable() {
+        jsonLogger.logOperation("ДЕМОНСТРАЦИЯ SERIALIZABLE", () -> Map.of(
             "уровень_изоляции", "SERIALIZABLE",
             "описание", "Полная изоляция транзакций"
         ));
         
-        List<Account> accounts = accountRepository.findAll();
-        BigDecimal totalBefore = accounts.stream()
-                .map(Account::getBalance)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        jsonLogger.logInfo("Начальное состояние", Map.of(
-            "количество_счетов", accounts.size(),
-            "общая_сумма", totalBefore,
-            "счета", accounts.stream().map(acc -> Map.of(
-                "номер", acc.getAccountNumber(),
-                "баланс", acc.getBalance()
-            )).toList()
-        ));
-        
-        // Задержка
-        try {
-            Thread.sleep(3000);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-        
-        // Повторное чтение
-        accounts = accountRepository.findAll();
-        BigDecimal totalAfter = accounts.stream()
-                .map(Account::getBalance)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        jsonLogger.logInfo("Конечное состояние", Map.of(
-            "количество_счетов", accounts.size(),
-            "общая_сумма", totalAfter,
-            "сумма_не_изменилась", totalBefore.equals(totalAfter),
-            "счета", accounts.stream().map(acc -> Map.of(
-                "номер", acc.getAccountNumber(),
-                "баланс", acc.getBalance()
-            )).toList()
-        ));
-        
-        return String.format("Сумма не изменилась: %s (было %s, стало %s)", 
-                totalBefore.equals(totalAfter), totalBefore, totalAfter);
+        // сумма и число счетов считаются в БД - счета в память не загружаются
+        Scenario scenario = Scenario.readOnlyTransaction("SERIALIZABLE", Isolation.SERIALIZABLE)
+                .statement("количество_до", IsolationDemoService::countAccounts)
+                .statement("сумма_до", connection -> {
+                    Money totalBefore = totalBalance(connection);
+                    jsonLogger.logInfo("Начальное состояние", () -> Map.of(
+                        "общая_сумма", totalBefore
+                    ));
+                    return totalBefore;
+                })
+                .pause(Duration.ofSeconds(3))
+                // Повторное чтение
+                .statement("количество_после", IsolationDemoService::countAccounts)
+                .statement("сумма_после", IsolationDemoService::totalBalance);
+        
+        return scenarioRunner.run(scenario).thenApply(results -> {
+            Money totalBefore = (Money) results.get("сумма_до");
+            Money totalAfter = (Money) results.get("сумма_после");
+            
+            jsonLogger.logInfo("Конечное состояние", () -> Map.of(
+                "количество_счетов_до", results.get("количество_до"),
+                "количество_счетов", results.get("количество_после"),
+                "общая_сумма", totalAfter,
+                "сумма_не_изменилась", totalBefore.equals(totalAfter)
+            ));
+            
+            return String.format("Сумма не изменилась: %s (было %s, стало %s)",
+                    totalBefore.equals(totalAfter), totalBefore, totalAfter);
+        });
     }
     
     /**
      * Метод для изменения баланса (для демонстрации в другом потоке)
      */
     @Transactional
-    public void updateBalance(String accountNumber, BigDecimal amount) {
-        jsonLogger.logOperation("ИЗМЕНЕНИЕ БАЛАНСА", Map.of(
+    public void updateBalance(String accountNumber, Money amount) {
+        jsonLogger.logOperation("ИЗМЕНЕНИЕ БАЛАНСА", () -> Map.of(
             "счёт", accountNumber,
             "сумма_изменения", amount,
             "операция", "UPDATE"
         ));
+        requireNotServedByLedger(accountNumber);
         
         Account account = accountRepository.findByAccountNumber(accountNumber)
                 .orElseThrow(() -> new RuntimeException("Счёт не найден"));
         
-        BigDecimal oldBalance = account.getBalance();
-        account.setBalance(account.getBalance().add(amount));
+        Money oldBalance = account.getBalance();
+        account.setBalance(account.getBalance().plus(amount));
         accountRepository.save(account);
         
-        jsonLogger.logInfo("Баланс изменён", Map.of(
+        jsonLogger.logInfo("Баланс изменён", () -> Map.of(
             "счёт", accountNumber,
             "старый_баланс", oldBalance,
             "новый_баланс", account.getBalance(),
@@ -251,41 +254,93 @@ public class IsolationDemoService {
     }
     
     /**
-     * Метод для долгого изменения (незакоммиченная транзакция)
+     * Долгое изменение (незакоммиченная транзакция): UPDATE, пять секунд ожидания, COMMIT.
+     * Всё это время строка счёта заблокирована, но ждёт таймер, а не поток
      */
-    @Transactional
-    public void longRunningUpdate(String accountNumber, BigDecimal amount) {
-        jsonLogger.logOperation("ДОЛГАЯ ТРАНЗАКЦИЯ", Map.of(
+    public CompletableFuture<Money> longRunningUpdate(String accountNumber, Money amount) {
+        jsonLogger.logOperation("ДОЛГАЯ ТРАНЗАКЦИЯ", () -> Map.of(
             "счёт", accountNumber,
             "сумма_изменения", amount,
             "длительность", "5 секунд"
         ));
-        
-        Account account = accountRepository.findByAccountNumber(accountNumber)
-                .orElseThrow(() -> new RuntimeException("Счёт не найден"));
-        
-        BigDecimal oldBalance = account.getBalance();
-        account.setBalance(account.getBalance().add(amount));
-        accountRepository.save(account);
-        
-        jsonLogger.logInfo("Баланс изменён, но транзакция НЕ закоммичена", Map.of(
-            "счёт", accountNumber,
-            "старый_баланс", oldBalance,
-            "новый_баланс", account.getBalance(),
-            "статус", "UNCOMMITTED"
-        ));
-        
-        // Долгая операция
-        try {
-            Thread.sleep(5000);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+        requireNotServedByLedger(accountNumber);
+        
+        Scenario scenario = Scenario.transaction("LONG_UPDATE", Isolation.READ_COMMITTED)
+                .statement("новый_баланс", connection -> {
+                    Money newBalance = addToBalance(connection, accountNumber, amount);
+                    jsonLogger.logInfo("Баланс изменён, но транзакция НЕ закоммичена", () -> Map.of(
+                        "счёт", accountNumber,
+                        "старый_баланс", newBalance.minus(amount),
+                        "новый_баланс", newBalance,
+                        "статус", "UNCOMMITTED"
+                    ));
+                    return newBalance;
+                })
+                // Долгая операция
+                .pause(Duration.ofSeconds(5));
+        
+        return scenarioRunner.run(scenario).thenApply(results -> {
+            Money newBalance = (Money) results.get("новый_баланс");
+            // UPDATE в обход сущностей - запись кэша сбрасывается после COMMIT
+            accountCache.evictAfterCommit(accountNumber);
+            
+            jsonLogger.logInfo("Транзакция завершена", () -> Map.of(
+                "счёт", accountNumber,
+                "финальный_баланс", newBalance,
+                "статус", "COMMITTED"
+            ));
+            return newBalance;
+        });
+    }
+    
+    /**
+     * Баланс счёта, который обслуживает леджер в памяти, меняет только леджер - как в StripedLedgerService.stripe
+     */
+    private void requireNotServedByLedger(String accountNumber) {
+        LedgerEngine ledger = ledgerEngine.getIfAvailable();
+        if (ledger != null && ledger.serves(accountNumber)) {
+            throw new RuntimeException("Счёт обслуживается леджером в памяти, менять его баланс может только леджер");
+        }
+    }
+    
+    private static Money readBalance(Connection connection, String accountNumber) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(BALANCE_SQL)) {
+            statement.setString(1, accountNumber);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    throw new RuntimeException("Счёт не найден");
+                }
+                return Money.of(rs.getBigDecimal(1));
+            }
+        }
+    }
+    
+    private static long countAccounts(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(COUNT_SQL);
+             ResultSet rs = statement.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+    
+    private static Money totalBalance(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(TOTAL_SQL);
+             ResultSet rs = statement.executeQuery()) {
+            rs.next();
+            return Money.of(rs.getBigDecimal(1));
+        }
+    }
+    
+    private static Money addToBalance(Connection connection, String accountNumber, Money amount) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(ADD_TO_BALANCE_SQL)) {
+            statement.setBigDecimal(1, amount.toBigDecimal());
+            statement.setString(2, accountNumber);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    throw new RuntimeException("Счёт не найден или его баланс разбит на корзины");
+                }
+                return Money.of(rs.getBigDecimal(1));
+            }
         }
-        
-        jsonLogger.logInfo("Транзакция завершается", Map.of(
-            "счёт", accountNumber,
-            "финальный_баланс", account.getBalance(),
-            "статус", "COMMITTING"
-        ));
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,136 @@
+package com.example.acid_demo.service;
+
+import com.example.acid_demo.config.TransferProperties;
+import com.example.acid_demo.dto.RetryOutcome;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.retry.Backoff;
+import com.example.acid_demo.retry.HotKeyTracker;
+import com.example.acid_demo.util.JsonLogger;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Повтор перевода с оптимистичной блокировкой на стороне сервера.
+ * Каждая попытка - отдельная транзакция TransferService, между попытками -
+ * экспоненциальная задержка со случайным разбросом (full jitter).
+ * Счета, на которых часто случаются конфликты, считаются горячими:
+ * переводы с их участием выполняются с пессимистичной блокировкой.
+ * Счётчики публикуются в Micrometer: acid.optimistic.conflicts, acid.optimistic.retry{outcome},
+ * acid.optimistic.retry.attempts (попыток на успешный перевод)
+ */
+@Service
+@Slf4j
+public class OptimisticRetryTransferService {
+    
+    private final TransferService transferService;
+    private final TransferProperties transferProperties;
+    private final JsonLogger jsonLogger;
+    
+    private final HotKeyTracker hotAccounts;
+    
+    private final DistributionSummary attemptsOfSucceeded;
+    private final Counter conflicts;
+    private final Counter exhausted;
+    private final Counter pessimisticFallbacks;
+    
+    public OptimisticRetryTransferService(TransferService transferService, TransferProperties transferProperties,
+                                          JsonLogger jsonLogger, MeterRegistry meterRegistry) {
+        this.transferService = transferService;
+        this.transferProperties = transferProperties;
+        this.jsonLogger = jsonLogger;
+        TransferProperties.OptimisticRetry settings = transferProperties.getOptimisticRetry();
+        this.hotAccounts = new HotKeyTracker(settings.getHotAccountConflicts(), settings.getHotAccountWindow(),
+                settings.getHotAccountMaxTracked());
+        this.attemptsOfSucceeded = DistributionSummary.builder("acid.optimistic.retry.attempts")
+                .description("Число попыток на успешный перевод")
+                .register(meterRegistry);
+        this.conflicts = Counter.builder("acid.optimistic.conflicts")
+                .description("Конфликты версий при оптимистичной блокировке")
+                .register(meterRegistry);
+        this.exhausted = Counter.builder("acid.optimistic.retry")
+                .tag("outcome", "exhausted")
+                .register(meterRegistry);
+        this.pessimisticFallbacks = Counter.builder("acid.optimistic.retry")
+                .tag("outcome", "pessimistic_fallback")
+                .register(meterRegistry);
+    }
+    
+    public RetryOutcome transfer(String fromAccountNumber, String toAccountNumber, Money amount) {
+        TransferProperties.OptimisticRetry settings = transferProperties.getOptimisticRetry();
+        
+        for (int attempt = 1; ; attempt++) {
+            if (settings.isPessimisticFallback() && (hotAccounts.isHot(fromAccountNumber) || hotAccounts.isHot(toAccountNumber))) {
+                transferService.transferWithPessimisticLock(fromAccountNumber, toAccountNumber, amount);
+                pessimisticFallbacks.increment();
+                return recordSuccess(attempt, true);
+            }
+            
+            try {
+                transferService.transferWithOptimisticLock(fromAccountNumber, toAccountNumber, amount);
+                return recordSuccess(attempt, false);
+            } catch (OptimisticLockingFailureException e) {
+                conflicts.increment();
+                hotAccounts.registerFailure(fromAccountNumber);
+                hotAccounts.registerFailure(toAccountNumber);
+                
+                if (attempt >= settings.getMaxAttempts()) {
+                    exhausted.increment();
+                    jsonLogger.logError("Конфликт версий, попытки исчерпаны", () -> Map.of(
+                        "от", fromAccountNumber,
+                        "кому", toAccountNumber,
+                        "попыток", settings.getMaxAttempts()
+                    ));
+                    throw e;
+                }
+                
+                long backoffMs = Backoff.fullJitterMillis(settings.getInitialBackoff(), settings.getMaxBackoff(), attempt);
+                int failedAttempt = attempt;
+                jsonLogger.logInfo("Конфликт версий, повтор перевода", () -> Map.of(
+                    "от", fromAccountNumber,
+                    "кому", toAccountNumber,
+                    "попытка", failedAttempt,
+                    "задержка_мс", backoffMs
+                ));
+                Backoff.sleep(backoffMs, "Повтор перевода прерван");
+            }
+        }
+    }
+    
+    /**
+     * Одна попытка без повтора: конфликт версий учитывается в статистике и пробрасывается вызывающему
+     */
+    public void transferOnce(String fromAccountNumber, String toAccountNumber, Money amount) {
+        try {
+            transferService.transferWithOptimisticLock(fromAccountNumber, toAccountNumber, amount);
+        } catch (OptimisticLockingFailureException e) {
+            conflicts.increment();
+            throw e;
+        }
+    }
+    
+    /**
+     * Статистика повторов: среднее число попыток на успешный перевод, конфликты, переходы на пессимистичную блокировку
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("успешных", attemptsOfSucceeded.count());
+        stats.put("попыток_на_успех", attemptsOfSucceeded.mean());
+        stats.put("конфликтов", (long) conflicts.count());
+        stats.put("попытки_исчерпаны", (long) exhausted.count());
+        stats.put("переходов_на_pessimistic", (long) pessimisticFallbacks.count());
+        stats.put("горячие_счета", hotAccounts.hotKeys());
+        return stats;
+    }
+    
+    private RetryOutcome recordSuccess(int attempts, boolean pessimistic) {
+        attemptsOfSucceeded.record(attempts);
+        return new RetryOutcome(attempts, pessimistic);
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.example.acid_demo.service;
+
+import com.example.acid_demo.entity.TransactionLog;
+import com.example.acid_demo.entity.TransactionLogOutbox;
+import com.example.acid_demo.repository.TransactionLogOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Transactional outbox - лог пишется в outbox в транзакции перевода,
+ * поэтому гарантия "лог есть тогда и только тогда, когда перевод закоммичен" сохраняется
+ */
+@Service
+@ConditionalOnProperty(name = "acid.audit.mode", havingValue = "outbox")
+@RequiredArgsConstructor
+public class OutboxTransactionLogWriter implements TransactionLogWriter {
+    
+    private final TransactionLogOutboxRepository outboxRepository;
+    
+    @Override
+    public void write(TransactionLog transactionLog) {
+        outboxRepository.save(TransactionLogOutbox.from(transactionLog));
+    }
+    
+    @Override
+    public void writeAll(List<TransactionLog> transactionLogs) {
+        outboxRepository.saveAll(transactionLogs.stream().map(TransactionLogOutbox::from).toList());
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.example.acid_demo.service;
+
+import com.example.acid_demo.config.ReplicaProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отставание реплики от основной БД. Раз в acid.replica.lag-check-interval сравнивается
+ * текущая позиция WAL основной БД (pg_current_wal_lsn) с позицией, до которой реплика применила WAL
+ * (pg_last_wal_replay_lsn). Если реплика дошла до позиции основной БД, отставание нулевое,
+ * иначе оно оценивается по времени последней применённой транзакции (pg_last_xact_replay_timestamp).
+ * Пока реплика недоступна или отстаёт больше acid.replica.max-lag, ReplicaRoutingDataSource
+ * отправляет чтения в основную БД. До первой проверки реплика считается непригодной.
+ * Метрики: acid.replica.lag (секунды), acid.replica.lag.bytes, acid.replica.usable (1/0)
+ */
+@Component
+@ConditionalOnProperty(prefix = "acid.replica", name = "enabled", havingValue = "true")
+@Slf4j
+public class ReplicaLagMonitor {
+    
+    private final JdbcTemplate primaryJdbcTemplate;
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final ReplicaProperties properties;
+    
+    private volatile boolean usable;
+    private volatile boolean standby;
+    private volatile double lagSeconds = Double.NaN;
+    private volatile long lagBytes = -1;
+    private volatile String lastError;
+    
+    public ReplicaLagMonitor(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                             @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                             ReplicaProperties properties, MeterRegistry meterRegistry) {
+        this.primaryJdbcTemplate = new JdbcTemplate(primaryDataSource);
+        this.replicaJdbcTemplate = new JdbcTemplate(replicaDataSource);
+        this.properties = properties;
+        TimeGauge.builder("acid.replica.lag", this, TimeUnit.SECONDS, monitor -> monitor.lagSeconds)
+                .description("Отставание реплики от основной БД")
+                .register(meterRegistry);
+        Gauge.builder("acid.replica.lag.bytes", this, monitor -> monitor.lagBytes)
+                .description("Объём WAL, ещё не применённый репликой")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("acid.replica.usable", this, monitor -> monitor.usable ? 1 : 0)
+                .description("1 - чтения readOnly идут на реплику, 0 - в основную БД")
+                .register(meterRegistry);
+    }
+    
+    public boolean isReplicaUsable() {
+        return usable;
+    }
+    
+    @Scheduled(initialDelayString = "${acid.replica.lag-check-interval:1s}",
+            fixedDelayString = "${acid.replica.lag-check-interval:1s}")
+    public void check() {
+        try {
+            // позиция основной БД берётся раньше позиции реплики: догнав её, реплика видит всё,
+            // что было закоммичено до начала проверки
+            long primaryLsn = parseLsn(primaryJdbcTemplate.queryForObject("SELECT pg_current_wal_lsn()::text",
+                    String.class));
+            Map<String, Object> replica = replicaJdbcTemplate.queryForMap("SELECT pg_is_in_recovery() AS standby, "
+                    + "pg_last_wal_replay_lsn()::text AS replay_lsn, "
+                    + "EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp())::float8 AS replay_age");
+            
+            standby = Boolean.TRUE.equals(replica.get("standby"));
+            if (!standby) {
+                // реплика указывает на саму основную БД (или на повышенную до основной реплику)
+                update(0, 0, null);
+                return;
+            }
+            long replayLsn = parseLsn((String) replica.get("replay_lsn"));
+            long bytes = Math.max(0, primaryLsn - replayLsn);
+            Double replayAge = (Double) replica.get("replay_age");
+            double seconds = bytes == 0 ? 0 : replayAge != null ? Math.max(0, replayAge) : Double.POSITIVE_INFINITY;
+            update(seconds, bytes, null);
+        } catch (RuntimeException e) {
+            update(Double.NaN, -1, e.getMessage());
+        }
+    }
+    
+    /**
+     * Соединение с репликой не получено: чтения идут в основную БД до следующей успешной проверки
+     */
+    public void replicaFailed(Exception e) {
+        update(Double.NaN, -1, e.getMessage());
+    }
+    
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("чтения_на_реплику", usable);
+        result.put("реплика_в_режиме_standby", standby);
+        result.put("отставание_сек", Double.isFinite(lagSeconds) ? lagSeconds : null);
+        result.put("отставание_байт", lagBytes >= 0 ? lagBytes : null);
+        result.put("допустимое_отставание", properties.getMaxLag().toString());
+        if (lastError != null) {
+            result.put("ошибка", lastError);
+        }
+        return result;
+    }
+    
+    private synchronized void update(double seconds, long bytes, String error) {
+        boolean nowUsable = error == null && seconds * 1000 <= properties.getMaxLag().toMillis();
+        lagSeconds = seconds;
+        lagBytes = bytes;
+        lastError = error;
+        if (nowUsable != usable) {
+            if (nowUsable) {
+                log.info("Реплика доступна, чтения readOnly идут на реплику (отставание {} с)", seconds);
+            } else {
+                log.warn("Чтения readOnly переключены на основную БД: {}",
+                        error != null ? "реплика недоступна - " + error : "отставание реплики " + seconds + " с");
+            }
+        }
+        usable = nowUsable;
+    }
+    
+    /**
+     * "16/B374D848" -> 0x16B374D848
+     */
+    private static long parseLsn(String lsn) {
+        int slash = lsn.indexOf('/');
+        return (Long.parseLong(lsn.substring(0, slash), 16) << 32) | Long.parseLong(lsn.substring(slash + 1), 16);
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,191 @@
+package com.example.acid_demo.service;
+
+import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.ledger.LedgerEngine;
+import com.example.acid_demo.repository.AccountBalanceBucketRepository;
+import com.example.acid_demo.repository.AccountBalanceBucketRepository.Bucket;
+import com.example.acid_demo.repository.AccountRepository;
+import com.example.acid_demo.util.JsonLogger;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Счета с разбивкой баланса на корзины (для горячих счетов, на которые идёт большая часть зачислений).
+ * Зачисление меняет одну случайную корзину, поэтому параллельные переводы на счёт блокируют разные строки,
+ * а не одну строку accounts. Списание сначала пробует одну случайную корзину и, если в ней не хватает средств,
+ * блокирует все корзины счёта и списывает с нескольких, начиная с самой полной.
+ * Если корзин не оказалось (параллельный unstripe успел собрать баланс), строка счёта перечитывается
+ * под блокировкой и изменение применяется к accounts.balance
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StripedLedgerService {
+    
+    private final AccountRepository accountRepository;
+    private final AccountBalanceBucketRepository bucketRepository;
+    private final AccountCache accountCache;
+    private final JsonLogger jsonLogger;
+    private final ObjectProvider<LedgerEngine> ledgerEngine;
+    
+    public enum DebitResult {
+        DONE,
+        INSUFFICIENT_FUNDS,
+        NOT_STRIPED  // счёта нет
+    }
+    
+    /**
+     * Разбивает баланс счёта на buckets корзин поровну (остаток - в корзину 0).
+     * Повторный вызов с другим числом корзин перераспределяет баланс.
+     * Счета, зарегистрированные в леджере в памяти, не разбиваются: их баланс меняет только леджер
+     */
+    @Transactional
+    public Account stripe(String accountNumber, int buckets) {
+        if (buckets < 1) {
+            throw new RuntimeException("Число корзин должно быть положительным");
+        }
+        LedgerEngine ledger = ledgerEngine.getIfAvailable();
+        if (ledger != null && ledger.serves(accountNumber)) {
+            throw new RuntimeException("Счёт обслуживается леджером в памяти, разбить его баланс нельзя");
+        }
+        Account account = lockAccount(accountNumber);
+        Money total = account.isStriped()
+                ? bucketRepository.deleteAll(account.getId())
+                : account.getBalance();
+        
+        Money share = total.divide(buckets);
+        List<Money> balances = new ArrayList<>(buckets);
+        balances.add(Money.ofMinor(total.minorUnits() - share.minorUnits() * (buckets - 1)));
+        for (int i = 1; i < buckets; i++) {
+            balances.add(share);
+        }
+        bucketRepository.createAll(account.getId(), balances);
+        accountRepository.updateBalanceLayout(account.getId(), Money.ZERO, buckets);
+        accountCache.evictAfterCommit(accountNumber);
+        
+        jsonLogger.logInfo("Баланс счёта разбит на корзины", () -> Map.of(
+            "счёт", accountNumber,
+            "корзин", buckets,
+            "баланс", total
+        ));
+        return accountRepository.findByAccountNumber(accountNumber).orElseThrow();
+    }
+    
+    /**
+     * Собирает корзины обратно в accounts.balance
+     */
+    @Transactional
+    public Account unstripe(String accountNumber) {
+        Account account = lockAccount(accountNumber);
+        if (account.isStriped()) {
+            bucketRepository.lockAll(accountNumber);
+            Money total = bucketRepository.deleteAll(account.getId());
+            accountRepository.updateBalanceLayout(account.getId(), total, 0);
+            accountCache.evictAfterCommit(accountNumber);
+            
+            jsonLogger.logInfo("Корзины счёта собраны в один баланс", () -> Map.of(
+                "счёт", accountNumber,
+                "баланс", total
+            ));
+        }
+        return accountRepository.findByAccountNumber(accountNumber).orElseThrow();
+    }
+    
+    /**
+     * Зачисление в случайную корзину, а если баланс не разбит - в accounts.balance. false - счёта нет
+     */
+    @Transactional
+    public boolean credit(String accountNumber, Money amount) {
+        if (bucketRepository.credit(accountNumber, amount, randomBucket()) == 0) {
+            // корзин нет: счёт не разбит или параллельный unstripe удалил их. Под блокировкой строки счёта
+            // разбивка не меняется, повторяем по актуальной раскладке
+            Optional<Integer> buckets = bucketRepository.lockLayout(accountNumber);
+            if (buckets.isEmpty()) {
+                return false;
+            }
+            if (buckets.get() == 0) {
+                accountRepository.credit(accountNumber, amount);
+            } else {
+                bucketRepository.credit(accountNumber, amount, randomBucket());
+            }
+        }
+        accountCache.evictAfterCommit(accountNumber);
+        return true;
+    }
+    
+    @Transactional
+    public DebitResult debit(String accountNumber, Money amount) {
+        if (bucketRepository.debitIfSufficientFunds(accountNumber, amount, randomBucket()) == 1) {
+            accountCache.evictAfterCommit(accountNumber);
+            return DebitResult.DONE;
+        }
+        
+        // в случайной корзине не хватило средств - списываем с нескольких под блокировкой всех корзин
+        List<Bucket> buckets = bucketRepository.lockAll(accountNumber);
+        if (buckets.isEmpty()) {
+            Optional<Integer> layout = bucketRepository.lockLayout(accountNumber);
+            if (layout.isEmpty()) {
+                return DebitResult.NOT_STRIPED;
+            }
+            if (layout.get() == 0) {
+                return debitUnstriped(accountNumber, amount);
+            }
+            // корзины созданы заново (stripe) - блокировка строки счёта не даёт им измениться до COMMIT
+            buckets = bucketRepository.lockAll(accountNumber);
+        }
+        Money total = buckets.stream().map(Bucket::balance).reduce(Money.ZERO, Money::plus);
+        if (total.isLessThan(amount)) {
+            return DebitResult.INSUFFICIENT_FUNDS;
+        }
+        
+        Money remaining = amount;
+        List<Bucket> fullestFirst = new ArrayList<>(buckets);
+        fullestFirst.sort(Comparator.comparing(Bucket::balance).reversed());
+        for (Bucket bucket : fullestFirst) {
+            if (!remaining.isPositive()) {
+                break;
+            }
+            Money taken = bucket.balance().min(remaining);
+            if (taken.isPositive()) {
+                bucketRepository.debit(bucket.accountId(), bucket.bucket(), taken);
+                remaining = remaining.minus(taken);
+            }
+        }
+        accountCache.evictAfterCommit(accountNumber);
+        return DebitResult.DONE;
+    }
+    
+    private DebitResult debitUnstriped(String accountNumber, Money amount) {
+        if (accountRepository.debitIfSufficientFunds(accountNumber, amount) == 0) {
+            return DebitResult.INSUFFICIENT_FUNDS;
+        }
+        accountCache.evictAfterCommit(accountNumber);
+        return DebitResult.DONE;
+    }
+    
+    /**
+     * Блокирует строку счёта независимо от разбивки: lockAllByAccountNumbers строки счетов с корзинами
+     * не блокирует, а stripe и unstripe должны исключить параллельное изменение разбивки
+     */
+    private Account lockAccount(String accountNumber) {
+        if (bucketRepository.lockLayout(accountNumber).isEmpty()) {
+            throw new RuntimeException("Счёт не найден");
+        }
+        return accountRepository.findByAccountNumber(accountNumber).orElseThrow();
+    }
+    
+    private static int randomBucket() {
+        return ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE);
+    }
+} 
\ No newline at end of file
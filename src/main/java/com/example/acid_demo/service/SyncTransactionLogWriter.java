@@ -0,0 +1,30 @@
+package com.example.acid_demo.service;
+
+import com.example.acid_demo.entity.TransactionLog;
+import com.example.acid_demo.repository.TransactionLogRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Синхронная запись - лог сохраняется в транзакции перевода и откатывается вместе с ней
+ */
+@Service
+@ConditionalOnProperty(name = "acid.audit.mode", havingValue = "sync", matchIfMissing = true)
+@RequiredArgsConstructor
+public class SyncTransactionLogWriter implements TransactionLogWriter {
+    
+    private final TransactionLogRepository transactionLogRepository;
+    
+    @Override
+    public void write(TransactionLog transactionLog) {
+        transactionLogRepository.save(transactionLog);
+    }
+    
+    @Override
+    public void writeAll(List<TransactionLog> transactionLogs) {
+        transactionLogRepository.saveAll(transactionLogs);
+    }
+} 
\ No newline at end of file
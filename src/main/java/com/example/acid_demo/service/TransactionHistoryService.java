@@ -0,0 +1,99 @@
+package com.example.acid_demo.service;
+
+import com.example.acid_demo.dto.TransactionPage;
+import com.example.acid_demo.entity.TransactionLog;
+import com.example.acid_demo.entity.TransactionLog.TransactionStatus;
+import com.example.acid_demo.repository.TransactionLogRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Чтение истории транзакций без загрузки всей таблицы в память
+ */
+@Service
+@RequiredArgsConstructor
+public class TransactionHistoryService {
+    
+    public static final int MAX_PAGE_SIZE = 500;
+    
+    // Начало первой страницы: позже любой записи
+    private static final LocalDateTime FIRST_PAGE_TIMESTAMP = LocalDateTime.of(9999, 12, 31, 0, 0);
+    // Нижняя граница, если since не задан: раньше любой записи
+    private static final LocalDateTime EARLIEST_TIMESTAMP = LocalDateTime.of(1970, 1, 1, 0, 0);
+    
+    private final TransactionLogRepository transactionLogRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    
+    /**
+     * Страница истории (новые записи первыми), начиная после курсора (beforeTimestamp, beforeId).
+     * since ограничивает историю снизу - запрос читает только секции transaction_logs начиная с since
+     */
+    @Transactional(readOnly = true)
+    public TransactionPage findPage(String account, TransactionStatus status, LocalDateTime since,
+                                    LocalDateTime beforeTimestamp, Long beforeId, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        LocalDateTime timestamp = beforeTimestamp != null ? beforeTimestamp : FIRST_PAGE_TIMESTAMP;
+        long id = beforeId != null ? beforeId : Long.MAX_VALUE;
+        String statusName = status != null ? status.name() : null;
+        LocalDateTime from = since != null ? since : EARLIEST_TIMESTAMP;
+        
+        List<TransactionLog> items = account != null
+                ? transactionLogRepository.findAccountPageBefore(account, statusName, from, timestamp, id, pageSize)
+                : transactionLogRepository.findPageBefore(statusName, from, timestamp, id, pageSize);
+        
+        TransactionPage.Cursor nextCursor = null;
+        if (items.size() == pageSize) {
+            TransactionLog last = items.get(items.size() - 1);
+            nextCursor = new TransactionPage.Cursor(last.getTimestamp(), last.getId());
+        }
+        return new TransactionPage(items, nextCursor);
+    }
+    
+    @Transactional(readOnly = true)
+    public Map<TransactionStatus, Long> countByStatus() {
+        Map<TransactionStatus, Long> counts = new EnumMap<>(TransactionStatus.class);
+        for (TransactionLogRepository.StatusCount statusCount : transactionLogRepository.countByStatus()) {
+            if (statusCount.getStatus() != null) {
+                counts.put(statusCount.getStatus(), statusCount.getCount());
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * Выгрузка истории в NDJSON (одна запись - одна строка JSON).
+     * Записи читаются курсором и отсоединяются от контекста сразу после записи,
+     * поэтому память не растёт с размером таблицы
+     */
+    @Transactional(readOnly = true)
+    public long exportNdjson(String account, TransactionStatus status, OutputStream out) {
+        ObjectWriter writer = objectMapper.writerFor(TransactionLog.class);
+        long exported = 0;
+        try (Stream<TransactionLog> transactionLogs = transactionLogRepository.streamAll(account, status)) {
+            for (TransactionLog transactionLog : (Iterable<TransactionLog>) transactionLogs::iterator) {
+                out.write(writer.writeValueAsBytes(transactionLog));
+                out.write('\n');
+                entityManager.detach(transactionLog);
+                exported++;
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return exported;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.example.acid_demo.service;
+
+import com.example.acid_demo.config.AuditProperties;
+import com.example.acid_demo.repository.TransactionLogOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Периодически переносит outbox в transaction_logs пачками по acid.audit.outbox.batch-size
+ */
+@Service
+@ConditionalOnProperty(name = "acid.audit.mode", havingValue = "outbox")
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionLogOutboxRelay {
+    
+    private final TransactionLogOutboxRepository outboxRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final AuditProperties auditProperties;
+    
+    @Scheduled(fixedDelayString = "${acid.audit.outbox.relay-interval:200ms}")
+    public void relay() {
+        int batchSize = auditProperties.getOutbox().getBatchSize();
+        int moved;
+        do {
+            moved = transactionTemplate.execute(status -> outboxRepository.relayBatch(batchSize));
+            if (moved > 0) {
+                log.debug("Перенесено {} записей из outbox в transaction_logs", moved);
+            }
+        } while (moved == batchSize);
+    }
+} 
\ No newline at end of file
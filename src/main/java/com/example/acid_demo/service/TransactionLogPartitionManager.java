@@ -0,0 +1,256 @@
+package com.example.acid_demo.service;
+
+import com.example.acid_demo.config.AuditProperties;
+import com.example.acid_demo.config.AuditProperties.Partitioning.Granularity;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Обслуживание секций transaction_logs (RANGE по timestamp):
+ * - создаёт секции на acid.audit.partitioning.premake периодов вперёд;
+ * - переносит записи из секции DEFAULT в созданные для них секции;
+ * - удаляет секции старше acid.audit.partitioning.retention целиком (DETACH + DROP вместо DELETE),
+ *   при включённом архиве предварительно выгружая их в сжатый CSV.
+ * Имена секций: transaction_logs_pYYYYMM (по месяцам) и transaction_logs_pYYYYMMDD (по дням)
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionLogPartitionManager {
+    
+    private static final String PARENT_TABLE = "transaction_logs";
+    private static final String DEFAULT_PARTITION = "transaction_logs_default";
+    private static final Pattern PARTITION_NAME = Pattern.compile("transaction_logs_p(\\d{6}|\\d{8})");
+    private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final DateTimeFormatter DAY_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    
+    // Ключ advisory-блокировки: несколько экземпляров приложения не обслуживают секции одновременно
+    private static final long MAINTENANCE_LOCK_KEY = 0x7472616e736c6f67L;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AuditProperties auditProperties;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+    
+    @Scheduled(initialDelayString = "${acid.audit.partitioning.maintenance-interval:1h}",
+            fixedDelayString = "${acid.audit.partitioning.maintenance-interval:1h}")
+    public void maintain() {
+        try {
+            createPartitions();
+            applyRetention();
+        } catch (RuntimeException e) {
+            log.error("Ошибка обслуживания секций transaction_logs", e);
+        }
+    }
+    
+    /**
+     * Создаёт секции от текущего периода на premake периодов вперёд, а также для периодов,
+     * записи которых попали в секцию DEFAULT
+     */
+    public void createPartitions() {
+        AuditProperties.Partitioning settings = auditProperties.getPartitioning();
+        Granularity granularity = settings.getGranularity();
+        
+        Set<LocalDate> periods = new TreeSet<>();
+        LocalDate current = periodStart(LocalDate.now(), granularity);
+        for (int i = 0; i <= settings.getPremake(); i++) {
+            periods.add(current);
+            current = nextPeriod(current, granularity);
+        }
+        String unit = granularity == Granularity.DAILY ? "day" : "month";
+        periods.addAll(jdbcTemplate.queryForList(
+                "SELECT DISTINCT date_trunc('" + unit + "', timestamp)::date FROM " + DEFAULT_PARTITION,
+                LocalDate.class));
+        
+        createPartitions(periods, granularity);
+    }
+    
+    /**
+     * Создаёт секции для всех периодов, пересекающих [from, to]. Вызывается перед массовой загрузкой
+     * истории, чтобы записи сразу попадали в свои секции, а не в DEFAULT
+     */
+    public void createPartitions(LocalDateTime from, LocalDateTime to) {
+        Granularity granularity = auditProperties.getPartitioning().getGranularity();
+        Set<LocalDate> periods = new TreeSet<>();
+        LocalDate last = periodStart(to.toLocalDate(), granularity);
+        for (LocalDate period = periodStart(from.toLocalDate(), granularity); !period.isAfter(last);
+             period = nextPeriod(period, granularity)) {
+            periods.add(period);
+        }
+        createPartitions(periods, granularity);
+    }
+    
+    private void createPartitions(Set<LocalDate> periods, Granularity granularity) {
+        for (LocalDate from : periods) {
+            try {
+                createPartition(from, nextPeriod(from, granularity), granularity);
+            } catch (DataAccessException e) {
+                // например, период уже покрыт секцией другой гранулярности
+                log.warn("Секция для периода {} не создана: {}", from, e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Удаляет секции, верхняя граница которых старше срока хранения.
+     * Секция сначала отсоединяется, затем (если включено) архивируется и удаляется.
+     * Отсоединённые, но не удалённые секции (например, после ошибки архивации) дообрабатываются
+     */
+    public void applyRetention() {
+        AuditProperties.Partitioning settings = auditProperties.getPartitioning();
+        if (settings.getRetention() == null) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minus(settings.getRetention());
+        
+        for (String partition : attachedPartitions()) {
+            if (isExpired(partition, cutoff)) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (tryLockMaintenance()) {
+                        jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + partition);
+                    }
+                });
+            }
+        }
+        
+        for (String partition : detachedPartitions()) {
+            if (isExpired(partition, cutoff)) {
+                dropPartition(partition, settings.getArchive());
+            }
+        }
+    }
+    
+    private void dropPartition(String partition, AuditProperties.Archive archive) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!tryLockMaintenance() || !tableExists(partition)) {
+                return;
+            }
+            // при ошибке архивации транзакция откатывается, и отсоединённая секция остаётся до следующего запуска
+            long rows = archive.isEnabled() ? archive(partition, Path.of(archive.getDirectory())) : 0;
+            jdbcTemplate.execute("DROP TABLE " + partition);
+            log.info("Секция {} удалена по сроку хранения{}", partition,
+                    archive.isEnabled() ? ", в архив выгружено строк: " + rows : "");
+        });
+    }
+    
+    private void createPartition(LocalDate from, LocalDate to, Granularity granularity) {
+        String partition = partitionName(from, granularity);
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!tryLockMaintenance() || tableExists(partition)) {
+                return;
+            }
+            jdbcTemplate.execute("CREATE TABLE " + partition
+                    + " (LIKE " + PARENT_TABLE + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            // до ATTACH записи периода должны уйти из DEFAULT, иначе PostgreSQL не присоединит секцию
+            int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                            + " WHERE timestamp >= ? AND timestamp < ? RETURNING *) INSERT INTO " + partition
+                            + " SELECT * FROM moved",
+                    Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(to.atStartOfDay()));
+            jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " ATTACH PARTITION " + partition
+                    + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+            log.info("Создана секция {} [{}, {}), перенесено из DEFAULT: {}", partition, from, to, moved);
+        });
+    }
+    
+    /**
+     * COPY секции в gzip-файл. Файл пишется во временный и переименовывается,
+     * поэтому в каталоге архива не остаётся недописанных файлов
+     */
+    private long archive(String partition, Path directory) {
+        try {
+            Files.createDirectories(directory);
+            Path target = directory.resolve(partition + ".csv.gz");
+            Path temp = directory.resolve(partition + ".csv.gz.tmp");
+            Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                    return connection.unwrap(PGConnection.class).getCopyAPI()
+                            .copyOut("COPY " + partition + " TO STDOUT (FORMAT csv, HEADER)", out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return rows != null ? rows : 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось выгрузить секцию " + partition + " в архив", e);
+        }
+    }
+    
+    private List<String> attachedPartitions() {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                + "WHERE i.inhparent = '" + PARENT_TABLE + "'::regclass", String.class);
+    }
+    
+    private List<String> detachedPartitions() {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_class c "
+                + "WHERE c.relkind = 'r' AND NOT c.relispartition "
+                + "AND c.relnamespace = current_schema()::regnamespace "
+                + "AND c.relname ~ '^transaction_logs_p[0-9]+$'", String.class);
+    }
+    
+    private boolean tryLockMaintenance() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, MAINTENANCE_LOCK_KEY));
+    }
+    
+    private boolean tableExists(String table) {
+        return jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table);
+    }
+    
+    /**
+     * Секция просрочена, если её верхняя граница не позже cutoff. DEFAULT и чужие таблицы не трогаются
+     */
+    private static boolean isExpired(String partition, LocalDateTime cutoff) {
+        Matcher matcher = PARTITION_NAME.matcher(partition);
+        if (!matcher.matches()) {
+            return false;
+        }
+        String suffix = matcher.group(1);
+        LocalDate upperBound = suffix.length() == 6
+                ? LocalDate.parse(suffix + "01", DAY_SUFFIX).plusMonths(1)
+                : LocalDate.parse(suffix, DAY_SUFFIX).plusDays(1);
+        return !upperBound.atStartOfDay().isAfter(cutoff);
+    }
+    
+    private static String partitionName(LocalDate from, Granularity granularity) {
+        return PARENT_TABLE + "_p" + from.format(granularity == Granularity.DAILY ? DAY_SUFFIX : MONTH_SUFFIX);
+    }
+    
+    private static LocalDate periodStart(LocalDate date, Granularity granularity) {
+        return granularity == Granularity.DAILY ? date : date.withDayOfMonth(1);
+    }
+    
+    private static LocalDate nextPeriod(LocalDate from, Granularity granularity) {
+        return granularity == Granularity.DAILY ? from.plusDays(1) : from.plusMonths(1);
+    }
+} 
\ No newline at end of file
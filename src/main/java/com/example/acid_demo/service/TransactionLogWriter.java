@@ -0,0 +1,17 @@
+package com.example.acid_demo.service;
+
+import com.example.acid_demo.entity.TransactionLog;
+
+import java.util.List;
+
+/**
+ * Запись аудита переводов. Реализация выбирается настройкой acid.audit.mode
+ */
+public interface TransactionLogWriter {
+    
+    void write(TransactionLog transactionLog);
+    
+    default void writeAll(List<TransactionLog> transactionLogs) {
+        transactionLogs.forEach(this::write);
+    }
+} 
\ No newline at end of file
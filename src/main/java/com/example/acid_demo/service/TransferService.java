@@ -1,42 +1,112 @@
 package com.example.acid_demo.service;
 
+import com.example.acid_demo.config.TransferProperties;
+import com.example.acid_demo.dto.TransferRequest;
+import com.example.acid_demo.dto.TransferResult;
 import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
 import com.example.acid_demo.entity.TransactionLog;
 import com.example.acid_demo.entity.TransactionLog.TransactionStatus;
+import com.example.acid_demo.ledger.LedgerEngine;
 import com.example.acid_demo.repository.AccountRepository;
-import com.example.acid_demo.repository.TransactionLogRepository;
+import com.example.acid_demo.retry.RetryableTransaction;
+import com.example.acid_demo.retry.TransactionFailures;
+import com.example.acid_demo.util.IdempotencyContext;
 import com.example.acid_demo.util.JsonLogger;
 import jakarta.persistence.LockModeType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.jpa.repository.Lock;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class TransferService {
     
+    private static final String SAME_ACCOUNT_ERROR = "Счета отправителя и получателя совпадают";
+    private static final String LEDGER_ACCOUNT_ERROR = "Счёт обслуживается леджером в памяти, переводы по нему выполняет только леджер";
+    
     private final AccountRepository accountRepository;
-    private final TransactionLogRepository transactionLogRepository;
+    private final TransactionLogWriter transactionLogWriter;
     private final JsonLogger jsonLogger;
+    private final TransferProperties transferProperties;
+    private final AccountCache accountCache;
+    private final StripedLedgerService stripedLedgerService;
+    private final IdempotencyService idempotencyService;
+    private final ObjectProvider<LedgerEngine> ledgerEngine;
+    
+    /**
+     * Способ выполнения атомарного перевода
+     */
+    public enum TransferMode {
+        ENTITY,             // чтение сущностей, проверка баланса в Java, UPDATE через dirty checking
+        CONDITIONAL_UPDATE, // два UPDATE с проверкой баланса в WHERE, без чтения счетов
+        SERIALIZABLE,       // как ENTITY, но в SERIALIZABLE с повтором при serialization failure
+        REPEATABLE_READ     // как ENTITY, но в REPEATABLE READ с повтором при конкурентном изменении
+    }
     
     /**
-     * Демонстрация АТОМАРНОСТИ - либо все операции выполнятся, либо ни одна
+     * Демонстрация АТОМАРНОСТИ - либо все операции выполнятся, либо ни одна.
+     * Встречные переводы могут попасть в deadlock при flush - транзакция-жертва повторяется
      */
     @Transactional
-    public void transferMoney(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
-        jsonLogger.logOperation("НАЧАЛО ТРАНЗАКЦИИ ПЕРЕВОДА", Map.of(
+    @RetryableTransaction(keys = {0, 1}, lockFallback = "transferMoneyWithRowLocks")
+    public void transferMoney(String fromAccountNumber, String toAccountNumber, Money amount) {
+        transferEntities(fromAccountNumber, toAccountNumber, amount, "ATOMIC", false);
+    }
+    
+    /**
+     * Перевод в SERIALIZABLE: проверка баланса и изменение выполняются так, будто переводы идут по одному.
+     * Конфликт с параллельной транзакцией PostgreSQL обнаруживает сам и прерывает одну из них (40001),
+     * её повторяет TransactionRetryExecutor. Горячие счета переводятся с блокировкой строк
+     */
+    @Transactional(isolation = Isolation.SERIALIZABLE)
+    @RetryableTransaction(keys = {0, 1}, lockFallback = "transferMoneyWithRowLocks")
+    public void transferSerializable(String fromAccountNumber, String toAccountNumber, Money amount) {
+        transferEntities(fromAccountNumber, toAccountNumber, amount, "SERIALIZABLE", false);
+    }
+    
+    /**
+     * Перевод в REPEATABLE READ: изменение счёта, который уже изменила и закоммитила параллельная транзакция,
+     * прерывается с 40001 ("could not serialize access due to concurrent update") и повторяется
+     */
+    @Transactional(isolation = Isolation.REPEATABLE_READ)
+    @RetryableTransaction(keys = {0, 1}, lockFallback = "transferMoneyWithRowLocks")
+    public void transferRepeatableRead(String fromAccountNumber, String toAccountNumber, Money amount) {
+        transferEntities(fromAccountNumber, toAccountNumber, amount, "REPEATABLE_READ", false);
+    }
+    
+    /**
+     * Тот же перевод в READ COMMITTED с блокировкой обоих счетов (SELECT ... FOR UPDATE в порядке id).
+     * Сюда TransactionRetryExecutor переводит горячие транзакции: ожидание блокировки вместо повторов
+     */
+    @Transactional
+    public void transferMoneyWithRowLocks(String fromAccountNumber, String toAccountNumber, Money amount) {
+        transferEntities(fromAccountNumber, toAccountNumber, amount, "ROW_LOCKS", true);
+    }
+    
+    private void transferEntities(String fromAccountNumber, String toAccountNumber, Money amount, String type,
+                                  boolean lockRows) {
+        jsonLogger.logOperation("НАЧАЛО ТРАНЗАКЦИИ ПЕРЕВОДА", () -> Map.of(
             "от", fromAccountNumber,
             "кому", toAccountNumber,
             "сумма", amount,
-            "тип", "ATOMIC",
+            "тип", type,
             "время", LocalDateTime.now()
         ));
         
@@ -45,15 +115,25 @@ public class TransferService {
         transactionLog.setToAccount(toAccountNumber);
         transactionLog.setAmount(amount);
         transactionLog.setTimestamp(LocalDateTime.now());
+        transactionLog.setIdempotencyKey(IdempotencyContext.currentKey());
         
         try {
+            requireDistinctAccounts(fromAccountNumber, toAccountNumber);
+            requireNotServedByLedger(fromAccountNumber, toAccountNumber);
+            if (lockRows) {
+                // оба счёта блокируются одним запросом в порядке id; чтения ниже вернут
+                // уже загруженные под блокировкой сущности из контекста персистентности
+                accountRepository.lockAllByAccountNumbers(List.of(fromAccountNumber, toAccountNumber),
+                        transferProperties.getLockTimeout());
+            }
+            
             Account fromAccount = accountRepository.findByAccountNumber(fromAccountNumber)
                     .orElseThrow(() -> new RuntimeException("Счёт отправителя не найден"));
             
             Account toAccount = accountRepository.findByAccountNumber(toAccountNumber)
                     .orElseThrow(() -> new RuntimeException("Счёт получателя не найден"));
             
-            jsonLogger.logInfo("Состояние счетов ДО перевода", Map.of(
+            jsonLogger.logInfo("Состояние счетов ДО перевода", () -> Map.of(
                 "счёт_отправителя", Map.of(
                     "номер", fromAccount.getAccountNumber(),
                     "баланс", fromAccount.getBalance()
@@ -64,20 +144,21 @@ public class TransferService {
                 )
             ));
             
-            if (fromAccount.getBalance().compareTo(amount) < 0) {
+            if (fromAccount.getBalance().isLessThan(amount)) {
                 throw new RuntimeException("Недостаточно средств на счёте");
             }
             
-            fromAccount.setBalance(fromAccount.getBalance().subtract(amount));
-            toAccount.setBalance(toAccount.getBalance().add(amount));
+            withdraw(fromAccount, amount);
+            deposit(toAccount, amount);
             
             accountRepository.save(fromAccount);
             accountRepository.save(toAccount);
+            idempotencyService.markApplied();
             
             transactionLog.setStatus(TransactionStatus.SUCCESS);
-            transactionLogRepository.save(transactionLog);
+            transactionLogWriter.write(transactionLog);
             
-            jsonLogger.logInfo("Состояние счетов ПОСЛЕ перевода", Map.of(
+            jsonLogger.logInfo("Состояние счетов ПОСЛЕ перевода", () -> Map.of(
                 "счёт_отправителя", Map.of(
                     "номер", fromAccount.getAccountNumber(),
                     "баланс", fromAccount.getBalance()
@@ -90,7 +171,82 @@ public class TransferService {
             ));
             
         } catch (Exception e) {
-            jsonLogger.logError("ОШИБКА при переводе", Map.of(
+            if (TransactionFailures.isRetryable(e)) {
+                // транзакция уже прервана и будет повторена - записывать FAILED в неё нельзя
+                throw e;
+            }
+            jsonLogger.logError("ОШИБКА при переводе", () -> Map.of(
+                "от", fromAccountNumber,
+                "кому", toAccountNumber,
+                "сумма", amount,
+                "ошибка", e.getMessage(),
+                "статус", "FAILED"
+            ));
+            transactionLog.setStatus(TransactionStatus.FAILED);
+            transactionLog.setErrorMessage(e.getMessage());
+            transactionLogWriter.write(transactionLog);
+            throw e;
+        }
+    }
+    
+    /**
+     * Атомарный перевод условными UPDATE - без чтения счетов.
+     * Нехватка средств определяется по числу изменённых строк, блокировки строк держатся только
+     * от UPDATE до COMMIT. UPDATE выполняются в порядке номеров счетов, поэтому встречные переводы
+     * не блокируют друг друга намертво
+     */
+    @Transactional
+    public void transferWithConditionalUpdate(String fromAccountNumber, String toAccountNumber, Money amount) {
+        jsonLogger.logOperation("НАЧАЛО ТРАНЗАКЦИИ ПЕРЕВОДА", () -> Map.of(
+            "от", fromAccountNumber,
+            "кому", toAccountNumber,
+            "сумма", amount,
+            "тип", "CONDITIONAL_UPDATE",
+            "время", LocalDateTime.now()
+        ));
+        
+        TransactionLog transactionLog = new TransactionLog();
+        transactionLog.setFromAccount(fromAccountNumber);
+        transactionLog.setToAccount(toAccountNumber);
+        transactionLog.setAmount(amount);
+        transactionLog.setTimestamp(LocalDateTime.now());
+        transactionLog.setIdempotencyKey(IdempotencyContext.currentKey());
+        
+        try {
+            if (!amount.isPositive()) {
+                throw new RuntimeException("Сумма перевода должна быть положительной");
+            }
+            requireDistinctAccounts(fromAccountNumber, toAccountNumber);
+            requireNotServedByLedger(fromAccountNumber, toAccountNumber);
+            
+            if (fromAccountNumber.compareTo(toAccountNumber) <= 0) {
+                debit(fromAccountNumber, amount);
+                credit(toAccountNumber, amount);
+            } else {
+                credit(toAccountNumber, amount);
+                debit(fromAccountNumber, amount);
+            }
+            
+            // UPDATE в обход сущностей - записи кэша сбрасываются после COMMIT
+            accountCache.evictAfterCommit(fromAccountNumber, toAccountNumber);
+            idempotencyService.markApplied();
+            
+            transactionLog.setStatus(TransactionStatus.SUCCESS);
+            transactionLogWriter.write(transactionLog);
+            
+            jsonLogger.logInfo("Перевод условными UPDATE завершён", () -> Map.of(
+                "от", fromAccountNumber,
+                "кому", toAccountNumber,
+                "сумма", amount,
+                "статус", "SUCCESS"
+            ));
+            
+        } catch (Exception e) {
+            if (TransactionFailures.isRetryable(e)) {
+                // транзакция уже прервана и будет повторена - записывать FAILED в неё нельзя
+                throw e;
+            }
+            jsonLogger.logError("ОШИБКА при переводе", () -> Map.of(
                 "от", fromAccountNumber,
                 "кому", toAccountNumber,
                 "сумма", amount,
@@ -99,37 +255,78 @@ public class TransferService {
             ));
             transactionLog.setStatus(TransactionStatus.FAILED);
             transactionLog.setErrorMessage(e.getMessage());
-            transactionLogRepository.save(transactionLog);
+            transactionLogWriter.write(transactionLog);
             throw e;
         }
     }
     
+    private void debit(String accountNumber, Money amount) {
+        if (accountRepository.debitIfSufficientFunds(accountNumber, amount) == 1) {
+            return;
+        }
+        // 0 строк: средств недостаточно, счёта нет или баланс счёта разбит на корзины
+        switch (stripedLedgerService.debit(accountNumber, amount)) {
+            case DONE -> {
+            }
+            case INSUFFICIENT_FUNDS -> throw new RuntimeException("Недостаточно средств на счёте");
+            case NOT_STRIPED -> throw new RuntimeException("Счёт отправителя не найден");
+        }
+    }
+    
+    private void credit(String accountNumber, Money amount) {
+        if (accountRepository.credit(accountNumber, amount) == 0
+                && !stripedLedgerService.credit(accountNumber, amount)) {
+            throw new RuntimeException("Счёт получателя не найден");
+        }
+    }
+    
+    /**
+     * Списание с загруженного счёта: обычный счёт меняется через сущность (UPDATE при flush),
+     * у счёта с корзинами меняются корзины, а строка accounts не меняется и не блокируется
+     */
+    private void withdraw(Account account, Money amount) {
+        if (!account.isStriped()) {
+            account.setBalance(account.getBalance().minus(amount));
+        } else if (stripedLedgerService.debit(account.getAccountNumber(), amount) != StripedLedgerService.DebitResult.DONE) {
+            throw new RuntimeException("Недостаточно средств на счёте");
+        }
+    }
+    
+    private void deposit(Account account, Money amount) {
+        if (!account.isStriped()) {
+            account.setBalance(account.getBalance().plus(amount));
+        } else if (!stripedLedgerService.credit(account.getAccountNumber(), amount)) {
+            throw new RuntimeException("Счёт получателя не найден");
+        }
+    }
+    
     /**
      * Демонстрация нарушения атомарности (БЕЗ @Transactional)
      */
     public void transferMoneyWithoutTransaction(String fromAccountNumber, String toAccountNumber, 
-                                                BigDecimal amount, boolean simulateError) {
-        jsonLogger.logOperation("ПЕРЕВОД БЕЗ ТРАНЗАКЦИИ", Map.of(
+                                                Money amount, boolean simulateError) {
+        jsonLogger.logOperation("ПЕРЕВОД БЕЗ ТРАНЗАКЦИИ", () -> Map.of(
             "от", fromAccountNumber,
             "кому", toAccountNumber,
             "сумма", amount,
             "симуляция_ошибки", simulateError,
             "ВНИМАНИЕ", "Операция выполняется БЕЗ транзакции!"
         ));
+        requireNotServedByLedger(fromAccountNumber, toAccountNumber);
         
         // Списываем деньги
         Account fromAccount = accountRepository.findByAccountNumber(fromAccountNumber)
                 .orElseThrow(() -> new RuntimeException("Счёт отправителя не найден"));
         
-        if (fromAccount.getBalance().compareTo(amount) < 0) {
+        if (fromAccount.getBalance().isLessThan(amount)) {
             throw new RuntimeException("Недостаточно средств на счёте");
         }
         
-        BigDecimal oldBalance = fromAccount.getBalance();
-        fromAccount.setBalance(fromAccount.getBalance().subtract(amount));
+        Money oldBalance = fromAccount.getBalance();
+        withdraw(fromAccount, amount);
         accountRepository.save(fromAccount);
         
-        jsonLogger.logInfo("Деньги СПИСАНЫ", Map.of(
+        jsonLogger.logInfo("Деньги СПИСАНЫ", () -> Map.of(
             "счёт", fromAccountNumber,
             "старый_баланс", oldBalance,
             "новый_баланс", fromAccount.getBalance(),
@@ -138,7 +335,7 @@ public class TransferService {
         
         // Симулируем ошибку после списания
         if (simulateError) {
-            jsonLogger.logError("СИМУЛЯЦИЯ ОШИБКИ после списания", Map.of(
+            jsonLogger.logError("СИМУЛЯЦИЯ ОШИБКИ после списания", () -> Map.of(
                 "статус", "Деньги списаны, но НЕ зачислены!",
                 "счёт_отправителя", fromAccountNumber,
                 "потеряно", amount
@@ -150,11 +347,11 @@ public class TransferService {
         Account toAccount = accountRepository.findByAccountNumber(toAccountNumber)
                 .orElseThrow(() -> new RuntimeException("Счёт получателя не найден"));
         
-        BigDecimal oldToBalance = toAccount.getBalance();
-        toAccount.setBalance(toAccount.getBalance().add(amount));
+        Money oldToBalance = toAccount.getBalance();
+        deposit(toAccount, amount);
         accountRepository.save(toAccount);
         
-        jsonLogger.logInfo("Деньги ЗАЧИСЛЕНЫ", Map.of(
+        jsonLogger.logInfo("Деньги ЗАЧИСЛЕНЫ", () -> Map.of(
             "счёт", toAccountNumber,
             "старый_баланс", oldToBalance,
             "новый_баланс", toAccount.getBalance(),
@@ -166,20 +363,21 @@ public class TransferService {
      * Демонстрация оптимистичной блокировки
      */
     @Transactional
-    public void transferWithOptimisticLock(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
-        jsonLogger.logOperation("ПЕРЕВОД С ОПТИМИСТИЧНОЙ БЛОКИРОВКОЙ", Map.of(
+    public void transferWithOptimisticLock(String fromAccountNumber, String toAccountNumber, Money amount) {
+        jsonLogger.logOperation("ПЕРЕВОД С ОПТИМИСТИЧНОЙ БЛОКИРОВКОЙ", () -> Map.of(
             "от", fromAccountNumber,
             "кому", toAccountNumber,
             "сумма", amount,
             "тип_блокировки", "OPTIMISTIC"
         ));
+        requireNotServedByLedger(fromAccountNumber, toAccountNumber);
         
         Account fromAccount = accountRepository.findByAccountNumberWithOptimisticLock(fromAccountNumber)
                 .orElseThrow(() -> new RuntimeException("Счёт отправителя не найден"));
         Account toAccount = accountRepository.findByAccountNumberWithOptimisticLock(toAccountNumber)
                 .orElseThrow(() -> new RuntimeException("Счёт получателя не найден"));
         
-        jsonLogger.logInfo("Версии счетов", Map.of(
+        jsonLogger.logInfo("Версии счетов", () -> Map.of(
             "счёт_отправителя", Map.of(
                 "номер", fromAccount.getAccountNumber(),
                 "версия", fromAccount.getVersion()
@@ -191,23 +389,20 @@ public class TransferService {
         ));
         
         // Симулируем задержку для возможного конфликта
-        try {
-            Thread.sleep(100);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        simulateDelay(100);
         
-        if (fromAccount.getBalance().compareTo(amount) < 0) {
+        if (fromAccount.getBalance().isLessThan(amount)) {
             throw new RuntimeException("Недостаточно средств на счёте");
         }
         
-        fromAccount.setBalance(fromAccount.getBalance().subtract(amount));
-        toAccount.setBalance(toAccount.getBalance().add(amount));
+        withdraw(fromAccount, amount);
+        deposit(toAccount, amount);
         
         accountRepository.save(fromAccount);
         accountRepository.save(toAccount);
+        idempotencyService.markApplied();
         
-        jsonLogger.logInfo("Перевод с оптимистичной блокировкой завершён", Map.of(
+        jsonLogger.logInfo("Перевод с оптимистичной блокировкой завершён", () -> Map.of(
             "статус", "SUCCESS",
             "новые_версии", Map.of(
                 fromAccount.getAccountNumber(), fromAccount.getVersion(),
@@ -220,47 +415,217 @@ public class TransferService {
      * Демонстрация пессимистичной блокировки
      */
     @Transactional
-    public void transferWithPessimisticLock(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
-        jsonLogger.logOperation("ПЕРЕВОД С ПЕССИМИСТИЧНОЙ БЛОКИРОВКОЙ", Map.of(
+    public void transferWithPessimisticLock(String fromAccountNumber, String toAccountNumber, Money amount) {
+        transferWithPessimisticLock(fromAccountNumber, toAccountNumber, amount, transferProperties.getLockTimeout());
+    }
+    
+    /**
+     * Перевод с пессимистичной блокировкой и таймаутом ожидания блокировки на этот вызов.
+     * Оба счёта блокируются до изменения в порядке id (у счёта с корзинами - все его корзины),
+     * поэтому встречные переводы A→B и B→A ждут друг друга, а не попадают в deadlock
+     */
+    @Transactional
+    public void transferWithPessimisticLock(String fromAccountNumber, String toAccountNumber, Money amount,
+                                            Duration lockTimeout) {
+        jsonLogger.logOperation("ПЕРЕВОД С ПЕССИМИСТИЧНОЙ БЛОКИРОВКОЙ", () -> Map.of(
             "от", fromAccountNumber,
             "кому", toAccountNumber,
             "сумма", amount,
-            "тип_блокировки", "PESSIMISTIC_WRITE"
+            "тип_блокировки", "PESSIMISTIC_WRITE",
+            "таймаут_блокировки", lockTimeout == null ? "без ограничения" : lockTimeout.toMillis() + "ms"
         ));
+        requireNotServedByLedger(fromAccountNumber, toAccountNumber);
         
         long startTime = System.currentTimeMillis();
         
-        Account fromAccount = accountRepository.findByAccountNumberWithPessimisticLock(fromAccountNumber)
+        Map<String, Account> accounts = accountRepository
+                .lockAllByAccountNumbers(List.of(fromAccountNumber, toAccountNumber), lockTimeout).stream()
+                .collect(Collectors.toMap(Account::getAccountNumber, Function.identity()));
+        Account fromAccount = Optional.ofNullable(accounts.get(fromAccountNumber))
                 .orElseThrow(() -> new RuntimeException("Счёт отправителя не найден"));
-        Account toAccount = accountRepository.findByAccountNumberWithPessimisticLock(toAccountNumber)
+        Account toAccount = Optional.ofNullable(accounts.get(toAccountNumber))
                 .orElseThrow(() -> new RuntimeException("Счёт получателя не найден"));
         
-        jsonLogger.logInfo("Счета ЗАБЛОКИРОВАНЫ", Map.of(
+        jsonLogger.logInfo("Счета ЗАБЛОКИРОВАНЫ", () -> Map.of(
             "время_получения_блокировки_мс", System.currentTimeMillis() - startTime,
             "заблокированные_счета", List.of(fromAccountNumber, toAccountNumber)
         ));
         
         // Симулируем долгую операцию
-        try {
-            Thread.sleep(500);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        long lockHoldMs = simulateDelay(500);
         
-        if (fromAccount.getBalance().compareTo(amount) < 0) {
+        if (fromAccount.getBalance().isLessThan(amount)) {
             throw new RuntimeException("Недостаточно средств на счёте");
         }
         
-        fromAccount.setBalance(fromAccount.getBalance().subtract(amount));
-        toAccount.setBalance(toAccount.getBalance().add(amount));
+        withdraw(fromAccount, amount);
+        deposit(toAccount, amount);
         
         accountRepository.save(fromAccount);
         accountRepository.save(toAccount);
+        idempotencyService.markApplied();
         
-        jsonLogger.logInfo("Перевод с пессимистичной блокировкой завершён", Map.of(
+        jsonLogger.logInfo("Перевод с пессимистичной блокировкой завершён", () -> Map.of(
             "статус", "SUCCESS",
             "общее_время_мс", System.currentTimeMillis() - startTime,
-            "время_удержания_блокировки_мс", 500
+            "время_удержания_блокировки_мс", lockHoldMs
+        ));
+    }
+    
+    /**
+     * Пакетный перевод - все переводы пакета выполняются в одной транзакции.
+     * Счета загружаются и блокируются в порядке id (у счетов с корзинами - их корзины), балансы меняются в памяти,
+     * а UPDATE счетов и INSERT логов уходят в БД JDBC-пакетами при flush
+     */
+    @Transactional
+    public List<TransferResult> transferBatch(List<TransferRequest> requests) {
+        jsonLogger.logOperation("НАЧАЛО ПАКЕТНОГО ПЕРЕВОДА", () -> Map.of(
+            "количество_переводов", requests.size(),
+            "тип", "BATCH",
+            "время", LocalDateTime.now()
+        ));
+        
+        Set<String> accountNumbers = new TreeSet<>();
+        for (TransferRequest request : requests) {
+            if (isPresent(request.getFrom())) {
+                accountNumbers.add(request.getFrom());
+            }
+            if (isPresent(request.getTo())) {
+                accountNumbers.add(request.getTo());
+            }
+        }
+        
+        Map<String, Account> accounts = accountNumbers.isEmpty()
+                ? Map.of()
+                : accountRepository.lockAllByAccountNumbers(accountNumbers, null).stream()
+                        .collect(Collectors.toMap(Account::getAccountNumber, Function.identity()));
+        
+        jsonLogger.logInfo("Счета пакета ЗАБЛОКИРОВАНЫ", () -> Map.of(
+            "запрошено_счетов", accountNumbers.size(),
+            "найдено_счетов", accounts.size()
+        ));
+        
+        List<TransferResult> results = new ArrayList<>(requests.size());
+        List<TransactionLog> transactionLogs = new ArrayList<>(requests.size());
+        
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequest request = requests.get(i);
+            Money amount = request.getAmount();
+            
+            // запрос без счёта или суммы отклоняется до поиска счетов: такие счета в запрос блокировки не попали,
+            // а TransactionLog без них не сохранить
+            String error = null;
+            if (!isPresent(request.getFrom())) {
+                error = "Не указан счёт отправителя";
+            } else if (!isPresent(request.getTo())) {
+                error = "Не указан счёт получателя";
+            } else if (amount == null) {
+                error = "Не указана сумма перевода";
+            }
+            if (error != null) {
+                results.add(new TransferResult(i, request.getFrom(), request.getTo(), amount,
+                        TransactionStatus.FAILED, error));
+                continue;
+            }
+            
+            Account fromAccount = accounts.get(request.getFrom());
+            Account toAccount = accounts.get(request.getTo());
+            if (!amount.isPositive()) {
+                error = "Сумма перевода должна быть положительной";
+            } else if (request.getFrom().equals(request.getTo())) {
+                error = SAME_ACCOUNT_ERROR;
+            } else if (servedByLedger(request.getFrom()) || servedByLedger(request.getTo())) {
+                error = LEDGER_ACCOUNT_ERROR;
+            } else if (fromAccount == null) {
+                error = "Счёт отправителя не найден";
+            } else if (toAccount == null) {
+                error = "Счёт получателя не найден";
+            } else if (fromAccount.isStriped()
+                    ? stripedLedgerService.debit(fromAccount.getAccountNumber(), amount) != StripedLedgerService.DebitResult.DONE
+                    : fromAccount.getBalance().isLessThan(amount)) {
+                // для счёта с корзинами проверка и списание - один вызов, баланс сущности не меняется
+                error = "Недостаточно средств на счёте";
+            }
+            
+            TransactionLog transactionLog = new TransactionLog();
+            transactionLog.setFromAccount(request.getFrom());
+            transactionLog.setToAccount(request.getTo());
+            transactionLog.setAmount(amount);
+            transactionLog.setTimestamp(LocalDateTime.now());
+            transactionLog.setIdempotencyKey(IdempotencyContext.currentKey());
+            
+            if (error == null) {
+                // Изменения применяются к управляемым сущностям, UPDATE выполнит dirty checking при flush
+                if (!fromAccount.isStriped()) {
+                    fromAccount.setBalance(fromAccount.getBalance().minus(amount));
+                }
+                deposit(toAccount, amount);
+                transactionLog.setStatus(TransactionStatus.SUCCESS);
+            } else {
+                transactionLog.setStatus(TransactionStatus.FAILED);
+                transactionLog.setErrorMessage(error);
+            }
+            
+            transactionLogs.add(transactionLog);
+            results.add(new TransferResult(i, request.getFrom(), request.getTo(), amount,
+                    transactionLog.getStatus(), error));
+        }
+        
+        transactionLogWriter.writeAll(transactionLogs);
+        idempotencyService.markApplied();
+        
+        long succeeded = results.stream()
+                .filter(r -> r.getStatus() == TransactionStatus.SUCCESS)
+                .count();
+        
+        jsonLogger.logInfo("Пакетный перевод завершён", () -> Map.of(
+            "всего", results.size(),
+            "успешных", succeeded,
+            "неудачных", results.size() - succeeded
         ));
+        
+        return results;
+    }
+    
+    private static boolean isPresent(String accountNumber) {
+        return accountNumber != null && !accountNumber.isBlank();
+    }
+    
+    private static void requireDistinctAccounts(String fromAccountNumber, String toAccountNumber) {
+        if (fromAccountNumber.equals(toAccountNumber)) {
+            throw new RuntimeException(SAME_ACCOUNT_ERROR);
+        }
+    }
+    
+    /**
+     * Пока леджер включён, балансы его счетов меняет только он: перевод мимо леджера не попал бы в его балансы,
+     * и леджер одобрил бы перевод без средств на счёте
+     */
+    private boolean servedByLedger(String accountNumber) {
+        LedgerEngine ledger = ledgerEngine.getIfAvailable();
+        return ledger != null && ledger.serves(accountNumber);
+    }
+    
+    private void requireNotServedByLedger(String fromAccountNumber, String toAccountNumber) {
+        if (servedByLedger(fromAccountNumber) || servedByLedger(toAccountNumber)) {
+            throw new RuntimeException(LEDGER_ACCOUNT_ERROR);
+        }
+    }
+    
+    /**
+     * Искусственная задержка внутри транзакции, отключается настройкой acid.transfer.simulated-delays
+     *
+     * @return фактическая задержка в мс
+     */
+    private long simulateDelay(long millis) {
+        if (!transferProperties.isSimulatedDelays()) {
+            return 0;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return millis;
     }
 } 
\ No newline at end of file
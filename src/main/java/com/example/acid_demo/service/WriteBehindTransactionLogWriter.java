@@ -0,0 +1,160 @@
+package com.example.acid_demo.service;
+
+import com.example.acid_demo.config.AuditProperties;
+import com.example.acid_demo.entity.TransactionLog;
+import com.example.acid_demo.entity.TransactionLog.TransactionStatus;
+import com.example.acid_demo.repository.TransactionLogJdbcRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отложенная запись аудита (write-behind).
+ * Лог попадает в ограниченный буфер после завершения транзакции перевода: при COMMIT - любой,
+ * при ROLLBACK - только FAILED, чтобы неудачные переводы не терялись вместе с откатом.
+ * Фоновый поток вычитывает буфер пачками и пишет их одним INSERT'ом.
+ * Когда буфер заполнен, вызывающий поток ждёт освобождения места (backpressure).
+ * При остановке приложения буфер дописывается в БД полностью
+ */
+@Service
+@ConditionalOnProperty(name = "acid.audit.mode", havingValue = "write-behind")
+@Slf4j
+public class WriteBehindTransactionLogWriter implements TransactionLogWriter, SmartLifecycle {
+    
+    private static final int MAX_INSERT_ATTEMPTS = 3;
+    
+    private final TransactionLogJdbcRepository transactionLogJdbcRepository;
+    private final AuditProperties.WriteBehind settings;
+    private final BlockingQueue<TransactionLog> buffer;
+    
+    private volatile boolean running;
+    private Thread writerThread;
+    
+    public WriteBehindTransactionLogWriter(TransactionLogJdbcRepository transactionLogJdbcRepository,
+                                           AuditProperties auditProperties) {
+        this.transactionLogJdbcRepository = transactionLogJdbcRepository;
+        this.settings = auditProperties.getWriteBehind();
+        this.buffer = new ArrayBlockingQueue<>(settings.getCapacity());
+    }
+    
+    @Override
+    public void write(TransactionLog transactionLog) {
+        if (transactionLog.getTimestamp() == null) {
+            transactionLog.setTimestamp(LocalDateTime.now());
+        }
+        
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(transactionLog);
+            return;
+        }
+        
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED || transactionLog.getStatus() == TransactionStatus.FAILED) {
+                    enqueue(transactionLog);
+                }
+            }
+        });
+    }
+    
+    private void enqueue(TransactionLog transactionLog) {
+        if (!running) {
+            // писатель уже остановлен - пишем сразу, чтобы не потерять запись
+            insert(List.of(transactionLog));
+            return;
+        }
+        
+        try {
+            if (!buffer.offer(transactionLog, settings.getOfferTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Буфер аудита заполнен ({} записей), ожидание фоновой записи", settings.getCapacity());
+                buffer.put(transactionLog);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            insert(List.of(transactionLog));
+        }
+    }
+    
+    private void drainLoop() {
+        List<TransactionLog> batch = new ArrayList<>(settings.getBatchSize());
+        
+        while (running || !buffer.isEmpty()) {
+            try {
+                TransactionLog first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, settings.getBatchSize() - 1);
+                insert(batch);
+            } catch (InterruptedException e) {
+                // остановка: цикл дочитает оставшееся в буфере
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+    
+    private void insert(List<TransactionLog> batch) {
+        for (int attempt = 1; attempt <= MAX_INSERT_ATTEMPTS; attempt++) {
+            try {
+                transactionLogJdbcRepository.insertAll(batch);
+                log.debug("Записано {} логов транзакций", batch.size());
+                return;
+            } catch (Exception e) {
+                log.warn("Ошибка записи пачки аудита (попытка {} из {}): {}",
+                        attempt, MAX_INSERT_ATTEMPTS, e.getMessage());
+            }
+        }
+        log.error("Пачка аудита не записана, потеряно {} записей: {}", batch.size(), batch);
+    }
+    
+    @Override
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::drainLoop, "transaction-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+    
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        List<TransactionLog> rest = new ArrayList<>();
+        buffer.drainTo(rest);
+        if (!rest.isEmpty()) {
+            insert(rest);
+        }
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * Останавливаемся после веб-сервера, чтобы в буфер больше ничего не попадало
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.example.acid_demo.util;
+
+import java.time.LocalDateTime;
+
+/**
+ * Idempotency-Key запроса, который обрабатывается текущим потоком, и отметка, с которой запрос занял ключ.
+ * Устанавливается фильтром на время обработки запроса, TransferService записывает ключ в TransactionLog
+ * и по отметке отмечает ключ применённым в транзакции перевода.
+ * Переводы, запущенные запросом в других потоках (параллельные демонстрации), ключ не наследуют
+ */
+public final class IdempotencyContext {
+    
+    private static final ThreadLocal<Current> CURRENT = new ThreadLocal<>();
+    
+    private IdempotencyContext() {
+    }
+    
+    public static String currentKey() {
+        Current current = CURRENT.get();
+        return current != null ? current.key() : null;
+    }
+    
+    public static LocalDateTime currentClaimedAt() {
+        Current current = CURRENT.get();
+        return current != null ? current.claimedAt() : null;
+    }
+    
+    public static void set(String key, LocalDateTime claimedAt) {
+        CURRENT.set(new Current(key, claimedAt));
+    }
+    
+    public static void clear() {
+        CURRENT.remove();
+    }
+    
+    private record Current(String key, LocalDateTime claimedAt) {
+    }
+}
@@ -1,67 +1,102 @@
 package com.example.acid_demo.util;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.util.Map;
+import java.util.function.Supplier;
 
+/**
+ * Логирование структур в JSON.
+ * Уровень проверяется до сериализации, а перегрузки с {@link Supplier} позволяют не строить
+ * данные для лога вовсе, если уровень выключен.
+ * По умолчанию JSON пишется компактно, форматированный вывод включается настройкой acid.logging.json.pretty
+ */
 @Component
 @Slf4j
 public class JsonLogger {
     
-    private final ObjectMapper objectMapper;
+    private static final String BORDER = "═".repeat(60);
     
-    public JsonLogger() {
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-        this.objectMapper.registerModule(new JavaTimeModule());
-        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final ObjectWriter objectWriter;
+    private final boolean pretty;
+    
+    public JsonLogger(@Value("${acid.logging.json.pretty:false}") boolean pretty) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.pretty = pretty;
+        this.objectWriter = pretty
+                ? objectMapper.writerWithDefaultPrettyPrinter()
+                : objectMapper.writer();
     }
     
     public void logInfo(String message, Object data) {
-        try {
-            String jsonString = objectMapper.writeValueAsString(data);
-            log.info("\n{}\n{}", message, jsonString);
-        } catch (JsonProcessingException e) {
-            log.error("Ошибка при форматировании JSON", e);
-            log.info("{}: {}", message, data);
+        if (log.isInfoEnabled()) {
+            log.info(pretty ? "\n{}\n{}" : "{} {}", message, toJson(data));
+        }
+    }
+    
+    public void logInfo(String message, Supplier<?> data) {
+        if (log.isInfoEnabled()) {
+            logInfo(message, data.get());
         }
     }
     
     public void logDebug(String message, Object data) {
-        try {
-            String jsonString = objectMapper.writeValueAsString(data);
-            log.debug("\n{}\n{}", message, jsonString);
-        } catch (JsonProcessingException e) {
-            log.error("Ошибка при форматировании JSON", e);
-            log.debug("{}: {}", message, data);
+        if (log.isDebugEnabled()) {
+            log.debug(pretty ? "\n{}\n{}" : "{} {}", message, toJson(data));
+        }
+    }
+    
+    public void logDebug(String message, Supplier<?> data) {
+        if (log.isDebugEnabled()) {
+            logDebug(message, data.get());
         }
     }
     
     public void logError(String message, Object data) {
-        try {
-            String jsonString = objectMapper.writeValueAsString(data);
-            log.error("\n{}\n{}", message, jsonString);
-        } catch (JsonProcessingException e) {
-            log.error("Ошибка при форматировании JSON", e);
-            log.error("{}: {}", message, data);
+        if (log.isErrorEnabled()) {
+            log.error(pretty ? "\n{}\n{}" : "{} {}", message, toJson(data));
+        }
+    }
+    
+    public void logError(String message, Supplier<?> data) {
+        if (log.isErrorEnabled()) {
+            logError(message, data.get());
         }
     }
     
     public void logOperation(String operationType, Map<String, Object> details) {
-        String border = "═".repeat(60);
-        String header = String.format("\n%s\n▶ %s\n%s", border, operationType, border);
+        if (!log.isInfoEnabled()) {
+            return;
+        }
         
+        if (pretty) {
+            log.info("\n{}\n▶ {}\n{}\n{}\n{}", BORDER, operationType, BORDER, toJson(details), BORDER);
+        } else {
+            log.info("▶ {} {}", operationType, toJson(details));
+        }
+    }
+    
+    public void logOperation(String operationType, Supplier<Map<String, Object>> details) {
+        if (log.isInfoEnabled()) {
+            logOperation(operationType, details.get());
+        }
+    }
+    
+    private String toJson(Object data) {
         try {
-            String jsonString = objectMapper.writeValueAsString(details);
-            log.info("{}\n{}\n{}", header, jsonString, border);
-        } catch (JsonProcessingException e) {
+            return objectWriter.writeValueAsString(data);
+        } catch (IOException e) {
             log.error("Ошибка при форматировании JSON", e);
-            log.info("{}\n{}\n{}", header, details, border);
+            return String.valueOf(data);
         }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.example.acid_demo.util;
+
+import java.util.function.Supplier;
+
+/**
+ * Чтение только с основной БД для текущего потока: транзакции readOnly, начатые в этом потоке,
+ * не уходят на реплику. Нужно чтениям, которые должны увидеть только что записанные данные
+ * (отставание реплики - от миллисекунд до acid.replica.max-lag).
+ * Для запроса целиком устанавливается фильтром ReadConsistencyFilter по заголовку Read-Consistency: primary
+ */
+public final class ReadRoutingContext {
+    
+    private static final ThreadLocal<Boolean> PRIMARY_FORCED = new ThreadLocal<>();
+    
+    private ReadRoutingContext() {
+    }
+    
+    public static boolean isPrimaryForced() {
+        return PRIMARY_FORCED.get() != null;
+    }
+    
+    public static void forcePrimary() {
+        PRIMARY_FORCED.set(Boolean.TRUE);
+    }
+    
+    public static void clear() {
+        PRIMARY_FORCED.remove();
+    }
+    
+    /**
+     * Выполнить action с чтением из основной БД
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        if (isPrimaryForced()) {
+            return action.get();
+        }
+        forcePrimary();
+        try {
+            return action.get();
+        } finally {
+            clear();
+        }
+    }
+} 
\ No newline at end of file
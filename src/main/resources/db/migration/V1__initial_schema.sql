@@ -0,0 +1,38 @@
+-- Схема, которую раньше создавал Hibernate (ddl-auto: create-drop).
+-- INCREMENT BY должен совпадать с acid.id.allocation_size (pooled-lo оптимизатор)
+
+CREATE SEQUENCE accounts_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE transaction_logs_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE transaction_log_outbox_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE accounts (
+    id             bigint        NOT NULL,
+    account_number varchar(255)  NOT NULL,
+    balance        numeric(38,2) NOT NULL,
+    version        bigint,
+    CONSTRAINT accounts_pkey PRIMARY KEY (id),
+    CONSTRAINT accounts_account_number_key UNIQUE (account_number)
+);
+
+CREATE TABLE transaction_logs (
+    id            bigint        NOT NULL,
+    from_account  varchar(255)  NOT NULL,
+    to_account    varchar(255)  NOT NULL,
+    amount        numeric(38,2) NOT NULL,
+    timestamp     timestamp(6)  NOT NULL,
+    status        varchar(255)  CHECK (status IN ('SUCCESS', 'FAILED', 'ROLLBACK')),
+    error_message varchar(255),
+    CONSTRAINT transaction_logs_pkey PRIMARY KEY (id)
+);
+
+-- outbox без вторичных индексов: INSERT в транзакции перевода должен быть дешёвым
+CREATE TABLE transaction_log_outbox (
+    id            bigint        NOT NULL,
+    from_account  varchar(255)  NOT NULL,
+    to_account    varchar(255)  NOT NULL,
+    amount        numeric(38,2) NOT NULL,
+    timestamp     timestamp(6)  NOT NULL,
+    status        varchar(255)  CHECK (status IN ('SUCCESS', 'FAILED', 'ROLLBACK')),
+    error_message varchar(255),
+    CONSTRAINT transaction_log_outbox_pkey PRIMARY KEY (id)
+);
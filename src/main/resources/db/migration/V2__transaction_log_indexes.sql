@@ -0,0 +1,17 @@
+-- История счёта: каждая ветка UNION ALL в TransactionLogRepository.findAccountPageBefore
+-- читает свой индекс уже в порядке (timestamp DESC, id DESC) и останавливается через LIMIT строк
+CREATE INDEX transaction_logs_from_account_timestamp_idx
+    ON transaction_logs (from_account, timestamp DESC, id DESC);
+
+CREATE INDEX transaction_logs_to_account_timestamp_idx
+    ON transaction_logs (to_account, timestamp DESC, id DESC);
+
+-- Выборки по диапазону времени. Записи добавляются примерно в порядке времени,
+-- поэтому BRIN в сотни раз меньше B-tree и почти не замедляет INSERT
+CREATE INDEX transaction_logs_timestamp_brin_idx
+    ON transaction_logs USING brin (timestamp);
+
+-- Неудачных переводов мало, частичный индекс по ним почти ничего не стоит
+CREATE INDEX transaction_logs_failed_timestamp_idx
+    ON transaction_logs (timestamp DESC, id DESC)
+    WHERE status = 'FAILED';
@@ -0,0 +1,44 @@
+-- transaction_logs секционируется по timestamp (RANGE). Секции создаёт и удаляет
+-- TransactionLogPartitionManager, здесь - только родительская таблица и секция DEFAULT.
+-- Первичный ключ секционированной таблицы обязан включать ключ секционирования
+
+ALTER TABLE transaction_logs RENAME TO transaction_logs_unpartitioned;
+ALTER TABLE transaction_logs_unpartitioned RENAME CONSTRAINT transaction_logs_pkey TO transaction_logs_unpartitioned_pkey;
+DROP INDEX transaction_logs_from_account_timestamp_idx;
+DROP INDEX transaction_logs_to_account_timestamp_idx;
+DROP INDEX transaction_logs_timestamp_brin_idx;
+DROP INDEX transaction_logs_failed_timestamp_idx;
+
+CREATE TABLE transaction_logs (
+    id            bigint        NOT NULL,
+    from_account  varchar(255)  NOT NULL,
+    to_account    varchar(255)  NOT NULL,
+    amount        numeric(38,2) NOT NULL,
+    timestamp     timestamp(6)  NOT NULL,
+    status        varchar(255)  CHECK (status IN ('SUCCESS', 'FAILED', 'ROLLBACK')),
+    error_message varchar(255),
+    CONSTRAINT transaction_logs_pkey PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+-- Записи, для которых ещё нет секции. Менеджер секций переносит их в секции при создании
+CREATE TABLE transaction_logs_default PARTITION OF transaction_logs DEFAULT;
+
+-- Индексы родительской таблицы создаются в каждой секции автоматически
+CREATE INDEX transaction_logs_from_account_timestamp_idx
+    ON transaction_logs (from_account, timestamp DESC, id DESC);
+
+CREATE INDEX transaction_logs_to_account_timestamp_idx
+    ON transaction_logs (to_account, timestamp DESC, id DESC);
+
+CREATE INDEX transaction_logs_timestamp_brin_idx
+    ON transaction_logs USING brin (timestamp);
+
+CREATE INDEX transaction_logs_failed_timestamp_idx
+    ON transaction_logs (timestamp DESC, id DESC)
+    WHERE status = 'FAILED';
+
+INSERT INTO transaction_logs
+SELECT id, from_account, to_account, amount, timestamp, status, error_message
+FROM transaction_logs_unpartitioned;
+
+DROP TABLE transaction_logs_unpartitioned;
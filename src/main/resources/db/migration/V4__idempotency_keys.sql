@@ -0,0 +1,25 @@
+-- Ключи идемпотентности запросов перевода (заголовок Idempotency-Key).
+-- Ключ занимается INSERT ... ON CONFLICT DO NOTHING до выполнения перевода,
+-- после выполнения в записи сохраняется ответ, который возвращается на повторы
+CREATE TABLE idempotency_keys (
+    idempotency_key varchar(255) NOT NULL,
+    request_hash    varchar(64)  NOT NULL,
+    status          varchar(16)  NOT NULL CHECK (status IN ('IN_PROGRESS', 'COMPLETED')),
+    response_status integer,
+    content_type    varchar(255),
+    response_body   text,
+    created_at      timestamp(6) NOT NULL,
+    completed_at    timestamp(6),
+    CONSTRAINT idempotency_keys_pkey PRIMARY KEY (idempotency_key)
+);
+
+-- удаление ключей старше срока хранения
+CREATE INDEX idempotency_keys_created_at_idx ON idempotency_keys (created_at);
+
+-- по ключу находятся записи аудита, созданные запросом
+ALTER TABLE transaction_logs ADD COLUMN idempotency_key varchar(255);
+ALTER TABLE transaction_log_outbox ADD COLUMN idempotency_key varchar(255);
+
+CREATE INDEX transaction_logs_idempotency_key_idx
+    ON transaction_logs (idempotency_key)
+    WHERE idempotency_key IS NOT NULL;
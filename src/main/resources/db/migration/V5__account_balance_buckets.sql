@@ -0,0 +1,12 @@
+-- Разбивка баланса горячих счетов на корзины (striping).
+-- balance_buckets = 0 - баланс хранится в accounts.balance;
+-- balance_buckets = N - accounts.balance равен 0, баланс - сумма N строк account_balance_buckets.
+-- Зачисления идут в случайную корзину, поэтому параллельные переводы на счёт не ждут одну строку
+ALTER TABLE accounts ADD COLUMN balance_buckets integer NOT NULL DEFAULT 0 CHECK (balance_buckets >= 0);
+
+CREATE TABLE account_balance_buckets (
+    account_id bigint        NOT NULL REFERENCES accounts (id) ON DELETE CASCADE,
+    bucket     integer       NOT NULL,
+    balance    numeric(38,2) NOT NULL CHECK (balance >= 0),
+    CONSTRAINT account_balance_buckets_pkey PRIMARY KEY (account_id, bucket)
+);
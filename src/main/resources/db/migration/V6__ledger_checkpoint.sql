@@ -0,0 +1,8 @@
+-- Checkpoint леджера в памяти: номер последней записи журнала, балансы и логи которой уже перенесены
+-- в accounts и transaction_logs. При восстановлении журнал проигрывается с записи sequence + 1
+CREATE TABLE ledger_checkpoint (
+    id         smallint     NOT NULL DEFAULT 1 CHECK (id = 1),
+    sequence   bigint       NOT NULL,
+    updated_at timestamp(6) NOT NULL,
+    CONSTRAINT ledger_checkpoint_pkey PRIMARY KEY (id)
+);
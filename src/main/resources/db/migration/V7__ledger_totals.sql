@@ -0,0 +1,103 @@
+-- Сумма балансов всех счетов для непрерывного аудита без полного сканирования accounts.
+-- Сумма разбита на 16 секций по id счёта (ledger_total_shard), чтобы расхождение можно было локализовать.
+-- Триггеры на accounts и account_balance_buckets пишут изменение суммы каждого оператора
+-- в ledger_total_deltas - только INSERT, поэтому переводы не ждут общую строку и не попадают в deadlock.
+-- BalanceAuditService периодически сворачивает изменения в ledger_totals.
+-- В любом снимке сумма балансов = sum(ledger_totals.total) + sum(ledger_total_deltas.delta).
+-- TRUNCATE триггеры не вызывает: accounts очищается вместе с ledger_totals и ledger_total_deltas
+
+CREATE FUNCTION ledger_total_shard(account_id bigint) RETURNS integer
+    LANGUAGE sql IMMUTABLE PARALLEL SAFE
+    RETURN (account_id % 16)::integer;
+
+CREATE TABLE ledger_totals (
+    shard      integer       NOT NULL,
+    total      numeric(38,2) NOT NULL,
+    updated_at timestamp(6)  NOT NULL,
+    CONSTRAINT ledger_totals_pkey PRIMARY KEY (shard)
+);
+
+-- без индексов: вставка в транзакции перевода должна быть дешёвой, читается таблица целиком.
+-- Строки удаляются при каждом сворачивании, поэтому autovacuum - по числу строк, а не по доле таблицы
+CREATE TABLE ledger_total_deltas (
+    shard integer       NOT NULL,
+    delta numeric(38,2) NOT NULL
+) WITH (autovacuum_vacuum_scale_factor = 0, autovacuum_vacuum_threshold = 10000);
+
+-- Триггеры уровня оператора с таблицами переходов: одна строка изменений на секцию суммы,
+-- сколько бы строк ни изменил оператор (в том числе COPY при массовой загрузке)
+CREATE FUNCTION accounts_ledger_total_delta() RETURNS trigger
+    LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO ledger_total_deltas (shard, delta)
+        SELECT ledger_total_shard(id), sum(balance) FROM new_rows GROUP BY 1 HAVING sum(balance) <> 0;
+    ELSIF TG_OP = 'UPDATE' THEN
+        INSERT INTO ledger_total_deltas (shard, delta)
+        SELECT shard, sum(delta) FROM (
+            SELECT ledger_total_shard(id) AS shard, balance AS delta FROM new_rows
+            UNION ALL
+            SELECT ledger_total_shard(id), -balance FROM old_rows
+        ) d GROUP BY shard HAVING sum(delta) <> 0;
+    ELSE
+        INSERT INTO ledger_total_deltas (shard, delta)
+        SELECT ledger_total_shard(id), -sum(balance) FROM old_rows GROUP BY 1 HAVING sum(balance) <> 0;
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+CREATE FUNCTION account_balance_buckets_ledger_total_delta() RETURNS trigger
+    LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO ledger_total_deltas (shard, delta)
+        SELECT ledger_total_shard(account_id), sum(balance) FROM new_rows GROUP BY 1 HAVING sum(balance) <> 0;
+    ELSIF TG_OP = 'UPDATE' THEN
+        INSERT INTO ledger_total_deltas (shard, delta)
+        SELECT shard, sum(delta) FROM (
+            SELECT ledger_total_shard(account_id) AS shard, balance AS delta FROM new_rows
+            UNION ALL
+            SELECT ledger_total_shard(account_id), -balance FROM old_rows
+        ) d GROUP BY shard HAVING sum(delta) <> 0;
+    ELSE
+        INSERT INTO ledger_total_deltas (shard, delta)
+        SELECT ledger_total_shard(account_id), -sum(balance) FROM old_rows GROUP BY 1 HAVING sum(balance) <> 0;
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+-- таблицы переходов не допускают список столбцов (UPDATE OF balance), лишние UPDATE отсекает HAVING
+CREATE TRIGGER accounts_ledger_total_insert AFTER INSERT ON accounts
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION accounts_ledger_total_delta();
+
+CREATE TRIGGER accounts_ledger_total_update AFTER UPDATE ON accounts
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION accounts_ledger_total_delta();
+
+CREATE TRIGGER accounts_ledger_total_delete AFTER DELETE ON accounts
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION accounts_ledger_total_delta();
+
+CREATE TRIGGER account_balance_buckets_ledger_total_insert AFTER INSERT ON account_balance_buckets
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION account_balance_buckets_ledger_total_delta();
+
+CREATE TRIGGER account_balance_buckets_ledger_total_update AFTER UPDATE ON account_balance_buckets
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION account_balance_buckets_ledger_total_delta();
+
+CREATE TRIGGER account_balance_buckets_ledger_total_delete AFTER DELETE ON account_balance_buckets
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION account_balance_buckets_ledger_total_delta();
+
+INSERT INTO ledger_totals (shard, total, updated_at)
+SELECT shard, sum(balance), localtimestamp
+FROM (
+    SELECT ledger_total_shard(id) AS shard, balance FROM accounts
+    UNION ALL
+    SELECT ledger_total_shard(account_id), balance FROM account_balance_buckets
+) b
+GROUP BY shard;
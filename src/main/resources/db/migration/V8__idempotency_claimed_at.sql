@@ -0,0 +1,6 @@
+-- Время, когда запрос занял ключ. Ключ IN_PROGRESS, занятый дольше acid.idempotency.claim-timeout назад,
+-- считается брошенным (процесс упал во время запроса) и может быть занят повтором.
+-- Завершить или освободить ключ может только запрос, занявший его последним (по claimed_at)
+ALTER TABLE idempotency_keys ADD COLUMN claimed_at timestamp(6);
+UPDATE idempotency_keys SET claimed_at = created_at;
+ALTER TABLE idempotency_keys ALTER COLUMN claimed_at SET NOT NULL;
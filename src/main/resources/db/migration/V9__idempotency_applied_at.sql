@@ -0,0 +1,4 @@
+-- Время, когда перевод запроса с ключом зафиксирован. Ставится в транзакции самого перевода
+-- и только запросом, занявшим ключ последним (по claimed_at): если ключ перехватил повтор, перевод откатывается.
+-- Ключ IN_PROGRESS с applied_at не перехватывается - перевод уже выполнен, повтор получает ответ об этом
+ALTER TABLE idempotency_keys ADD COLUMN applied_at timestamp(6);
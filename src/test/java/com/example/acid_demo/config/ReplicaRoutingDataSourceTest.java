@@ -0,0 +1,105 @@
+package com.example.acid_demo.config;
+
+import com.example.acid_demo.service.ReplicaLagMonitor;
+import com.example.acid_demo.service.TransactionHistoryService;
+import com.example.acid_demo.util.ReadRoutingContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Какой пул получает соединение: "реплика" здесь - та же БД, но отдельный пул replica,
+ * поэтому маршрут виден по числу выданных каждым пулом соединений (hikaricp.connections.usage)
+ */
+@DirtiesContext
+@SpringBootTest(properties = {
+        "acid.replica.enabled=true",
+        "acid.replica.url=${spring.datasource.url}",
+        "acid.replica.lag-check-interval=1h",
+        "acid.replica.hikari.maximum-pool-size=2",
+        "acid.replica.hikari.minimum-idle=1",
+        "spring.datasource.hikari.maximum-pool-size=4",
+        "spring.datasource.hikari.minimum-idle=1"
+})
+class ReplicaRoutingDataSourceTest {
+    
+    @Autowired
+    private TransactionHistoryService transactionHistoryService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @BeforeEach
+    void setUp() {
+        replicaLagMonitor.check();
+        assertThat(replicaLagMonitor.isReplicaUsable()).isTrue();
+    }
+    
+    @Test
+    void readOnlyTransactionsGoToReplica() {
+        assertThat(routeOf(() -> transactionHistoryService.countByStatus())).isEqualTo("replica");
+        assertThat(routeOf(() -> inTransaction(TransactionDefinition.ISOLATION_REPEATABLE_READ, true)))
+                .isEqualTo("replica");
+    }
+    
+    @Test
+    void writesSerializableAndForcedReadsStayOnPrimary() {
+        assertThat(routeOf(() -> inTransaction(TransactionDefinition.ISOLATION_DEFAULT, false))).isEqualTo("primary");
+        assertThat(routeOf(() -> jdbcTemplate.queryForObject("SELECT 1", Integer.class))).isEqualTo("primary");
+        assertThat(routeOf(() -> inTransaction(TransactionDefinition.ISOLATION_SERIALIZABLE, true)))
+                .isEqualTo("primary");
+        assertThat(routeOf(() -> ReadRoutingContext.onPrimary(() -> transactionHistoryService.countByStatus())))
+                .isEqualTo("primary");
+    }
+    
+    @Test
+    void readsFallBackToPrimaryWhenReplicaIsUnusable() {
+        replicaLagMonitor.replicaFailed(new IllegalStateException("реплика остановлена"));
+        
+        assertThat(routeOf(() -> transactionHistoryService.countByStatus())).isEqualTo("primary");
+    }
+    
+    private Integer inTransaction(int isolationLevel, boolean readOnly) {
+        TransactionTemplate template = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        template.setIsolationLevel(isolationLevel);
+        template.setReadOnly(readOnly);
+        return template.execute(status -> jdbcTemplate.queryForObject("SELECT 1", Integer.class));
+    }
+    
+    /**
+     * Пул, выдавший соединения для action
+     */
+    private String routeOf(Runnable action) {
+        Function<String, Long> usages = pool -> {
+            Timer timer = meterRegistry.find("hikaricp.connections.usage").tag("pool", pool).timer();
+            return timer != null ? timer.count() : 0;
+        };
+        long primaryBefore = usages.apply("primary");
+        long replicaBefore = usages.apply("replica");
+        action.run();
+        long primary = usages.apply("primary") - primaryBefore;
+        long replica = usages.apply("replica") - replicaBefore;
+        assertThat(primary + replica).isEqualTo(1);
+        return primary == 1 ? "primary" : "replica";
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.acid_demo.controller;
+
+import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.repository.AccountRepository;
+import com.example.acid_demo.repository.TransactionLogRepository;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Нагрузочный тест: REQUESTS одновременных запросов /transfer/pessimistic-lock, каждый из которых
+ * около секунды держит два соединения (встречные переводы по своей паре счетов со sleep внутри транзакции).
+ * На платформенных потоках одновременно обслуживается не больше server.tomcat.threads.max запросов
+ * (здесь уменьшен до TOMCAT_THREADS, чтобы воспроизвести упор в потоки на небольшой нагрузке).
+ * На виртуальных потоках ограничение - пул соединений, которого хватает на все запросы.
+ * Проверяется не время прогона, а наибольшее число запросов, одновременно находившихся в обработке
+ */
+class VirtualThreadConcurrencyLoadTest {
+    
+    static final int TOMCAT_THREADS = 4;
+    static final int REQUESTS = 16;
+    private static final String PREFIX = "VT-LOAD-";
+    
+    @Nested
+    @TestPropertySource(properties = "spring.threads.virtual.enabled=false")
+    class PlatformThreads extends LoadScenario {
+        
+        @Test
+        void concurrentPessimisticDemos() throws Exception {
+            // запросы проходят волнами по TOMCAT_THREADS
+            assertThat(runConcurrently()).isLessThanOrEqualTo(TOMCAT_THREADS);
+        }
+    }
+    
+    @Nested
+    @TestPropertySource(properties = "spring.threads.virtual.enabled=true")
+    class VirtualThreads extends LoadScenario {
+        
+        @Test
+        void concurrentPessimisticDemos() throws Exception {
+            // запросы не ждут потоков: больше TOMCAT_THREADS обрабатываются одновременно
+            assertThat(runConcurrently()).isGreaterThan(TOMCAT_THREADS);
+        }
+    }
+    
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+            properties = {
+                    "server.tomcat.threads.max=" + TOMCAT_THREADS,
+                    "spring.datasource.hikari.maximum-pool-size=" + (2 * REQUESTS + 4),
+                    "acid.transfer.simulated-delays=true",
+                    "spring.jpa.show-sql=false",
+                    "logging.level.com.example.acid_demo=WARN",
+                    "logging.level.org.springframework.transaction=WARN"
+            })
+    @Import(ConcurrencyProbe.class)
+    abstract static class LoadScenario {
+        
+        @Autowired
+        private AccountRepository accountRepository;
+        
+        @Autowired
+        private TransactionLogRepository transactionLogRepository;
+        
+        @Autowired
+        private ConcurrencyProbe concurrencyProbe;
+        
+        @LocalServerPort
+        private int port;
+        
+        @BeforeEach
+        void setUp() {
+            cleanUp();
+            for (int i = 0; i < 2 * REQUESTS; i++) {
+                accountRepository.save(new Account(account(i), Money.valueOf("1000.00")));
+            }
+        }
+        
+        @AfterEach
+        void cleanUp() {
+            for (int i = 0; i < REQUESTS; i++) {
+                transactionLogRepository.deleteAll(transactionLogRepository
+                        .findByFromAccountOrToAccountOrderByTimestampDesc(account(2 * i), account(2 * i + 1)));
+            }
+            for (int i = 0; i < 2 * REQUESTS; i++) {
+                accountRepository.findByAccountNumber(account(i)).ifPresent(accountRepository::delete);
+            }
+        }
+        
+        /**
+         * @return наибольшее число запросов, одновременно обрабатывавшихся приложением
+         */
+        int runConcurrently() throws Exception {
+            HttpClient client = HttpClient.newHttpClient();
+            // прогрев: инициализация DispatcherServlet, JIT, соединения пула
+            send(client, 0).get();
+            
+            concurrencyProbe.reset();
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>(REQUESTS);
+            for (int i = 0; i < REQUESTS; i++) {
+                responses.add(send(client, i));
+            }
+            for (CompletableFuture<HttpResponse<String>> response : responses) {
+                HttpResponse<String> result = response.get();
+                assertThat(result.statusCode()).isEqualTo(200);
+                assertThat(result.body()).doesNotContain("FAILED");
+            }
+            return concurrencyProbe.maxConcurrent();
+        }
+        
+        private CompletableFuture<HttpResponse<String>> send(HttpClient client, int pair) {
+            URI uri = URI.create("http://localhost:" + port + "/api/acid/transfer/pessimistic-lock?from="
+                    + account(2 * pair) + "&to=" + account(2 * pair + 1) + "&amount=10");
+            return client.sendAsync(HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                    HttpResponse.BodyHandlers.ofString());
+        }
+    }
+    
+    /**
+     * Считает запросы переводов, одновременно находящиеся в обработке, и запоминает максимум
+     */
+    @TestConfiguration
+    static class ConcurrencyProbe {
+        
+        private final AtomicInteger current = new AtomicInteger();
+        private final AtomicInteger max = new AtomicInteger();
+        
+        @Bean
+        OncePerRequestFilter concurrencyProbeFilter() {
+            return new OncePerRequestFilter() {
+                @Override
+                protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                                FilterChain chain) throws ServletException, IOException {
+                    max.accumulateAndGet(current.incrementAndGet(), Math::max);
+                    try {
+                        chain.doFilter(request, response);
+                    } finally {
+                        current.decrementAndGet();
+                    }
+                }
+                
+                @Override
+                protected boolean shouldNotFilter(HttpServletRequest request) {
+                    return !request.getRequestURI().startsWith("/api/acid/transfer/");
+                }
+            };
+        }
+        
+        void reset() {
+            max.set(current.get());
+        }
+        
+        int maxConcurrent() {
+            return max.get();
+        }
+    }
+    
+    private static String account(int i) {
+        return String.format("%s%03d", PREFIX, i);
+    }
+}
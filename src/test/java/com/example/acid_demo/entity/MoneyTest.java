@@ -0,0 +1,95 @@
+package com.example.acid_demo.entity;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Разбор и вывод сумм с фиксированной точкой: знак, ноль, границы long, не больше двух знаков после точки,
+ * ошибочные строки и обмен с БД через MoneyConverter
+ */
+class MoneyTest {
+    
+    private final MoneyConverter converter = new MoneyConverter();
+    
+    @Test
+    void parsesSignedValuesAndZero() {
+        assertThat(Money.valueOf("123.45").minorUnits()).isEqualTo(12345);
+        assertThat(Money.valueOf("+123.45").minorUnits()).isEqualTo(12345);
+        assertThat(Money.valueOf("-123.45").minorUnits()).isEqualTo(-12345);
+        assertThat(Money.valueOf("-0.05").minorUnits()).isEqualTo(-5);
+        assertThat(Money.valueOf("7").minorUnits()).isEqualTo(700);
+        assertThat(Money.valueOf("7.").minorUnits()).isEqualTo(700);
+        assertThat(Money.valueOf(".5").minorUnits()).isEqualTo(50);
+        assertThat(Money.valueOf("0.1").minorUnits()).isEqualTo(10);
+        
+        assertThat(Money.valueOf("0")).isSameAs(Money.ZERO);
+        assertThat(Money.valueOf("-0.00")).isSameAs(Money.ZERO);
+    }
+    
+    @Test
+    void formatsSignedValuesAndZero() {
+        assertThat(Money.ZERO).hasToString("0.00");
+        assertThat(Money.ofMinor(5)).hasToString("0.05");
+        assertThat(Money.ofMinor(-5)).hasToString("-0.05");
+        assertThat(Money.ofMinor(-50)).hasToString("-0.50");
+        assertThat(Money.ofMinor(-12345)).hasToString("-123.45");
+        assertThat(Money.ofMinor(100)).hasToString("1.00");
+    }
+    
+    @Test
+    void acceptsLongBoundsAndRejectsOverflow() {
+        assertThat(Money.valueOf("92233720368547758.07").minorUnits()).isEqualTo(Long.MAX_VALUE);
+        assertThat(Money.valueOf("-92233720368547758.08").minorUnits()).isEqualTo(Long.MIN_VALUE);
+        
+        assertThatThrownBy(() -> Money.valueOf("92233720368547758.08")).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.valueOf("-92233720368547758.09")).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.valueOf("100000000000000000000")).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.of(new BigDecimal("92233720368547758.08")))
+                .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.ofMinor(Long.MAX_VALUE).plus(Money.ofMinor(1)))
+                .isInstanceOf(ArithmeticException.class);
+    }
+    
+    @Test
+    void rejectsFractionsBelowOneMinorUnit() {
+        assertThatThrownBy(() -> Money.valueOf("1.001"))
+                .isInstanceOf(NumberFormatException.class)
+                .hasMessageContaining("копейках");
+        assertThatThrownBy(() -> Money.valueOf("-0.000")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Money.of(new BigDecimal("1.001"))).isInstanceOf(ArithmeticException.class);
+        
+        assertThat(Money.of(new BigDecimal("1.100")).minorUnits()).isEqualTo(110);
+    }
+    
+    @ParameterizedTest
+    @ValueSource(strings = {"", "-", "+", ".", "-.", "--1", "+-1", "1.2.3", "1,00", " 1", "1 ", "1e5", "abc", "1.-5"})
+    void rejectsMalformedStrings(String text) {
+        assertThatThrownBy(() -> Money.valueOf(text)).isInstanceOf(NumberFormatException.class);
+    }
+    
+    @ParameterizedTest
+    @ValueSource(longs = {0, 1, -1, 9, -9, 10, -10, 99, -99, 100, -100, 12345, -12345,
+            Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE - 1, Long.MIN_VALUE + 1})
+    void roundTripsThroughToStringAndConverter(long minorUnits) {
+        Money money = Money.ofMinor(minorUnits);
+        
+        assertThat(Money.valueOf(money.toString())).isEqualTo(money);
+        
+        BigDecimal column = converter.convertToDatabaseColumn(money);
+        assertThat(column.scale()).isEqualTo(Money.SCALE);
+        assertThat(column.toPlainString()).isEqualTo(money.toString());
+        assertThat(converter.convertToEntityAttribute(column)).isEqualTo(money);
+    }
+    
+    @Test
+    void converterPassesNullThrough() {
+        assertThat(converter.convertToDatabaseColumn(null)).isNull();
+        assertThat(converter.convertToEntityAttribute(null)).isNull();
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.acid_demo.filter;
+
+import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.IdempotencyKey;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.entity.TransactionLog;
+import com.example.acid_demo.repository.AccountRepository;
+import com.example.acid_demo.repository.IdempotencyKeyRepository;
+import com.example.acid_demo.repository.TransactionLogRepository;
+import com.example.acid_demo.service.TransferService;
+import com.example.acid_demo.util.IdempotencyContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Повторы перевода с одним Idempotency-Key: одновременные и последовательные повторы
+ * не меняют счета повторно, а получают 409 или сохранённый ответ.
+ * Параметры формы доходят до контроллера, брошенный ключ (процесс упал во время запроса) занимает повтор.
+ * Перевод по ключу фиксируется один раз, даже если исходный запрос упал или завис дольше claim-timeout
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "acid.transfer.simulated-delays=false",
+                "acid.idempotency.claim-timeout=1m"
+        })
+class IdempotencyFilterTest {
+    
+    private static final int RETRIES = 8;
+    private static final String FROM = "IDEMPOTENCY-FROM";
+    private static final String TO = "IDEMPOTENCY-TO";
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private TransactionLogRepository transactionLogRepository;
+    
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+    
+    @Autowired
+    private TransferService transferService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @LocalServerPort
+    private int port;
+    
+    private final String key = UUID.randomUUID().toString();
+    
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        accountRepository.save(new Account(FROM, Money.valueOf("1000.00")));
+        accountRepository.save(new Account(TO, Money.valueOf("0.00")));
+    }
+    
+    @AfterEach
+    void cleanUp() {
+        idempotencyKeyRepository.deleteById(key);
+        transactionLogRepository.deleteAll(transactionLogRepository.findByFromAccountOrToAccountOrderByTimestampDesc(FROM, TO));
+        accountRepository.findByAccountNumber(FROM).ifPresent(accountRepository::delete);
+        accountRepository.findByAccountNumber(TO).ifPresent(accountRepository::delete);
+    }
+    
+    @Test
+    void retriesWithSameKeyTransferOnce() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        
+        List<CompletableFuture<HttpResponse<String>>> concurrent = new ArrayList<>();
+        for (int i = 0; i < RETRIES; i++) {
+            concurrent.add(client.sendAsync(transfer("100"), HttpResponse.BodyHandlers.ofString()));
+        }
+        for (CompletableFuture<HttpResponse<String>> response : concurrent) {
+            // один запрос выполняет перевод, остальные видят ключ занятым или уже получают его ответ
+            assertThat(response.get().statusCode()).isIn(200, 409);
+        }
+        
+        HttpResponse<String> replay = client.send(transfer("100"), HttpResponse.BodyHandlers.ofString());
+        assertThat(replay.statusCode()).isEqualTo(200);
+        assertThat(replay.headers().firstValue(IdempotencyFilter.REPLAYED_HEADER)).contains("true");
+        assertThat(replay.body()).contains("SUCCESS");
+        
+        HttpResponse<String> changedAmount = client.send(transfer("200"), HttpResponse.BodyHandlers.ofString());
+        assertThat(changedAmount.statusCode()).isEqualTo(422);
+        
+        assertThat(accountRepository.findByAccountNumber(FROM).orElseThrow().getBalance())
+                .isEqualTo(Money.valueOf("900.00"));
+        assertThat(accountRepository.findByAccountNumber(TO).orElseThrow().getBalance())
+                .isEqualTo(Money.valueOf("100.00"));
+        assertThat(transactionLogRepository.findByFromAccountOrToAccountOrderByTimestampDesc(FROM, TO))
+                .singleElement()
+                .extracting(TransactionLog::getIdempotencyKey)
+                .isEqualTo(key);
+    }
+    
+    @Test
+    void formParametersReachController() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest form = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/acid/transfer/atomic"))
+                .header(IdempotencyFilter.HEADER, key)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString("from=" + FROM + "&to=" + TO + "&amount=100"))
+                .build();
+        
+        HttpResponse<String> response = client.send(form, HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).contains("SUCCESS");
+        
+        HttpResponse<String> replay = client.send(form, HttpResponse.BodyHandlers.ofString());
+        assertThat(replay.headers().firstValue(IdempotencyFilter.REPLAYED_HEADER)).contains("true");
+        assertThat(accountRepository.findByAccountNumber(TO).orElseThrow().getBalance())
+                .isEqualTo(Money.valueOf("100.00"));
+    }
+    
+    @Test
+    void staleClaimIsTakenOver() throws Exception {
+        // процесс упал во время запроса: ключ остался IN_PROGRESS, перевод не выполнен
+        insertStaleClaim();
+        
+        HttpClient client = HttpClient.newHttpClient();
+        HttpResponse<String> retry = client.send(transfer("100"), HttpResponse.BodyHandlers.ofString());
+        assertThat(retry.statusCode()).isEqualTo(200);
+        assertThat(retry.body()).contains("SUCCESS");
+        assertThat(accountRepository.findByAccountNumber(TO).orElseThrow().getBalance())
+                .isEqualTo(Money.valueOf("100.00"));
+        assertThat(idempotencyKeyRepository.findById(key).orElseThrow().getStatus())
+                .isEqualTo(IdempotencyKey.Status.COMPLETED);
+    }
+    
+    @Test
+    void recentClaimIsNotTakenOver() throws Exception {
+        LocalDateTime claimedAt = LocalDateTime.now();
+        jdbcTemplate.update("INSERT INTO idempotency_keys (idempotency_key, request_hash, status, created_at, claimed_at) "
+                + "VALUES (?, ?, 'IN_PROGRESS', ?, ?)", key, fingerprint("100"), claimedAt, claimedAt);
+        
+        HttpResponse<String> retry = HttpClient.newHttpClient().send(transfer("100"), HttpResponse.BodyHandlers.ofString());
+        assertThat(retry.statusCode()).isEqualTo(409);
+        assertThat(accountRepository.findByAccountNumber(TO).orElseThrow().getBalance())
+                .isEqualTo(Money.valueOf("0.00"));
+    }
+    
+    @Test
+    void appliedStaleClaimIsNotExecutedAgain() throws Exception {
+        // процесс упал после COMMIT перевода, но до сохранения ответа: ключ остался IN_PROGRESS
+        LocalDateTime claimedAt = insertStaleClaim();
+        runAsClaimant(claimedAt, () -> transferService.transferMoney(FROM, TO, Money.valueOf("100")));
+        
+        HttpResponse<String> retry = HttpClient.newHttpClient().send(transfer("100"), HttpResponse.BodyHandlers.ofString());
+        assertThat(retry.statusCode()).isEqualTo(200);
+        assertThat(retry.headers().firstValue(IdempotencyFilter.REPLAYED_HEADER)).contains("true");
+        assertThat(retry.body()).contains("SUCCESS");
+        
+        assertThat(accountRepository.findByAccountNumber(FROM).orElseThrow().getBalance())
+                .isEqualTo(Money.valueOf("900.00"));
+        assertThat(idempotencyKeyRepository.findById(key).orElseThrow().getStatus())
+                .isEqualTo(IdempotencyKey.Status.COMPLETED);
+    }
+    
+    @Test
+    void stalledRequestIsRolledBackAfterTakeOver() throws Exception {
+        // исходный запрос завис дольше claim-timeout, повтор перехватил ключ и выполнил перевод
+        LocalDateTime claimedAt = insertStaleClaim();
+        HttpResponse<String> retry = HttpClient.newHttpClient().send(transfer("100"), HttpResponse.BodyHandlers.ofString());
+        assertThat(retry.statusCode()).isEqualTo(200);
+        
+        // исходный запрос дошёл до перевода - ключ уже не его, перевод откатывается
+        assertThatThrownBy(() -> runAsClaimant(claimedAt,
+                () -> transferService.transferMoney(FROM, TO, Money.valueOf("100"))))
+                .hasMessageContaining("перехвачен повтором");
+        
+        assertThat(accountRepository.findByAccountNumber(FROM).orElseThrow().getBalance())
+                .isEqualTo(Money.valueOf("900.00"));
+        assertThat(accountRepository.findByAccountNumber(TO).orElseThrow().getBalance())
+                .isEqualTo(Money.valueOf("100.00"));
+    }
+    
+    /**
+     * Ключ, занятый запросом transfer("100") 5 минут назад и не завершённый
+     */
+    private LocalDateTime insertStaleClaim() {
+        LocalDateTime claimedAt = LocalDateTime.now().minusMinutes(5).truncatedTo(ChronoUnit.MICROS);
+        jdbcTemplate.update("INSERT INTO idempotency_keys (idempotency_key, request_hash, status, created_at, claimed_at) "
+                + "VALUES (?, ?, 'IN_PROGRESS', ?, ?)", key, fingerprint("100"), claimedAt, claimedAt);
+        return claimedAt;
+    }
+    
+    /**
+     * Выполняет действие так, как его выполнил бы запрос, занявший ключ в claimedAt
+     */
+    private void runAsClaimant(LocalDateTime claimedAt, Runnable action) {
+        IdempotencyContext.set(key, claimedAt);
+        try {
+            action.run();
+        } finally {
+            IdempotencyContext.clear();
+        }
+    }
+    
+    /**
+     * Отпечаток запроса transfer(amount), как его вычисляет фильтр
+     */
+    private static String fingerprint(String amount) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/acid/transfer/atomic");
+        request.setParameter("from", FROM);
+        request.setParameter("to", TO);
+        request.setParameter("amount", amount);
+        return IdempotencyFilter.fingerprint(request, new byte[0]);
+    }
+    
+    private HttpRequest transfer(String amount) {
+        URI uri = URI.create("http://localhost:" + port + "/api/acid/transfer/atomic?from=" + FROM
+                + "&to=" + TO + "&amount=" + amount);
+        return HttpRequest.newBuilder(uri)
+                .header(IdempotencyFilter.HEADER, key)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.acid_demo.ledger;
+
+import com.example.acid_demo.dto.TransferRequest;
+import com.example.acid_demo.dto.TransferResult;
+import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.entity.TransactionLog.TransactionStatus;
+import com.example.acid_demo.repository.AccountRepository;
+import com.example.acid_demo.repository.TransactionLogRepository;
+import com.example.acid_demo.seed.AccountSeeder;
+import com.example.acid_demo.service.IsolationDemoService;
+import com.example.acid_demo.service.TransferService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Пока леджер работает, балансы его счетов меняет только он: переводы TransferService и изменения баланса
+ * в демонстрациях изоляции по его счетам отклоняются, очистка счетов - тоже.
+ * Леджер помнит счета, удалённые тестом, поэтому контекст не переиспользуется
+ */
+@DirtiesContext
+@SpringBootTest(properties = {
+        "acid.ledger.enabled=true",
+        "acid.ledger.checkpoint-interval=1h",
+        "acid.transfer.simulated-delays=false"
+})
+class LedgerEngineOwnershipTest {
+    
+    private static final String FROM = "LEDGER-OWNED-FROM";
+    private static final String TO = "LEDGER-OWNED-TO";
+    private static final Money AMOUNT = Money.valueOf("95.00");
+    
+    @DynamicPropertySource
+    static void journalDirectory(DynamicPropertyRegistry registry) throws IOException {
+        String directory = Files.createTempDirectory("ledger-journal").toString();
+        registry.add("acid.ledger.journal-directory", () -> directory);
+    }
+    
+    @Autowired
+    private LedgerEngine ledgerEngine;
+    
+    @Autowired
+    private TransferService transferService;
+    
+    @Autowired
+    private IsolationDemoService isolationDemoService;
+    
+    @Autowired
+    private AccountSeeder accountSeeder;
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private TransactionLogRepository transactionLogRepository;
+    
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        accountRepository.save(new Account(FROM, Money.valueOf("100.00")));
+        accountRepository.save(new Account(TO, Money.valueOf("0.00")));
+    }
+    
+    @AfterEach
+    void cleanUp() {
+        transactionLogRepository.deleteAll(transactionLogRepository.findByFromAccountOrToAccountOrderByTimestampDesc(FROM, TO));
+        accountRepository.findByAccountNumber(FROM).ifPresent(accountRepository::delete);
+        accountRepository.findByAccountNumber(TO).ifPresent(accountRepository::delete);
+    }
+    
+    @Test
+    void writesPastLedgerAreRejected() {
+        // перевод через леджер регистрирует оба счёта в нём
+        ledgerEngine.transfer(FROM, TO, Money.valueOf("10.00"));
+        
+        assertThatThrownBy(() -> transferService.transferMoney(FROM, TO, AMOUNT))
+                .hasMessageContaining("леджером");
+        assertThatThrownBy(() -> transferService.transferWithConditionalUpdate(FROM, TO, AMOUNT))
+                .hasMessageContaining("леджером");
+        assertThatThrownBy(() -> transferService.transferWithPessimisticLock(FROM, TO, AMOUNT))
+                .hasMessageContaining("леджером");
+        assertThatThrownBy(() -> transferService.transferWithOptimisticLock(TO, FROM, Money.valueOf("1.00")))
+                .hasMessageContaining("леджером");
+        assertThat(transferService.transferBatch(List.of(new TransferRequest(FROM, TO, AMOUNT))))
+                .singleElement()
+                .extracting(TransferResult::getStatus)
+                .isEqualTo(TransactionStatus.FAILED);
+        assertThatThrownBy(() -> isolationDemoService.updateBalance(FROM, Money.valueOf("-95.00")))
+                .hasMessageContaining("леджером");
+        assertThatThrownBy(() -> isolationDemoService.longRunningUpdate(FROM, Money.valueOf("-95.00")))
+                .hasMessageContaining("леджером");
+        
+        // леджер по-прежнему видит все изменения своих счетов и не одобрит перевод без средств
+        assertThat(ledgerEngine.getBalance(FROM)).isEqualTo(Money.valueOf("90.00"));
+        assertThatThrownBy(() -> ledgerEngine.transfer(FROM, TO, Money.valueOf("90.01")))
+                .hasMessage("Недостаточно средств на счёте");
+        assertThat(accountRepository.findByAccountNumber(FROM).orElseThrow().getBalance())
+                .isEqualTo(Money.valueOf("100.00"));
+    }
+    
+    @Test
+    void resetIsRejectedWhileLedgerRuns() {
+        assertThatThrownBy(() -> accountSeeder.reset())
+                .hasMessageContaining("Леджер");
+        assertThat(accountRepository.findByAccountNumber(FROM)).isPresent();
+    }
+}
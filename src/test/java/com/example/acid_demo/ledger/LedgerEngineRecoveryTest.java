@@ -0,0 +1,137 @@
+package com.example.acid_demo.ledger;
+
+import com.example.acid_demo.config.LedgerProperties;
+import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.entity.TransactionLog;
+import com.example.acid_demo.entity.TransactionLog.TransactionStatus;
+import com.example.acid_demo.repository.AccountRepository;
+import com.example.acid_demo.repository.LedgerCheckpointRepository;
+import com.example.acid_demo.repository.TransactionLogJdbcRepository;
+import com.example.acid_demo.repository.TransactionLogRepository;
+import com.example.acid_demo.service.AccountCache;
+import com.example.acid_demo.service.TransactionLogWriter;
+import com.example.acid_demo.util.JsonLogger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Переводы через леджер, "сбой" до checkpoint (писатель остановлен, в БД ничего не перенесено)
+ * и запуск нового экземпляра на том же журнале: балансы и TransactionLog восстанавливаются из журнала.
+ * Леджер контекста после теста остановлен, поэтому контекст не переиспользуется
+ */
+@DirtiesContext
+@SpringBootTest(properties = {
+        "acid.ledger.enabled=true",
+        "acid.ledger.checkpoint-interval=1h",
+        "acid.ledger.segment-size=4KB",
+        "acid.transfer.simulated-delays=false"
+})
+class LedgerEngineRecoveryTest {
+    
+    private static final int TRANSFERS = 100;
+    private static final String FROM = "LEDGER-FROM";
+    private static final String TO = "LEDGER-TO";
+    
+    @DynamicPropertySource
+    static void journalDirectory(DynamicPropertyRegistry registry) throws IOException {
+        String directory = Files.createTempDirectory("ledger-journal").toString();
+        registry.add("acid.ledger.journal-directory", () -> directory);
+    }
+    
+    @Autowired
+    private LedgerEngine ledgerEngine;
+    
+    @Autowired
+    private LedgerCheckpointRepository checkpointRepository;
+    
+    @Autowired
+    private TransactionLogJdbcRepository transactionLogJdbcRepository;
+    
+    @Autowired
+    private TransactionLogWriter transactionLogWriter;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private AccountCache accountCache;
+    
+    @Autowired
+    private JsonLogger jsonLogger;
+    
+    @Autowired
+    private LedgerProperties ledgerProperties;
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private TransactionLogRepository transactionLogRepository;
+    
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        accountRepository.save(new Account(FROM, Money.valueOf("100.00")));
+        accountRepository.save(new Account(TO, Money.valueOf("0.00")));
+    }
+    
+    @AfterEach
+    void cleanUp() {
+        transactionLogRepository.deleteAll(transactionLogRepository.findByFromAccountOrToAccountOrderByTimestampDesc(FROM, TO));
+        accountRepository.findByAccountNumber(FROM).ifPresent(accountRepository::delete);
+        accountRepository.findByAccountNumber(TO).ifPresent(accountRepository::delete);
+    }
+    
+    @Test
+    void recoversAcknowledgedTransfersFromJournal() {
+        List<CompletableFuture<Void>> transfers = IntStream.range(0, TRANSFERS)
+                .mapToObj(i -> CompletableFuture.runAsync(() -> ledgerEngine.transfer(FROM, TO, Money.valueOf("0.75"))))
+                .toList();
+        transfers.forEach(CompletableFuture::join);
+        assertThatThrownBy(() -> ledgerEngine.transfer(FROM, TO, Money.valueOf("100.00")))
+                .hasMessage("Недостаточно средств на счёте");
+        assertThat(ledgerEngine.getBalance(FROM)).isEqualTo(Money.valueOf("25.00"));
+        
+        // сбой до checkpoint: подтверждённые переводы есть только в журнале
+        assertThat(ledgerEngine.halt()).isTrue();
+        assertThat(accountRepository.findByAccountNumber(FROM).orElseThrow().getBalance())
+                .isEqualTo(Money.valueOf("100.00"));
+        
+        LedgerEngine recovered = new LedgerEngine(checkpointRepository, transactionLogJdbcRepository,
+                transactionLogWriter, transactionTemplate, accountCache, jsonLogger, ledgerProperties,
+                new SimpleMeterRegistry());
+        recovered.start();
+        try {
+            assertThat(recovered.getBalance(FROM)).isEqualTo(Money.valueOf("25.00"));
+            assertThat(recovered.getBalance(TO)).isEqualTo(Money.valueOf("75.00"));
+        } finally {
+            recovered.stop();
+        }
+        
+        assertThat(accountRepository.findByAccountNumber(FROM).orElseThrow().getBalance())
+                .isEqualTo(Money.valueOf("25.00"));
+        assertThat(accountRepository.findByAccountNumber(TO).orElseThrow().getBalance())
+                .isEqualTo(Money.valueOf("75.00"));
+        List<TransactionLog> logs = transactionLogRepository.findByFromAccountOrToAccountOrderByTimestampDesc(FROM, TO);
+        assertThat(logs).filteredOn(log -> log.getStatus() == TransactionStatus.SUCCESS).hasSize(TRANSFERS);
+        assertThat(logs).filteredOn(log -> log.getStatus() == TransactionStatus.FAILED).hasSize(1);
+    }
+}
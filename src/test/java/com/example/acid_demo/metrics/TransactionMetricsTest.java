@@ -0,0 +1,132 @@
+package com.example.acid_demo.metrics;
+
+import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.repository.AccountRepository;
+import com.example.acid_demo.repository.TransactionLogRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Метрики переводов через REST: таймеры транзакций acid.transaction и acid.transaction.commit
+ * с тегами name и outcome, таймер блокировок acid.lock.acquisition с тегами mode и outcome,
+ * и те же серии в /actuator/prometheus
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "acid.transfer.simulated-delays=false")
+@AutoConfigureObservability(tracing = false)
+class TransactionMetricsTest {
+    
+    private static final String FROM = "METRICS-FROM";
+    private static final String TO = "METRICS-TO";
+    private static final String TRANSFER_MONEY = "TransferService.transferMoney";
+    private static final String PESSIMISTIC = "TransferService.transferWithPessimisticLock";
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private TransactionLogRepository transactionLogRepository;
+    
+    @LocalServerPort
+    private int port;
+    
+    private final HttpClient client = HttpClient.newHttpClient();
+    
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        accountRepository.save(new Account(FROM, Money.valueOf("1000.00")));
+        // у получателя тоже есть средства: встречный перевод демонстрации не зависит от порядка
+        accountRepository.save(new Account(TO, Money.valueOf("100.00")));
+    }
+    
+    @AfterEach
+    void cleanUp() {
+        transactionLogRepository.deleteAll(transactionLogRepository.findByFromAccountOrToAccountOrderByTimestampDesc(FROM, TO));
+        accountRepository.findByAccountNumber(FROM).ifPresent(accountRepository::delete);
+        accountRepository.findByAccountNumber(TO).ifPresent(accountRepository::delete);
+    }
+    
+    @Test
+    void committedAndRolledBackTransfersAreTimedByOutcome() throws Exception {
+        long commits = count("acid.transaction", TRANSFER_MONEY, "commit");
+        long commitPhases = count("acid.transaction.commit", TRANSFER_MONEY, "commit");
+        long rollbacks = count("acid.transaction", TRANSFER_MONEY, "rollback");
+        long rollbackCommitPhases = count("acid.transaction.commit", TRANSFER_MONEY, "rollback");
+        
+        assertThat(post("/api/acid/transfer/atomic?from=" + FROM + "&to=" + TO + "&amount=10.00").statusCode())
+                .isEqualTo(200);
+        // нехватка средств - исключение до COMMIT, транзакция откатывается
+        assertThat(post("/api/acid/transfer/atomic?from=" + FROM + "&to=" + TO + "&amount=5000.00").statusCode())
+                .isEqualTo(400);
+        
+        assertThat(count("acid.transaction", TRANSFER_MONEY, "commit")).isEqualTo(commits + 1);
+        assertThat(count("acid.transaction.commit", TRANSFER_MONEY, "commit")).isEqualTo(commitPhases + 1);
+        assertThat(count("acid.transaction", TRANSFER_MONEY, "rollback")).isEqualTo(rollbacks + 1);
+        // до фазы COMMIT откатившаяся транзакция не дошла
+        assertThat(count("acid.transaction.commit", TRANSFER_MONEY, "rollback")).isEqualTo(rollbackCommitPhases);
+    }
+    
+    @Test
+    void lockAcquisitionIsTimedByModeAndOutcome() throws Exception {
+        long acquired = lockCount("timeout", "acquired");
+        long transactions = count("acid.transaction", PESSIMISTIC, "commit");
+        
+        // демонстрация выполняет два встречных перевода, каждый блокирует оба счёта одним запросом
+        HttpResponse<String> response = post("/api/acid/transfer/pessimistic-lock?from=" + FROM + "&to=" + TO
+                + "&amount=10.00&lockTimeoutMs=5000");
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).doesNotContain("FAILED");
+        
+        assertThat(lockCount("timeout", "acquired")).isEqualTo(acquired + 2);
+        assertThat(count("acid.transaction", PESSIMISTIC, "commit")).isEqualTo(transactions + 2);
+        
+        String scrape = client.send(HttpRequest.newBuilder(uri("/actuator/prometheus")).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+        assertThat(scrape.lines())
+                .anySatisfy(line -> assertThat(line)
+                        .startsWith("acid_lock_acquisition_seconds_count{")
+                        .contains("mode=\"timeout\"", "outcome=\"acquired\""))
+                .anySatisfy(line -> assertThat(line)
+                        .startsWith("acid_transaction_seconds_count{")
+                        .contains("name=\"" + PESSIMISTIC + "\"", "outcome=\"commit\""));
+    }
+    
+    private long count(String timer, String name, String outcome) {
+        Timer found = meterRegistry.find(timer).tags("name", name, "outcome", outcome).timer();
+        return found != null ? found.count() : 0;
+    }
+    
+    private long lockCount(String mode, String outcome) {
+        Timer found = meterRegistry.find("acid.lock.acquisition").tags("mode", mode, "outcome", outcome).timer();
+        return found != null ? found.count() : 0;
+    }
+    
+    private HttpResponse<String> post(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(uri(path)).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+    
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.acid_demo.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверка плана запросов истории счёта: индексы из миграций должны использоваться,
+ * а запрос с ограничением по времени - читать только секции из этого диапазона.
+ * Проверяются запросы самого TransactionLogRepository: SQL производного запроса перехватывается
+ * у Hibernate (SqlCapture), native-запрос берётся из константы, с которой объявлен метод.
+ * Данные и статистика (ANALYZE) создаются в транзакции, которая откатывается
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.acid_demo.repository.TransactionLogIndexExplainTest$SqlCapture")
+class TransactionLogIndexExplainTest {
+    
+    private static final String ACCOUNT = "EXPLAIN-ACC-7";
+    
+    private static final Pattern SCANNED_TABLE = Pattern.compile(" on (transaction_logs_\\w+)");
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private TransactionLogRepository transactionLogRepository;
+    
+    @Test
+    void accountHistoryUsesIndexes() {
+        // все записи - в пределах одних суток текущего месяца, т.е. в одной секции
+        Timestamp since = Timestamp.valueOf(LocalDate.now().withDayOfMonth(1).plusDays(1).atStartOfDay());
+        Timestamp before = Timestamp.valueOf(since.toLocalDateTime().plusDays(1));
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            status.setRollbackOnly();
+            jdbcTemplate.update("INSERT INTO transaction_logs (id, from_account, to_account, amount, timestamp, status) " +
+                    "SELECT nextval('transaction_logs_seq'), 'EXPLAIN-ACC-' || (g % 500), 'EXPLAIN-ACC-' || ((g + 1) % 500), " +
+                    "1.00, CAST(? AS timestamp) + g * interval '1 second', 'SUCCESS' FROM generate_series(1, 50000) g", since);
+            jdbcTemplate.execute("ANALYZE transaction_logs");
+            String partition = jdbcTemplate.queryForObject(
+                    "SELECT tableoid::regclass::text FROM transaction_logs WHERE from_account = ? LIMIT 1",
+                    String.class, ACCOUNT);
+            
+            // SQL производного запроса строит Hibernate: берём тот, что ушёл в БД при вызове репозитория
+            SqlCapture.statements.clear();
+            transactionLogRepository.findByFromAccountOrToAccountOrderByTimestampDesc(ACCOUNT, ACCOUNT);
+            String historySql = SqlCapture.statements.stream()
+                    .filter(sql -> sql.contains("transaction_logs"))
+                    .reduce((first, second) -> second)
+                    .orElseThrow();
+            String historyPlan = explain(historySql, ACCOUNT, ACCOUNT);
+            assertThat(historyPlan)
+                    .contains(partition + "_from_account_timestamp_id_idx")
+                    .contains(partition + "_to_account_timestamp_id_idx")
+                    .doesNotContain("Seq Scan on " + partition + " ");
+            
+            String pagePlan = explain(TransactionLogRepository.ACCOUNT_PAGE_BEFORE_SQL, new MapSqlParameterSource()
+                    .addValue("account", ACCOUNT)
+                    .addValue("status", null, Types.VARCHAR)
+                    .addValue("since", since)
+                    .addValue("beforeTimestamp", before)
+                    .addValue("beforeId", Long.MAX_VALUE)
+                    .addValue("limit", 50));
+            assertThat(pagePlan)
+                    .contains("Index Scan using " + partition + "_from_account_timestamp_id_idx")
+                    .contains("Index Scan using " + partition + "_to_account_timestamp_id_idx")
+                    .doesNotContain("Seq Scan")
+                    .doesNotContain("Sort Key: transaction_logs.timestamp DESC");
+            assertThat(scannedTables(pagePlan)).containsExactly(partition);
+        });
+    }
+    
+    private String explain(String sql, Object... args) {
+        List<String> lines = jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, args);
+        return String.join("\n", lines);
+    }
+    
+    private String explain(String sql, MapSqlParameterSource parameters) {
+        List<String> lines = namedParameterJdbcTemplate.queryForList("EXPLAIN " + sql, parameters, String.class);
+        return String.join("\n", lines);
+    }
+    
+    private static Set<String> scannedTables(String plan) {
+        Set<String> tables = new TreeSet<>();
+        Matcher matcher = SCANNED_TABLE.matcher(plan);
+        while (matcher.find()) {
+            tables.add(matcher.group(1));
+        }
+        return tables;
+    }
+    
+    /**
+     * Запоминает SQL, который Hibernate отправляет в БД
+     */
+    public static class SqlCapture implements StatementInspector {
+        
+        static final List<String> statements = new CopyOnWriteArrayList<>();
+        
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.acid_demo.retry;
+
+import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.repository.AccountRepository;
+import com.example.acid_demo.service.TransferService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Встречные переводы в SERIALIZABLE между двумя счетами: PostgreSQL прерывает конфликтующие транзакции,
+ * TransactionRetryExecutor повторяет их, и все переводы завершаются без потери денег
+ */
+@SpringBootTest(properties = {
+        "acid.transfer.simulated-delays=false",
+        "acid.transaction-retry.max-attempts=50",
+        "acid.transaction-retry.lock-fallback-after=50",
+        "acid.transaction-retry.hot-key-failures=1000000",
+        "acid.transaction-retry.budget-capacity=100000"
+})
+class TransactionRetryExecutorTest {
+    
+    private static final String FIRST = "RETRY-1";
+    private static final String SECOND = "RETRY-2";
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 20;
+    
+    @Autowired
+    private TransferService transferService;
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        accountRepository.save(new Account(FIRST, Money.valueOf("10000.00")));
+        accountRepository.save(new Account(SECOND, Money.valueOf("10000.00")));
+    }
+    
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM transaction_logs WHERE from_account IN (?, ?)", FIRST, SECOND);
+        jdbcTemplate.update("DELETE FROM accounts WHERE account_number IN (?, ?)", FIRST, SECOND);
+    }
+    
+    @Test
+    void concurrentSerializableTransfersAreRetried() throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            for (int t = 0; t < THREADS; t++) {
+                boolean forward = t % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        transferService.transferSerializable(forward ? FIRST : SECOND, forward ? SECOND : FIRST,
+                                Money.valueOf("1.00"));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        
+        // поровну переводов в обе стороны - балансы вернулись к начальным
+        assertThat(accountRepository.findByAccountNumber(FIRST).orElseThrow().getBalance())
+                .isEqualTo(Money.valueOf("10000.00"));
+        assertThat(accountRepository.findByAccountNumber(SECOND).orElseThrow().getBalance())
+                .isEqualTo(Money.valueOf("10000.00"));
+        
+        double failures = meterRegistry.get("acid.tx.retry.failures")
+                .tag("method", "TransferService.transferSerializable")
+                .counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+        long attempts = (long) meterRegistry.get("acid.tx.retry.attempts")
+                .tag("method", "TransferService.transferSerializable")
+                .summary().totalAmount();
+        assertThat(attempts).isEqualTo(THREADS * TRANSFERS_PER_THREAD + (long) failures);
+    }
+    
+    @Test
+    void classifiesBySqlState() {
+        SQLException serialization = new SQLException("could not serialize access", "40001");
+        SQLException deadlock = new SQLException("deadlock detected", "40P01");
+        
+        assertThat(TransactionFailures.classify(new CannotAcquireLockException("wrapped", serialization)))
+                .contains(TransactionFailures.Kind.SERIALIZATION_FAILURE);
+        assertThat(TransactionFailures.classify(new RuntimeException(new RuntimeException(deadlock))))
+                .contains(TransactionFailures.Kind.DEADLOCK);
+        assertThat(TransactionFailures.classify(new SQLException("lock timeout", "55P03"))).isEmpty();
+        assertThat(TransactionFailures.classify(new RuntimeException("Недостаточно средств на счёте"))).isEmpty();
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.acid_demo.scenario;
+
+import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.repository.AccountRepository;
+import com.example.acid_demo.service.TransferService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Isolation;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сценариев больше, чем соединений в их пуле: лишние ждут в очереди, все завершаются,
+ * а переводы в это время не ждут - у них свой пул. UPDATE открытой транзакции не виден READ COMMITTED до COMMIT
+ */
+@SpringBootTest(properties = {
+        "acid.transfer.simulated-delays=false",
+        "acid.isolation-demo.pool-size=2"
+})
+class ScenarioRunnerTest {
+    
+    private static final String HELD = "SCENARIO-HELD";
+    private static final String FROM = "SCENARIO-FROM";
+    private static final String TO = "SCENARIO-TO";
+    private static final int SCENARIOS = 6;
+    
+    @Autowired
+    private ScenarioRunner scenarioRunner;
+    
+    @Autowired
+    private TransferService transferService;
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        accountRepository.save(new Account(HELD, Money.valueOf("100.00")));
+        accountRepository.save(new Account(FROM, Money.valueOf("100.00")));
+        accountRepository.save(new Account(TO, Money.valueOf("0.00")));
+    }
+    
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM transaction_logs WHERE from_account = ?", FROM);
+        jdbcTemplate.update("DELETE FROM accounts WHERE account_number IN (?, ?, ?)", HELD, FROM, TO);
+    }
+    
+    @Test
+    void scenariosQueueForTheirPoolWithoutBlockingTransfers() {
+        List<CompletableFuture<Map<String, Object>>> scenarios = new ArrayList<>();
+        for (int i = 0; i < SCENARIOS; i++) {
+            scenarios.add(scenarioRunner.run(Scenario.readOnlyTransaction("test-" + i, Isolation.REPEATABLE_READ)
+                    .statement("до", ScenarioRunnerTest::selectOne)
+                    .pause(Duration.ofSeconds(2))
+                    .statement("после", ScenarioRunnerTest::selectOne)));
+        }
+        
+        // оба соединения сценариев заняты открытыми транзакциями, переводы идут через основной пул
+        long start = System.nanoTime();
+        transferService.transferWithConditionalUpdate(FROM, TO, Money.valueOf("10.00"));
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+        
+        CompletableFuture.allOf(scenarios.toArray(CompletableFuture[]::new)).orTimeout(30, TimeUnit.SECONDS).join();
+        assertThat(scenarios).allSatisfy(scenario -> assertThat(scenario.join()).containsKeys("до", "после"));
+    }
+    
+    @Test
+    void uncommittedUpdateIsInvisibleToReadCommitted() {
+        // чтение начинается после UPDATE, а COMMIT ждёт окончания чтения: порядок задают шаги, а не паузы
+        CompletableFuture<Void> updated = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> read = updated.thenCompose(ignored -> scenarioRunner.run(
+                Scenario.readOnlyTransaction("read", Isolation.READ_COMMITTED)
+                        .statement("баланс", ScenarioRunnerTest::heldBalance)));
+        
+        CompletableFuture<Map<String, Object>> longUpdate = scenarioRunner.run(
+                Scenario.transaction("long-update", Isolation.READ_COMMITTED)
+                        .statement("обновлено", connection -> {
+                            try (PreparedStatement statement = connection.prepareStatement(
+                                    "UPDATE accounts SET balance = balance + 50.00 WHERE account_number = ?")) {
+                                statement.setString(1, HELD);
+                                int updatedRows = statement.executeUpdate();
+                                updated.complete(null);
+                                return updatedRows;
+                            }
+                        })
+                        .statement("до_commit", connection -> read.orTimeout(30, TimeUnit.SECONDS).join()));
+        
+        assertThat(longUpdate.orTimeout(30, TimeUnit.SECONDS).join()).containsEntry("обновлено", 1);
+        assertThat(read.join().get("баланс")).isEqualTo(Money.valueOf("100.00"));
+        assertThat(accountRepository.findByAccountNumber(HELD).orElseThrow().getBalance())
+                .isEqualTo(Money.valueOf("150.00"));
+    }
+    
+    private static Object selectOne(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            return statement.execute("SELECT 1");
+        }
+    }
+    
+    private static Money heldBalance(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT balance FROM accounts WHERE account_number = ?")) {
+            statement.setString(1, HELD);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return Money.of(rs.getBigDecimal(1));
+            }
+        }
+    }
+}
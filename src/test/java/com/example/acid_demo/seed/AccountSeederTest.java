@@ -0,0 +1,86 @@
+package com.example.acid_demo.seed;
+
+import com.example.acid_demo.config.SeedProperties;
+import com.example.acid_demo.dto.SeedReport;
+import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.repository.AccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Загрузка через COPY без очистки (reset=false), чтобы не трогать данные других тестов:
+ * число строк, границы балансов, история сразу в секциях (не в DEFAULT) и то, что Hibernate
+ * после загрузки не выдаёт идентификаторы из зарезервированного блока
+ */
+@SpringBootTest
+class AccountSeederTest {
+    
+    private static final String PREFIX = "SEED-TEST-";
+    private static final int ACCOUNTS = 5_000;
+    private static final long TRANSACTIONS = 20_000;
+    
+    @Autowired
+    private AccountSeeder accountSeeder;
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM transaction_logs WHERE from_account LIKE ?", PREFIX + "%");
+        jdbcTemplate.update("DELETE FROM accounts WHERE account_number LIKE ?", PREFIX + "%");
+    }
+    
+    @Test
+    void seedsAccountsAndHistoryWithCopy() {
+        SeedProperties settings = new SeedProperties();
+        settings.setReset(false);
+        settings.setAccountPrefix(PREFIX);
+        settings.setAccounts(ACCOUNTS);
+        settings.setDistribution(SeedProperties.Distribution.PARETO);
+        settings.setMinBalance(Money.valueOf("10.00"));
+        settings.setMaxBalance(Money.valueOf("5000.00"));
+        settings.setTransactions(TRANSACTIONS);
+        settings.setHistory(Duration.ofDays(90));
+        
+        List<SeedReport> reports = accountSeeder.seed(settings);
+        
+        assertThat(reports).extracting(SeedReport::getTable).containsExactly("accounts", "transaction_logs");
+        assertThat(reports).extracting(SeedReport::getRows).containsExactly((long) ACCOUNTS, TRANSACTIONS);
+        assertThat(reports).allSatisfy(report -> assertThat(report.getRowsPerSecond()).isPositive());
+        
+        Long seeded = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM accounts WHERE account_number LIKE ? AND balance BETWEEN 10.00 AND 5000.00",
+                Long.class, PREFIX + "%");
+        assertThat(seeded).isEqualTo(ACCOUNTS);
+        
+        Long history = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM transaction_logs t WHERE from_account LIKE ? AND from_account <> to_account "
+                        + "AND EXISTS (SELECT 1 FROM accounts a WHERE a.account_number = t.to_account)",
+                Long.class, PREFIX + "%");
+        assertThat(history).isEqualTo(TRANSACTIONS);
+        
+        Long inDefault = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM transaction_logs_default WHERE from_account LIKE ?", Long.class, PREFIX + "%");
+        assertThat(inDefault).isZero();
+        
+        Long minSeededId = jdbcTemplate.queryForObject(
+                "SELECT min(id) FROM accounts WHERE account_number LIKE ?", Long.class, PREFIX + "%");
+        Long maxSeededId = jdbcTemplate.queryForObject(
+                "SELECT max(id) FROM accounts WHERE account_number LIKE ?", Long.class, PREFIX + "%");
+        Account saved = accountRepository.save(new Account(PREFIX + "HIBERNATE", Money.valueOf("1.00")));
+        assertThat(saved.getId() < minSeededId || saved.getId() > maxSeededId).isTrue();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.acid_demo.service;
+
+import com.example.acid_demo.dto.BalanceAuditResult;
+import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.repository.AccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сумма в ledger_totals следует за всеми способами изменить баланс: сохранение сущности,
+ * условный UPDATE перевода, разбивка на корзины, удаление счёта. Сворачивание изменений сумму не меняет,
+ * а сверка с фактическими балансами не находит расхождений
+ */
+@SpringBootTest(properties = "acid.transfer.simulated-delays=false")
+class BalanceAuditServiceTest {
+    
+    private static final String FROM = "AUDIT-FROM";
+    private static final String TO = "AUDIT-TO";
+    
+    @Autowired
+    private BalanceAuditService balanceAuditService;
+    
+    @Autowired
+    private TransferService transferService;
+    
+    @Autowired
+    private StripedLedgerService stripedLedgerService;
+    
+    @Autowired
+    private IsolationDemoService isolationDemoService;
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM accounts WHERE account_number IN (?, ?)", FROM, TO);
+    }
+    
+    @Test
+    void totalFollowsBalanceChanges() {
+        Money before = balanceAuditService.getTotal();
+        
+        accountRepository.save(new Account(FROM, Money.valueOf("1000.00")));
+        accountRepository.save(new Account(TO, Money.valueOf("500.00")));
+        transferService.transferWithConditionalUpdate(FROM, TO, Money.valueOf("100.00"));
+        stripedLedgerService.stripe(TO, 4);
+        isolationDemoService.updateBalance(FROM, Money.valueOf("25.00"));
+        
+        assertThat(balanceAuditService.getTotal()).isEqualTo(before.plus(Money.valueOf("1525.00")));
+        
+        balanceAuditService.compact();
+        assertThat(balanceAuditService.getTotal()).isEqualTo(before.plus(Money.valueOf("1525.00")));
+        
+        BalanceAuditResult result = balanceAuditService.verify();
+        assertThat(result.isConsistent()).isTrue();
+        assertThat(result.getMismatchedShards()).isEmpty();
+        assertThat(result.getLedgerTotal()).isEqualTo(result.getBalancesTotal());
+        
+        cleanUp();
+        assertThat(balanceAuditService.getTotal()).isEqualTo(before);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.acid_demo.service;
+
+import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.repository.AccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Параллельные зачисления и списания по счёту с корзинами: деньги не теряются и не появляются,
+ * корзины не уходят в минус, в том числе когда баланс во время нагрузки собирают (unstripe) и разбивают снова
+ */
+@SpringBootTest(properties = "acid.transfer.simulated-delays=false")
+class StripedLedgerServiceTest {
+    
+    private static final String ACCOUNT = "STRIPED-HOT";
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 400;
+    private static final long INITIAL_MINOR = 100_000;
+    
+    @Autowired
+    private StripedLedgerService stripedLedgerService;
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        accountRepository.save(new Account(ACCOUNT, Money.ofMinor(INITIAL_MINOR)));
+        stripedLedgerService.stripe(ACCOUNT, 4);
+    }
+    
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM accounts WHERE account_number = ?", ACCOUNT);
+    }
+    
+    @Test
+    void concurrentDebitsAndCreditsConserveMoney() throws Exception {
+        long expected = run(progress -> {
+        });
+        
+        assertThat(balanceMinor()).isEqualTo(expected);
+        assertThat(minBucketMinor()).isGreaterThanOrEqualTo(0);
+    }
+    
+    @Test
+    void unstripeUnderLoadKeepsEveryOperation() throws Exception {
+        long expected = run(progress -> {
+            awaitProgress(progress, OPERATIONS / 3);
+            stripedLedgerService.unstripe(ACCOUNT);
+            awaitProgress(progress, 2 * OPERATIONS / 3);
+            stripedLedgerService.stripe(ACCOUNT, 8);
+        });
+        
+        assertThat(balanceMinor()).isEqualTo(expected);
+        assertThat(minBucketMinor()).isGreaterThanOrEqualTo(0);
+        assertThat(accountRepository.findByAccountNumber(ACCOUNT).orElseThrow().getBalanceBuckets()).isEqualTo(8);
+    }
+    
+    /**
+     * Чётные операции - зачисления, нечётные - списания; суммы списаний больше баланса одной корзины,
+     * поэтому часть из них идёт через блокировку всех корзин. Пока операции выполняются, в текущем потоке
+     * работает duringLoad. Возвращает ожидаемый баланс по успешным операциям
+     */
+    private long run(LoadAction duringLoad) throws Exception {
+        AtomicLong expected = new AtomicLong(INITIAL_MINOR);
+        AtomicInteger progress = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>(OPERATIONS);
+            for (int i = 0; i < OPERATIONS; i++) {
+                int operation = i;
+                futures.add(executor.submit(() -> {
+                    if (operation % 2 == 0) {
+                        long amount = 100 + operation;
+                        assertThat(stripedLedgerService.credit(ACCOUNT, Money.ofMinor(amount))).isTrue();
+                        expected.addAndGet(amount);
+                    } else {
+                        long amount = 20_000 + 37L * operation;
+                        StripedLedgerService.DebitResult result = stripedLedgerService.debit(ACCOUNT, Money.ofMinor(amount));
+                        assertThat(result).isNotEqualTo(StripedLedgerService.DebitResult.NOT_STRIPED);
+                        if (result == StripedLedgerService.DebitResult.DONE) {
+                            expected.addAndGet(-amount);
+                        }
+                    }
+                    progress.incrementAndGet();
+                }));
+            }
+            duringLoad.run(progress);
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return expected.get();
+    }
+    
+    private static void awaitProgress(AtomicInteger progress, int operations) throws InterruptedException {
+        while (progress.get() < operations) {
+            Thread.sleep(1);
+        }
+    }
+    
+    private long balanceMinor() {
+        // для счёта с корзинами - сумма корзин
+        return accountRepository.findByAccountNumber(ACCOUNT).orElseThrow().getBalance().minorUnits();
+    }
+    
+    private long minBucketMinor() {
+        BigDecimal min = jdbcTemplate.queryForObject("""
+                SELECT COALESCE(MIN(b.balance), 0) FROM account_balance_buckets b
+                JOIN accounts a ON a.id = b.account_id WHERE a.account_number = ?
+                """, BigDecimal.class, ACCOUNT);
+        return Money.of(min).minorUnits();
+    }
+    
+    @FunctionalInterface
+    private interface LoadAction {
+        
+        void run(AtomicInteger progress) throws Exception;
+    }
+}
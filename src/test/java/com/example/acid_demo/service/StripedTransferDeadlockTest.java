@@ -0,0 +1,119 @@
+package com.example.acid_demo.service;
+
+import com.example.acid_demo.dto.TransferRequest;
+import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.repository.AccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Встречные переводы A→B и B→A между счетами с корзинами на пессимистичном и пакетном путях.
+ * Суммы больше баланса одной корзины, поэтому списание блокирует все корзины счёта: без общего порядка
+ * блокировок корзин такие переводы попадали в deadlock (40P01)
+ */
+@SpringBootTest(properties = "acid.transfer.simulated-delays=false")
+class StripedTransferDeadlockTest {
+    
+    private static final String A = "STRIPED-A";
+    private static final String B = "STRIPED-B";
+    private static final int THREADS = 8;
+    private static final int TRANSFERS = 200;
+    private static final Money AMOUNT = Money.valueOf("300.00");
+    
+    @Autowired
+    private TransferService transferService;
+    
+    @Autowired
+    private StripedLedgerService stripedLedgerService;
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        accountRepository.save(new Account(A, Money.valueOf("1000.00")));
+        accountRepository.save(new Account(B, Money.valueOf("1000.00")));
+        stripedLedgerService.stripe(A, 4);
+        stripedLedgerService.stripe(B, 4);
+    }
+    
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM transaction_logs WHERE from_account IN (?, ?)", A, B);
+        jdbcTemplate.update("DELETE FROM accounts WHERE account_number IN (?, ?)", A, B);
+    }
+    
+    @Test
+    void pessimisticTransfersBothWaysDoNotDeadlock() throws Exception {
+        List<Exception> failures = runBothWays(i ->
+                transferService.transferWithPessimisticLock(from(i), to(i), AMOUNT));
+        
+        assertThat(failures).allSatisfy(e -> assertThat(e).hasMessage("Недостаточно средств на счёте"));
+        assertThat(total()).isEqualTo(Money.valueOf("2000.00"));
+    }
+    
+    @Test
+    void batchTransfersBothWaysDoNotDeadlock() throws Exception {
+        List<Exception> failures = runBothWays(i ->
+                transferService.transferBatch(List.of(new TransferRequest(from(i), to(i), AMOUNT))));
+        
+        assertThat(failures).isEmpty();
+        assertThat(total()).isEqualTo(Money.valueOf("2000.00"));
+    }
+    
+    /**
+     * Чётные переводы - A→B, нечётные - B→A. Возвращает исключения переводов
+     */
+    private List<Exception> runBothWays(IntConsumer transfer) throws InterruptedException {
+        Queue<Exception> failures = new ConcurrentLinkedQueue<>();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int i = 0; i < TRANSFERS; i++) {
+                int transferIndex = i;
+                executor.execute(() -> {
+                    try {
+                        transfer.accept(transferIndex);
+                    } catch (Exception e) {
+                        failures.add(e);
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+        return List.copyOf(failures);
+    }
+    
+    private static String from(int transfer) {
+        return transfer % 2 == 0 ? A : B;
+    }
+    
+    private static String to(int transfer) {
+        return transfer % 2 == 0 ? B : A;
+    }
+    
+    private Money total() {
+        return accountRepository.findByAccountNumber(A).orElseThrow().getBalance()
+                .plus(accountRepository.findByAccountNumber(B).orElseThrow().getBalance());
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.acid_demo.service;
+
+import com.example.acid_demo.dto.TransferRequest;
+import com.example.acid_demo.dto.TransferResult;
+import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.entity.TransactionLog.TransactionStatus;
+import com.example.acid_demo.repository.AccountRepository;
+import com.example.acid_demo.repository.TransactionLogRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Ошибки отдельных переводов пакета возвращаются в результатах, а не прерывают пакет:
+ * переводы без счёта или суммы, переводы на тот же счёт, несуществующие счета
+ */
+@SpringBootTest(properties = "acid.transfer.simulated-delays=false")
+class TransferBatchValidationTest {
+    
+    private static final String FROM = "BATCH-FROM";
+    private static final String TO = "BATCH-TO";
+    
+    @Autowired
+    private TransferService transferService;
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private TransactionLogRepository transactionLogRepository;
+    
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        accountRepository.save(new Account(FROM, Money.valueOf("100.00")));
+        accountRepository.save(new Account(TO, Money.valueOf("0.00")));
+    }
+    
+    @AfterEach
+    void cleanUp() {
+        transactionLogRepository.deleteAll(transactionLogRepository.findByFromAccountOrToAccountOrderByTimestampDesc(FROM, TO));
+        accountRepository.findByAccountNumber(FROM).ifPresent(accountRepository::delete);
+        accountRepository.findByAccountNumber(TO).ifPresent(accountRepository::delete);
+    }
+    
+    @Test
+    void invalidItemsAreReportedPerItem() {
+        List<TransferResult> results = transferService.transferBatch(List.of(
+                new TransferRequest(null, TO, Money.valueOf("1.00")),
+                new TransferRequest(FROM, " ", Money.valueOf("1.00")),
+                new TransferRequest(FROM, TO, null),
+                new TransferRequest(FROM, FROM, Money.valueOf("1.00")),
+                new TransferRequest(FROM, "BATCH-MISSING", Money.valueOf("1.00")),
+                new TransferRequest(FROM, TO, Money.valueOf("10.00"))
+        ));
+        
+        assertThat(results).extracting(TransferResult::getMessage).containsExactly(
+                "Не указан счёт отправителя",
+                "Не указан счёт получателя",
+                "Не указана сумма перевода",
+                "Счета отправителя и получателя совпадают",
+                "Счёт получателя не найден",
+                null
+        );
+        assertThat(results.get(5).getStatus()).isEqualTo(TransactionStatus.SUCCESS);
+        assertThat(accountRepository.findByAccountNumber(FROM).orElseThrow().getBalance())
+                .isEqualTo(Money.valueOf("90.00"));
+    }
+    
+    @Test
+    void batchWithoutAccountNumbersDoesNotFail() {
+        List<TransferResult> results = transferService.transferBatch(List.of(
+                new TransferRequest(null, null, Money.valueOf("1.00")),
+                new TransferRequest("", "", Money.valueOf("1.00"))
+        ));
+        
+        assertThat(results).extracting(TransferResult::getStatus)
+                .containsOnly(TransactionStatus.FAILED);
+        assertThat(results).extracting(TransferResult::getMessage)
+                .containsOnly("Не указан счёт отправителя");
+    }
+    
+    @Test
+    void singleTransferToSameAccountIsRejected() {
+        assertThatThrownBy(() -> transferService.transferMoney(FROM, FROM, Money.valueOf("1.00")))
+                .hasMessage("Счета отправителя и получателя совпадают");
+        assertThatThrownBy(() -> transferService.transferWithConditionalUpdate(FROM, FROM, Money.valueOf("1.00")))
+                .hasMessage("Счета отправителя и получателя совпадают");
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.acid_demo.service;
+
+import com.example.acid_demo.dto.TransferRequest;
+import com.example.acid_demo.entity.Account;
+import com.example.acid_demo.entity.Money;
+import com.example.acid_demo.repository.AccountRepository;
+import com.example.acid_demo.repository.TransactionLogRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Нагрузочный тест: сколько обращений к БД уходит на INSERT логов переводов (transaction_logs).
+ * Обращения считаются на уровне JDBC: executeBatch - одно обращение на весь пакет, execute* - одно на строку.
+ * Одиночный перевод пишет один лог - ровно один INSERT на перевод. Когда логов в транзакции несколько,
+ * идентификаторы из последовательности (pooled) позволяют отправить их пакетами по hibernate.jdbc.batch_size;
+ * с IDENTITY каждый INSERT уходил отдельно, чтобы получить id, и пакетный сценарий теста не проходит
+ */
+@SpringBootTest
+class TransferStatementCountLoadTest {
+    
+    private static final int TRANSFERS = 40;
+    private static final String FROM = "LOAD-FROM";
+    private static final String TO = "LOAD-TO";
+    
+    private static final AtomicInteger LOG_INSERT_ROUND_TRIPS = new AtomicInteger();
+    private static final AtomicInteger LOG_INSERT_ROWS = new AtomicInteger();
+    
+    @Autowired
+    private TransferService transferService;
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private TransactionLogRepository transactionLogRepository;
+    
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size}")
+    private int batchSize;
+    
+    @TestConfiguration
+    static class JdbcCounting {
+        
+        @Bean
+        static BeanPostProcessor countingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource ? counting(bean, null) : bean;
+                }
+            };
+        }
+    }
+    
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        accountRepository.save(new Account(FROM, Money.valueOf("1000000.00")));
+        accountRepository.save(new Account(TO, Money.valueOf("0.00")));
+        resetCounters();
+    }
+    
+    @AfterEach
+    void cleanUp() {
+        transactionLogRepository.deleteAll(
+                transactionLogRepository.findByFromAccountOrToAccountOrderByTimestampDesc(FROM, TO));
+        accountRepository.findByAccountNumber(FROM).ifPresent(accountRepository::delete);
+        accountRepository.findByAccountNumber(TO).ifPresent(accountRepository::delete);
+    }
+    
+    @Test
+    void logInsertsPerTransfer() {
+        assertThat(TRANSFERS).isGreaterThan(batchSize);
+        
+        for (int i = 0; i < TRANSFERS; i++) {
+            transferService.transferMoney(FROM, TO, Money.valueOf("1"));
+        }
+        // одиночный перевод: один лог в транзакции - одно обращение, лишних INSERT нет
+        assertThat(LOG_INSERT_ROWS.get()).isEqualTo(TRANSFERS);
+        assertThat(LOG_INSERT_ROUND_TRIPS.get()).isEqualTo(TRANSFERS);
+        
+        resetCounters();
+        List<TransferRequest> batch = new ArrayList<>(TRANSFERS);
+        for (int i = 0; i < TRANSFERS; i++) {
+            batch.add(new TransferRequest(FROM, TO, Money.valueOf("1")));
+        }
+        transferService.transferBatch(batch);
+        // логи пакета уходят JDBC-пакетами по batch_size строк
+        assertThat(LOG_INSERT_ROWS.get()).isEqualTo(TRANSFERS);
+        assertThat(LOG_INSERT_ROUND_TRIPS.get()).isEqualTo((TRANSFERS + batchSize - 1) / batchSize);
+        
+        assertThat(accountRepository.findByAccountNumber(TO).orElseThrow().getBalance())
+                .isEqualTo(Money.valueOf(String.valueOf(2L * TRANSFERS)));
+    }
+    
+    private static void resetCounters() {
+        LOG_INSERT_ROUND_TRIPS.set(0);
+        LOG_INSERT_ROWS.set(0);
+    }
+    
+    /**
+     * Прокси DataSource, его соединений и подготовленных statement'ов; sql - текст statement'а, для остальных null
+     */
+    private static Object counting(Object target, String sql) {
+        boolean logInsert = sql != null && sql.strip().toLowerCase(Locale.ROOT).startsWith("insert into transaction_logs");
+        return Proxy.newProxyInstance(target.getClass().getClassLoader(),
+                ClassUtils.getAllInterfacesForClass(target.getClass()), (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Connection && method.getName().equals("getConnection")) {
+                        return counting(result, null);
+                    }
+                    if (result instanceof PreparedStatement && method.getName().equals("prepareStatement")) {
+                        return counting(result, (String) args[0]);
+                    }
+                    if (logInsert && method.getName().matches("execute(Large)?Batch")) {
+                        LOG_INSERT_ROUND_TRIPS.incrementAndGet();
+                        LOG_INSERT_ROWS.addAndGet(Array.getLength(result));
+                    } else if (logInsert && method.getName().startsWith("execute") && (args == null || args.length == 0)) {
+                        LOG_INSERT_ROUND_TRIPS.incrementAndGet();
+                        LOG_INSERT_ROWS.incrementAndGet();
+                    }
+                    return result;
+                });
+    }
+}